@@ -38,7 +38,9 @@ import org.gnucash.android.BuildConfig;
 import org.gnucash.android.R;
 import org.gnucash.android.db.BookDbHelper;
 import org.gnucash.android.db.DatabaseHelper;
+import org.gnucash.android.db.DatabaseReaderPool;
 import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.db.adapter.AdapterRegistry;
 import org.gnucash.android.db.adapter.BooksDbAdapter;
 import org.gnucash.android.db.adapter.BudgetAmountsDbAdapter;
 import org.gnucash.android.db.adapter.BudgetsDbAdapter;
@@ -107,6 +109,7 @@ public class GnuCashApplication extends Application {
 
     private static BooksDbAdapter mBooksDbAdapter;
     private static DatabaseHelper mDbHelper;
+    private static DatabaseReaderPool mReaderPool;
 
     /**
      * Returns darker version of specified <code>color</code>.
@@ -154,6 +157,9 @@ public class GnuCashApplication extends Application {
      * @param context the context.
      */
     public static void initializeDatabaseAdapters(Context context) {
+        if (mReaderPool != null) {
+            mReaderPool.close();
+        }
         if (mDbHelper != null) { //close if open
             mDbHelper.getReadableDatabase().close();
         }
@@ -172,15 +178,19 @@ public class GnuCashApplication extends Application {
             mainDb = mDbHelper.getReadableDatabase();
         }
 
-        mSplitsDbAdapter = new SplitsDbAdapter(mainDb);
-        mTransactionsDbAdapter = new TransactionsDbAdapter(mainDb, mSplitsDbAdapter);
-        mAccountsDbAdapter = new AccountsDbAdapter(mainDb, mTransactionsDbAdapter);
-        mRecurrenceDbAdapter = new RecurrenceDbAdapter(mainDb);
-        mScheduledActionDbAdapter = new ScheduledActionDbAdapter(mainDb, mRecurrenceDbAdapter);
-        mPricesDbAdapter = new PricesDbAdapter(mainDb);
-        mCommoditiesDbAdapter = new CommoditiesDbAdapter(mainDb);
-        mBudgetAmountsDbAdapter = new BudgetAmountsDbAdapter(mainDb);
-        mBudgetsDbAdapter = new BudgetsDbAdapter(mainDb, mBudgetAmountsDbAdapter, mRecurrenceDbAdapter);
+        AdapterRegistry adapters = AdapterRegistry.getInstance(mainDb);
+        mSplitsDbAdapter = adapters.getSplitsDbAdapter();
+        mTransactionsDbAdapter = adapters.getTransactionsDbAdapter();
+        mAccountsDbAdapter = adapters.getAccountsDbAdapter();
+        mRecurrenceDbAdapter = adapters.getRecurrenceDbAdapter();
+        mScheduledActionDbAdapter = adapters.getScheduledActionDbAdapter();
+        mPricesDbAdapter = adapters.getPricesDbAdapter();
+        mCommoditiesDbAdapter = adapters.getCommoditiesDbAdapter();
+        mCommoditiesDbAdapter.initCommon();
+        mBudgetAmountsDbAdapter = adapters.getBudgetAmountsDbAdapter();
+        mBudgetsDbAdapter = adapters.getBudgetsDbAdapter();
+        int readerPoolSize = context.getResources().getInteger(R.integer.database_reader_pool_size);
+        mReaderPool = new DatabaseReaderPool(mDbHelper, mainDb, readerPoolSize);
     }
 
     private static void destroyDatabaseAdapters() {
@@ -254,6 +264,10 @@ public class GnuCashApplication extends Application {
             } catch (IOException ignore) {
             }
         }
+        if (mReaderPool != null) {
+            mReaderPool.close();
+            mReaderPool = null;
+        }
         if (mDbHelper != null) {
             mDbHelper.close();
             mDbHelper = null;
@@ -300,6 +314,15 @@ public class GnuCashApplication extends Application {
         return mBooksDbAdapter;
     }
 
+    /**
+     * Returns the pool of read-only connections to the active book
+     *
+     * @return Reader pool of the active database
+     */
+    public static DatabaseReaderPool getDatabaseReaderPool() {
+        return mReaderPool;
+    }
+
     @NonNull
     public static String getActiveBookUID() {
         return getBooksDbAdapter().getActiveBookUID();
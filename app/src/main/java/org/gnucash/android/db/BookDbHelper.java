@@ -24,9 +24,8 @@ import android.database.sqlite.SQLiteOpenHelper;
 import org.gnucash.android.app.GnuCashApplication;
 import org.gnucash.android.db.DatabaseSchema.BookEntry;
 import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.db.adapter.AdapterRegistry;
 import org.gnucash.android.db.adapter.BooksDbAdapter;
-import org.gnucash.android.db.adapter.SplitsDbAdapter;
-import org.gnucash.android.db.adapter.TransactionsDbAdapter;
 import org.gnucash.android.model.Book;
 
 import java.io.IOException;
@@ -66,8 +65,7 @@ public class BookDbHelper extends SQLiteOpenHelper {
         Book book = new Book();
         DatabaseHelper helper = new DatabaseHelper(GnuCashApplication.getAppContext(), book.getUID());
         SQLiteDatabase mainDb = helper.getWritableDatabase(); //actually create the db
-        AccountsDbAdapter accountsDbAdapter = new AccountsDbAdapter(mainDb,
-                new TransactionsDbAdapter(mainDb, new SplitsDbAdapter(mainDb)));
+        AccountsDbAdapter accountsDbAdapter = AdapterRegistry.getInstance(mainDb).getAccountsDbAdapter();
 
         String rootAccountUID = accountsDbAdapter.getOrCreateGnuCashRootAccountUID();
         try {
@@ -22,6 +22,7 @@ import android.database.Cursor;
 import androidx.loader.content.AsyncTaskLoader;
 import androidx.loader.content.Loader;
 
+import org.gnucash.android.app.GnuCashApplication;
 import org.gnucash.android.db.adapter.DatabaseAdapter;
 
 /**
@@ -69,6 +70,25 @@ public abstract class DatabaseCursorLoader extends AsyncTaskLoader<Cursor> {
      */
     public abstract Cursor loadInBackground();
 
+    @Override
+    protected Cursor onLoadInBackground() {
+        Cursor cursor = super.onLoadInBackground();
+        // the cursor may outlive the reader pool, which is closed when the active book changes
+        return cursor == null ? null : DatabaseReaderPool.retainConnection(cursor);
+    }
+
+    /**
+     * Returns database adapters for loading records.
+     * <p>They read from the pool of read-only connections of the active book, so that loading
+     * is not blocked while another thread writes to the database.</p>
+     *
+     * @return Database adapters for reading
+     */
+    protected DatabaseReaderPool.Reader getReader() {
+        DatabaseReaderPool readerPool = GnuCashApplication.getDatabaseReaderPool();
+        return readerPool == null ? new DatabaseReaderPool.Reader() : readerPool.acquire();
+    }
+
     /**
      * Registers the content observer for the cursor.
      *
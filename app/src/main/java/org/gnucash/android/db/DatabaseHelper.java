@@ -16,6 +16,7 @@
 
 package org.gnucash.android.db;
 
+import static org.gnucash.android.db.DatabaseSchema.AccountBalanceEntry;
 import static org.gnucash.android.db.DatabaseSchema.AccountEntry;
 import static org.gnucash.android.db.DatabaseSchema.BudgetAmountEntry;
 import static org.gnucash.android.db.DatabaseSchema.BudgetEntry;
@@ -28,6 +29,8 @@ import static org.gnucash.android.db.DatabaseSchema.SplitEntry;
 import static org.gnucash.android.db.DatabaseSchema.TransactionEntry;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
@@ -43,6 +46,8 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.sql.SQLDataException;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -221,6 +226,37 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             + createUpdatedAtTrigger(RecurrenceEntry.TABLE_NAME);
 
 
+    /**
+     * SQL statement to create the table of per-account balances.
+     * <p>Each row holds the sum of the split quantities of one account for one calendar month (UTC).
+     * The rows are maintained by the triggers returned by {@link #createAccountBalanceTriggers()}</p>
+     */
+    private static final String ACCOUNT_BALANCES_TABLE_CREATE = "CREATE TABLE " + AccountBalanceEntry.TABLE_NAME + " ("
+            + AccountBalanceEntry._ID + " integer primary key autoincrement, "
+            + AccountBalanceEntry.COLUMN_ACCOUNT_UID + " varchar(255) not null, "
+            + AccountBalanceEntry.COLUMN_PERIOD_START + " integer not null, "
+            + AccountBalanceEntry.COLUMN_QUANTITY_NUM + " integer not null default 0, "
+            + AccountBalanceEntry.COLUMN_QUANTITY_DENOM + " integer not null, "
+            + "UNIQUE (" + AccountBalanceEntry.COLUMN_ACCOUNT_UID + ", " + AccountBalanceEntry.COLUMN_PERIOD_START + ", " + AccountBalanceEntry.COLUMN_QUANTITY_DENOM + "), "
+            + "FOREIGN KEY (" + AccountBalanceEntry.COLUMN_ACCOUNT_UID + ") REFERENCES " + AccountEntry.TABLE_NAME + " (" + AccountEntry.COLUMN_UID + ") ON DELETE CASCADE "
+            + ");";
+
+    /**
+     * Columns of the split indexes summed up for balances, so that balances can be read from the index alone
+     */
+    private static final String SPLIT_INDEX_BALANCE_COLUMNS = SplitEntry.COLUMN_TYPE + ", "
+            + SplitEntry.COLUMN_QUANTITY_NUM + ", " + SplitEntry.COLUMN_QUANTITY_DENOM;
+
+    /**
+     * Size in bytes to which the write-ahead log is truncated after a checkpoint
+     */
+    private static final long WAL_SIZE_LIMIT = 4 * 1024 * 1024;
+
+    /**
+     * Whether the database was opened in write-ahead logging mode
+     */
+    private boolean mWriteAheadLogging = false;
+
     /**
      * Constructor
      *
@@ -253,6 +289,72 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         createDatabaseTables(db);
     }
 
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        mWriteAheadLogging = enableWriteAheadLogging(db);
+    }
+
+    /**
+     * Returns {@code true} if the database is in write-ahead logging mode, so that connections
+     * from a {@link DatabaseReaderPool} can read it while it is being written
+     */
+    public boolean isWriteAheadLogging() {
+        return mWriteAheadLogging;
+    }
+
+    /**
+     * Switches the database to write-ahead logging, so that readers on other connections
+     * are not blocked by a long write transaction.
+     * <p>The journal mode is set with a pragma rather than with {@link SQLiteDatabase#enableWriteAheadLogging()},
+     * which would also spread the queries over a pool of connections lacking the temporary views
+     * created by the database adapters.</p>
+     *
+     * @param db Database being configured
+     * @return {@code true} if the database is in write-ahead logging mode
+     */
+    private static boolean enableWriteAheadLogging(SQLiteDatabase db) {
+        if (db.isReadOnly()) {
+            return false;
+        }
+        try {
+            String journalMode = DatabaseUtils.stringForQuery(db, "PRAGMA journal_mode=WAL", null);
+            DatabaseUtils.longForQuery(db, "PRAGMA journal_size_limit=" + WAL_SIZE_LIMIT, null);
+            return "wal".equalsIgnoreCase(journalMode);
+        } catch (SQLiteException e) {
+            Timber.w(e, "Could not enable write-ahead logging");
+            return false;
+        }
+    }
+
+    /**
+     * Copies the content of the write-ahead log into the database and restarts the log,
+     * which is then truncated on the next write.
+     * <p>SQLite checkpoints the log automatically, but it can grow large during a big import or
+     * while readers prevent the automatic checkpoints from completing. This should be called
+     * from a background thread after such operations.</p>
+     *
+     * @param db Database to checkpoint
+     */
+    public static void checkpoint(SQLiteDatabase db) {
+        try {
+            if (!"wal".equalsIgnoreCase(DatabaseUtils.stringForQuery(db, "PRAGMA journal_mode", null))) {
+                return;
+            }
+            Cursor cursor = db.rawQuery("PRAGMA wal_checkpoint(RESTART)", null);
+            try {
+                if (cursor.moveToFirst()) {
+                    Timber.d("Checkpoint of %s: busy %d, %d frames in log, %d checkpointed",
+                            db.getPath(), cursor.getInt(0), cursor.getInt(1), cursor.getInt(2));
+                }
+            } finally {
+                cursor.close();
+            }
+        } catch (SQLiteException e) {
+            Timber.w(e, "Could not checkpoint the database");
+        }
+    }
+
     @Override
     public void onOpen(SQLiteDatabase db) {
         super.onOpen(db);
@@ -260,7 +362,30 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     }
 
     @Override
-    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {}
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        Timber.i("Upgrading database from version %d to %d", oldVersion, newVersion);
+        /*
+         * NOTE: In order to modify the database, create a new static method in the MigrationHelper class
+         * called upgradeDbToVersion<#>, e.g. int upgradeDbToVersion16(SQLiteDatabase) in order to upgrade to version 16.
+         * The upgrade method should return the new (upgraded) database version as the return value.
+         * Then increment DatabaseSchema.DATABASE_VERSION to the appropriate number to trigger an upgrade.
+         */
+        if (oldVersion > newVersion) {
+            throw new IllegalArgumentException("Database downgrades are not supported at the moment");
+        }
+
+        while (oldVersion < newVersion) {
+            try {
+                Method method = MigrationHelper.class.getDeclaredMethod("upgradeDbToVersion" + (oldVersion + 1), SQLiteDatabase.class);
+                Object result = method.invoke(null, db);
+                oldVersion = Integer.parseInt(result.toString());
+            } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+                String msg = String.format("Database upgrade method upgradeDbToVersion%d(SQLiteDatabase) failed", oldVersion + 1);
+                Timber.e(e, msg);
+                throw new RuntimeException(msg, e);
+            }
+        }
+    }
 
 
     /**
@@ -317,6 +442,9 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         db.execSQL(createRecurrenceUidIndex);
         db.execSQL(createBudgetAmountUidIndex);
 
+        createQueryIndexes(db);
+        createAccountBalances(db);
+
         try {
             MigrationHelper.importCommodities(db);
         } catch (SAXException | ParserConfigurationException | IOException e) {
@@ -326,6 +454,304 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         }
     }
 
+    /**
+     * Creates the indexes used by the balance, date range and per-account queries.
+     * <p>The split indexes contain the columns summed up for balances, so that the splits of an account
+     * or of a transaction can be read from the index alone. The transactions index lets the queries of
+     * non-template transactions in a currency, such as the earliest or latest one, search both columns and
+     * read the timestamps in order without scanning the transactions table.</p>
+     *
+     * @param db Database instance
+     */
+    static void createQueryIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS '" + SplitEntry.INDEX_ACCOUNT_UID + "' ON "
+                + SplitEntry.TABLE_NAME + "(" + SplitEntry.COLUMN_ACCOUNT_UID + ", "
+                + SplitEntry.COLUMN_TRANSACTION_UID + ", " + SPLIT_INDEX_BALANCE_COLUMNS + ")");
+        createSplitTransactionIndex(db);
+        db.execSQL("CREATE INDEX IF NOT EXISTS '" + TransactionEntry.INDEX_TIMESTAMP + "' ON "
+                + TransactionEntry.TABLE_NAME + "(" + TransactionEntry.COLUMN_TEMPLATE + ", "
+                + TransactionEntry.COLUMN_CURRENCY + ", " + TransactionEntry.COLUMN_TIMESTAMP + ", "
+                + TransactionEntry.COLUMN_UID + ")");
+    }
+
+    /**
+     * Creates the index of the splits by transaction.
+     * <p>The account balance triggers look up the splits of a transaction, so this index has to exist
+     * whenever the triggers do, or each split written during a bulk import scans the splits table.</p>
+     *
+     * @param db Database instance
+     */
+    private static void createSplitTransactionIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS '" + SplitEntry.INDEX_TRANSACTION_UID + "' ON "
+                + SplitEntry.TABLE_NAME + "(" + SplitEntry.COLUMN_TRANSACTION_UID + ", "
+                + SplitEntry.COLUMN_ACCOUNT_UID + ", " + SPLIT_INDEX_BALANCE_COLUMNS + ")");
+    }
+
+    /**
+     * Returns the steps of the query plan of an SQL query which scan a whole table or index
+     * instead of searching it.
+     * <p>This is meant for checking that frequent queries make use of the indexes.</p>
+     *
+     * @param db            Database instance
+     * @param sql           SQL query
+     * @param selectionArgs Arguments of the query
+     * @return Details of the full scan steps in the query plan, empty if there are none
+     */
+    public static List<String> getFullScans(SQLiteDatabase db, String sql, String[] selectionArgs) {
+        List<String> scans = new ArrayList<>();
+        Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, selectionArgs);
+        try {
+            int detailColumn = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                String detail = cursor.getString(detailColumn);
+                if (detail.startsWith("SCAN ")) {
+                    scans.add(detail);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return scans;
+    }
+
+    /**
+     * Returns an SQL expression for the start (in milliseconds) of the UTC month containing a timestamp
+     *
+     * @param timestamp SQL expression of a timestamp in milliseconds
+     * @return SQL expression for the balance period of the timestamp
+     */
+    static String balancePeriodStart(String timestamp) {
+        return "(CAST(strftime('%s', " + timestamp + " / 1000.0, 'unixepoch', 'start of month') AS INTEGER) * 1000)";
+    }
+
+    /**
+     * Returns an SQL expression for the signed quantity of a split. Debits are positive, credits negative.
+     *
+     * @param split Name or alias of the split row, e.g. {@code NEW}
+     * @return SQL expression for the signed split quantity
+     */
+    private static String signedSplitQuantity(String split) {
+        return "(CASE WHEN " + split + "." + SplitEntry.COLUMN_TYPE + " = 'DEBIT' THEN "
+                + split + "." + SplitEntry.COLUMN_QUANTITY_NUM + " ELSE - "
+                + split + "." + SplitEntry.COLUMN_QUANTITY_NUM + " END)";
+    }
+
+    /**
+     * Returns the SQL statements which add (or subtract) the quantity of a single split row to its balance bucket
+     *
+     * @param split Trigger row of the split, i.e. {@code NEW} or {@code OLD}
+     * @param add   {@code true} to add the quantity, {@code false} to subtract it
+     * @return SQL statements, to be used in a trigger body
+     */
+    private static String applySplitToBalance(String split, boolean add) {
+        String period = "(SELECT " + balancePeriodStart("t." + TransactionEntry.COLUMN_TIMESTAMP)
+                + " AS " + AccountBalanceEntry.COLUMN_PERIOD_START
+                + " FROM " + TransactionEntry.TABLE_NAME + " t"
+                + " WHERE t." + TransactionEntry.COLUMN_UID + " = " + split + "." + SplitEntry.COLUMN_TRANSACTION_UID
+                + " AND t." + TransactionEntry.COLUMN_TEMPLATE + " = 0)";
+        String sql = "";
+        if (add) {
+            // INSERT OR IGNORE cannot be used here: an INSERT OR REPLACE firing the trigger
+            // would override the conflict resolution and reset the existing bucket
+            sql += "INSERT INTO " + AccountBalanceEntry.TABLE_NAME + " ("
+                    + AccountBalanceEntry.COLUMN_ACCOUNT_UID + ", "
+                    + AccountBalanceEntry.COLUMN_PERIOD_START + ", "
+                    + AccountBalanceEntry.COLUMN_QUANTITY_DENOM + ")"
+                    + " SELECT " + split + "." + SplitEntry.COLUMN_ACCOUNT_UID + ", p." + AccountBalanceEntry.COLUMN_PERIOD_START + ", "
+                    + split + "." + SplitEntry.COLUMN_QUANTITY_DENOM
+                    + " FROM " + period + " p"
+                    + " WHERE NOT EXISTS (SELECT 1 FROM " + AccountBalanceEntry.TABLE_NAME + " b"
+                    + " WHERE b." + AccountBalanceEntry.COLUMN_ACCOUNT_UID + " = " + split + "." + SplitEntry.COLUMN_ACCOUNT_UID
+                    + " AND b." + AccountBalanceEntry.COLUMN_QUANTITY_DENOM + " = " + split + "." + SplitEntry.COLUMN_QUANTITY_DENOM
+                    + " AND b." + AccountBalanceEntry.COLUMN_PERIOD_START + " = p." + AccountBalanceEntry.COLUMN_PERIOD_START + "); ";
+        }
+        sql += "UPDATE " + AccountBalanceEntry.TABLE_NAME
+                + " SET " + AccountBalanceEntry.COLUMN_QUANTITY_NUM + " = " + AccountBalanceEntry.COLUMN_QUANTITY_NUM
+                + (add ? " + " : " - ") + signedSplitQuantity(split)
+                + " WHERE " + AccountBalanceEntry.COLUMN_ACCOUNT_UID + " = " + split + "." + SplitEntry.COLUMN_ACCOUNT_UID
+                + " AND " + AccountBalanceEntry.COLUMN_QUANTITY_DENOM + " = " + split + "." + SplitEntry.COLUMN_QUANTITY_DENOM
+                + " AND " + AccountBalanceEntry.COLUMN_PERIOD_START + " = " + period + "; ";
+        return sql;
+    }
+
+    /**
+     * Returns the SQL statements which add (or subtract) the quantities of all splits of a transaction
+     * to their balance buckets
+     *
+     * @param transactionUID SQL expression for the UID of the transaction
+     * @param timestamp      SQL expression for the timestamp of the transaction
+     * @param isTemplate     SQL expression for the template flag of the transaction
+     * @param add            {@code true} to add the quantities, {@code false} to subtract them
+     * @return SQL statements, to be used in a trigger body
+     */
+    private static String applyTransactionToBalance(String transactionUID, String timestamp, String isTemplate, boolean add) {
+        String period = balancePeriodStart(timestamp);
+        String sql = "";
+        if (add) {
+            sql += "INSERT INTO " + AccountBalanceEntry.TABLE_NAME + " ("
+                    + AccountBalanceEntry.COLUMN_ACCOUNT_UID + ", "
+                    + AccountBalanceEntry.COLUMN_PERIOD_START + ", "
+                    + AccountBalanceEntry.COLUMN_QUANTITY_DENOM + ")"
+                    + " SELECT DISTINCT s." + SplitEntry.COLUMN_ACCOUNT_UID + ", " + period + ", s." + SplitEntry.COLUMN_QUANTITY_DENOM
+                    + " FROM " + SplitEntry.TABLE_NAME + " s"
+                    + " WHERE s." + SplitEntry.COLUMN_TRANSACTION_UID + " = " + transactionUID
+                    + " AND " + isTemplate + " = 0"
+                    + " AND NOT EXISTS (SELECT 1 FROM " + AccountBalanceEntry.TABLE_NAME + " b"
+                    + " WHERE b." + AccountBalanceEntry.COLUMN_ACCOUNT_UID + " = s." + SplitEntry.COLUMN_ACCOUNT_UID
+                    + " AND b." + AccountBalanceEntry.COLUMN_QUANTITY_DENOM + " = s." + SplitEntry.COLUMN_QUANTITY_DENOM
+                    + " AND b." + AccountBalanceEntry.COLUMN_PERIOD_START + " = " + period + "); ";
+        }
+        sql += "UPDATE " + AccountBalanceEntry.TABLE_NAME
+                + " SET " + AccountBalanceEntry.COLUMN_QUANTITY_NUM + " = " + AccountBalanceEntry.COLUMN_QUANTITY_NUM
+                + (add ? " + " : " - ") + "COALESCE((SELECT SUM(" + signedSplitQuantity("s") + ")"
+                + " FROM " + SplitEntry.TABLE_NAME + " s"
+                + " WHERE s." + SplitEntry.COLUMN_TRANSACTION_UID + " = " + transactionUID
+                + " AND s." + SplitEntry.COLUMN_ACCOUNT_UID + " = " + AccountBalanceEntry.TABLE_NAME + "." + AccountBalanceEntry.COLUMN_ACCOUNT_UID
+                + " AND s." + SplitEntry.COLUMN_QUANTITY_DENOM + " = " + AccountBalanceEntry.TABLE_NAME + "." + AccountBalanceEntry.COLUMN_QUANTITY_DENOM
+                + "), 0)"
+                + " WHERE " + isTemplate + " = 0"
+                + " AND " + AccountBalanceEntry.COLUMN_PERIOD_START + " = " + period
+                + " AND " + AccountBalanceEntry.COLUMN_ACCOUNT_UID + " IN (SELECT " + SplitEntry.COLUMN_ACCOUNT_UID
+                + " FROM " + SplitEntry.TABLE_NAME + " WHERE " + SplitEntry.COLUMN_TRANSACTION_UID + " = " + transactionUID + "); ";
+        return sql;
+    }
+
+    /**
+     * Creates the triggers which keep the account balances table consistent with the splits and transactions.
+     * <p>The triggers run as part of the statement modifying the split or transaction,
+     * so the balances are always updated within the same database transaction.
+     * Since {@code INSERT OR REPLACE} removes conflicting rows without firing delete triggers,
+     * the previous version of a replaced record is subtracted in a {@code BEFORE INSERT} trigger.</p>
+     *
+     * @return SQL statements for creating the triggers
+     */
+    static String[] createAccountBalanceTriggers() {
+        String existingSplit = "(SELECT %s FROM " + SplitEntry.TABLE_NAME + " s WHERE s." + SplitEntry.COLUMN_UID + " = NEW." + SplitEntry.COLUMN_UID + ")";
+        String replacedSplit = "UPDATE " + AccountBalanceEntry.TABLE_NAME
+                + " SET " + AccountBalanceEntry.COLUMN_QUANTITY_NUM + " = " + AccountBalanceEntry.COLUMN_QUANTITY_NUM
+                + " - " + String.format(existingSplit, signedSplitQuantity("s"))
+                + " WHERE " + AccountBalanceEntry.COLUMN_ACCOUNT_UID + " = " + String.format(existingSplit, "s." + SplitEntry.COLUMN_ACCOUNT_UID)
+                + " AND " + AccountBalanceEntry.COLUMN_QUANTITY_DENOM + " = " + String.format(existingSplit, "s." + SplitEntry.COLUMN_QUANTITY_DENOM)
+                + " AND " + AccountBalanceEntry.COLUMN_PERIOD_START + " = (SELECT " + balancePeriodStart("t." + TransactionEntry.COLUMN_TIMESTAMP)
+                + " FROM " + SplitEntry.TABLE_NAME + " s, " + TransactionEntry.TABLE_NAME + " t"
+                + " WHERE s." + SplitEntry.COLUMN_UID + " = NEW." + SplitEntry.COLUMN_UID
+                + " AND t." + TransactionEntry.COLUMN_UID + " = s." + SplitEntry.COLUMN_TRANSACTION_UID
+                + " AND t." + TransactionEntry.COLUMN_TEMPLATE + " = 0); ";
+
+        String existingTransaction = "(SELECT %s FROM " + TransactionEntry.TABLE_NAME
+                + " WHERE " + TransactionEntry.COLUMN_UID + " = NEW." + TransactionEntry.COLUMN_UID + ")";
+
+        return new String[]{
+                "CREATE TRIGGER splits_balance_replace_trigger BEFORE INSERT ON " + SplitEntry.TABLE_NAME + " FOR EACH ROW"
+                        + " BEGIN " + replacedSplit + " END;",
+                "CREATE TRIGGER splits_balance_insert_trigger AFTER INSERT ON " + SplitEntry.TABLE_NAME + " FOR EACH ROW"
+                        + " BEGIN " + applySplitToBalance("NEW", true) + " END;",
+                "CREATE TRIGGER splits_balance_delete_trigger AFTER DELETE ON " + SplitEntry.TABLE_NAME + " FOR EACH ROW"
+                        + " BEGIN " + applySplitToBalance("OLD", false) + " END;",
+                "CREATE TRIGGER splits_balance_update_trigger AFTER UPDATE OF "
+                        + SplitEntry.COLUMN_TYPE + ", " + SplitEntry.COLUMN_QUANTITY_NUM + ", " + SplitEntry.COLUMN_QUANTITY_DENOM + ", "
+                        + SplitEntry.COLUMN_ACCOUNT_UID + ", " + SplitEntry.COLUMN_TRANSACTION_UID
+                        + " ON " + SplitEntry.TABLE_NAME + " FOR EACH ROW"
+                        + " BEGIN " + applySplitToBalance("OLD", false) + applySplitToBalance("NEW", true) + " END;",
+                "CREATE TRIGGER transactions_balance_replace_trigger BEFORE INSERT ON " + TransactionEntry.TABLE_NAME + " FOR EACH ROW"
+                        + " BEGIN " + applyTransactionToBalance("NEW." + TransactionEntry.COLUMN_UID,
+                        String.format(existingTransaction, TransactionEntry.COLUMN_TIMESTAMP),
+                        String.format(existingTransaction, TransactionEntry.COLUMN_TEMPLATE), false) + " END;",
+                "CREATE TRIGGER transactions_balance_delete_trigger BEFORE DELETE ON " + TransactionEntry.TABLE_NAME + " FOR EACH ROW"
+                        + " BEGIN " + applyTransactionToBalance("OLD." + TransactionEntry.COLUMN_UID,
+                        "OLD." + TransactionEntry.COLUMN_TIMESTAMP, "OLD." + TransactionEntry.COLUMN_TEMPLATE, false) + " END;",
+                "CREATE TRIGGER transactions_balance_update_trigger AFTER UPDATE OF "
+                        + TransactionEntry.COLUMN_TIMESTAMP + ", " + TransactionEntry.COLUMN_TEMPLATE
+                        + " ON " + TransactionEntry.TABLE_NAME + " FOR EACH ROW"
+                        + " BEGIN "
+                        + applyTransactionToBalance("OLD." + TransactionEntry.COLUMN_UID,
+                        "OLD." + TransactionEntry.COLUMN_TIMESTAMP, "OLD." + TransactionEntry.COLUMN_TEMPLATE, false)
+                        + applyTransactionToBalance("NEW." + TransactionEntry.COLUMN_UID,
+                        "NEW." + TransactionEntry.COLUMN_TIMESTAMP, "NEW." + TransactionEntry.COLUMN_TEMPLATE, true)
+                        + " END;"
+        };
+    }
+
+    /**
+     * Returns an SQL query which aggregates the balance buckets directly from the splits
+     */
+    private static String aggregateAccountBalancesQuery() {
+        String period = balancePeriodStart("t." + TransactionEntry.COLUMN_TIMESTAMP);
+        return "SELECT s." + SplitEntry.COLUMN_ACCOUNT_UID + ", " + period + ", s." + SplitEntry.COLUMN_QUANTITY_DENOM
+                + ", SUM(" + signedSplitQuantity("s") + ")"
+                + " FROM " + SplitEntry.TABLE_NAME + " s, " + TransactionEntry.TABLE_NAME + " t"
+                + " WHERE t." + TransactionEntry.COLUMN_UID + " = s." + SplitEntry.COLUMN_TRANSACTION_UID
+                + " AND t." + TransactionEntry.COLUMN_TEMPLATE + " = 0"
+                + " GROUP BY s." + SplitEntry.COLUMN_ACCOUNT_UID + ", " + period + ", s." + SplitEntry.COLUMN_QUANTITY_DENOM;
+    }
+
+    /**
+     * Creates the account balances table together with the triggers maintaining it, and fills it from the splits.
+     *
+     * @param db Database instance
+     */
+    static void createAccountBalances(SQLiteDatabase db) {
+        createSplitTransactionIndex(db);
+        db.execSQL(ACCOUNT_BALANCES_TABLE_CREATE);
+        for (String trigger : createAccountBalanceTriggers()) {
+            db.execSQL(trigger);
+        }
+        rebuildAccountBalances(db);
+    }
+
+    /**
+     * Recomputes the account balances table from the splits in the database
+     *
+     * @param db Database instance
+     */
+    public static void rebuildAccountBalances(SQLiteDatabase db) {
+        Timber.i("Rebuilding account balances");
+        db.beginTransaction();
+        try {
+            db.delete(AccountBalanceEntry.TABLE_NAME, null, null);
+            db.execSQL("INSERT INTO " + AccountBalanceEntry.TABLE_NAME + " ("
+                    + AccountBalanceEntry.COLUMN_ACCOUNT_UID + ", "
+                    + AccountBalanceEntry.COLUMN_PERIOD_START + ", "
+                    + AccountBalanceEntry.COLUMN_QUANTITY_DENOM + ", "
+                    + AccountBalanceEntry.COLUMN_QUANTITY_NUM + ") "
+                    + aggregateAccountBalancesQuery());
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Checks that the account balances table matches the splits in the database.
+     * Empty balance buckets are ignored.
+     *
+     * @param db Database instance
+     * @return {@code true} if the balances are consistent, {@code false} otherwise
+     */
+    public static boolean checkAccountBalances(SQLiteDatabase db) {
+        String stored = "SELECT " + AccountBalanceEntry.COLUMN_ACCOUNT_UID + ", "
+                + AccountBalanceEntry.COLUMN_PERIOD_START + ", "
+                + AccountBalanceEntry.COLUMN_QUANTITY_DENOM + ", "
+                + AccountBalanceEntry.COLUMN_QUANTITY_NUM
+                + " FROM " + AccountBalanceEntry.TABLE_NAME
+                + " WHERE " + AccountBalanceEntry.COLUMN_QUANTITY_NUM + " != 0";
+        String computed = aggregateAccountBalancesQuery() + " HAVING SUM(" + signedSplitQuantity("s") + ") != 0";
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM ("
+                + stored + " EXCEPT " + computed
+                + " UNION ALL "
+                + "SELECT * FROM (" + computed + " EXCEPT " + stored + "))", null);
+        try {
+            cursor.moveToFirst();
+            long mismatches = cursor.getLong(0);
+            if (mismatches > 0) {
+                Timber.w("Found %d inconsistent account balance buckets", mismatches);
+            }
+            return mismatches == 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
     /**
      * Escape the given argument for use in a {@code LIKE} statement.
      * @hide
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2012-2024 GnuCash Android developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.db;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.db.adapter.AdapterRegistry;
+import org.gnucash.android.db.adapter.BudgetsDbAdapter;
+import org.gnucash.android.db.adapter.ScheduledActionDbAdapter;
+import org.gnucash.android.db.adapter.TransactionsDbAdapter;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import timber.log.Timber;
+
+/**
+ * Pool of read-only connections to the database of the active book.
+ * <p>When the database is in write-ahead logging mode, the connections of the pool read the last
+ * committed state of the database while another connection writes to it, so loaders using them
+ * are not blocked by long write transactions such as imports or scheduled actions.
+ * Each connection has its own database adapters. The connections are opened on first use and
+ * handed out in turn, so that concurrent readers use different connections.</p>
+ * <p>If the database is not in write-ahead logging mode or the pool is empty, the adapters of the
+ * main connection are used instead.</p>
+ * <p>The pool is closed when the active book changes. Cursors which are kept after they are loaded,
+ * such as the pages of the transactions list, must be passed to {@link #retainConnection(Cursor)} so
+ * that their connection stays open until they are closed.</p>
+ */
+public class DatabaseReaderPool implements Closeable {
+
+    /**
+     * Delay after the last request before the write-ahead log is checkpointed
+     */
+    private static final long CHECKPOINT_DELAY_SECONDS = 5;
+
+    /**
+     * Database adapters bound to one connection
+     */
+    public static class Reader {
+        @Nullable
+        private final SQLiteDatabase mDb;
+        private final TransactionsDbAdapter mTransactionsDbAdapter;
+        private final AccountsDbAdapter mAccountsDbAdapter;
+        private final ScheduledActionDbAdapter mScheduledActionDbAdapter;
+        private final BudgetsDbAdapter mBudgetsDbAdapter;
+
+        /**
+         * Creates the adapters of a read-only connection
+         */
+        Reader(@NonNull SQLiteDatabase db) {
+            mDb = db;
+            AdapterRegistry adapters = AdapterRegistry.getInstance(db);
+            mTransactionsDbAdapter = adapters.getTransactionsDbAdapter();
+            mAccountsDbAdapter = adapters.getAccountsDbAdapter();
+            mScheduledActionDbAdapter = adapters.getScheduledActionDbAdapter();
+            mBudgetsDbAdapter = adapters.getBudgetsDbAdapter();
+        }
+
+        /**
+         * Wraps the application-wide adapters of the main connection
+         */
+        Reader() {
+            mDb = null;
+            mTransactionsDbAdapter = TransactionsDbAdapter.getInstance();
+            mAccountsDbAdapter = AccountsDbAdapter.getInstance();
+            mScheduledActionDbAdapter = ScheduledActionDbAdapter.getInstance();
+            mBudgetsDbAdapter = BudgetsDbAdapter.getInstance();
+        }
+
+        public TransactionsDbAdapter getTransactionsDbAdapter() {
+            return mTransactionsDbAdapter;
+        }
+
+        public AccountsDbAdapter getAccountsDbAdapter() {
+            return mAccountsDbAdapter;
+        }
+
+        public ScheduledActionDbAdapter getScheduledActionDbAdapter() {
+            return mScheduledActionDbAdapter;
+        }
+
+        public BudgetsDbAdapter getBudgetsDbAdapter() {
+            return mBudgetsDbAdapter;
+        }
+    }
+
+    private final SQLiteDatabase mMainDb;
+    private final boolean mWriteAheadLogging;
+    private final Reader[] mReaders;
+    private int mNextReader = 0;
+    private boolean mClosed = false;
+
+    private final ScheduledExecutorService mCheckpointExecutor = Executors.newSingleThreadScheduledExecutor();
+    @Nullable
+    private ScheduledFuture<?> mCheckpoint;
+
+    /**
+     * Creates a pool of connections to a database
+     *
+     * @param dbHelper Helper which opened the main connection
+     * @param mainDb   Main connection to the database, used for writing
+     * @param size     Maximum number of read-only connections. If 0, the main connection is used for reading
+     */
+    public DatabaseReaderPool(@NonNull DatabaseHelper dbHelper, @NonNull SQLiteDatabase mainDb, int size) {
+        this(mainDb, dbHelper.isWriteAheadLogging(), size);
+    }
+
+    /**
+     * Creates a pool of connections to a database
+     *
+     * @param mainDb            Main connection to the database, used for writing
+     * @param writeAheadLogging {@code true} if the database is in write-ahead logging mode
+     * @param size              Maximum number of read-only connections
+     */
+    @VisibleForTesting
+    public DatabaseReaderPool(@NonNull SQLiteDatabase mainDb, boolean writeAheadLogging, int size) {
+        mMainDb = mainDb;
+        mWriteAheadLogging = writeAheadLogging;
+        mReaders = new Reader[mWriteAheadLogging ? size : 0];
+    }
+
+    /**
+     * Returns the adapters of the next connection of the pool, opening it if needed.
+     * <p>The adapters must only be used for reading. Cursors may be kept after this call;
+     * the connection stays open until the pool is closed.</p>
+     *
+     * @return Database adapters for reading
+     */
+    @NonNull
+    public synchronized Reader acquire() {
+        if (mClosed || mReaders.length == 0) {
+            return new Reader();
+        }
+        int index = mNextReader;
+        mNextReader = (mNextReader + 1) % mReaders.length;
+        if (mReaders[index] == null) {
+            try {
+                SQLiteDatabase db = SQLiteDatabase.openDatabase(mMainDb.getPath(), null, SQLiteDatabase.OPEN_READONLY);
+                mReaders[index] = new Reader(db);
+            } catch (SQLiteException e) {
+                Timber.e(e, "Could not open a reader connection");
+                return new Reader();
+            }
+        }
+        return mReaders[index];
+    }
+
+    /**
+     * Schedules a checkpoint of the write-ahead log of the main connection.
+     * <p>Requests made in quick succession, for example after each of several scheduled actions,
+     * result in a single checkpoint once they stop.</p>
+     *
+     * @see DatabaseHelper#checkpoint(SQLiteDatabase)
+     */
+    public synchronized void scheduleCheckpoint() {
+        if (mClosed || !mWriteAheadLogging) {
+            return;
+        }
+        if (mCheckpoint != null) {
+            mCheckpoint.cancel(false);
+        }
+        mCheckpoint = mCheckpointExecutor.schedule(() -> {
+            if (mMainDb.isOpen()) {
+                DatabaseHelper.checkpoint(mMainDb);
+            }
+        }, CHECKPOINT_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Keeps the connection of a cursor open until the cursor is closed, even if the pool is closed before.
+     * <p>Without it, a cursor which has not read all its rows yet fails once its connection is closed.</p>
+     *
+     * @param cursor Cursor returned by a database adapter
+     * @return Cursor to be used and closed instead of {@code cursor}
+     */
+    @NonNull
+    public static Cursor retainConnection(@NonNull Cursor cursor) {
+        if (!(cursor instanceof SQLiteCursor)) {
+            return cursor;
+        }
+        final SQLiteDatabase db = ((SQLiteCursor) cursor).getDatabase();
+        try {
+            db.acquireReference();
+        } catch (IllegalStateException e) {
+            // the connection was closed while the cursor was being loaded
+            return cursor;
+        }
+        return new CursorWrapper(cursor) {
+            private boolean mReleased = false;
+
+            @Override
+            public void close() {
+                super.close();
+                if (!mReleased) {
+                    mReleased = true;
+                    db.releaseReference();
+                }
+            }
+        };
+    }
+
+    /**
+     * Closes the connections of the pool. The main connection is not closed.
+     * <p>Connections with cursors passed to {@link #retainConnection(Cursor)} are closed with
+     * the last of those cursors.</p>
+     */
+    @Override
+    public synchronized void close() {
+        mClosed = true;
+        mCheckpointExecutor.shutdownNow();
+        for (int i = 0; i < mReaders.length; i++) {
+            if (mReaders[i] != null && mReaders[i].mDb != null) {
+                mReaders[i].mDb.close();
+            }
+            mReaders[i] = null;
+        }
+    }
+}
@@ -39,7 +39,7 @@ public class DatabaseSchema {
      * Version number of database containing accounts and transactions info.
      * With any change to the database schema, this number must increase
      */
-    public static final int DATABASE_VERSION = 15;
+    public static final int DATABASE_VERSION = 17;
 
     //no instances are to be instantiated
     private DatabaseSchema() {
@@ -110,6 +110,7 @@ public class DatabaseSchema {
         public static final String COLUMN_SCHEDX_ACTION_UID = "scheduled_action_uid";
 
         public static final String INDEX_UID = "transaction_uid_index";
+        public static final String INDEX_TIMESTAMP = "transaction_timestamp_index";
     }
 
     /**
@@ -139,6 +140,8 @@ public class DatabaseSchema {
         public static final String COLUMN_RECONCILE_DATE = "reconcile_date";
 
         public static final String INDEX_UID = "split_uid_index";
+        public static final String INDEX_ACCOUNT_UID = "split_account_index";
+        public static final String INDEX_TRANSACTION_UID = "split_transaction_index";
     }
 
     public static abstract class ScheduledActionEntry implements CommonColumns {
@@ -266,4 +269,17 @@ public class DatabaseSchema {
 
         public static final String INDEX_UID = "recurrence_uid_index";
     }
+
+    /**
+     * Columns for the table of per-account balances, aggregated in monthly (UTC) buckets.
+     * <p>The table is derived from the splits and transactions tables and kept up to date by triggers</p>
+     */
+    public static abstract class AccountBalanceEntry implements BaseColumns {
+        public static final String TABLE_NAME = "account_balances";
+
+        public static final String COLUMN_ACCOUNT_UID = "account_uid";
+        public static final String COLUMN_PERIOD_START = "period_start";
+        public static final String COLUMN_QUANTITY_NUM = "quantity_num";
+        public static final String COLUMN_QUANTITY_DENOM = "quantity_denom";
+    }
 }
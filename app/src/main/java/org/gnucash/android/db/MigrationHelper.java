@@ -35,6 +35,8 @@ import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
+import timber.log.Timber;
+
 /**
  * Collection of helper methods which are used during database migrations
  *
@@ -61,4 +63,51 @@ public class MigrationHelper {
         xr.setContentHandler(handler);
         xr.parse(new InputSource(bos));
     }
+
+    /**
+     * Upgrades the database to version 16.
+     * <p>This migration adds the table of per-account monthly balances, along with the triggers
+     * which keep it up to date and the index of the splits by transaction used by the triggers,
+     * and computes the balances of the existing splits.</p>
+     *
+     * @param db SQLite database to be upgraded
+     * @return New database version, 16 if migration succeeds, 15 otherwise
+     */
+    static int upgradeDbToVersion16(SQLiteDatabase db) {
+        Timber.i("Upgrading database to version 16");
+        int dbVersion = 15;
+
+        db.beginTransaction();
+        try {
+            DatabaseHelper.createAccountBalances(db);
+            db.setTransactionSuccessful();
+            dbVersion = 16;
+        } finally {
+            db.endTransaction();
+        }
+        return dbVersion;
+    }
+
+    /**
+     * Upgrades the database to version 17.
+     * <p>This migration adds the indexes used by the balance, date range and per-account queries
+     * on the splits and transactions tables.</p>
+     *
+     * @param db SQLite database to be upgraded
+     * @return New database version, 17 if migration succeeds, 16 otherwise
+     */
+    static int upgradeDbToVersion17(SQLiteDatabase db) {
+        Timber.i("Upgrading database to version 17");
+        int dbVersion = 16;
+
+        db.beginTransaction();
+        try {
+            DatabaseHelper.createQueryIndexes(db);
+            db.setTransactionSuccessful();
+            dbVersion = 17;
+        } finally {
+            db.endTransaction();
+        }
+        return dbVersion;
+    }
 }
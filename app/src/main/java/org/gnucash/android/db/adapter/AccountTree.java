@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2012-2024 GnuCash Android developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.db.adapter;
+
+import static org.gnucash.android.db.DatabaseSchema.AccountEntry;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.NonNull;
+
+import org.gnucash.android.model.AccountType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory copy of the account hierarchy of a book.
+ * <p>There is one tree per database file, shared by all the adapters opened on the book.
+ * The accounts are loaded with a single query on first use and kept until an account is written
+ * through an {@link AccountsDbAdapter}, so that the attributes which are looked up for each
+ * row of the account and transaction lists do not query the database.</p>
+ * <p>Like the other {@link SharedSnapshot}s, the shared tree only holds committed accounts.</p>
+ * <p>Accounts are identified by their position in the snapshot. The hierarchy is stored as arrays
+ * of parent positions and of ranges of child positions.</p>
+ */
+final class AccountTree extends SharedSnapshot<AccountTree.Snapshot> {
+
+    private static final Map<String, AccountTree> sTrees = new HashMap<>();
+
+    static final int FLAG_PLACEHOLDER = 1;
+    static final int FLAG_HIDDEN = 1 << 1;
+    static final int FLAG_FAVORITE = 1 << 2;
+
+    private static final AccountType[] ACCOUNT_TYPES = AccountType.values();
+
+    /**
+     * Accounts of the book at the time they were loaded
+     */
+    static final class Snapshot {
+        private final String[] mUIDs;
+        private final String[] mNames;
+        private final String[] mFullNames;
+        private final String[] mCurrencyCodes;
+        private final byte[] mTypes;
+        private final byte[] mFlags;
+        /**
+         * Position of the parent of each account, or -1 if it has none
+         */
+        private final int[] mParents;
+        /**
+         * The children of account {@code i} are {@code mChildren[mChildStarts[i]]}
+         * to {@code mChildren[mChildStarts[i + 1] - 1]}
+         */
+        private final int[] mChildStarts;
+        private final int[] mChildren;
+        private final Map<String, Integer> mPositionsByUID;
+        private final Map<String, Integer> mPositionsByFullName;
+        private final int mRootPosition;
+
+        private Snapshot(Cursor cursor) {
+            int count = cursor.getCount();
+            mUIDs = new String[count];
+            mNames = new String[count];
+            mFullNames = new String[count];
+            mCurrencyCodes = new String[count];
+            mTypes = new byte[count];
+            mFlags = new byte[count];
+            mParents = new int[count];
+            mPositionsByUID = new HashMap<>(count * 2);
+            mPositionsByFullName = new HashMap<>(count * 2);
+
+            String[] parentUIDs = new String[count];
+            Map<String, String> currencyCodes = new HashMap<>();
+            int rootPosition = -1;
+            for (int i = 0; i < count && cursor.moveToNext(); i++) {
+                mUIDs[i] = cursor.getString(0);
+                parentUIDs[i] = cursor.getString(1);
+                mNames[i] = cursor.getString(2);
+                mFullNames[i] = cursor.getString(3);
+                AccountType type = AccountType.valueOf(cursor.getString(4));
+                mTypes[i] = (byte) type.ordinal();
+                // most accounts share a few currencies
+                String currencyCode = cursor.getString(5);
+                String sharedCode = currencyCodes.get(currencyCode);
+                if (sharedCode == null) {
+                    currencyCodes.put(currencyCode, currencyCode);
+                    sharedCode = currencyCode;
+                }
+                mCurrencyCodes[i] = sharedCode;
+                int flags = 0;
+                if (cursor.getInt(6) != 0) flags |= FLAG_PLACEHOLDER;
+                if (cursor.getInt(7) != 0) flags |= FLAG_HIDDEN;
+                if (cursor.getInt(8) != 0) flags |= FLAG_FAVORITE;
+                mFlags[i] = (byte) flags;
+
+                mPositionsByUID.put(mUIDs[i], i);
+                if (mFullNames[i] != null && !mPositionsByFullName.containsKey(mFullNames[i])) {
+                    mPositionsByFullName.put(mFullNames[i], i);
+                }
+                if (rootPosition == -1 && type == AccountType.ROOT) {
+                    rootPosition = i;
+                }
+            }
+            mRootPosition = rootPosition;
+
+            // group the children of each account, keeping them in the order of the records
+            mChildStarts = new int[count + 1];
+            for (int i = 0; i < count; i++) {
+                Integer parent = parentUIDs[i] == null ? null : mPositionsByUID.get(parentUIDs[i]);
+                mParents[i] = parent == null ? -1 : parent;
+                if (parent != null) {
+                    mChildStarts[parent + 1]++;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                mChildStarts[i + 1] += mChildStarts[i];
+            }
+            mChildren = new int[mChildStarts[count]];
+            int[] next = new int[count];
+            System.arraycopy(mChildStarts, 0, next, 0, count);
+            for (int i = 0; i < count; i++) {
+                if (mParents[i] != -1) {
+                    mChildren[next[mParents[i]]++] = i;
+                }
+            }
+        }
+
+        /**
+         * Returns the position of an account in the snapshot
+         *
+         * @param accountUID GUID of the account
+         * @return Position of the account, or -1 if it was not in the book when the snapshot was loaded
+         */
+        int indexOf(@NonNull String accountUID) {
+            Integer position = mPositionsByUID.get(accountUID);
+            return position == null ? -1 : position;
+        }
+
+        /**
+         * Returns the position of the first account with a full name
+         *
+         * @param fullName Full name of the account, as stored in the database
+         * @return Position of the account, or -1 if there is none
+         */
+        int indexOfFullName(@NonNull String fullName) {
+            Integer position = mPositionsByFullName.get(fullName);
+            return position == null ? -1 : position;
+        }
+
+        /**
+         * Returns the position of the GnuCash ROOT account, or -1 if the book has none
+         */
+        int getRootIndex() {
+            return mRootPosition;
+        }
+
+        String getUID(int position) {
+            return mUIDs[position];
+        }
+
+        String getName(int position) {
+            return mNames[position];
+        }
+
+        String getFullName(int position) {
+            return mFullNames[position];
+        }
+
+        String getCurrencyCode(int position) {
+            return mCurrencyCodes[position];
+        }
+
+        AccountType getType(int position) {
+            return ACCOUNT_TYPES[mTypes[position]];
+        }
+
+        boolean hasFlag(int position, int flag) {
+            return (mFlags[position] & flag) != 0;
+        }
+
+        /**
+         * Returns the position of the parent of an account, or -1 if it has no parent
+         */
+        int getParent(int position) {
+            return mParents[position];
+        }
+
+        int getChildCount(int position) {
+            return mChildStarts[position + 1] - mChildStarts[position];
+        }
+
+        /**
+         * Returns the GUIDs of the descendants of an account, ordered by depth,
+         * so that parents always come before their children
+         *
+         * @param position Position of the account
+         * @return List of the GUIDs of the sub-accounts of the account, at all levels
+         */
+        @NonNull
+        ArrayList<String> getDescendantUIDs(int position) {
+            ArrayList<String> descendants = new ArrayList<>();
+            int[] queue = new int[mUIDs.length];
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = position;
+            while (head < tail) {
+                int current = queue[head++];
+                for (int i = mChildStarts[current]; i < mChildStarts[current + 1]; i++) {
+                    int child = mChildren[i];
+                    // guards against cycles in a corrupted book
+                    if (tail == queue.length) {
+                        return descendants;
+                    }
+                    queue[tail++] = child;
+                    descendants.add(mUIDs[child]);
+                }
+            }
+            return descendants;
+        }
+
+        /**
+         * Builds the name of an account prefixed with the names of its ancestors, up to the ROOT account
+         *
+         * @param position Position of the account
+         * @return Fully qualified account name
+         */
+        @NonNull
+        String getQualifiedName(int position) {
+            StringBuilder name = new StringBuilder(mNames[position]);
+            int parent = mParents[position];
+            for (int depth = 0; parent != -1 && parent != mRootPosition && depth < mUIDs.length; depth++) {
+                name.insert(0, AccountsDbAdapter.ACCOUNT_NAME_SEPARATOR).insert(0, mNames[parent]);
+                parent = mParents[parent];
+            }
+            return name.toString();
+        }
+    }
+
+    private AccountTree() {
+    }
+
+    /**
+     * Returns the account tree of the book stored in a database
+     *
+     * @param db Connection to the database of the book
+     * @return Tree shared by all the connections to the database
+     */
+    @NonNull
+    static AccountTree getInstance(@NonNull SQLiteDatabase db) {
+        String path = db.getPath();
+        synchronized (sTrees) {
+            AccountTree tree = sTrees.get(path);
+            if (tree == null) {
+                tree = new AccountTree();
+                sTrees.put(path, tree);
+            }
+            return tree;
+        }
+    }
+
+    /**
+     * Discards the tree of a database, when the database is deleted
+     *
+     * @param databasePath Path of the database file
+     */
+    static void remove(@NonNull String databasePath) {
+        synchronized (sTrees) {
+            sTrees.remove(databasePath);
+        }
+    }
+
+    /**
+     * Returns the accounts of the book, loading them if the tree was invalidated
+     *
+     * @param db Connection used to load the accounts if needed
+     * @return Snapshot of the accounts, as seen by the current transaction of the connection
+     */
+    @NonNull
+    Snapshot getSnapshot(@NonNull SQLiteDatabase db) {
+        return get(db, AccountTree::load);
+    }
+
+    @NonNull
+    private static Snapshot load(@NonNull SQLiteDatabase db) {
+        Cursor cursor = db.query(AccountEntry.TABLE_NAME, new String[]{
+                AccountEntry.COLUMN_UID,
+                AccountEntry.COLUMN_PARENT_ACCOUNT_UID,
+                AccountEntry.COLUMN_NAME,
+                AccountEntry.COLUMN_FULL_NAME,
+                AccountEntry.COLUMN_TYPE,
+                AccountEntry.COLUMN_CURRENCY,
+                AccountEntry.COLUMN_PLACEHOLDER,
+                AccountEntry.COLUMN_HIDDEN,
+                AccountEntry.COLUMN_FAVORITE
+            }, null, null, null, null, AccountEntry._ID + " ASC");
+        try {
+            return new Snapshot(cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+}
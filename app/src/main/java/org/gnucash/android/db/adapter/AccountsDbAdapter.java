@@ -25,6 +25,7 @@ import static org.gnucash.android.util.ColorExtKt.parseColor;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteStatement;
 import android.text.TextUtils;
@@ -41,6 +42,7 @@ import org.gnucash.android.model.Account;
 import org.gnucash.android.model.AccountType;
 import org.gnucash.android.model.Commodity;
 import org.gnucash.android.model.Money;
+import org.gnucash.android.model.MoneyAccumulator;
 import org.gnucash.android.model.Split;
 import org.gnucash.android.model.Transaction;
 import org.gnucash.android.model.TransactionType;
@@ -49,9 +51,11 @@ import org.gnucash.android.util.TimestampHelper;
 import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import timber.log.Timber;
 
@@ -86,6 +90,11 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
      */
     private final CommoditiesDbAdapter mCommoditiesDbAdapter;
 
+    /**
+     * In-memory account hierarchy of the book, invalidated whenever an account is written
+     */
+    private final AccountTree mAccountTree;
+
     /**
      * Overloaded constructor. Creates an adapter for an already open database
      *
@@ -108,7 +117,8 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
                 AccountEntry.COLUMN_DEFAULT_TRANSFER_ACCOUNT_UID
         });
         mTransactionsAdapter = transactionsDbAdapter;
-        mCommoditiesDbAdapter = new CommoditiesDbAdapter(db);
+        mCommoditiesDbAdapter = AdapterRegistry.getInstance(db).getCommoditiesDbAdapter();
+        mAccountTree = AccountTree.getInstance(db);
     }
 
     /**
@@ -136,8 +146,10 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
                 AccountEntry.COLUMN_DEFAULT_TRANSFER_ACCOUNT_UID
         });
 
-        mTransactionsAdapter = new TransactionsDbAdapter(db, new SplitsDbAdapter(db));
-        mCommoditiesDbAdapter = new CommoditiesDbAdapter(db);
+        AdapterRegistry registry = AdapterRegistry.getInstance(db);
+        mTransactionsAdapter = registry.getTransactionsDbAdapter();
+        mCommoditiesDbAdapter = registry.getCommoditiesDbAdapter();
+        mAccountTree = AccountTree.getInstance(db);
     }
 
     /**
@@ -160,13 +172,22 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
         Timber.d("Replace account to db");
         //in-case the account already existed, we want to update the templates based on it as well
         List<Transaction> templateTransactions = mTransactionsAdapter.getScheduledTransactionsForAccount(account.getUID());
-        super.addRecord(account, updateMethod);
+        // read before the account is replaced, which deletes its splits
+        List<Transaction> transactions = account.getTransactions();
         String accountUID = account.getUID();
+        // the full name is resolved from the parent before the tree is invalidated by the insert
+        String fullName = account.getAccountType() == AccountType.ROOT ? null
+                : getFullyQualifiedAccountName(account.getName(), account.getParentUID());
+        try {
+            super.addRecord(account, updateMethod);
+        } finally {
+            onAccountsWritten();
+        }
         //now add transactions if there are any
         if (account.getAccountType() != AccountType.ROOT) {
             //update the fully qualified account name
-            updateRecord(accountUID, AccountEntry.COLUMN_FULL_NAME, getFullyQualifiedAccountName(accountUID));
-            for (Transaction t : account.getTransactions()) {
+            updateRecord(accountUID, AccountEntry.COLUMN_FULL_NAME, fullName);
+            for (Transaction t : transactions) {
                 t.setCommodity(account.getCommodity());
                 mTransactionsAdapter.addRecord(t, updateMethod);
             }
@@ -199,7 +220,12 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
             transactionList.addAll(account.getTransactions());
             transactionList.addAll(mTransactionsAdapter.getScheduledTransactionsForAccount(account.getUID()));
         }
-        long nRow = super.bulkAddRecords(accountList, updateMethod);
+        long nRow;
+        try {
+            nRow = super.bulkAddRecords(accountList, updateMethod);
+        } finally {
+            onAccountsWritten();
+        }
 
         if (nRow > 0 && !transactionList.isEmpty()) {
             mTransactionsAdapter.bulkAddRecords(transactionList, updateMethod);
@@ -281,7 +307,11 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
         } else {
             contentValues.put(columnKey, newValue);
         }
-        return mDb.update(AccountEntry.TABLE_NAME, contentValues, null, null);
+        try {
+            return mDb.update(AccountEntry.TABLE_NAME, contentValues, null, null);
+        } finally {
+            onAccountsWritten();
+        }
     }
 
     /**
@@ -357,6 +387,7 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
                 }
             }
         }
+        onAccountsWritten();
     }
 
     /**
@@ -414,23 +445,51 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
             return true;
         } finally {
             endTransaction();
+            onAccountsWritten();
         }
     }
 
     /**
-     * Builds an account instance with the provided cursor and loads its corresponding transactions.
+     * Builds an account instance with the provided cursor.
+     * <p>The transactions of the account are not read with it: they are loaded from the database
+     * the first time they are accessed, so that accounts can be listed without their ledgers.</p>
      *
      * @param c Cursor pointing to account record in database
      * @return {@link Account} object constructed from database record
+     * @see Account#getTransactions(long, long)
      */
     @Override
     public Account buildModelInstance(@NonNull final Cursor c) {
         Account account = buildSimpleAccountInstance(c);
-        account.setTransactions(mTransactionsAdapter.getAllTransactionsForAccount(account.getUID()));
+        account.setTransactionLoader(new AccountTransactionLoader(mTransactionsAdapter, account.getUID()));
 
         return account;
     }
 
+    /**
+     * Loads the transactions of an account on demand
+     */
+    private static final class AccountTransactionLoader implements Account.TransactionLoader {
+        private final TransactionsDbAdapter mTransactionsDbAdapter;
+        private final String mAccountUID;
+
+        AccountTransactionLoader(TransactionsDbAdapter transactionsDbAdapter, String accountUID) {
+            mTransactionsDbAdapter = transactionsDbAdapter;
+            mAccountUID = accountUID;
+        }
+
+        @NonNull
+        @Override
+        public TransactionIterator iterateTransactions(long startTime, long endTime) {
+            return mTransactionsDbAdapter.iterateTransactionsForAccount(mAccountUID, false, startTime, endTime);
+        }
+
+        @Override
+        public int countTransactions() {
+            return mTransactionsDbAdapter.getTransactionsCount(mAccountUID);
+        }
+    }
+
     /**
      * Builds an account instance with the provided cursor and loads its corresponding transactions.
      * <p>The method will not move the cursor position, so the cursor should already be pointing
@@ -468,6 +527,12 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
      * @return DB record UID of the parent account, null if the account has no parent
      */
     public String getParentAccountUID(@NonNull String uid) {
+        AccountTree.Snapshot accountTree = getAccountTree();
+        int position = accountTree.indexOf(uid);
+        if (position != -1) {
+            int parent = accountTree.getParent(position);
+            return parent == -1 ? null : accountTree.getUID(parent);
+        }
         Cursor cursor = mDb.query(AccountEntry.TABLE_NAME,
                 new String[]{AccountEntry.COLUMN_PARENT_ACCOUNT_UID},
                 AccountEntry.COLUMN_UID + " = ?",
@@ -684,17 +749,22 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
      * @return String unique ID of the account or null if no match is found
      */
     public String findAccountUidByFullName(String fullName) {
-        Cursor c = mDb.query(AccountEntry.TABLE_NAME, new String[]{AccountEntry.COLUMN_UID},
+        AccountTree.Snapshot accountTree = getAccountTree();
+        int position = accountTree.indexOfFullName(fullName);
+        if (position != -1) {
+            return accountTree.getUID(position);
+        }
+        Cursor cursor = mDb.query(AccountEntry.TABLE_NAME, new String[]{AccountEntry.COLUMN_UID},
                 AccountEntry.COLUMN_FULL_NAME + "= ?", new String[]{fullName},
-                null, null, null, "1");
+                null, null, AccountEntry._ID + " ASC", "1");
         try {
-            if (c.moveToNext()) {
-                return c.getString(c.getColumnIndexOrThrow(AccountEntry.COLUMN_UID));
+            if (cursor.moveToFirst()) {
+                return cursor.getString(0);
             } else {
                 return null;
             }
         } finally {
-            c.close();
+            cursor.close();
         }
     }
 
@@ -843,11 +913,11 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
      * @return Money balance of the account types
      */
     public Money getAccountBalance(List<AccountType> accountTypes, long start, long end) {
-        Money balance = Money.createZeroInstance(GnuCashApplication.getDefaultCurrencyCode());
+        MoneyAccumulator balance = new MoneyAccumulator(GnuCashApplication.getDefaultCurrencyCode());
         for (AccountType accountType : accountTypes) {
-            balance = balance.plus(getAccountBalance(accountType, start, end));
+            balance.add(getAccountBalance(accountType, start, end));
         }
-        return balance;
+        return balance.toMoney();
     }
 
     private Money computeBalance(String accountUID, long startTimestamp, long endTimestamp) {
@@ -868,6 +938,87 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
 
     }
 
+    /**
+     * Returns the balances of all accounts in a tree, each including the balances of its sub-accounts.
+     * <p>The accounts of the tree are loaded with a single recursive query and the split sums of all
+     * accounts are fetched at once, then rolled up from the leaves to the root in memory.
+     * This makes the number of queries independent of the number and depth of the accounts.</p>
+     * <p>Each balance is in the currency of its account and has the same value as
+     * {@link #getAccountBalance(String, long, long)} for that account.</p>
+     *
+     * @param rootAccountUID GUID of the root of the tree, or {@code null} for all accounts in the book
+     * @param startTimestamp the start timestamp of the time range, or -1 if unbounded
+     * @param endTimestamp   the end timestamp of the time range, or -1 if unbounded
+     * @return Map of account GUID to the balance of the account including its sub-accounts
+     */
+    public Map<String, Money> getAccountBalances(@Nullable String rootAccountUID, long startTimestamp, long endTimestamp) {
+        String anchor;
+        String[] selectionArgs;
+        if (rootAccountUID == null) {
+            anchor = AccountEntry.COLUMN_PARENT_ACCOUNT_UID + " IS NULL OR "
+                    + AccountEntry.COLUMN_PARENT_ACCOUNT_UID + " NOT IN (SELECT " + AccountEntry.COLUMN_UID
+                    + " FROM " + AccountEntry.TABLE_NAME + ")";
+            selectionArgs = null;
+        } else {
+            anchor = AccountEntry.COLUMN_UID + " = ?";
+            selectionArgs = new String[]{rootAccountUID};
+        }
+        // accounts are ordered from the leaves to the root, so children are folded before their parents
+        Cursor cursor = mDb.rawQuery("WITH RECURSIVE subtree(subtree_uid, subtree_depth) AS ("
+                + "SELECT " + AccountEntry.COLUMN_UID + ", 0 FROM " + AccountEntry.TABLE_NAME + " WHERE " + anchor
+                + " UNION ALL SELECT " + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_UID + ", subtree.subtree_depth + 1"
+                + " FROM " + AccountEntry.TABLE_NAME + ", subtree"
+                + " WHERE " + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_PARENT_ACCOUNT_UID + " = subtree.subtree_uid)"
+                + " SELECT " + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_UID + ", "
+                + AccountEntry.COLUMN_PARENT_ACCOUNT_UID + ", "
+                + AccountEntry.COLUMN_CURRENCY + ", "
+                + AccountEntry.COLUMN_TYPE
+                + " FROM " + AccountEntry.TABLE_NAME + ", subtree"
+                + " WHERE " + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_UID + " = subtree.subtree_uid"
+                + " ORDER BY subtree.subtree_depth DESC", selectionArgs);
+
+        List<String> accountUIDs = new ArrayList<>();
+        Map<String, String> parentUIDs = new HashMap<>();
+        Map<String, String> currencyCodes = new HashMap<>();
+        Map<String, AccountType> accountTypes = new HashMap<>();
+        try {
+            while (cursor.moveToNext()) {
+                String accountUID = cursor.getString(0);
+                accountUIDs.add(accountUID);
+                parentUIDs.put(accountUID, cursor.getString(1));
+                currencyCodes.put(accountUID, cursor.getString(2));
+                accountTypes.put(accountUID, AccountType.valueOf(cursor.getString(3)));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        SplitsDbAdapter splitsDbAdapter = mTransactionsAdapter.getSplitDbAdapter();
+        Map<String, Map<String, long[]>> quantities = splitsDbAdapter.getSplitQuantities(
+                rootAccountUID == null ? null : accountUIDs, startTimestamp, endTimestamp);
+
+        SplitsDbAdapter.BalanceConverter converter = splitsDbAdapter.getBalanceConverter();
+        Map<String, Money> balances = new HashMap<>(accountUIDs.size());
+        for (String accountUID : accountUIDs) {
+            Map<String, long[]> accountQuantities = quantities.get(accountUID);
+            if (accountQuantities == null) {
+                accountQuantities = new HashMap<>();
+            }
+            String parentUID = parentUIDs.get(accountUID);
+            if (parentUID != null && parentUIDs.containsKey(parentUID)) {
+                Map<String, long[]> parentQuantities = quantities.get(parentUID);
+                if (parentQuantities == null) {
+                    parentQuantities = new HashMap<>();
+                    quantities.put(parentUID, parentQuantities);
+                }
+                SplitsDbAdapter.addQuantities(parentQuantities, accountQuantities);
+            }
+            balances.put(accountUID, converter.convert(accountQuantities, currencyCodes.get(accountUID),
+                    accountTypes.get(accountUID).hasDebitNormalBalance()));
+        }
+        return balances;
+    }
+
     /**
      * Returns the balance of account list within the specified time range. The default currency
      * takes as base currency.
@@ -894,10 +1045,55 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
         return balance.plus(splitSum);
     }
 
+    /**
+     * Returns the balances of accounts in consecutive periods, computed with a single query.
+     * <p>Each balance has the sign of the normal balance of its account, and is expressed in the
+     * smallest unit of the commodity, i.e. it is the numerator of a {@link Money} in that commodity.
+     * Amounts in other commodities are converted with the prices as of the end of each period.</p>
+     *
+     * @param accounts     Accounts for which to compute the balances. Sub-accounts are not included
+     * @param periodStarts Start timestamps of the periods in ascending order. The first one may be -1 if unbounded
+     * @param endTimestamp End timestamp (inclusive) of the last period, or -1 if unbounded
+     * @param commodity    Commodity in which the balances are expressed
+     * @return Matrix of the balance of each account (first index) in each period (second index)
+     */
+    public long[][] getAccountsPeriodBalances(@NonNull List<Account> accounts, @NonNull long[] periodStarts,
+                                              long endTimestamp, @NonNull Commodity commodity) {
+        List<String> accountUIDList = new ArrayList<>(accounts.size());
+        for (Account account : accounts) {
+            accountUIDList.add(account.getUID());
+        }
+        SplitsDbAdapter splitsDbAdapter = mTransactionsAdapter.getSplitDbAdapter();
+        List<Map<String, Map<String, long[]>>> quantities = splitsDbAdapter
+                .getSplitQuantitiesByPeriod(accountUIDList, periodStarts, endTimestamp);
+
+        SplitsDbAdapter.BalanceConverter converter = splitsDbAdapter.getBalanceConverter();
+        MoneyAccumulator balance = new MoneyAccumulator(commodity);
+        long[][] balances = new long[accounts.size()][periodStarts.length];
+        for (int period = 0; period < periodStarts.length; period++) {
+            Map<String, Map<String, long[]>> periodQuantities = quantities.get(period);
+            // convert with the prices at the end of the period
+            long periodEnd = period + 1 < periodStarts.length ? periodStarts[period + 1] - 1
+                    : endTimestamp == -1 ? Long.MAX_VALUE : endTimestamp;
+            for (int i = 0; i < accounts.size(); i++) {
+                Account account = accounts.get(i);
+                Map<String, long[]> accountQuantities = periodQuantities.get(account.getUID());
+                if (accountQuantities != null) {
+                    balance.reset();
+                    converter.accumulate(balance, accountQuantities,
+                            account.getAccountType().hasDebitNormalBalance(), periodEnd);
+                    balances[i][period] = balance.getNumerator();
+                }
+            }
+        }
+        return balances;
+    }
+
     /**
      * Retrieve all descendant accounts of an account
      * Note, in filtering, once an account is filtered out, all its descendants
-     * will also be filtered out, even they don't meet the filter where
+     * will also be filtered out, even they don't meet the filter where.
+     * Without filter, the descendants are looked up in the in-memory account tree.
      *
      * @param accountUID The account to retrieve descendant accounts
      * @param where      Condition to filter accounts
@@ -905,33 +1101,36 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
      * @return The descendant accounts list.
      */
     public List<String> getDescendantAccountUIDs(String accountUID, String where, String[] whereArgs) {
-        // accountsList will hold accountUID with all descendant accounts.
-        // accountsListLevel will hold descendant accounts of the same level
-        ArrayList<String> accountsList = new ArrayList<>();
-        ArrayList<String> accountsListLevel = new ArrayList<>();
-        accountsListLevel.add(accountUID);
-        for (; ; ) {
-            Cursor cursor = mDb.query(AccountEntry.TABLE_NAME,
-                    new String[]{AccountEntry.COLUMN_UID},
-                    AccountEntry.COLUMN_PARENT_ACCOUNT_UID + " IN ( '" + TextUtils.join("' , '", accountsListLevel) + "' )" +
-                            (where == null ? "" : " AND " + where),
-                    whereArgs, null, null, null);
-            accountsListLevel.clear();
-            if (cursor != null) {
-                try {
-                    int columnIndex = cursor.getColumnIndexOrThrow(AccountEntry.COLUMN_UID);
-                    while (cursor.moveToNext()) {
-                        accountsListLevel.add(cursor.getString(columnIndex));
-                    }
-                } finally {
-                    cursor.close();
-                }
+        if (where == null) {
+            AccountTree.Snapshot accountTree = getAccountTree();
+            int position = accountTree.indexOf(accountUID);
+            if (position != -1) {
+                return accountTree.getDescendantUIDs(position);
             }
-            if (accountsListLevel.size() > 0) {
-                accountsList.addAll(accountsListLevel);
-            } else {
-                break;
+        }
+        String filter = where == null ? "" : " AND " + where;
+        List<String> selectionArgs = new ArrayList<>();
+        selectionArgs.add(accountUID);
+        if (whereArgs != null) {
+            // the filter is applied to both the direct children and the deeper descendants
+            selectionArgs.addAll(Arrays.asList(whereArgs));
+            selectionArgs.addAll(Arrays.asList(whereArgs));
+        }
+        // descendants are ordered by level, so parents always come before their children
+        Cursor cursor = mDb.rawQuery("WITH RECURSIVE descendants(descendant_uid, descendant_depth) AS ("
+                + "SELECT " + AccountEntry.COLUMN_UID + ", 1 FROM " + AccountEntry.TABLE_NAME
+                + " WHERE " + AccountEntry.COLUMN_PARENT_ACCOUNT_UID + " = ?" + filter
+                + " UNION ALL SELECT " + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_UID + ", descendants.descendant_depth + 1"
+                + " FROM " + AccountEntry.TABLE_NAME + ", descendants"
+                + " WHERE " + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_PARENT_ACCOUNT_UID + " = descendants.descendant_uid" + filter + ")"
+                + " SELECT descendant_uid FROM descendants ORDER BY descendant_depth", selectionArgs.toArray(new String[0]));
+        ArrayList<String> accountsList = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                accountsList.add(cursor.getString(0));
             }
+        } finally {
+            cursor.close();
         }
         return accountsList;
     }
@@ -1010,6 +1209,10 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
      * @return Unique ID of the GnuCash root account.
      */
     public String getOrCreateGnuCashRootAccountUID() {
+        AccountTree.Snapshot accountTree = getAccountTree();
+        if (accountTree.getRootIndex() != -1) {
+            return accountTree.getUID(accountTree.getRootIndex());
+        }
         Cursor cursor = fetchAccounts(AccountEntry.COLUMN_TYPE + "= ?",
                 new String[]{AccountType.ROOT.name()}, null);
         try {
@@ -1020,7 +1223,7 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
             cursor.close();
         }
         // No ROOT exits, create a new one
-        Account rootAccount = new Account("ROOT Account", new CommoditiesDbAdapter(mDb).getCommodity("USD"));
+        Account rootAccount = new Account("ROOT Account", mCommoditiesDbAdapter.getCommodity("USD"));
         rootAccount.setAccountType(AccountType.ROOT);
         rootAccount.setFullName(ROOT_ACCOUNT_FULL_NAME);
         rootAccount.setHidden(true);
@@ -1033,9 +1236,10 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
         contentValues.put(AccountEntry.COLUMN_HIDDEN, rootAccount.isHidden() ? 1 : 0);
         String defaultCurrencyCode = GnuCashApplication.getDefaultCurrencyCode();
         contentValues.put(AccountEntry.COLUMN_CURRENCY, defaultCurrencyCode);
-        contentValues.put(AccountEntry.COLUMN_COMMODITY_UID, getCommodityUID(defaultCurrencyCode));
+        contentValues.put(AccountEntry.COLUMN_COMMODITY_UID, mCommoditiesDbAdapter.getCommodityUID(defaultCurrencyCode));
         Timber.i("Creating ROOT account");
         mDb.insert(AccountEntry.TABLE_NAME, null, contentValues);
+        onAccountsWritten();
         return rootAccount.getUID();
     }
 
@@ -1046,15 +1250,13 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
      * @return Number of sub accounts
      */
     public int getSubAccountCount(String accountUID) {
-        //TODO: at some point when API level 11 and above only is supported, use DatabaseUtils.queryNumEntries
-
-        String queryCount = "SELECT COUNT(*) FROM " + AccountEntry.TABLE_NAME + " WHERE "
-                + AccountEntry.COLUMN_PARENT_ACCOUNT_UID + " = ?";
-        Cursor cursor = mDb.rawQuery(queryCount, new String[]{accountUID});
-        cursor.moveToFirst();
-        int count = cursor.getInt(0);
-        cursor.close();
-        return count;
+        AccountTree.Snapshot accountTree = getAccountTree();
+        int position = accountTree.indexOf(accountUID);
+        if (position != -1) {
+            return accountTree.getChildCount(position);
+        }
+        return (int) DatabaseUtils.queryNumEntries(mDb, AccountEntry.TABLE_NAME,
+                AccountEntry.COLUMN_PARENT_ACCOUNT_UID + " = ?", new String[]{accountUID});
     }
 
     /**
@@ -1076,6 +1278,11 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
      * @see #getFullyQualifiedAccountName(String)
      */
     public String getAccountName(String accountUID) {
+        AccountTree.Snapshot accountTree = getAccountTree();
+        int position = accountTree.indexOf(accountUID);
+        if (position != -1) {
+            return accountTree.getName(position);
+        }
         return getAttribute(accountUID, AccountEntry.COLUMN_NAME);
     }
 
@@ -1113,9 +1320,22 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
      * @return Fully qualified (with parent hierarchy) account name
      */
     public String getFullyQualifiedAccountName(String accountUID) {
-        String accountName = getAccountName(accountUID);
-        String parentAccountUID = getParentAccountUID(accountUID);
+        AccountTree.Snapshot accountTree = getAccountTree();
+        int position = accountTree.indexOf(accountUID);
+        if (position != -1 && accountTree.getRootIndex() != -1) {
+            return accountTree.getQualifiedName(position);
+        }
+        return getFullyQualifiedAccountName(getAccountName(accountUID), getParentAccountUID(accountUID));
+    }
 
+    /**
+     * Returns the full name of an account given its name and its parent
+     *
+     * @param accountName      Name of the account
+     * @param parentAccountUID GUID of the parent account, or {@code null} if it has none
+     * @return Fully qualified (with parent hierarchy) account name
+     */
+    private String getFullyQualifiedAccountName(String accountName, @Nullable String parentAccountUID) {
         if (parentAccountUID == null || parentAccountUID.equalsIgnoreCase(getOrCreateGnuCashRootAccountUID())) {
             return accountName;
         }
@@ -1132,6 +1352,11 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
      * @return full name registered in DB
      */
     public String getAccountFullName(String accountUID) {
+        AccountTree.Snapshot accountTree = getAccountTree();
+        int position = accountTree.indexOf(accountUID);
+        if (position != -1) {
+            return accountTree.getFullName(position);
+        }
         Cursor cursor = mDb.query(AccountEntry.TABLE_NAME, new String[]{AccountEntry.COLUMN_FULL_NAME},
                 AccountEntry.COLUMN_UID + " = ?", new String[]{accountUID},
                 null, null, null);
@@ -1153,6 +1378,11 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
      * @return <code>true</code> if the account is a placeholder account, <code>false</code> otherwise
      */
     public boolean isPlaceholderAccount(String accountUID) {
+        AccountTree.Snapshot accountTree = getAccountTree();
+        int position = accountTree.indexOf(accountUID);
+        if (position != -1) {
+            return accountTree.hasFlag(position, AccountTree.FLAG_PLACEHOLDER);
+        }
         String isPlaceholder = getAttribute(accountUID, AccountEntry.COLUMN_PLACEHOLDER);
         return Integer.parseInt(isPlaceholder) != 0;
     }
@@ -1164,6 +1394,11 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
      * @return <code>true</code> if the account is hidden, <code>false</code> otherwise
      */
     public boolean isHiddenAccount(String accountUID) {
+        AccountTree.Snapshot accountTree = getAccountTree();
+        int position = accountTree.indexOf(accountUID);
+        if (position != -1) {
+            return accountTree.hasFlag(position, AccountTree.FLAG_HIDDEN);
+        }
         String isHidden = getAttribute(accountUID, AccountEntry.COLUMN_HIDDEN);
         return Integer.parseInt(isHidden) != 0;
     }
@@ -1175,6 +1410,11 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
      * @return <code>true</code> if the account is a favorite account, <code>false</code> otherwise
      */
     public boolean isFavoriteAccount(String accountUID) {
+        AccountTree.Snapshot accountTree = getAccountTree();
+        int position = accountTree.indexOf(accountUID);
+        if (position != -1) {
+            return accountTree.hasFlag(position, AccountTree.FLAG_FAVORITE);
+        }
         String isFavorite = getAttribute(accountUID, AccountEntry.COLUMN_FAVORITE);
         return Integer.parseInt(isFavorite) != 0;
     }
@@ -1318,7 +1558,11 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
         mDb.delete(DatabaseSchema.BudgetEntry.TABLE_NAME, null, null);
         mDb.delete(DatabaseSchema.RecurrenceEntry.TABLE_NAME, null, null);
 
-        return mDb.delete(AccountEntry.TABLE_NAME, null, null);
+        try {
+            return mDb.delete(AccountEntry.TABLE_NAME, null, null);
+        } finally {
+            onAccountsWritten();
+        }
     }
 
     @Override
@@ -1334,6 +1578,49 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
         return result;
     }
 
+    @Override
+    public boolean deleteRecord(long rowId) {
+        try {
+            return super.deleteRecord(rowId);
+        } finally {
+            onAccountsWritten();
+        }
+    }
+
+    @Override
+    public int updateRecord(@NonNull String uid, @NonNull ContentValues contentValues) {
+        try {
+            return super.updateRecord(uid, contentValues);
+        } finally {
+            onAccountsWritten();
+        }
+    }
+
+    @Override
+    public int updateRecords(String where, String[] whereArgs, @NonNull String columnKey, String newValue) {
+        try {
+            return super.updateRecords(where, whereArgs, columnKey, newValue);
+        } finally {
+            onAccountsWritten();
+        }
+    }
+
+    @Override
+    protected int updateRecord(String tableName, long recordId, String columnKey, String newValue) {
+        try {
+            return super.updateRecord(tableName, recordId, columnKey, newValue);
+        } finally {
+            onAccountsWritten();
+        }
+    }
+
+    /**
+     * Discards the loaded account hierarchy after accounts were written
+     */
+    private void onAccountsWritten() {
+        mAccountTree.onWritten(mDb);
+    }
+
     public int getTransactionMaxSplitNum(@NonNull String accountUID) {
         Cursor cursor = mDb.query("trans_extra_info",
                 new String[]{"MAX(trans_split_count)"},
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2012-2024 GnuCash Android developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.db.adapter;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Database adapters shared by all the users of a database connection.
+ * <p>There is one registry per {@link SQLiteDatabase} instance, that is per connection, unlike the
+ * caches of book data which are shared by all the connections to a database file. The adapters are
+ * created on first use and use each other, so that a connection has a single adapter of each type:
+ * their statements are compiled once, and the temporary views used by their queries are created
+ * once per connection instead of by every new adapter.</p>
+ * <p>Closing any adapter closes its connection, after which the registry of the connection is
+ * discarded. The registries of closed connections are removed when a new connection is registered.</p>
+ */
+public final class AdapterRegistry {
+
+    private static final Map<SQLiteDatabase, AdapterRegistry> sRegistries = new IdentityHashMap<>();
+
+    private final SQLiteDatabase mDb;
+
+    private final Map<Class<?>, DatabaseAdapter<?>> mAdapters = new HashMap<>();
+
+    private volatile boolean mTempViewsCreated = false;
+
+    /**
+     * Creates a new adapter, when the registry does not have one yet
+     */
+    private interface Factory<A extends DatabaseAdapter<?>> {
+        A create();
+    }
+
+    private AdapterRegistry(SQLiteDatabase db) {
+        mDb = db;
+    }
+
+    /**
+     * Returns the registry of a connection
+     *
+     * @param db Connection to a book database
+     * @return Registry shared by all the users of the connection
+     */
+    @NonNull
+    public static AdapterRegistry getInstance(@NonNull SQLiteDatabase db) {
+        synchronized (sRegistries) {
+            AdapterRegistry registry = sRegistries.get(db);
+            if (registry == null) {
+                removeClosedConnections();
+                registry = new AdapterRegistry(db);
+                sRegistries.put(db, registry);
+            }
+            return registry;
+        }
+    }
+
+    private static void removeClosedConnections() {
+        Iterator<SQLiteDatabase> iterator = sRegistries.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (!iterator.next().isOpen()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Checks if the temporary views of the adapters have been created on the connection
+     */
+    boolean hasTempViews() {
+        return mTempViewsCreated;
+    }
+
+    /**
+     * Records that the temporary views of the adapters have been created on the connection
+     */
+    void setTempViewsCreated() {
+        mTempViewsCreated = true;
+    }
+
+    /**
+     * Returns the adapter of a type, creating it if needed.
+     * <p>The adapter is created outside of the lock of the registry, since creating some adapters
+     * queries the database, which may be locked by a thread waiting for the registry.
+     * If two threads create the same adapter, the first one registered is kept.</p>
+     */
+    @SuppressWarnings("unchecked")
+    private <A extends DatabaseAdapter<?>> A get(Class<A> type, Factory<A> factory) {
+        synchronized (mAdapters) {
+            A adapter = (A) mAdapters.get(type);
+            if (adapter != null) {
+                return adapter;
+            }
+        }
+        A created = factory.create();
+        synchronized (mAdapters) {
+            A adapter = (A) mAdapters.get(type);
+            if (adapter == null) {
+                adapter = created;
+                mAdapters.put(type, adapter);
+            }
+            return adapter;
+        }
+    }
+
+    /**
+     * Returns the commodities adapter of the connection.
+     * <p>It does not initialize the commonly used commodities of {@link org.gnucash.android.model.Commodity},
+     * which belong to the active book and are set up with its main connection.</p>
+     */
+    @NonNull
+    public CommoditiesDbAdapter getCommoditiesDbAdapter() {
+        return get(CommoditiesDbAdapter.class, () -> new CommoditiesDbAdapter(mDb, false));
+    }
+
+    @NonNull
+    public PricesDbAdapter getPricesDbAdapter() {
+        return get(PricesDbAdapter.class, () -> new PricesDbAdapter(mDb));
+    }
+
+    @NonNull
+    public SplitsDbAdapter getSplitsDbAdapter() {
+        return get(SplitsDbAdapter.class, () -> new SplitsDbAdapter(mDb));
+    }
+
+    @NonNull
+    public TransactionsDbAdapter getTransactionsDbAdapter() {
+        return get(TransactionsDbAdapter.class, () -> new TransactionsDbAdapter(mDb, getSplitsDbAdapter()));
+    }
+
+    @NonNull
+    public AccountsDbAdapter getAccountsDbAdapter() {
+        return get(AccountsDbAdapter.class, () -> new AccountsDbAdapter(mDb, getTransactionsDbAdapter()));
+    }
+
+    @NonNull
+    public RecurrenceDbAdapter getRecurrenceDbAdapter() {
+        return get(RecurrenceDbAdapter.class, () -> new RecurrenceDbAdapter(mDb));
+    }
+
+    @NonNull
+    public ScheduledActionDbAdapter getScheduledActionDbAdapter() {
+        return get(ScheduledActionDbAdapter.class, () -> new ScheduledActionDbAdapter(mDb, getRecurrenceDbAdapter()));
+    }
+
+    @NonNull
+    public BudgetAmountsDbAdapter getBudgetAmountsDbAdapter() {
+        return get(BudgetAmountsDbAdapter.class, () -> new BudgetAmountsDbAdapter(mDb));
+    }
+
+    @NonNull
+    public BudgetsDbAdapter getBudgetsDbAdapter() {
+        return get(BudgetsDbAdapter.class, () -> new BudgetsDbAdapter(mDb, getBudgetAmountsDbAdapter(), getRecurrenceDbAdapter()));
+    }
+}
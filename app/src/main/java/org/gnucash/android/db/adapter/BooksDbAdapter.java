@@ -116,6 +116,10 @@ public class BooksDbAdapter extends DatabaseAdapter<Book> {
     public boolean deleteBook(@NonNull String bookUID) {
         Context context = GnuCashApplication.getAppContext();
         boolean result = context.deleteDatabase(bookUID);
+        String databasePath = context.getDatabasePath(bookUID).getPath();
+        CommodityRegistry.remove(databasePath);
+        PriceIndex.remove(databasePath);
+        AccountTree.remove(databasePath);
         if (result) //delete the db entry only if the file deletion was successful
             result &= deleteRecord(bookUID);
 
@@ -235,8 +239,7 @@ public class BooksDbAdapter extends DatabaseAdapter<Book> {
         Context context = GnuCashApplication.getAppContext();
         DatabaseHelper databaseHelper = new DatabaseHelper(context, dbName);
         SQLiteDatabase db = databaseHelper.getReadableDatabase();
-        AccountsDbAdapter accountsDbAdapter = new AccountsDbAdapter(db,
-                new TransactionsDbAdapter(db, new SplitsDbAdapter(db)));
+        AccountsDbAdapter accountsDbAdapter = AdapterRegistry.getInstance(db).getAccountsDbAdapter();
         String uid = accountsDbAdapter.getOrCreateGnuCashRootAccountUID();
         db.close();
         return uid;
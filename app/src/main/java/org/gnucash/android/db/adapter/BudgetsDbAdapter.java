@@ -191,6 +191,7 @@ public class BudgetsDbAdapter extends DatabaseAdapter<Budget> {
             accountUIDs.add(budgetAmount.getAccountUID());
         }
 
-        return new AccountsDbAdapter(mDb).getAccountsBalance(accountUIDs, periodStart, periodEnd);
+        return AdapterRegistry.getInstance(mDb).getAccountsDbAdapter()
+                .getAccountsBalance(accountUIDs, periodStart, periodEnd);
     }
 }
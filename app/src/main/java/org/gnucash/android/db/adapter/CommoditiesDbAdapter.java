@@ -2,6 +2,7 @@ package org.gnucash.android.db.adapter;
 
 import static org.gnucash.android.db.DatabaseSchema.CommodityEntry;
 
+import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteStatement;
@@ -11,15 +12,22 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import org.gnucash.android.app.GnuCashApplication;
-import org.gnucash.android.db.DatabaseSchema;
 import org.gnucash.android.model.Commodity;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import timber.log.Timber;
 
 /**
  * Database adapter for {@link org.gnucash.android.model.Commodity}
+ * <p>Commodities are looked up in the {@link CommodityRegistry} of the book, which is loaded once
+ * and invalidated whenever a commodity written through this adapter is committed.</p>
  */
 public class CommoditiesDbAdapter extends DatabaseAdapter<Commodity> {
+
+    private final CommodityRegistry mRegistry;
+
     /**
      * Opens the database adapter with an existing database
      *
@@ -45,6 +53,7 @@ public class CommoditiesDbAdapter extends DatabaseAdapter<Commodity> {
             CommodityEntry.COLUMN_SMALLEST_FRACTION,
             CommodityEntry.COLUMN_QUOTE_FLAG
         });
+        mRegistry = CommodityRegistry.getInstance(db);
         if (initCommon) {
             initCommon();
         }
@@ -133,30 +142,116 @@ public class CommoditiesDbAdapter extends DatabaseAdapter<Commodity> {
         if (TextUtils.isEmpty(currencyCode)) {
             return null;
         }
-        Cursor cursor = fetchAllRecords(CommodityEntry.COLUMN_MNEMONIC + "=?", new String[]{currencyCode}, null);
-        Commodity commodity = null;
-        if (cursor.moveToNext()) {
-            commodity = buildModelInstance(cursor);
-        } else {
-            String msg = "Commodity not found in the database: " + currencyCode;
-            Timber.e(msg);
+        Commodity commodity = getCommodities().getByMnemonic(currencyCode);
+        if (commodity == null) {
+            Timber.e("Commodity not found in the database: %s", currencyCode);
         }
-        cursor.close();
         return commodity;
     }
 
     public String getCurrencyCode(@NonNull String guid) {
-        Cursor cursor = mDb.query(mTableName, new String[]{CommodityEntry.COLUMN_MNEMONIC},
-            DatabaseSchema.CommonColumns.COLUMN_UID + " = ?", new String[]{guid},
-            null, null, null);
+        Commodity commodity = getCommodities().getByUID(guid);
+        if (commodity == null) {
+            throw new IllegalArgumentException("guid " + guid + " not exits in commodity db");
+        }
+        return commodity.getMnemonic();
+    }
+
+    @Override
+    public String getCommodityUID(String currencyCode) {
+        Commodity commodity = currencyCode == null ? null : getCommodities().getByMnemonic(currencyCode);
+        if (commodity == null) {
+            throw new IllegalArgumentException("Currency code not found in commodities");
+        }
+        return commodity.getUID();
+    }
+
+    @Override
+    public Commodity getRecord(@NonNull String uid) {
+        Commodity commodity = getCommodities().getByUID(uid);
+        if (commodity == null) {
+            throw new IllegalArgumentException("Record with " + uid + " does not exist");
+        }
+        return commodity;
+    }
+
+    /**
+     * Returns the commodities of the book, loading them if the registry was invalidated
+     */
+    @NonNull
+    private CommodityRegistry.Snapshot getCommodities() {
+        return mRegistry.getSnapshot(mDb, this::loadCommodities);
+    }
+
+    @NonNull
+    private CommodityRegistry.Snapshot loadCommodities(@NonNull SQLiteDatabase db) {
+        List<Commodity> commodities = new ArrayList<>();
+        Cursor cursor = db.query(mTableName, null, null, null, null, null, CommodityEntry._ID + " ASC");
         try {
-            if (cursor.moveToNext()) {
-                return cursor.getString(cursor.getColumnIndexOrThrow(CommodityEntry.COLUMN_MNEMONIC));
-            } else {
-                throw new IllegalArgumentException("guid " + guid + " not exits in commodity db");
+            while (cursor.moveToNext()) {
+                commodities.add(buildModelInstance(cursor));
             }
         } finally {
             cursor.close();
         }
+        return new CommodityRegistry.Snapshot(commodities);
+    }
+
+    @Override
+    public void addRecord(@NonNull Commodity commodity, UpdateMethod updateMethod) {
+        try {
+            super.addRecord(commodity, updateMethod);
+        } finally {
+            mRegistry.onWritten(mDb);
+        }
+    }
+
+    @Override
+    public long bulkAddRecords(@NonNull List<Commodity> commodities, UpdateMethod updateMethod) {
+        try {
+            return super.bulkAddRecords(commodities, updateMethod);
+        } finally {
+            mRegistry.onWritten(mDb);
+        }
+    }
+
+    @Override
+    public int updateRecord(@NonNull String uid, @NonNull ContentValues contentValues) {
+        try {
+            return super.updateRecord(uid, contentValues);
+        } finally {
+            mRegistry.onWritten(mDb);
+        }
+    }
+
+    @Override
+    public int updateRecords(String where, String[] whereArgs, @NonNull String columnKey, String newValue) {
+        try {
+            return super.updateRecords(where, whereArgs, columnKey, newValue);
+        } finally {
+            mRegistry.onWritten(mDb);
+        }
+    }
+
+    @Override
+    public boolean deleteRecord(long rowId) {
+        try {
+            return super.deleteRecord(rowId);
+        } finally {
+            mRegistry.onWritten(mDb);
+            // the prices of deleted commodities are deleted with them
+            PriceIndex.getInstance(mDb).onWritten(mDb);
+        }
+    }
+
+    @Override
+    public int deleteAllRecords() {
+        try {
+            return super.deleteAllRecords();
+        } finally {
+            mRegistry.onWritten(mDb);
+            // the prices of deleted commodities are deleted with them
+            PriceIndex.getInstance(mDb).onWritten(mDb);
+        }
     }
 }
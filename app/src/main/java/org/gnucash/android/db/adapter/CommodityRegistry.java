@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2012-2024 GnuCash Android developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.db.adapter;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.gnucash.android.model.Commodity;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory copy of the commodities of a book.
+ * <p>There is one registry per database file, shared by all the {@link CommoditiesDbAdapter}s
+ * opened on the book, including those of other connections. The commodities are loaded all at once
+ * on first use and kept until a commodity of the book is written, so that looking up a commodity
+ * by currency code or GUID does not query the database.</p>
+ * <p>Like the other {@link SharedSnapshot}s, the shared registry only holds committed commodities.</p>
+ * <p>The registry returns the same {@link Commodity} instances to all callers; they must not be modified.</p>
+ */
+final class CommodityRegistry extends SharedSnapshot<CommodityRegistry.Snapshot> {
+
+    private static final Map<String, CommodityRegistry> sRegistries = new HashMap<>();
+
+    /**
+     * Commodities of the book, by mnemonic and by GUID
+     */
+    static final class Snapshot {
+        private final Map<String, Commodity> mByMnemonic;
+        private final Map<String, Commodity> mByUID;
+
+        /**
+         * Indexes a list of commodities.
+         * If several commodities have the same mnemonic, the first one of the list is used.
+         */
+        Snapshot(@NonNull List<Commodity> commodities) {
+            Map<String, Commodity> byMnemonic = new HashMap<>(commodities.size() * 2);
+            Map<String, Commodity> byUID = new HashMap<>(commodities.size() * 2);
+            for (Commodity commodity : commodities) {
+                if (!byMnemonic.containsKey(commodity.getMnemonic())) {
+                    byMnemonic.put(commodity.getMnemonic(), commodity);
+                }
+                byUID.put(commodity.getUID(), commodity);
+            }
+            mByMnemonic = Collections.unmodifiableMap(byMnemonic);
+            mByUID = Collections.unmodifiableMap(byUID);
+        }
+
+        @Nullable
+        Commodity getByMnemonic(@NonNull String mnemonic) {
+            return mByMnemonic.get(mnemonic);
+        }
+
+        @Nullable
+        Commodity getByUID(@NonNull String uid) {
+            return mByUID.get(uid);
+        }
+    }
+
+    private CommodityRegistry() {
+    }
+
+    /**
+     * Returns the registry of the book stored in a database
+     *
+     * @param db Connection to the database of the book
+     * @return Registry shared by all the connections to the database
+     */
+    @NonNull
+    static CommodityRegistry getInstance(@NonNull SQLiteDatabase db) {
+        String path = db.getPath();
+        synchronized (sRegistries) {
+            CommodityRegistry registry = sRegistries.get(path);
+            if (registry == null) {
+                registry = new CommodityRegistry();
+                sRegistries.put(path, registry);
+            }
+            return registry;
+        }
+    }
+
+    /**
+     * Discards the registry of a database, when the database is deleted
+     *
+     * @param databasePath Path of the database file
+     */
+    static void remove(@NonNull String databasePath) {
+        synchronized (sRegistries) {
+            sRegistries.remove(databasePath);
+        }
+    }
+
+    /**
+     * Returns the commodities of the book, loading them if the registry was invalidated
+     *
+     * @param db     Connection used to load the commodities if needed
+     * @param loader Loads the commodities from the connection
+     * @return Commodities of the book, as seen by the current transaction of the connection
+     */
+    @NonNull
+    Snapshot getSnapshot(@NonNull SQLiteDatabase db, @NonNull Loader<Snapshot> loader) {
+        return get(db, loader);
+    }
+}
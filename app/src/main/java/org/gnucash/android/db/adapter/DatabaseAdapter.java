@@ -70,6 +70,8 @@ public abstract class DatabaseAdapter<Model extends BaseModel> implements Closea
 
     /**
      * Opens the database adapter with an existing database
+     * <p>The database may be read-only, as for the connections of a
+     * {@link org.gnucash.android.db.DatabaseReaderPool}. The adapter can then only be used for reading.</p>
      *
      * @param db SQLiteDatabase object
      */
@@ -77,11 +79,14 @@ public abstract class DatabaseAdapter<Model extends BaseModel> implements Closea
         this.mTableName = tableName;
         this.mDb = db;
         this.mColumns = columns;
-        if (!db.isOpen() || db.isReadOnly())
-            throw new IllegalArgumentException("Database not open or is read-only. Require writeable database");
+        if (!db.isOpen())
+            throw new IllegalArgumentException("Database not open");
 
-        if (mDb.getVersion() >= 9) {
+        // the temporary views belong to the connection, so they only need to be created once
+        AdapterRegistry registry = AdapterRegistry.getInstance(db);
+        if (!registry.hasTempViews() && mDb.getVersion() >= 9) {
             createTempView();
+            registry.setTempViewsCreated();
         }
     }
 
@@ -603,6 +608,11 @@ public abstract class DatabaseAdapter<Model extends BaseModel> implements Closea
      * does not exist in DB
      */
     public String getAccountCurrencyCode(@NonNull String accountUID) {
+        AccountTree.Snapshot accountTree = getAccountTree();
+        int position = accountTree.indexOf(accountUID);
+        if (position != -1) {
+            return accountTree.getCurrencyCode(position);
+        }
         Cursor cursor = mDb.query(DatabaseSchema.AccountEntry.TABLE_NAME,
                 new String[]{DatabaseSchema.AccountEntry.COLUMN_CURRENCY},
                 DatabaseSchema.AccountEntry.COLUMN_UID + "= ?",
@@ -651,6 +661,11 @@ public abstract class DatabaseAdapter<Model extends BaseModel> implements Closea
      * @throws java.lang.IllegalArgumentException if accountUID does not exist in DB,
      */
     public AccountType getAccountType(@NonNull String accountUID) {
+        AccountTree.Snapshot accountTree = getAccountTree();
+        int position = accountTree.indexOf(accountUID);
+        if (position != -1) {
+            return accountTree.getType(position);
+        }
         String type = "";
         Cursor c = mDb.query(DatabaseSchema.AccountEntry.TABLE_NAME,
                 new String[]{DatabaseSchema.AccountEntry.COLUMN_TYPE},
@@ -668,6 +683,17 @@ public abstract class DatabaseAdapter<Model extends BaseModel> implements Closea
         return AccountType.valueOf(type);
     }
 
+    /**
+     * Returns the in-memory account tree of the book, loading it if needed
+     * <p>Inside a transaction which wrote accounts, the tree includes the uncommitted accounts.</p>
+     *
+     * @return Snapshot of the accounts of the book
+     */
+    @NonNull
+    AccountTree.Snapshot getAccountTree() {
+        return AccountTree.getInstance(mDb).getSnapshot(mDb);
+    }
+
     /**
      * Updates a record in the table
      *
@@ -827,12 +853,18 @@ public abstract class DatabaseAdapter<Model extends BaseModel> implements Closea
 
     /**
      * Expose mDb.endTransaction()
+     * <p>The shared copies of the accounts, commodities and prices of the book are discarded when
+     * the outermost transaction which wrote them ends, whichever adapter wrote them.</p>
      */
     public void endTransaction() {
         try {
             mDb.endTransaction();
         } catch (Exception e) {
             Timber.e(e);
+        } finally {
+            AccountTree.getInstance(mDb).onTransactionEnded(mDb);
+            CommodityRegistry.getInstance(mDb).onTransactionEnded(mDb);
+            PriceIndex.getInstance(mDb).onTransactionEnded(mDb);
         }
     }
 
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2012-2024 GnuCash Android developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.db.adapter;
+
+import static org.gnucash.android.db.DatabaseSchema.PriceEntry;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Pair;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.gnucash.android.util.TimestampHelper;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory index of the prices of a book, used to convert amounts between commodities.
+ * <p>There is one index per database file, shared by all the adapters opened on the book.
+ * It is loaded with a single query on first use and invalidated whenever a price is written
+ * through a {@link PricesDbAdapter}. Like the other {@link SharedSnapshot}s, the shared index
+ * only holds committed prices.</p>
+ * <p>The prices of each pair of commodities are sorted by date, in both directions: a price of
+ * A in B is also used, inverted, as a price of B in A. Prices are looked up as of a date by binary search.
+ * When there is no price between two commodities, they are converted through a base currency.</p>
+ */
+final class PriceIndex extends SharedSnapshot<Map<String, PriceIndex.Series>> {
+
+    private static final Map<String, PriceIndex> sIndexes = new HashMap<>();
+
+    private static final Pair<Long, Long> NO_PRICE = new Pair<>(0L, 0L);
+
+    /**
+     * Prices of one commodity in another, sorted by date
+     */
+    static final class Series {
+        final long[] mDates;
+        final long[] mNums;
+        final long[] mDenoms;
+
+        Series(List<long[]> entries) {
+            Collections.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+            int size = entries.size();
+            mDates = new long[size];
+            mNums = new long[size];
+            mDenoms = new long[size];
+            for (int i = 0; i < size; i++) {
+                long[] entry = entries.get(i);
+                mDates[i] = entry[0];
+                mNums[i] = entry[1];
+                mDenoms[i] = entry[2];
+            }
+        }
+
+        /**
+         * Returns the index of the last price on or before a date, or of the first price
+         * if all of them are after the date
+         */
+        int indexAsOf(long timestamp) {
+            int low = 0;
+            int high = mDates.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (mDates[mid] <= timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return Math.max(high, 0);
+        }
+    }
+
+    private PriceIndex() {
+    }
+
+    /**
+     * Returns the price index of the book stored in a database
+     *
+     * @param db Connection to the database of the book
+     * @return Index shared by all the connections to the database
+     */
+    @NonNull
+    static PriceIndex getInstance(@NonNull SQLiteDatabase db) {
+        String path = db.getPath();
+        synchronized (sIndexes) {
+            PriceIndex index = sIndexes.get(path);
+            if (index == null) {
+                index = new PriceIndex();
+                sIndexes.put(path, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Discards the index of a database, when the database is deleted
+     *
+     * @param databasePath Path of the database file
+     */
+    static void remove(@NonNull String databasePath) {
+        synchronized (sIndexes) {
+            sIndexes.remove(databasePath);
+        }
+    }
+
+    /**
+     * Returns the price of a commodity in another one, as of a date.
+     * <p>The price used is the last one on or before the date, or the earliest one if all
+     * prices are after the date. If there is no price between the two commodities,
+     * the price is computed through the base currency.</p>
+     *
+     * @param db              Connection used to load the prices if needed
+     * @param commodityUID    GUID of the commodity which is starting point for conversion
+     * @param currencyUID     GUID of target commodity for the conversion
+     * @param timestamp       Date of the price, or {@link Long#MAX_VALUE} for the latest price
+     * @param baseCurrencyUID GUID of the currency through which to convert, or {@code null}
+     * @return The numerator/denominator pair of the price, or (0, 0) if there is no price
+     */
+    @NonNull
+    Pair<Long, Long> getPrice(@NonNull SQLiteDatabase db, @NonNull String commodityUID, @NonNull String currencyUID,
+                              long timestamp, @Nullable String baseCurrencyUID) {
+        if (commodityUID.equals(currencyUID)) {
+            return new Pair<>(1L, 1L);
+        }
+        Map<String, Series> series = getSeries(db);
+        Pair<Long, Long> price = getDirectPrice(series, commodityUID, currencyUID, timestamp);
+        if (price != null) {
+            return price;
+        }
+        if (baseCurrencyUID == null || baseCurrencyUID.equals(commodityUID) || baseCurrencyUID.equals(currencyUID)) {
+            return NO_PRICE;
+        }
+        Pair<Long, Long> toBase = getDirectPrice(series, commodityUID, baseCurrencyUID, timestamp);
+        Pair<Long, Long> fromBase = getDirectPrice(series, baseCurrencyUID, currencyUID, timestamp);
+        if (toBase == null || fromBase == null) {
+            return NO_PRICE;
+        }
+        return multiply(toBase, fromBase);
+    }
+
+    @Nullable
+    private static Pair<Long, Long> getDirectPrice(Map<String, Series> series, String commodityUID,
+                                                   String currencyUID, long timestamp) {
+        Series prices = series.get(key(commodityUID, currencyUID));
+        if (prices == null) {
+            return null;
+        }
+        int index = prices.indexAsOf(timestamp);
+        return new Pair<>(prices.mNums[index], prices.mDenoms[index]);
+    }
+
+    /**
+     * Multiplies two prices, reducing the result so that it fits in longs
+     */
+    private static Pair<Long, Long> multiply(Pair<Long, Long> a, Pair<Long, Long> b) {
+        BigInteger num = BigInteger.valueOf(a.first).multiply(BigInteger.valueOf(b.first));
+        BigInteger denom = BigInteger.valueOf(a.second).multiply(BigInteger.valueOf(b.second));
+        BigInteger gcd = num.gcd(denom);
+        if (gcd.signum() != 0) {
+            num = num.divide(gcd);
+            denom = denom.divide(gcd);
+        }
+        // drop the least significant bits of both terms if the exact price does not fit
+        int excessBits = Math.max(num.bitLength(), denom.bitLength()) - 62;
+        if (excessBits > 0) {
+            num = num.shiftRight(excessBits);
+            denom = denom.shiftRight(excessBits);
+            if (num.signum() == 0 || denom.signum() == 0) {
+                return NO_PRICE;
+            }
+        }
+        return new Pair<>(num.longValue(), denom.longValue());
+    }
+
+    private static String key(String commodityUID, String currencyUID) {
+        return commodityUID + '/' + currencyUID;
+    }
+
+    /**
+     * Returns the series of prices, by pair key as built by {@link #key(String, String)}
+     */
+    @NonNull
+    private Map<String, Series> getSeries(SQLiteDatabase db) {
+        return get(db, PriceIndex::loadSeries);
+    }
+
+    @NonNull
+    private static Map<String, Series> loadSeries(@NonNull SQLiteDatabase db) {
+        Map<String, List<long[]>> entries = new HashMap<>();
+        Cursor cursor = db.query(PriceEntry.TABLE_NAME, new String[]{PriceEntry.COLUMN_COMMODITY_UID,
+                PriceEntry.COLUMN_CURRENCY_UID, PriceEntry.COLUMN_DATE,
+                PriceEntry.COLUMN_VALUE_NUM, PriceEntry.COLUMN_VALUE_DENOM},
+            null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                String commodityUID = cursor.getString(0);
+                String currencyUID = cursor.getString(1);
+                long date = TimestampHelper.getTimestampFromUtcString(cursor.getString(2)).getTime();
+                long valueNum = cursor.getLong(3);
+                long valueDenom = cursor.getLong(4);
+                if (valueNum <= 0 || valueDenom <= 0 || commodityUID.equals(currencyUID)) {
+                    continue;
+                }
+                addEntry(entries, key(commodityUID, currencyUID), new long[]{date, valueNum, valueDenom});
+                addEntry(entries, key(currencyUID, commodityUID), new long[]{date, valueDenom, valueNum});
+            }
+        } finally {
+            cursor.close();
+        }
+
+        Map<String, Series> series = new HashMap<>(entries.size() * 2);
+        for (Map.Entry<String, List<long[]>> entry : entries.entrySet()) {
+            series.put(entry.getKey(), new Series(entry.getValue()));
+        }
+        return series;
+    }
+
+    private static void addEntry(Map<String, List<long[]>> entries, String key, long[] entry) {
+        List<long[]> list = entries.get(key);
+        if (list == null) {
+            list = new ArrayList<>();
+            entries.put(key, list);
+        }
+        list.add(entry);
+    }
+}
@@ -2,21 +2,35 @@ package org.gnucash.android.db.adapter;
 
 import static org.gnucash.android.db.DatabaseSchema.PriceEntry;
 
+import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteStatement;
 import android.util.Pair;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.model.Commodity;
 import org.gnucash.android.model.Price;
 import org.gnucash.android.util.TimestampHelper;
 
+import java.io.IOException;
+import java.util.List;
+
 /**
  * Database adapter for prices
+ * <p>Prices are looked up in the {@link PriceIndex} of the book, which is loaded once
+ * and invalidated whenever a price written through this adapter is committed.</p>
  */
 public class PricesDbAdapter extends DatabaseAdapter<Price> {
+
+    private final PriceIndex mIndex;
+
+    @Nullable
+    private CommoditiesDbAdapter mCommoditiesDbAdapter;
+
     /**
      * Opens the database adapter with an existing database
      *
@@ -32,6 +46,7 @@ public class PricesDbAdapter extends DatabaseAdapter<Price> {
                 PriceEntry.COLUMN_VALUE_NUM,
                 PriceEntry.COLUMN_VALUE_DENOM
         });
+        mIndex = PriceIndex.getInstance(db);
     }
 
     public static PricesDbAdapter getInstance() {
@@ -79,7 +94,7 @@ public class PricesDbAdapter extends DatabaseAdapter<Price> {
     }
 
     /**
-     * Get the price for commodity / currency pair.
+     * Get the latest price for commodity / currency pair.
      * The price can be used to convert from one commodity to another. The 'commodity' is the origin and the 'currency' is the target for the conversion.
      *
      * <p>Pair is used instead of Price object because we must sometimes invert the commodity/currency in DB,
@@ -88,40 +103,102 @@ public class PricesDbAdapter extends DatabaseAdapter<Price> {
      * @param commodityUID GUID of the commodity which is starting point for conversion
      * @param currencyUID  GUID of target commodity for the conversion
      * @return The numerator/denominator pair for commodity / currency pair
+     * @see #getPrice(String, String, long)
      */
     public Pair<Long, Long> getPrice(@NonNull String commodityUID, @NonNull String currencyUID) {
-        Pair<Long, Long> pairZero = new Pair<>(0L, 0L);
-        if (commodityUID.equals(currencyUID)) {
-            return new Pair<Long, Long>(1L, 1L);
+        return getPrice(commodityUID, currencyUID, Long.MAX_VALUE);
+    }
+
+    /**
+     * Get the price for commodity / currency pair as of a date.
+     * <p>The price used is the last one on or before the date, or the earliest one if all prices are
+     * after it. If there is no price between the commodity and the currency, the price is computed
+     * through the default currency. The prices are not queried from the database after the first call.</p>
+     *
+     * @param commodityUID GUID of the commodity which is starting point for conversion
+     * @param currencyUID  GUID of target commodity for the conversion
+     * @param timestamp    Date of the price in milliseconds, or {@link Long#MAX_VALUE} for the latest price
+     * @return The numerator/denominator pair for commodity / currency pair, or (0, 0) if there is no price
+     */
+    public Pair<Long, Long> getPrice(@NonNull String commodityUID, @NonNull String currencyUID, long timestamp) {
+        return mIndex.getPrice(mDb, commodityUID, currencyUID, timestamp, getBaseCurrencyUID());
+    }
+
+    @Nullable
+    private String getBaseCurrencyUID() {
+        if (mCommoditiesDbAdapter == null) {
+            mCommoditiesDbAdapter = AdapterRegistry.getInstance(mDb).getCommoditiesDbAdapter();
+        }
+        Commodity commodity = mCommoditiesDbAdapter.getCommodity(GnuCashApplication.getDefaultCurrencyCode());
+        return commodity == null ? null : commodity.getUID();
+    }
+
+    @Override
+    public void addRecord(@NonNull Price price, UpdateMethod updateMethod) {
+        try {
+            super.addRecord(price, updateMethod);
+        } finally {
+            onPricesWritten();
+        }
+    }
+
+    @Override
+    public long bulkAddRecords(@NonNull List<Price> prices, UpdateMethod updateMethod) {
+        try {
+            return super.bulkAddRecords(prices, updateMethod);
+        } finally {
+            onPricesWritten();
+        }
+    }
+
+    @Override
+    public int updateRecord(@NonNull String uid, @NonNull ContentValues contentValues) {
+        try {
+            return super.updateRecord(uid, contentValues);
+        } finally {
+            onPricesWritten();
+        }
+    }
+
+    @Override
+    public int updateRecords(String where, String[] whereArgs, @NonNull String columnKey, String newValue) {
+        try {
+            return super.updateRecords(where, whereArgs, columnKey, newValue);
+        } finally {
+            onPricesWritten();
         }
-        Cursor cursor = mDb.query(PriceEntry.TABLE_NAME, null,
-                // the commodity and currency can be swapped
-                "( " + PriceEntry.COLUMN_COMMODITY_UID + " = ? AND " + PriceEntry.COLUMN_CURRENCY_UID + " = ? ) OR ( "
-                        + PriceEntry.COLUMN_COMMODITY_UID + " = ? AND " + PriceEntry.COLUMN_CURRENCY_UID + " = ? )",
-                new String[]{commodityUID, currencyUID, currencyUID, commodityUID}, null, null,
-                // only get the latest price
-                PriceEntry.COLUMN_DATE + " DESC", "1");
+    }
+
+    @Override
+    public boolean deleteRecord(long rowId) {
         try {
-            if (cursor.moveToNext()) {
-                String commodityUIDdb = cursor.getString(cursor.getColumnIndexOrThrow(PriceEntry.COLUMN_COMMODITY_UID));
-                long valueNum = cursor.getLong(cursor.getColumnIndexOrThrow(PriceEntry.COLUMN_VALUE_NUM));
-                long valueDenom = cursor.getLong(cursor.getColumnIndexOrThrow(PriceEntry.COLUMN_VALUE_DENOM));
-                if (valueNum < 0 || valueDenom < 0) {
-                    // this should not happen
-                    return pairZero;
-                }
-                if (!commodityUIDdb.equals(commodityUID)) {
-                    // swap Num and denom
-                    long t = valueNum;
-                    valueNum = valueDenom;
-                    valueDenom = t;
-                }
-                return new Pair<Long, Long>(valueNum, valueDenom);
-            } else {
-                return pairZero;
-            }
+            return super.deleteRecord(rowId);
         } finally {
-            cursor.close();
+            onPricesWritten();
+        }
+    }
+
+    @Override
+    public int deleteAllRecords() {
+        try {
+            return super.deleteAllRecords();
+        } finally {
+            onPricesWritten();
+        }
+    }
+
+    /**
+     * Discards the loaded prices after prices were written
+     */
+    private void onPricesWritten() {
+        mIndex.onWritten(mDb);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (mCommoditiesDbAdapter != null) {
+            mCommoditiesDbAdapter.close();
         }
+        super.close();
     }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2012-2024 GnuCash Android developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.db.adapter;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * In-memory copy of some records of a book, shared by all the connections to the book database.
+ * <p>The shared copy only holds committed records. A thread which writes the records inside a
+ * database transaction uses its own copy, which sees the uncommitted records, until the transaction
+ * ends. The shared copy is then discarded, whether the transaction was committed or rolled back.
+ * Transactions are ended through {@link DatabaseAdapter#endTransaction()}, which reports it to
+ * the copies of the book.</p>
+ *
+ * @param <S> Type of the copy
+ */
+abstract class SharedSnapshot<S> {
+
+    /**
+     * Loads a copy of the records from the database
+     */
+    interface Loader<S> {
+        @NonNull
+        S load(@NonNull SQLiteDatabase db);
+    }
+
+    @Nullable
+    private S mSnapshot;
+
+    /**
+     * Incremented on each invalidation, so that records loaded before a write are not kept
+     */
+    private int mGeneration = 0;
+
+    /**
+     * Connection whose open transaction, on the current thread, has written records
+     */
+    private final ThreadLocal<SQLiteDatabase> mWritingDatabase = new ThreadLocal<>();
+
+    /**
+     * Records seen by the open transaction of the current thread, which are never shared
+     */
+    private final ThreadLocal<S> mTransactionSnapshot = new ThreadLocal<>();
+
+    /**
+     * Discards the shared copy, after records were written and committed
+     */
+    final synchronized void invalidate() {
+        mGeneration++;
+        mSnapshot = null;
+    }
+
+    /**
+     * Records that records were written through a connection.
+     * <p>Inside a transaction, the shared copy is kept for the other threads, which do not see
+     * the write until it is committed, and the writing thread loads its own copy.</p>
+     *
+     * @param db Connection used for the write
+     */
+    final void onWritten(@NonNull SQLiteDatabase db) {
+        if (db.inTransaction()) {
+            mWritingDatabase.set(db);
+            mTransactionSnapshot.remove();
+        } else {
+            invalidate();
+        }
+    }
+
+    /**
+     * Discards the shared copy when the outermost transaction of the current thread ends,
+     * if records were written in it
+     *
+     * @param db Connection whose transaction has ended
+     */
+    final void onTransactionEnded(@NonNull SQLiteDatabase db) {
+        if (mWritingDatabase.get() == db && !db.inTransaction()) {
+            mWritingDatabase.remove();
+            mTransactionSnapshot.remove();
+            invalidate();
+        }
+    }
+
+    /**
+     * Returns the records, loading them if the copy was invalidated
+     *
+     * @param db     Connection used to load the records if needed
+     * @param loader Loads the records from the connection
+     * @return Copy of the records, as seen by the current transaction of the connection
+     */
+    @NonNull
+    final S get(@NonNull SQLiteDatabase db, @NonNull Loader<S> loader) {
+        if (mWritingDatabase.get() == db) {
+            if (db.inTransaction()) {
+                S snapshot = mTransactionSnapshot.get();
+                if (snapshot == null) {
+                    snapshot = loader.load(db);
+                    mTransactionSnapshot.set(snapshot);
+                }
+                return snapshot;
+            }
+            // the transaction was ended without going through an adapter
+            onTransactionEnded(db);
+        }
+
+        int generation;
+        synchronized (this) {
+            if (mSnapshot != null) {
+                return mSnapshot;
+            }
+            generation = mGeneration;
+        }
+
+        S snapshot = loader.load(db);
+        synchronized (this) {
+            if (generation == mGeneration) {
+                mSnapshot = snapshot;
+            }
+        }
+        return snapshot;
+    }
+}
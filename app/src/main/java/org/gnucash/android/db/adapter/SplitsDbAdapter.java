@@ -17,6 +17,8 @@
 
 package org.gnucash.android.db.adapter;
 
+import static org.gnucash.android.db.DatabaseSchema.AccountBalanceEntry;
+import static org.gnucash.android.db.DatabaseSchema.AccountEntry;
 import static org.gnucash.android.db.DatabaseSchema.SplitEntry;
 import static org.gnucash.android.db.DatabaseSchema.TransactionEntry;
 
@@ -28,19 +30,28 @@ import android.text.TextUtils;
 import android.util.Pair;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 import org.gnucash.android.app.GnuCashApplication;
 import org.gnucash.android.db.DatabaseSchema;
 import org.gnucash.android.model.Commodity;
 import org.gnucash.android.model.Money;
-import org.gnucash.android.model.MoneyKt;
+import org.gnucash.android.model.MoneyAccumulator;
 import org.gnucash.android.model.Split;
 import org.gnucash.android.model.TransactionType;
 import org.gnucash.android.util.TimestampHelper;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import timber.log.Timber;
 
@@ -53,6 +64,9 @@ import timber.log.Timber;
  */
 public class SplitsDbAdapter extends DatabaseAdapter<Split> {
 
+    @Nullable
+    private BalanceConverter mBalanceConverter;
+
     public SplitsDbAdapter(SQLiteDatabase db) {
         super(db, SplitEntry.TABLE_NAME, new String[]{
                 SplitEntry.COLUMN_MEMO,
@@ -127,6 +141,23 @@ public class SplitsDbAdapter extends DatabaseAdapter<Split> {
      * @return {@link org.gnucash.android.model.Split} instance
      */
     public Split buildModelInstance(@NonNull final Cursor cursor) {
+        String transxUID = cursor.getString(cursor.getColumnIndexOrThrow(SplitEntry.COLUMN_TRANSACTION_UID));
+        String accountUID = cursor.getString(cursor.getColumnIndexOrThrow(SplitEntry.COLUMN_ACCOUNT_UID));
+        String transactionCurrency = getAttribute(TransactionEntry.TABLE_NAME, transxUID, TransactionEntry.COLUMN_CURRENCY);
+        return buildModelInstance(cursor, transactionCurrency, getAccountCurrencyCode(accountUID));
+    }
+
+    /**
+     * Builds a split instance from the data pointed to by the cursor provided,
+     * using currencies which were already looked up by the caller.
+     * <p>This method will not move the cursor in any way. So the cursor should already by pointing to the correct entry</p>
+     *
+     * @param cursor              Cursor pointing to split record in database
+     * @param transactionCurrency Currency code of the transaction of the split
+     * @param accountCurrency     Currency code of the account of the split
+     * @return {@link org.gnucash.android.model.Split} instance
+     */
+    Split buildModelInstance(@NonNull final Cursor cursor, String transactionCurrency, String accountCurrency) {
         long valueNum = cursor.getLong(cursor.getColumnIndexOrThrow(SplitEntry.COLUMN_VALUE_NUM));
         long valueDenom = cursor.getLong(cursor.getColumnIndexOrThrow(SplitEntry.COLUMN_VALUE_DENOM));
         long quantityNum = cursor.getLong(cursor.getColumnIndexOrThrow(SplitEntry.COLUMN_QUANTITY_NUM));
@@ -138,10 +169,8 @@ public class SplitsDbAdapter extends DatabaseAdapter<Split> {
         String reconcileState = cursor.getString(cursor.getColumnIndexOrThrow(SplitEntry.COLUMN_RECONCILE_STATE));
         String reconcileDate = cursor.getString(cursor.getColumnIndexOrThrow(SplitEntry.COLUMN_RECONCILE_DATE));
 
-        String transactionCurrency = getAttribute(TransactionEntry.TABLE_NAME, transxUID, TransactionEntry.COLUMN_CURRENCY);
         Money value = new Money(valueNum, valueDenom, transactionCurrency);
-        String currencyCode = getAccountCurrencyCode(accountUID);
-        Money quantity = new Money(quantityNum, quantityDenom, currencyCode);
+        Money quantity = new Money(quantityNum, quantityDenom, accountCurrency);
 
         Split split = new Split(value, accountUID);
         split.setQuantity(quantity);
@@ -194,75 +223,342 @@ public class SplitsDbAdapter extends DatabaseAdapter<Split> {
             return new Money("0", currencyCode);
         }
 
-        Cursor cursor;
-        String[] selectionArgs = null;
-        String selection = DatabaseSchema.AccountEntry.TABLE_NAME + "_" + DatabaseSchema.CommonColumns.COLUMN_UID + " in ( '" + TextUtils.join("' , '", accountUIDList) + "' ) AND " +
-                TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_TEMPLATE + " = 0";
+        Map<String, long[]> quantities = new LinkedHashMap<>();
+        for (Map<String, long[]> accountQuantities : getSplitQuantities(accountUIDList, startTimestamp, endTimestamp).values()) {
+            addQuantities(quantities, accountQuantities);
+        }
+        return getBalanceConverter().convert(quantities, currencyCode, hasDebitNormalBalance);
+    }
+
+    /**
+     * Returns the sums of the split quantities of each account within the specified time range.
+     * <p>The sums are not rolled up into parent accounts and the quantities are signed with debits as positive.</p>
+     *
+     * @param accountUIDList List of account unique IDs, or {@code null} for all accounts
+     * @param startTimestamp the start timestamp of the time range, or -1 if unbounded
+     * @param endTimestamp   the end timestamp of the time range, or -1 if unbounded
+     * @return Map of account UID to a map of currency code to the numerator and denominator of the quantity
+     */
+    Map<String, Map<String, long[]>> getSplitQuantities(@Nullable List<String> accountUIDList,
+                                                       long startTimestamp, long endTimestamp) {
+        Map<String, Map<String, long[]>> quantities = new HashMap<>();
+        if (accountUIDList != null && accountUIDList.isEmpty()) {
+            return quantities;
+        }
+
+        // whole months within the range are read from the account balances table,
+        // only the splits in the partial months at the edges of the range are summed up
+        long bucketStart = startTimestamp == -1 ? Long.MIN_VALUE : ceilBalancePeriod(startTimestamp);
+        long bucketEnd = endTimestamp == -1 ? Long.MAX_VALUE : floorBalancePeriod(endTimestamp + 1);
+        boolean hasBuckets = bucketStart < bucketEnd;
 
-        if (startTimestamp != -1 && endTimestamp != -1) {
-            selection += " AND " + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_TIMESTAMP + " BETWEEN ? AND ? ";
-            selectionArgs = new String[]{String.valueOf(startTimestamp), String.valueOf(endTimestamp)};
-        } else if (startTimestamp == -1 && endTimestamp != -1) {
-            selection += " AND " + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_TIMESTAMP + " <= ?";
-            selectionArgs = new String[]{String.valueOf(endTimestamp)};
-        } else if (startTimestamp != -1/* && endTimestamp == -1*/) {
-            selection += " AND " + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_TIMESTAMP + " >= ?";
-            selectionArgs = new String[]{String.valueOf(startTimestamp)};
+        if (hasBuckets) {
+            addBucketQuantities(quantities, accountUIDList, bucketStart, bucketEnd);
         }
+        if (!hasBuckets || startTimestamp != -1 || endTimestamp != -1) {
+            addSplitQuantities(quantities, accountUIDList, startTimestamp, endTimestamp,
+                    hasBuckets ? bucketStart : Long.MIN_VALUE, hasBuckets ? bucketEnd : Long.MAX_VALUE);
+        }
+        return quantities;
+    }
+
+    /**
+     * Adds the quantities of the monthly balance buckets of the accounts to the per-account totals
+     *
+     * @param quantities     Map of account UID to the per-currency totals
+     * @param accountUIDList List of account unique IDs, or {@code null} for all accounts
+     * @param bucketStart    Start of the first bucket to include, in milliseconds
+     * @param bucketEnd      End (exclusive) of the last bucket to include, in milliseconds
+     */
+    private void addBucketQuantities(Map<String, Map<String, long[]>> quantities, @Nullable List<String> accountUIDList,
+                                     long bucketStart, long bucketEnd) {
+        String selection = "a." + AccountEntry.COLUMN_UID + " = b." + AccountBalanceEntry.COLUMN_ACCOUNT_UID;
+        List<String> selectionArgs = new ArrayList<>();
+        if (accountUIDList != null) {
+            selection += " AND b." + AccountBalanceEntry.COLUMN_ACCOUNT_UID + " IN ( '" + TextUtils.join("' , '", accountUIDList) + "' )";
+        }
+        if (bucketStart != Long.MIN_VALUE) {
+            selection += " AND b." + AccountBalanceEntry.COLUMN_PERIOD_START + " >= ?";
+            selectionArgs.add(String.valueOf(bucketStart));
+        }
+        if (bucketEnd != Long.MAX_VALUE) {
+            selection += " AND b." + AccountBalanceEntry.COLUMN_PERIOD_START + " < ?";
+            selectionArgs.add(String.valueOf(bucketEnd));
+        }
+
+        Cursor cursor = mDb.rawQuery("SELECT SUM(b." + AccountBalanceEntry.COLUMN_QUANTITY_NUM + "), "
+                + "b." + AccountBalanceEntry.COLUMN_QUANTITY_DENOM + ", "
+                + "a." + AccountEntry.COLUMN_CURRENCY + ", "
+                + "b." + AccountBalanceEntry.COLUMN_ACCOUNT_UID
+                + " FROM " + AccountBalanceEntry.TABLE_NAME + " b, " + AccountEntry.TABLE_NAME + " a"
+                + " WHERE " + selection
+                + " GROUP BY b." + AccountBalanceEntry.COLUMN_ACCOUNT_UID + ", a." + AccountEntry.COLUMN_CURRENCY
+                + ", b." + AccountBalanceEntry.COLUMN_QUANTITY_DENOM,
+                selectionArgs.toArray(new String[0]));
+        try {
+            addQuantities(quantities, cursor);
+        } finally {
+            cursor.close();
+        }
+    }
 
-        cursor = mDb.query("trans_split_acct",
-                new String[]{"TOTAL ( CASE WHEN " + SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_TYPE + " = 'DEBIT' THEN " +
+    /**
+     * Adds the quantities of the splits of the accounts within the time range, but outside of the
+     * balance buckets, to the per-account totals
+     *
+     * @param quantities     Map of account UID to the per-currency totals
+     * @param accountUIDList List of account unique IDs, or {@code null} for all accounts
+     * @param startTimestamp the start timestamp of the time range, or -1 if unbounded
+     * @param endTimestamp   the end timestamp of the time range, or -1 if unbounded
+     * @param bucketStart    Start of the balance buckets which are already accounted for
+     * @param bucketEnd      End (exclusive) of the balance buckets which are already accounted for
+     */
+    private void addSplitQuantities(Map<String, Map<String, long[]>> quantities, @Nullable List<String> accountUIDList,
+                                    long startTimestamp, long endTimestamp, long bucketStart, long bucketEnd) {
+        Pair<String, String[]> query = buildSplitQuantitiesQuery(accountUIDList, startTimestamp, endTimestamp,
+                bucketStart, bucketEnd);
+        Cursor cursor = mDb.rawQuery(query.first, query.second);
+        try {
+            addQuantities(quantities, cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Builds the query of the split quantities summed up by
+     * {@link #addSplitQuantities(Map, List, long, long, long, long)}
+     *
+     * @param accountUIDList List of account unique IDs, or {@code null} for all accounts
+     * @param startTimestamp the start timestamp of the time range, or -1 if unbounded
+     * @param endTimestamp   the end timestamp of the time range, or -1 if unbounded
+     * @param bucketStart    Start of the balance buckets which are already accounted for
+     * @param bucketEnd      End (exclusive) of the balance buckets which are already accounted for
+     * @return SQL query and its arguments
+     */
+    @VisibleForTesting
+    public static Pair<String, String[]> buildSplitQuantitiesQuery(@Nullable List<String> accountUIDList,
+                                                                   long startTimestamp, long endTimestamp,
+                                                                   long bucketStart, long bucketEnd) {
+        String accountUIDColumn = AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_UID;
+        String currencyColumn = AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_CURRENCY;
+        String timestampColumn = TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_TIMESTAMP;
+        String selection = TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_TEMPLATE + " = 0";
+        List<String> selectionArgs = new ArrayList<>();
+
+        if (accountUIDList != null) {
+            selection += " AND " + accountUIDColumn + " in ( '" + TextUtils.join("' , '", accountUIDList) + "' )";
+        }
+        if (startTimestamp != -1) {
+            selection += " AND " + timestampColumn + " >= ?";
+            selectionArgs.add(String.valueOf(startTimestamp));
+        }
+        if (endTimestamp != -1) {
+            selection += " AND " + timestampColumn + " <= ?";
+            selectionArgs.add(String.valueOf(endTimestamp));
+        }
+        if (bucketStart != Long.MIN_VALUE && bucketEnd != Long.MAX_VALUE) {
+            selection += " AND (" + timestampColumn + " < ? OR " + timestampColumn + " >= ?)";
+            selectionArgs.add(String.valueOf(bucketStart));
+            selectionArgs.add(String.valueOf(bucketEnd));
+        } else if (bucketStart != Long.MIN_VALUE) {
+            selection += " AND " + timestampColumn + " < ?";
+            selectionArgs.add(String.valueOf(bucketStart));
+        } else if (bucketEnd != Long.MAX_VALUE) {
+            selection += " AND " + timestampColumn + " >= ?";
+            selectionArgs.add(String.valueOf(bucketEnd));
+        }
+
+        String denomColumn = SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_QUANTITY_DENOM;
+        String[] columns = new String[]{"SUM ( CASE WHEN " + SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_TYPE + " = 'DEBIT' THEN " +
+                SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_QUANTITY_NUM + " ELSE - " +
+                SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_QUANTITY_NUM + " END )",
+                denomColumn,
+                currencyColumn,
+                accountUIDColumn};
+        // quantities are only summed up in SQL when they have the same denominator
+        String sql = SQLiteQueryBuilder.buildQueryString(false, "trans_split_acct", columns, selection,
+                accountUIDColumn + ", " + currencyColumn + ", " + denomColumn, null, null, null);
+        return new Pair<>(sql, selectionArgs.toArray(new String[0]));
+    }
+
+    /**
+     * Returns the sums of the split quantities of each account in consecutive periods, computed in a single query.
+     * <p>The sums are not rolled up into parent accounts and the quantities are signed with debits as positive.</p>
+     *
+     * @param accountUIDList List of account unique IDs
+     * @param periodStarts   Start timestamps of the periods in ascending order. The first one may be -1 if unbounded
+     * @param endTimestamp   End timestamp (inclusive) of the last period, or -1 if unbounded
+     * @return For each period, map of account UID to a map of currency code to the numerator and denominator of the quantity
+     */
+    List<Map<String, Map<String, long[]>>> getSplitQuantitiesByPeriod(@NonNull List<String> accountUIDList,
+                                                                      @NonNull long[] periodStarts, long endTimestamp) {
+        List<Map<String, Map<String, long[]>>> quantities = new ArrayList<>(periodStarts.length);
+        for (int i = 0; i < periodStarts.length; i++) {
+            quantities.add(new HashMap<String, Map<String, long[]>>());
+        }
+        if (accountUIDList.isEmpty() || periodStarts.length == 0) {
+            return quantities;
+        }
+
+        String accountUIDColumn = AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_UID;
+        String currencyColumn = AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_CURRENCY;
+        String timestampColumn = TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_TIMESTAMP;
+        String denomColumn = SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_QUANTITY_DENOM;
+        String selection = TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_TEMPLATE + " = 0"
+                + " AND " + accountUIDColumn + " in ( '" + TextUtils.join("' , '", accountUIDList) + "' )";
+        List<String> selectionArgs = new ArrayList<>();
+        if (periodStarts[0] != -1) {
+            selection += " AND " + timestampColumn + " >= ?";
+            selectionArgs.add(String.valueOf(periodStarts[0]));
+        }
+        if (endTimestamp != -1) {
+            selection += " AND " + timestampColumn + " <= ?";
+            selectionArgs.add(String.valueOf(endTimestamp));
+        }
+
+        // index of the period of each split, latest period first
+        String period = "0";
+        if (periodStarts.length > 1) {
+            StringBuilder caseBuilder = new StringBuilder("CASE");
+            for (int i = periodStarts.length - 1; i > 0; i--) {
+                caseBuilder.append(" WHEN ").append(timestampColumn).append(" >= ").append(periodStarts[i])
+                        .append(" THEN ").append(i);
+            }
+            period = caseBuilder.append(" ELSE 0 END").toString();
+        }
+
+        Cursor cursor = mDb.query("trans_split_acct",
+                new String[]{"SUM ( CASE WHEN " + SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_TYPE + " = 'DEBIT' THEN " +
                         SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_QUANTITY_NUM + " ELSE - " +
                         SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_QUANTITY_NUM + " END )",
-                        SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_QUANTITY_DENOM,
-                        DatabaseSchema.AccountEntry.TABLE_NAME + "_" + DatabaseSchema.AccountEntry.COLUMN_CURRENCY},
-                selection, selectionArgs, DatabaseSchema.AccountEntry.TABLE_NAME + "_" + DatabaseSchema.AccountEntry.COLUMN_CURRENCY, null, null);
-
+                        denomColumn,
+                        currencyColumn,
+                        accountUIDColumn,
+                        period + " AS period"},
+                selection, selectionArgs.toArray(new String[0]),
+                accountUIDColumn + ", " + currencyColumn + ", " + denomColumn + ", period", null, null);
         try {
-            Money total = Money.createZeroInstance(currencyCode);
-            CommoditiesDbAdapter commoditiesDbAdapter = null;
-            PricesDbAdapter pricesDbAdapter = null;
-            Commodity commodity = null;
-            String currencyUID = null;
             while (cursor.moveToNext()) {
-                long amount_num = cursor.getLong(0);
-                long amount_denom = cursor.getLong(1);
-                String commodityCode = cursor.getString(2);
-                if (commodityCode.equals("XXX") || amount_num == 0) {
-                    // ignore custom currency
-                    continue;
-                }
-                if (!hasDebitNormalBalance) {
-                    amount_num = -amount_num;
-                }
-                if (commodityCode.equals(currencyCode)) {
-                    // currency matches
-                    total = total.plus(new Money(amount_num, amount_denom, currencyCode));
-                } else {
-                    // there is a second currency involved
-                    if (commoditiesDbAdapter == null) {
-                        commoditiesDbAdapter = new CommoditiesDbAdapter(mDb);
-                        pricesDbAdapter = new PricesDbAdapter(mDb);
-                        commodity = commoditiesDbAdapter.getCommodity(currencyCode);
-                        currencyUID = commoditiesDbAdapter.getCommodityUID(currencyCode);
-                    }
-                    // get price
-                    String commodityUID = commoditiesDbAdapter.getCommodityUID(commodityCode);
-                    Pair<Long, Long> price = pricesDbAdapter.getPrice(commodityUID, currencyUID);
-                    if (price.first <= 0 || price.second <= 0) {
-                        // no price exists, just ignore it
-                        continue;
-                    }
-                    BigDecimal amount = MoneyKt.bigDecimalOfFraction(amount_num, amount_denom);
-                    BigDecimal amountConverted = amount.multiply(new BigDecimal(price.first))
-                            .divide(new BigDecimal(price.second), commodity.getSmallestFractionDigits(), BigDecimal.ROUND_HALF_EVEN);
-                    total = total.plus(new Money(amountConverted, commodity));
+                Map<String, Map<String, long[]>> periodQuantities = quantities.get(cursor.getInt(4));
+                String accountUID = cursor.getString(3);
+                Map<String, long[]> accountQuantities = periodQuantities.get(accountUID);
+                if (accountQuantities == null) {
+                    accountQuantities = new LinkedHashMap<>();
+                    periodQuantities.put(accountUID, accountQuantities);
                 }
+                addQuantity(accountQuantities, cursor.getString(2), cursor.getLong(0), cursor.getLong(1));
             }
-            return total;
         } finally {
             cursor.close();
         }
+        return quantities;
+    }
+
+    /**
+     * Adds the rows of a cursor with the columns (quantity numerator, quantity denominator, currency code, account UID)
+     * to the per-account totals
+     */
+    private static void addQuantities(Map<String, Map<String, long[]>> quantities, Cursor cursor) {
+        while (cursor.moveToNext()) {
+            String accountUID = cursor.getString(3);
+            Map<String, long[]> accountQuantities = quantities.get(accountUID);
+            if (accountQuantities == null) {
+                accountQuantities = new LinkedHashMap<>();
+                quantities.put(accountUID, accountQuantities);
+            }
+            addQuantity(accountQuantities, cursor.getString(2), cursor.getLong(0), cursor.getLong(1));
+        }
+    }
+
+    /**
+     * Adds per-currency totals to another set of per-currency totals
+     *
+     * @param total  Map of currency code to the numerator and denominator of the total quantity
+     * @param addend Per-currency totals to be added
+     */
+    static void addQuantities(Map<String, long[]> total, Map<String, long[]> addend) {
+        for (Map.Entry<String, long[]> entry : addend.entrySet()) {
+            addQuantity(total, entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+        }
+    }
+
+    /**
+     * Adds a quantity to the per-currency totals
+     *
+     * @param quantities   Map of currency code to the numerator and denominator of the total quantity
+     * @param currencyCode Currency code of the quantity
+     * @param amountNum    Numerator of the quantity
+     * @param amountDenom  Denominator of the quantity, a positive number
+     * @throws ArithmeticException if the total does not fit in a {@code long} with either denominator
+     */
+    @VisibleForTesting
+    public static void addQuantity(Map<String, long[]> quantities, String currencyCode, long amountNum, long amountDenom) {
+        long[] quantity = quantities.get(currencyCode);
+        if (quantity == null) {
+            quantities.put(currencyCode, new long[]{amountNum, amountDenom});
+            return;
+        }
+        try {
+            if (quantity[1] == amountDenom) {
+                quantity[0] = Math.addExact(quantity[0], amountNum);
+            } else {
+                // bring both amounts to a common denominator
+                long gcd = BigInteger.valueOf(quantity[1]).gcd(BigInteger.valueOf(amountDenom)).longValue();
+                long denom = Math.multiplyExact(quantity[1] / gcd, amountDenom);
+                quantity[0] = Math.addExact(Math.multiplyExact(quantity[0], denom / quantity[1]),
+                        Math.multiplyExact(amountNum, denom / amountDenom));
+                quantity[1] = denom;
+            }
+        } catch (ArithmeticException e) {
+            addQuantityExactly(quantity, amountNum, amountDenom);
+        }
+    }
+
+    /**
+     * Adds a quantity to a total whose common denominator overflows.
+     * The sum is reduced to lowest terms, or else rounded to the finer of the two denominators.
+     */
+    private static void addQuantityExactly(long[] quantity, long amountNum, long amountDenom) {
+        BigInteger denom = BigInteger.valueOf(quantity[1]).multiply(BigInteger.valueOf(amountDenom));
+        BigInteger num = BigInteger.valueOf(quantity[0]).multiply(BigInteger.valueOf(amountDenom))
+                .add(BigInteger.valueOf(amountNum).multiply(BigInteger.valueOf(quantity[1])));
+        BigInteger gcd = num.gcd(denom);
+        num = num.divide(gcd);
+        denom = denom.divide(gcd);
+        if (num.bitLength() < Long.SIZE && denom.bitLength() < Long.SIZE) {
+            quantity[0] = num.longValue();
+            quantity[1] = denom.longValue();
+        } else {
+            long finerDenom = Math.max(quantity[1], amountDenom);
+            quantity[0] = new BigDecimal(num).multiply(BigDecimal.valueOf(finerDenom))
+                    .divide(new BigDecimal(denom), 0, RoundingMode.HALF_EVEN).longValueExact();
+            quantity[1] = finerDenom;
+        }
+    }
+
+    /**
+     * Returns the start of the balance period (UTC month) containing the timestamp
+     *
+     * @param timestamp Timestamp in milliseconds
+     * @return Start of the balance period in milliseconds
+     */
+    private static long floorBalancePeriod(long timestamp) {
+        return new DateTime(timestamp, DateTimeZone.UTC).withDayOfMonth(1).withTimeAtStartOfDay().getMillis();
+    }
+
+    /**
+     * Returns the start of the first balance period (UTC month) which starts at or after the timestamp
+     *
+     * @param timestamp Timestamp in milliseconds
+     * @return Start of the balance period in milliseconds
+     */
+    private static long ceilBalancePeriod(long timestamp) {
+        long periodStart = floorBalancePeriod(timestamp);
+        if (periodStart == timestamp) {
+            return periodStart;
+        }
+        return new DateTime(periodStart, DateTimeZone.UTC).plusMonths(1).getMillis();
     }
 
     /**
@@ -457,4 +753,106 @@ public class SplitsDbAdapter extends DatabaseAdapter<Split> {
         }
     }
 
+    /**
+     * Returns the converter of per-currency split quantity totals of this adapter
+     */
+    BalanceConverter getBalanceConverter() {
+        if (mBalanceConverter == null) {
+            mBalanceConverter = new BalanceConverter(mDb);
+        }
+        return mBalanceConverter;
+    }
+
+    /**
+     * Converts per-currency split quantity totals into a balance in a single currency.
+     * <p>The commodities and prices are looked up in the in-memory registry and price index of the book,
+     * so converting does not query the database once they are loaded.</p>
+     */
+    static class BalanceConverter {
+        private final CommoditiesDbAdapter mCommoditiesDbAdapter;
+        private final PricesDbAdapter mPricesDbAdapter;
+
+        BalanceConverter(SQLiteDatabase db) {
+            AdapterRegistry registry = AdapterRegistry.getInstance(db);
+            mCommoditiesDbAdapter = registry.getCommoditiesDbAdapter();
+            mPricesDbAdapter = registry.getPricesDbAdapter();
+        }
+
+        /**
+         * Returns the balance of the quantities in the specified currency.
+         * Quantities in other currencies are converted using the latest price, or ignored if there is no price.
+         *
+         * @param quantities            Map of currency code to the numerator and denominator of the quantity
+         * @param currencyCode          Currency code of the balance
+         * @param hasDebitNormalBalance Does the final balance has normal debit credit meaning
+         * @return Balance of the quantities
+         */
+        Money convert(Map<String, long[]> quantities, String currencyCode, boolean hasDebitNormalBalance) {
+            return convert(quantities, currencyCode, hasDebitNormalBalance, Long.MAX_VALUE);
+        }
+
+        /**
+         * Returns the balance of the quantities in the specified currency.
+         * Quantities in other currencies are converted using the price as of a date, or ignored if there is no price.
+         *
+         * @param quantities            Map of currency code to the numerator and denominator of the quantity
+         * @param currencyCode          Currency code of the balance
+         * @param hasDebitNormalBalance Does the final balance has normal debit credit meaning
+         * @param timestamp             Date of the prices, or {@link Long#MAX_VALUE} for the latest prices
+         * @return Balance of the quantities
+         * @see PricesDbAdapter#getPrice(String, String, long)
+         */
+        Money convert(Map<String, long[]> quantities, String currencyCode, boolean hasDebitNormalBalance,
+                      long timestamp) {
+            MoneyAccumulator total = new MoneyAccumulator(currencyCode);
+            accumulate(total, quantities, hasDebitNormalBalance, timestamp);
+            return total.toMoney();
+        }
+
+        /**
+         * Adds the balance of the quantities to a total, in the commodity of the total.
+         * Quantities in other currencies are converted using the price as of a date, or ignored if there is no price.
+         *
+         * @param total                 Accumulator to which the balance is added
+         * @param quantities            Map of currency code to the numerator and denominator of the quantity
+         * @param hasDebitNormalBalance Does the final balance has normal debit credit meaning
+         * @param timestamp             Date of the prices, or {@link Long#MAX_VALUE} for the latest prices
+         */
+        void accumulate(MoneyAccumulator total, Map<String, long[]> quantities, boolean hasDebitNormalBalance,
+                        long timestamp) {
+            String currencyCode = total.getCommodity().getCurrencyCode();
+            Commodity commodity = null;
+            for (Map.Entry<String, long[]> entry : quantities.entrySet()) {
+                String commodityCode = entry.getKey();
+                long amount_num = entry.getValue()[0];
+                long amount_denom = entry.getValue()[1];
+                if (commodityCode.equals("XXX") || amount_num == 0) {
+                    // ignore custom currency
+                    continue;
+                }
+                if (!hasDebitNormalBalance) {
+                    amount_num = -amount_num;
+                }
+                if (commodityCode.equals(currencyCode)) {
+                    // currency matches
+                    total.add(amount_num, amount_denom);
+                } else {
+                    // there is a second currency involved
+                    if (commodity == null) {
+                        commodity = mCommoditiesDbAdapter.getCommodity(currencyCode);
+                    }
+                    Commodity fromCommodity = mCommoditiesDbAdapter.getCommodity(commodityCode);
+                    if (commodity == null || fromCommodity == null) {
+                        continue;
+                    }
+                    Pair<Long, Long> price = mPricesDbAdapter.getPrice(fromCommodity.getUID(), commodity.getUID(), timestamp);
+                    if (price.first <= 0 || price.second <= 0) {
+                        // no price exists, just ignore it
+                        continue;
+                    }
+                    total.addConverted(amount_num, amount_denom, price.first, price.second);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2012-2024 GnuCash Android developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.db.adapter;
+
+import static org.gnucash.android.db.DatabaseSchema.SplitEntry;
+import static org.gnucash.android.db.DatabaseSchema.TransactionEntry;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+
+import org.gnucash.android.model.Commodity;
+import org.gnucash.android.model.Split;
+import org.gnucash.android.model.Transaction;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over transactions together with their splits, building one {@link Transaction} at a time.
+ * <p>The transactions and their splits are read from two cursors sorted in the same order,
+ * so that the splits of each transaction follow each other. This avoids querying the splits
+ * of every transaction separately, and only the current transaction is held in memory.</p>
+ * <p>The iterator must be closed when it is no longer needed.</p>
+ *
+ * @see TransactionsDbAdapter#iterateTransactions(String, String[], String)
+ */
+public class TransactionIterator implements Iterator<Transaction>, Closeable {
+
+    /**
+     * Column of the split cursor with the currency code of the transaction
+     */
+    static final String COLUMN_TRANSACTION_CURRENCY = "trans_currency";
+
+    /**
+     * Column of the split cursor with the currency code of the account
+     */
+    static final String COLUMN_ACCOUNT_CURRENCY = "account_currency";
+
+    /**
+     * Column by which both cursors are sorted after the requested sort order,
+     * so that transactions with equal sort keys come in the same order
+     */
+    static final String TIE_BREAKER = TransactionEntry.TABLE_NAME + "." + TransactionEntry._ID;
+
+    private final TransactionsDbAdapter mTransactionsDbAdapter;
+    private final SplitsDbAdapter mSplitsDbAdapter;
+    private final Cursor mTransactionCursor;
+    private final Cursor mSplitCursor;
+
+    /**
+     * Commodities of the transactions, by currency code
+     */
+    private final Map<String, Commodity> mCommodities = new HashMap<>();
+
+    private boolean mHasNextTransaction;
+    private boolean mHasNextSplit;
+
+    TransactionIterator(@NonNull TransactionsDbAdapter transactionsDbAdapter,
+                        @NonNull Cursor transactionCursor, @NonNull Cursor splitCursor) {
+        mTransactionsDbAdapter = transactionsDbAdapter;
+        mSplitsDbAdapter = transactionsDbAdapter.getSplitDbAdapter();
+        mTransactionCursor = transactionCursor;
+        mSplitCursor = splitCursor;
+        mHasNextTransaction = mTransactionCursor.moveToFirst();
+        mHasNextSplit = mSplitCursor.moveToFirst();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return mHasNextTransaction;
+    }
+
+    @Override
+    public Transaction next() {
+        if (!mHasNextTransaction) {
+            throw new NoSuchElementException();
+        }
+        Transaction transaction = mTransactionsDbAdapter.buildTransaction(mTransactionCursor, mCommodities);
+        String transactionUID = transaction.getUID();
+
+        int transactionUIDColumn = mSplitCursor.getColumnIndexOrThrow(SplitEntry.COLUMN_TRANSACTION_UID);
+        int transactionCurrencyColumn = mSplitCursor.getColumnIndexOrThrow(COLUMN_TRANSACTION_CURRENCY);
+        int accountCurrencyColumn = mSplitCursor.getColumnIndexOrThrow(COLUMN_ACCOUNT_CURRENCY);
+        List<Split> splits = new ArrayList<>();
+        while (mHasNextSplit && transactionUID.equals(mSplitCursor.getString(transactionUIDColumn))) {
+            splits.add(mSplitsDbAdapter.buildModelInstance(mSplitCursor,
+                    mSplitCursor.getString(transactionCurrencyColumn),
+                    mSplitCursor.getString(accountCurrencyColumn)));
+            mHasNextSplit = mSplitCursor.moveToNext();
+        }
+        transaction.setSplits(splits);
+
+        mHasNextTransaction = mTransactionCursor.moveToNext();
+        return transaction;
+    }
+
+    /**
+     * Returns the number of transactions the iterator goes over
+     *
+     * @return Number of transactions
+     */
+    public int getCount() {
+        return mTransactionCursor.getCount();
+    }
+
+    /**
+     * Closes the underlying cursors
+     */
+    @Override
+    public void close() {
+        mTransactionCursor.close();
+        mSplitCursor.close();
+    }
+}
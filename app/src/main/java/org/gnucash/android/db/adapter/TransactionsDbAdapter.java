@@ -31,21 +31,26 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.database.sqlite.SQLiteStatement;
 import android.text.TextUtils;
+import android.util.Pair;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 import org.gnucash.android.app.GnuCashApplication;
 import org.gnucash.android.model.AccountType;
+import org.gnucash.android.model.Commodity;
 import org.gnucash.android.model.Money;
 import org.gnucash.android.model.Split;
 import org.gnucash.android.model.Transaction;
+import org.gnucash.android.model.TransactionType;
 import org.gnucash.android.util.TimestampHelper;
 
 import java.io.IOException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import timber.log.Timber;
 
@@ -59,6 +64,33 @@ import timber.log.Timber;
  */
 public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
 
+    /**
+     * Column with the numerator of the amount of a transaction in the account whose transactions are listed,
+     * signed like the account balance
+     *
+     * @see #fetchAllTransactionsForAccount(String)
+     */
+    public static final String COLUMN_ACCOUNT_AMOUNT_NUM = "account_amount_num";
+
+    /**
+     * Column with the denominator of {@link #COLUMN_ACCOUNT_AMOUNT_NUM}.
+     * <p>It is the largest denominator of the quantities of the splits in the account. Quantities with a
+     * smaller denominator are scaled up to it, which is exact when it is a multiple of theirs, as with
+     * the decimal fractions of commodities.</p>
+     */
+    public static final String COLUMN_ACCOUNT_AMOUNT_DENOM = "account_amount_denom";
+
+    /**
+     * Column with the number of splits of a transaction
+     */
+    public static final String COLUMN_SPLIT_COUNT = "split_count";
+
+    /**
+     * Column with the full name of the other account of a transaction with two splits which are a pair,
+     * or null if there is no such account
+     */
+    public static final String COLUMN_COUNTER_ACCOUNT_FULL_NAME = "counter_account_full_name";
+
     private final SplitsDbAdapter mSplitsDbAdapter;
 
     private final CommoditiesDbAdapter mCommoditiesDbAdapter;
@@ -81,7 +113,7 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
                 TransactionEntry.COLUMN_TEMPLATE
         });
         mSplitsDbAdapter = splitsDbAdapter;
-        mCommoditiesDbAdapter = new CommoditiesDbAdapter(db);
+        mCommoditiesDbAdapter = AdapterRegistry.getInstance(db).getCommoditiesDbAdapter();
     }
 
     /**
@@ -111,7 +143,7 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
             beginTransaction();
             Split imbalanceSplit = transaction.createAutoBalanceSplit();
             if (imbalanceSplit != null) {
-                String imbalanceAccountUID = new AccountsDbAdapter(mDb, this)
+                String imbalanceAccountUID = AdapterRegistry.getInstance(mDb).getAccountsDbAdapter()
                         .getOrCreateImbalanceAccountUID(transaction.getCommodity());
                 imbalanceSplit.setAccountUID(imbalanceAccountUID);
             }
@@ -205,25 +237,149 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
     /**
      * Returns a cursor to a set of all transactions which have a split belonging to the account with unique ID
      * <code>accountUID</code>.
+     * <p>Besides the transaction columns, the cursor holds the amount of each transaction in the account,
+     * its number of splits and the name of its counter account, so that the transactions can be listed
+     * without querying their splits.</p>
      *
      * @param accountUID UID of the account whose transactions are to be retrieved
      * @return Cursor holding set of transactions for particular account
      * @throws java.lang.IllegalArgumentException if the accountUID is null
      */
     public Cursor fetchAllTransactionsForAccount(String accountUID) {
+        Pair<String, String[]> query = buildAccountTransactionsQuery(accountUID);
+        return mDb.rawQuery(query.first, query.second);
+    }
+
+    /**
+     * Builds the query of {@link #fetchAllTransactionsForAccount(String)}
+     *
+     * @param accountUID UID of the account whose transactions are to be retrieved
+     * @return SQL query and its arguments
+     */
+    @VisibleForTesting
+    public Pair<String, String[]> buildAccountTransactionsQuery(String accountUID) {
         SQLiteQueryBuilder queryBuilder = new SQLiteQueryBuilder();
         queryBuilder.setTables(TransactionEntry.TABLE_NAME
                 + " INNER JOIN " + SplitEntry.TABLE_NAME + " ON "
                 + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + " = "
                 + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TRANSACTION_UID);
         queryBuilder.setDistinct(true);
-        String[] projectionIn = new String[]{TransactionEntry.TABLE_NAME + ".*"};
+        String[] projectionIn = getAccountTransactionColumns(accountUID);
         String selection = SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_ACCOUNT_UID + " = ?"
                 + " AND " + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TEMPLATE + " = 0";
         String[] selectionArgs = new String[]{accountUID};
         String sortOrder = TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TIMESTAMP + " DESC";
 
-        return queryBuilder.query(mDb, projectionIn, selection, selectionArgs, null, null, sortOrder);
+        String sql = queryBuilder.buildQuery(projectionIn, selection, null, null, sortOrder, null);
+        return new Pair<>(sql, selectionArgs);
+    }
+
+    /**
+     * Returns a page of the transactions which have a split belonging to the account with unique ID
+     * <code>accountUID</code>, sorted like {@link #fetchAllTransactionsForAccount(String)}.
+     * <p>The transactions are sorted by descending timestamp and record ID. Each page starts after the
+     * last transaction of the previous page, identified by its timestamp and record ID, so that the
+     * query does not need to skip the transactions of the previous pages.
+     * Pass {@link Long#MAX_VALUE} for both to get the first page.</p>
+     *
+     * @param accountUID      UID of the account whose transactions are to be retrieved
+     * @param beforeTimestamp Timestamp of the last transaction of the previous page
+     * @param beforeId        Record ID of the last transaction of the previous page
+     * @param limit           Maximum number of transactions in the page
+     * @return Cursor holding a page of transactions for particular account
+     */
+    public Cursor fetchTransactionsPageForAccount(String accountUID, long beforeTimestamp, long beforeId, int limit) {
+        Pair<String, String[]> query = buildTransactionsPageQuery(accountUID, beforeTimestamp, beforeId, limit);
+        return mDb.rawQuery(query.first, query.second);
+    }
+
+    /**
+     * Builds the query of {@link #fetchTransactionsPageForAccount(String, long, long, int)}
+     *
+     * @param accountUID      UID of the account whose transactions are to be retrieved
+     * @param beforeTimestamp Timestamp of the last transaction of the previous page
+     * @param beforeId        Record ID of the last transaction of the previous page
+     * @param limit           Maximum number of transactions in the page
+     * @return SQL query and its arguments
+     */
+    @VisibleForTesting
+    public Pair<String, String[]> buildTransactionsPageQuery(String accountUID, long beforeTimestamp, long beforeId,
+                                                             int limit) {
+        SQLiteQueryBuilder queryBuilder = new SQLiteQueryBuilder();
+        queryBuilder.setTables(TransactionEntry.TABLE_NAME
+                + " INNER JOIN " + SplitEntry.TABLE_NAME + " ON "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + " = "
+                + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TRANSACTION_UID);
+        queryBuilder.setDistinct(true);
+        String timestampColumn = TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TIMESTAMP;
+        String idColumn = TransactionEntry.TABLE_NAME + "." + TransactionEntry._ID;
+        String[] projectionIn = getAccountTransactionColumns(accountUID);
+        String selection = SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_ACCOUNT_UID + " = ?"
+                + " AND " + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TEMPLATE + " = 0"
+                + " AND (" + timestampColumn + " < ? OR (" + timestampColumn + " = ? AND " + idColumn + " < ?))";
+        String[] selectionArgs = new String[]{accountUID, Long.toString(beforeTimestamp),
+                Long.toString(beforeTimestamp), Long.toString(beforeId)};
+        String sortOrder = timestampColumn + " DESC, " + idColumn + " DESC";
+
+        String sql = queryBuilder.buildQuery(projectionIn, selection, null, null, sortOrder,
+                Integer.toString(limit));
+        return new Pair<>(sql, selectionArgs);
+    }
+
+    /**
+     * Returns the columns of the transactions listed for an account: all transaction columns,
+     * followed by {@link #COLUMN_ACCOUNT_AMOUNT_NUM}, {@link #COLUMN_ACCOUNT_AMOUNT_DENOM},
+     * {@link #COLUMN_SPLIT_COUNT} and {@link #COLUMN_COUNTER_ACCOUNT_FULL_NAME}
+     *
+     * @param accountUID GUID of the account whose transactions are listed
+     * @return Projection for a query on the transactions table
+     */
+    private String[] getAccountTransactionColumns(String accountUID) {
+        String account = DatabaseUtils.sqlEscapeString(accountUID);
+        String transactionUID = TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID;
+        // splits which increase the balance of the account
+        TransactionType increaseType = TransactionType.DEBIT;
+        Cursor cursor = mDb.query(AccountEntry.TABLE_NAME, new String[]{AccountEntry.COLUMN_TYPE},
+                AccountEntry.COLUMN_UID + " = ?", new String[]{accountUID}, null, null, null);
+        try {
+            if (cursor.moveToFirst() && !AccountType.valueOf(cursor.getString(0)).hasDebitNormalBalance()) {
+                increaseType = TransactionType.CREDIT;
+            }
+        } finally {
+            cursor.close();
+        }
+        String accountSplits = " FROM " + SplitEntry.TABLE_NAME + " AS s"
+                + " WHERE s." + SplitEntry.COLUMN_TRANSACTION_UID + " = " + transactionUID
+                + " AND s." + SplitEntry.COLUMN_ACCOUNT_UID + " = " + account;
+        String maxDenom = "(SELECT MAX(d." + SplitEntry.COLUMN_QUANTITY_DENOM + ")"
+                + " FROM " + SplitEntry.TABLE_NAME + " AS d"
+                + " WHERE d." + SplitEntry.COLUMN_TRANSACTION_UID + " = " + transactionUID
+                + " AND d." + SplitEntry.COLUMN_ACCOUNT_UID + " = " + account + ")";
+
+        // the quantities of the splits may have different denominators, so they are all scaled to the largest one
+        return new String[]{
+                TransactionEntry.TABLE_NAME + ".*",
+                "(SELECT SUM(CASE WHEN s." + SplitEntry.COLUMN_TYPE + " = '" + increaseType.name() + "'"
+                        + " THEN s." + SplitEntry.COLUMN_QUANTITY_NUM + " ELSE - s." + SplitEntry.COLUMN_QUANTITY_NUM + " END"
+                        + " * " + maxDenom + " / s." + SplitEntry.COLUMN_QUANTITY_DENOM + ")"
+                        + accountSplits + ") AS " + COLUMN_ACCOUNT_AMOUNT_NUM,
+                maxDenom + " AS " + COLUMN_ACCOUNT_AMOUNT_DENOM,
+                "(SELECT COUNT(*) FROM " + SplitEntry.TABLE_NAME + " AS s"
+                        + " WHERE s." + SplitEntry.COLUMN_TRANSACTION_UID + " = " + transactionUID + ") AS " + COLUMN_SPLIT_COUNT,
+                // the split in another account with the same value and the opposite type, see Split.isPairOf()
+                "(SELECT a." + AccountEntry.COLUMN_FULL_NAME + " FROM " + SplitEntry.TABLE_NAME + " AS s"
+                        + " INNER JOIN " + SplitEntry.TABLE_NAME + " AS o ON o." + SplitEntry.COLUMN_TRANSACTION_UID
+                        + " = s." + SplitEntry.COLUMN_TRANSACTION_UID
+                        + " INNER JOIN " + AccountEntry.TABLE_NAME + " AS a ON a." + AccountEntry.COLUMN_UID
+                        + " = o." + SplitEntry.COLUMN_ACCOUNT_UID
+                        + " WHERE s." + SplitEntry.COLUMN_TRANSACTION_UID + " = " + transactionUID
+                        + " AND s." + SplitEntry.COLUMN_ACCOUNT_UID + " = " + account
+                        + " AND o." + SplitEntry.COLUMN_ACCOUNT_UID + " <> " + account
+                        + " AND o." + SplitEntry.COLUMN_TYPE + " <> s." + SplitEntry.COLUMN_TYPE
+                        + " AND o." + SplitEntry.COLUMN_VALUE_NUM + " * s." + SplitEntry.COLUMN_VALUE_DENOM
+                        + " = s." + SplitEntry.COLUMN_VALUE_NUM + " * o." + SplitEntry.COLUMN_VALUE_DENOM
+                        + " LIMIT 1) AS " + COLUMN_COUNTER_ACCOUNT_FULL_NAME
+        };
     }
 
     /**
@@ -305,16 +461,7 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
      * @return List of {@link Transaction}s for account with UID <code>accountUID</code>
      */
     public List<Transaction> getAllTransactionsForAccount(String accountUID) {
-        Cursor c = fetchAllTransactionsForAccount(accountUID);
-        ArrayList<Transaction> transactionsList = new ArrayList<>();
-        try {
-            while (c.moveToNext()) {
-                transactionsList.add(buildModelInstance(c));
-            }
-        } finally {
-            c.close();
-        }
-        return transactionsList;
+        return toList(iterateTransactionsForAccount(accountUID, false));
     }
 
     /**
@@ -323,14 +470,96 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
      * @return List of all transactions
      */
     public List<Transaction> getAllTransactions() {
-        Cursor cursor = fetchAllRecords();
-        List<Transaction> transactions = new ArrayList<Transaction>();
+        return toList(iterateTransactions(null, null, null));
+    }
+
+    /**
+     * Returns an iterator over the transactions matching a condition, together with their splits.
+     * <p>All splits are read with a single query alongside the transactions, instead of one query per transaction.
+     * Only the current transaction is kept in memory, so this should be preferred over building
+     * lists when going through many transactions. The iterator must be closed after use.</p>
+     *
+     * @param where     SQL WHERE clause without the "WHERE" itself. Columns must be qualified with the transactions table name
+     * @param whereArgs Arguments to substitute question marks for
+     * @param orderBy   Sort order of the transactions. Columns must be qualified with the transactions table name
+     * @return Iterator over the transactions
+     */
+    public TransactionIterator iterateTransactions(@Nullable String where, @Nullable String[] whereArgs, @Nullable String orderBy) {
+        String sortOrder = TextUtils.isEmpty(orderBy)
+                ? TransactionIterator.TIE_BREAKER
+                : orderBy + ", " + TransactionIterator.TIE_BREAKER;
+        Cursor transactionCursor = mDb.query(TransactionEntry.TABLE_NAME, null, where, whereArgs, null, null, sortOrder);
+        Cursor splitCursor;
+        try {
+            splitCursor = mDb.query(SplitEntry.TABLE_NAME
+                            + " INNER JOIN " + TransactionEntry.TABLE_NAME + " ON "
+                            + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + " = "
+                            + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TRANSACTION_UID
+                            + " INNER JOIN " + AccountEntry.TABLE_NAME + " ON "
+                            + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_UID + " = "
+                            + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_ACCOUNT_UID,
+                    new String[]{SplitEntry.TABLE_NAME + ".*",
+                            TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_CURRENCY
+                                    + " AS " + TransactionIterator.COLUMN_TRANSACTION_CURRENCY,
+                            AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_CURRENCY
+                                    + " AS " + TransactionIterator.COLUMN_ACCOUNT_CURRENCY},
+                    where, whereArgs, null, null,
+                    sortOrder + ", " + SplitEntry.TABLE_NAME + "." + SplitEntry._ID);
+        } catch (RuntimeException e) {
+            transactionCursor.close();
+            throw e;
+        }
+        return new TransactionIterator(this, transactionCursor, splitCursor);
+    }
+
+    /**
+     * Returns an iterator over the transactions which have a split in an account, newest first
+     *
+     * @param accountUID GUID of the account
+     * @param template   {@code true} to iterate over the template transactions of scheduled actions instead
+     * @return Iterator over the transactions
+     * @see #iterateTransactions(String, String[], String)
+     */
+    public TransactionIterator iterateTransactionsForAccount(String accountUID, boolean template) {
+        return iterateTransactionsForAccount(accountUID, template, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns an iterator over the transactions which have a split in an account
+     * and a time in an interval, newest first
+     *
+     * @param accountUID GUID of the account
+     * @param template   {@code true} to iterate over the template transactions of scheduled actions instead
+     * @param startTime  Start of the interval (inclusive) in milliseconds since Epoch
+     * @param endTime    End of the interval (exclusive) in milliseconds since Epoch
+     * @return Iterator over the transactions
+     * @see #iterateTransactions(String, String[], String)
+     */
+    public TransactionIterator iterateTransactionsForAccount(String accountUID, boolean template,
+                                                             long startTime, long endTime) {
+        String where = "EXISTS (SELECT 1 FROM " + SplitEntry.TABLE_NAME + " AS account_split"
+                + " WHERE account_split." + SplitEntry.COLUMN_TRANSACTION_UID + " = "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID
+                + " AND account_split." + SplitEntry.COLUMN_ACCOUNT_UID + " = ?)"
+                + " AND " + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TEMPLATE + " = " + (template ? 1 : 0);
+        String[] whereArgs = new String[]{accountUID};
+        if (startTime != Long.MIN_VALUE || endTime != Long.MAX_VALUE) {
+            where += " AND " + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TIMESTAMP + " >= ?"
+                    + " AND " + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TIMESTAMP + " < ?";
+            whereArgs = new String[]{accountUID, Long.toString(startTime), Long.toString(endTime)};
+        }
+        return iterateTransactions(where, whereArgs,
+                TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TIMESTAMP + " DESC");
+    }
+
+    private static List<Transaction> toList(TransactionIterator iterator) {
+        List<Transaction> transactions = new ArrayList<>(iterator.getCount());
         try {
-            while (cursor.moveToNext()) {
-                transactions.add(buildModelInstance(cursor));
+            while (iterator.hasNext()) {
+                transactions.add(iterator.next());
             }
         } finally {
-            cursor.close();
+            iterator.close();
         }
         return transactions;
     }
@@ -426,6 +655,20 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
      */
     @Override
     public Transaction buildModelInstance(@NonNull final Cursor c) {
+        Transaction transaction = buildTransaction(c, null);
+        long transactionID = c.getLong(c.getColumnIndexOrThrow(TransactionEntry._ID));
+        transaction.setSplits(mSplitsDbAdapter.getSplitsForTransaction(transactionID));
+        return transaction;
+    }
+
+    /**
+     * Builds a transaction instance without its splits from the provided cursor.
+     *
+     * @param c           Cursor pointing to transaction record in database
+     * @param commodities Optional cache of the commodities already looked up, by currency code
+     * @return {@link Transaction} object without splits
+     */
+    Transaction buildTransaction(@NonNull final Cursor c, @Nullable Map<String, Commodity> commodities) {
         String name = c.getString(c.getColumnIndexOrThrow(TransactionEntry.COLUMN_DESCRIPTION));
         Transaction transaction = new Transaction(name);
         populateBaseModelAttributes(c, transaction);
@@ -435,10 +678,15 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
         transaction.setExported(c.getInt(c.getColumnIndexOrThrow(TransactionEntry.COLUMN_EXPORTED)) != 0);
         transaction.setTemplate(c.getInt(c.getColumnIndexOrThrow(TransactionEntry.COLUMN_TEMPLATE)) != 0);
         String currencyCode = c.getString(c.getColumnIndexOrThrow(TransactionEntry.COLUMN_CURRENCY));
-        transaction.setCommodity(mCommoditiesDbAdapter.getCommodity(currencyCode));
+        Commodity commodity = commodities == null ? null : commodities.get(currencyCode);
+        if (commodity == null) {
+            commodity = mCommoditiesDbAdapter.getCommodity(currencyCode);
+            if (commodities != null && commodity != null) {
+                commodities.put(currencyCode, commodity);
+            }
+        }
+        transaction.setCommodity(commodity);
         transaction.setScheduledActionUID(c.getString(c.getColumnIndexOrThrow(TransactionEntry.COLUMN_SCHEDX_ACTION_UID)));
-        long transactionID = c.getLong(c.getColumnIndexOrThrow(TransactionEntry._ID));
-        transaction.setSplits(mSplitsDbAdapter.getSplitsForTransaction(transactionID));
 
         return transaction;
     }
@@ -485,15 +733,13 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
      * @return Number of transactions with splits in the account
      */
     public int getTransactionsCount(String accountUID) {
-        Cursor cursor = fetchAllTransactionsForAccount(accountUID);
-        int count = 0;
-        if (cursor == null)
-            return count;
-        else {
-            count = cursor.getCount();
-            cursor.close();
-        }
-        return count;
+        String sql = "SELECT COUNT(DISTINCT " + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + ")"
+                + " FROM " + TransactionEntry.TABLE_NAME + " INNER JOIN " + SplitEntry.TABLE_NAME + " ON "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + " = "
+                + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TRANSACTION_UID
+                + " WHERE " + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_ACCOUNT_UID + " = ?"
+                + " AND " + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TEMPLATE + " = 0";
+        return (int) DatabaseUtils.longForQuery(mDb, sql, new String[]{accountUID});
     }
 
     /**
@@ -514,13 +760,7 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
      * @return List of all scheduled transactions
      */
     public List<Transaction> getScheduledTransactionsForAccount(String accountUID) {
-        try (Cursor cursor = fetchScheduledTransactionsForAccount(accountUID)) {
-            List<Transaction> scheduledTransactions = new ArrayList<>();
-            while (cursor.moveToNext()) {
-                scheduledTransactions.add(buildModelInstance(cursor));
-            }
-            return scheduledTransactions;
-        }
+        return toList(iterateTransactionsForAccount(accountUID, true));
     }
 
     /**
@@ -671,6 +911,29 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
      * @see #getTimestampOfEarliestTransaction(AccountType, String)
      */
     private long getTimestamp(String mod, AccountType type, String currencyCode) {
+        Pair<String, String[]> query = buildTimestampQuery(mod, type, currencyCode);
+        Cursor cursor = mDb.rawQuery(query.first, query.second);
+        long timestamp = 0;
+        if (cursor != null) {
+            if (cursor.moveToFirst()) {
+                timestamp = cursor.getLong(0);
+            }
+            cursor.close();
+        }
+        return timestamp;
+    }
+
+    /**
+     * Builds the query of {@link #getTimestampOfEarliestTransaction(AccountType, String)}
+     * and {@link #getTimestampOfLatestTransaction(AccountType, String)}
+     *
+     * @param mod          Mode (either MAX or MIN)
+     * @param type         AccountType
+     * @param currencyCode the currency code
+     * @return SQL query and its arguments
+     */
+    @VisibleForTesting
+    public static Pair<String, String[]> buildTimestampQuery(String mod, AccountType type, String currencyCode) {
         String sql = "SELECT " + mod + "(" + TransactionEntry.COLUMN_TIMESTAMP + ")"
                 + " FROM " + TransactionEntry.TABLE_NAME
                 + " INNER JOIN " + SplitEntry.TABLE_NAME + " ON "
@@ -682,15 +945,7 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
                 + " WHERE " + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_TYPE + " = ? AND "
                 + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_CURRENCY + " = ? AND "
                 + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TEMPLATE + " = 0";
-        Cursor cursor = mDb.rawQuery(sql, new String[]{type.name(), currencyCode});
-        long timestamp = 0;
-        if (cursor != null) {
-            if (cursor.moveToFirst()) {
-                timestamp = cursor.getLong(0);
-            }
-            cursor.close();
-        }
-        return timestamp;
+        return new Pair<>(sql, new String[]{type.name(), currencyCode});
     }
 
     public long getTransactionsCountForAccount(String accountUID) {
@@ -31,6 +31,7 @@ import android.text.TextUtils;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.content.FileProvider;
 
 import com.dropbox.core.DbxException;
@@ -52,9 +53,8 @@ import com.owncloud.android.lib.resources.files.UploadRemoteFileOperation;
 
 import org.gnucash.android.R;
 import org.gnucash.android.app.GnuCashApplication;
-import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.db.adapter.AdapterRegistry;
 import org.gnucash.android.db.adapter.DatabaseAdapter;
-import org.gnucash.android.db.adapter.SplitsDbAdapter;
 import org.gnucash.android.db.adapter.TransactionsDbAdapter;
 import org.gnucash.android.export.csv.CsvAccountExporter;
 import org.gnucash.android.export.csv.CsvTransactionsExporter;
@@ -68,12 +68,12 @@ import org.gnucash.android.ui.common.GnucashProgressDialog;
 import org.gnucash.android.ui.settings.BackupPreferenceFragment;
 import org.gnucash.android.ui.transaction.TransactionsActivity;
 import org.gnucash.android.util.BackupManager;
-import org.gnucash.android.util.FileUtils;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
@@ -134,10 +134,19 @@ public class ExportAsyncTask extends AsyncTask<ExportParams, Void, Integer> {
         Exporter exporter = getExporter(exportParams);
         List<String> exportedFiles;
 
+        ExportSink sink = null;
         try {
+            sink = createExportSink(exportParams, exporter);
+            if (sink != null) {
+                exporter.setExportSink(sink);
+            }
             exportedFiles = exporter.generateExport();
         } catch (final Throwable e) {
             Timber.e(e, "Error exporting: %s", e.getMessage());
+            if (sink != null) {
+                // don't leave a truncated file at the destination chosen by the user
+                sink.abort();
+            }
             if (mContext instanceof Activity) {
                 ((Activity) mContext).runOnUiThread(new Runnable() {
                     @Override
@@ -240,7 +249,38 @@ public class ExportAsyncTask extends AsyncTask<ExportParams, Void, Integer> {
     }
 
     /**
-     * Moves the generated export files to the target specified by the user
+     * Returns the destination to which the export files are written.
+     * <p>The SD card folder, the document chosen by the user and Google Drive are written to
+     * directly. The other targets need the files in the cache folder of the exporter: sharing
+     * grants access to them, and the Dropbox and ownCloud uploaders read them from there.</p>
+     *
+     * @return Sink of the export, or {@code null} to write to the cache folder
+     */
+    @Nullable
+    private ExportSink createExportSink(ExportParams exportParams, Exporter exporter) {
+        switch (exportParams.getExportTarget()) {
+            case SD_CARD:
+                return ExportSink.toDirectory(new File(Exporter.getExportFolderPath(exporter.getBookUID())));
+
+            case URI:
+                Uri exportUri = exportParams.getExportLocation();
+                if (exportUri == null) {
+                    Timber.w("No URI found for export destination");
+                    return null;
+                }
+                return ExportSink.toUri(mContext.getContentResolver(), exportUri);
+
+            case GOOGLE_DRIVE:
+                return createGoogleDriveSink(exporter);
+
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Moves the generated export files to the target specified by the user,
+     * unless they have been written there directly
      *
      * @throws Exporter.ExporterException if the move fails
      */
@@ -254,20 +294,14 @@ public class ExportAsyncTask extends AsyncTask<ExportParams, Void, Integer> {
                 moveExportToDropbox(exportParams, exportedFiles);
                 break;
 
-            case GOOGLE_DRIVE:
-                moveExportToGoogleDrive(exportParams, exporter, exportedFiles);
-                break;
-
             case OWNCLOUD:
                 moveExportToOwnCloud(exportParams, exporter, exportedFiles);
                 break;
 
+            case GOOGLE_DRIVE:
             case SD_CARD:
-                moveExportToSDCard(exportParams, exporter, exportedFiles);
-                break;
-
             case URI:
-                moveExportToUri(exportParams, exportedFiles);
+                // already written by the export sink
                 break;
 
             default:
@@ -276,81 +310,93 @@ public class ExportAsyncTask extends AsyncTask<ExportParams, Void, Integer> {
     }
 
     /**
-     * Move the exported files to a specified URI.
-     * This URI could be a Storage Access Framework file
+     * Returns a sink which uploads the exported files to a GnuCash folder on Google Drive
      *
-     * @throws Exporter.ExporterException if something failed while moving the exported file
+     * @deprecated Explicit Google Drive integration is deprecated, use Storage Access Framework. See {@link ExportSink#toUri}
      */
-    private void moveExportToUri(ExportParams exportParams, List<String> exportedFiles) throws Exporter.ExporterException {
-        Uri exportUri = exportParams.getExportLocation();
-        if (exportUri == null) {
-            Timber.w("No URI found for export destination");
-            return;
-        }
+    @Deprecated
+    private ExportSink createGoogleDriveSink(Exporter exporter) {
+        Timber.i("Exporting to Google Drive");
+        final GoogleApiClient googleApiClient = BackupPreferenceFragment.getGoogleApiClient(GnuCashApplication.getAppContext());
+        googleApiClient.blockingConnect();
 
-        if (exportedFiles.size() > 0) {
-            try {
-                OutputStream outputStream = mContext.getContentResolver().openOutputStream(exportUri);
-                // Now we always get just one file exported (multi-currency QIFs are zipped)
-                FileUtils.moveFile(exportedFiles.get(0), outputStream);
-            } catch (Exception ex) {
-                throw new Exporter.ExporterException(exportParams, ex);
-            }
-        }
+        SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(mContext);
+        String folderId = sharedPreferences.getString(mContext.getString(R.string.key_google_drive_app_folder_id), "");
+        DriveFolder folder = DriveId.decodeFromString(folderId).asDriveFolder();
+        return new GoogleDriveSink(googleApiClient, folder, exporter.getExportMimeType());
     }
 
     /**
-     * Move the exported files to a GnuCash folder on Google Drive
+     * Writes each exported file to the contents of a new Google Drive file,
+     * which is created in the folder once the file is complete
      *
-     * @throws Exporter.ExporterException if something failed while moving the exported file
-     * @deprecated Explicit Google Drive integration is deprecated, use Storage Access Framework. See {@link #moveExportToUri()}
+     * @deprecated Explicit Google Drive integration is deprecated, use Storage Access Framework. See {@link ExportSink#toUri}
      */
     @Deprecated
-    private void moveExportToGoogleDrive(ExportParams exportParams, Exporter exporter, List<String> exportedFiles) throws Exporter.ExporterException {
-        Timber.i("Moving exported file to Google Drive");
-        final GoogleApiClient googleApiClient = BackupPreferenceFragment.getGoogleApiClient(GnuCashApplication.getAppContext());
-        googleApiClient.blockingConnect();
+    private static final class GoogleDriveSink extends ExportSink {
+        private final GoogleApiClient mGoogleApiClient;
+        private final DriveFolder mFolder;
+        private final String mMimeType;
+
+        GoogleDriveSink(GoogleApiClient googleApiClient, DriveFolder folder, String mimeType) {
+            mGoogleApiClient = googleApiClient;
+            mFolder = folder;
+            mMimeType = mimeType;
+        }
 
-        SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(mContext);
-        String folderId = sharedPreferences.getString(mContext.getString(R.string.key_google_drive_app_folder_id), "");
-        DriveFolder folder = DriveId.decodeFromString(folderId).asDriveFolder();
-        try {
-            for (String exportedFilePath : exportedFiles) {
-                DriveApi.DriveContentsResult driveContentsResult =
-                    Drive.DriveApi.newDriveContents(googleApiClient).await(1, TimeUnit.MINUTES);
-                if (!driveContentsResult.getStatus().isSuccess()) {
-                    throw new Exporter.ExporterException(exportParams,
-                        "Error while trying to create new file contents");
+        @NonNull
+        @Override
+        protected OutputStream createStream(@NonNull final String fileName) throws IOException {
+            DriveApi.DriveContentsResult driveContentsResult =
+                Drive.DriveApi.newDriveContents(mGoogleApiClient).await(1, TimeUnit.MINUTES);
+            if (!driveContentsResult.getStatus().isSuccess()) {
+                throw new IOException("Error while trying to create new file contents");
+            }
+            final DriveContents driveContents = driveContentsResult.getDriveContents();
+            return new FilterOutputStream(driveContents.getOutputStream()) {
+                private boolean mClosed = false;
+
+                @Override
+                public void write(@NonNull byte[] buffer, int offset, int length) throws IOException {
+                    out.write(buffer, offset, length);
                 }
-                final DriveContents driveContents = driveContentsResult.getDriveContents();
-                OutputStream outputStream = driveContents.getOutputStream();
-                File exportedFile = new File(exportedFilePath);
-                FileInputStream fileInputStream = new FileInputStream(exportedFile);
-                byte[] buffer = new byte[1024];
-                int count;
-
-                while ((count = fileInputStream.read(buffer)) >= 0) {
-                    outputStream.write(buffer, 0, count);
+
+                @Override
+                public void close() throws IOException {
+                    if (mClosed) {
+                        return;
+                    }
+                    mClosed = true;
+                    if (isAborted()) {
+                        driveContents.discard(mGoogleApiClient);
+                        return;
+                    }
+                    // the contents are committed by the creation of the file
+                    flush();
+                    createFile(fileName, driveContents);
                 }
-                fileInputStream.close();
-                outputStream.flush();
-                exportedFile.delete();
-
-                MetadataChangeSet changeSet = new MetadataChangeSet.Builder()
-                    .setTitle(exportedFile.getName())
-                    .setMimeType(exporter.getExportMimeType())
-                    .build();
-                // create a file on root folder
-                DriveFolder.DriveFileResult driveFileResult =
-                    folder.createFile(googleApiClient, changeSet, driveContents)
-                        .await(1, TimeUnit.MINUTES);
-                if (!driveFileResult.getStatus().isSuccess())
-                    throw new Exporter.ExporterException(exportParams, "Error creating file in Google Drive");
-
-                Timber.i("Created file with id: %s", driveFileResult.getDriveFile().getDriveId());
-            }
-        } catch (IOException e) {
-            throw new Exporter.ExporterException(exportParams, e);
+            };
+        }
+
+        private void createFile(String fileName, DriveContents driveContents) throws IOException {
+            MetadataChangeSet changeSet = new MetadataChangeSet.Builder()
+                .setTitle(fileName)
+                .setMimeType(mMimeType)
+                .build();
+            // create a file on root folder
+            DriveFolder.DriveFileResult driveFileResult =
+                mFolder.createFile(mGoogleApiClient, changeSet, driveContents)
+                    .await(1, TimeUnit.MINUTES);
+            if (!driveFileResult.getStatus().isSuccess())
+                throw new IOException("Error creating file in Google Drive");
+
+            Timber.i("Created file with id: %s", driveFileResult.getDriveFile().getDriveId());
+        }
+
+        @NonNull
+        @Override
+        protected String getLocation(@NonNull String fileName) {
+            return fileName;
         }
     }
 
@@ -427,32 +473,6 @@ public class ExportAsyncTask extends AsyncTask<ExportParams, Void, Integer> {
         return timeStampLong.toString();
     }
 
-    /**
-     * Moves the exported files from the internal storage where they are generated to
-     * external storage, which is accessible to the user.
-     *
-     * @return The list of files moved to the SD card.
-     * @deprecated Use the Storage Access Framework to save to SD card. See {@link #moveExportToUri(ExportParams, List)}
-     */
-    @Deprecated
-    private List<String> moveExportToSDCard(ExportParams exportParams, Exporter exporter, List<String> exportedFiles) throws Exporter.ExporterException {
-        Timber.i("Moving exported file to external storage");
-        new File(Exporter.getExportFolderPath(exporter.getBookUID()));
-        List<String> dstFiles = new ArrayList<>();
-
-        for (String src : exportedFiles) {
-            String dst = Exporter.getExportFolderPath(exporter.getBookUID()) + stripPathPart(src);
-            try {
-                FileUtils.moveFile(src, dst);
-                dstFiles.add(dst);
-            } catch (IOException e) {
-                throw new Exporter.ExporterException(exportParams, e);
-            }
-        }
-
-        return dstFiles;
-    }
-
     // "/some/path/filename.ext" -> "filename.ext"
     private String stripPathPart(String fullPathName) {
         return (new File(fullPathName)).getName();
@@ -469,9 +489,10 @@ public class ExportAsyncTask extends AsyncTask<ExportParams, Void, Integer> {
         boolean preserveOpeningBalances = GnuCashApplication.shouldSaveOpeningBalances(false);
 
         SQLiteDatabase db = GnuCashApplication.getActiveDb();
-        TransactionsDbAdapter transactionsDbAdapter = new TransactionsDbAdapter(db, new SplitsDbAdapter(db));
+        AdapterRegistry adapters = AdapterRegistry.getInstance(db);
+        TransactionsDbAdapter transactionsDbAdapter = adapters.getTransactionsDbAdapter();
         if (preserveOpeningBalances) {
-            openingBalances = new AccountsDbAdapter(db, transactionsDbAdapter).getAllOpeningBalanceTransactions();
+            openingBalances = adapters.getAccountsDbAdapter().getAllOpeningBalanceTransactions();
         }
         transactionsDbAdapter.deleteAllNonTemplateTransactions();
 
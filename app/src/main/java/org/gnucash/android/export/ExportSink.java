@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2012-2024 GnuCash Android developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.export;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipOutputStream;
+
+import timber.log.Timber;
+
+/**
+ * Destination of the files generated by an {@link Exporter}.
+ * <p>Exporters write their output directly to the streams opened by the sink, so that an export
+ * to its final location (a Storage Access Framework document, a folder or the stream of an
+ * uploader) is written only once. A file in the cache folder is only needed by the targets which
+ * take a file as input, or which have to read it again to retry an upload.</p>
+ * <p>The output can optionally be compressed with gzip. The files of an export which produces
+ * several of them are written as the entries of a zip archive, see {@link #openZipStream(String)}.</p>
+ * <p>Since the files are written in place, the caller of the export must {@link #abort()} the sink
+ * if the export fails, so that no truncated file is left at the destination.</p>
+ */
+public abstract class ExportSink {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final List<String> mExportedFiles = new ArrayList<>();
+    /**
+     * Names of the opened files, with the unbuffered streams returned by {@link #createStream(String)}
+     */
+    private final List<String> mFileNames = new ArrayList<>();
+    private final List<OutputStream> mStreams = new ArrayList<>();
+    private boolean mGzip = false;
+    private boolean mAborted = false;
+
+    /**
+     * Returns a sink which writes each file to the folder {@code directory}
+     * <p>The exported files are identified by their absolute path.</p>
+     *
+     * @param directory Folder of the exported files. It is created if needed
+     */
+    @NonNull
+    public static ExportSink toDirectory(@NonNull File directory) {
+        return new DirectorySink(directory);
+    }
+
+    /**
+     * Returns a sink which writes a single file to the document {@code uri}
+     * <p>The exported file is identified by its URI.</p>
+     *
+     * @param contentResolver Resolver used to open the document
+     * @param uri             Location of the document, such as a Storage Access Framework file
+     */
+    @NonNull
+    public static ExportSink toUri(@NonNull ContentResolver contentResolver, @NonNull Uri uri) {
+        return new UriSink(contentResolver, uri);
+    }
+
+    /**
+     * Compresses the files written to this sink with gzip.
+     * The extension ".gz" is added to their name
+     *
+     * @return This sink
+     */
+    @NonNull
+    public ExportSink gzipped() {
+        mGzip = true;
+        return this;
+    }
+
+    /**
+     * Opens the stream of a new exported file.
+     * <p>The file is complete once the stream has been closed.</p>
+     *
+     * @param fileName Name of the file, without any folder
+     * @return Buffered stream of the content of the file
+     * @throws IOException if the file could not be created
+     */
+    @NonNull
+    public final OutputStream openStream(@NonNull String fileName) throws IOException {
+        if (mGzip) {
+            return new GZIPOutputStream(openBufferedStream(fileName + ".gz"), BUFFER_SIZE);
+        }
+        return openBufferedStream(fileName);
+    }
+
+    /**
+     * Opens a new exported file as UTF-8 text
+     *
+     * @param fileName Name of the file, without any folder
+     * @return Buffered writer of the content of the file
+     * @throws IOException if the file could not be created
+     * @see #openStream(String)
+     */
+    @NonNull
+    public final Writer openWriter(@NonNull String fileName) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(openStream(fileName), "UTF-8"));
+    }
+
+    /**
+     * Opens a new zip archive, for exports made of several files.
+     * <p>The archive is never gzipped, since its entries are already compressed.</p>
+     *
+     * @param fileName Name of the archive, to which the extension ".zip" is added
+     * @return Stream of the archive, to which the caller adds the entries
+     * @throws IOException if the archive could not be created
+     */
+    @NonNull
+    public final ZipOutputStream openZipStream(@NonNull String fileName) throws IOException {
+        return new ZipOutputStream(openBufferedStream(fileName + ".zip"));
+    }
+
+    private OutputStream openBufferedStream(String fileName) throws IOException {
+        if (mAborted) {
+            throw new IOException("The export has been aborted");
+        }
+        OutputStream stream = createStream(fileName);
+        mFileNames.add(fileName);
+        mStreams.add(stream);
+        mExportedFiles.add(getLocation(fileName));
+        return new BufferedOutputStream(stream, BUFFER_SIZE);
+    }
+
+    /**
+     * Discards the files opened so far, after the export failed.
+     * <p>The streams which are still open are closed without flushing their buffers,
+     * then each file is removed from the destination. Errors are only logged, so that they do
+     * not hide the failure of the export. No file can be opened after the sink was aborted.</p>
+     */
+    public final void abort() {
+        if (mAborted) {
+            return;
+        }
+        mAborted = true;
+        for (OutputStream stream : mStreams) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                Timber.w(e, "Error closing an aborted export file");
+            }
+        }
+        for (String fileName : mFileNames) {
+            try {
+                discard(fileName);
+            } catch (IOException | RuntimeException e) {
+                Timber.e(e, "Error discarding the export file %s", getLocation(fileName));
+            }
+        }
+        mStreams.clear();
+        mFileNames.clear();
+        mExportedFiles.clear();
+    }
+
+    /**
+     * Returns {@code true} if {@link #abort()} has been called,
+     * so that the files should not be published when their stream is closed
+     */
+    protected final boolean isAborted() {
+        return mAborted;
+    }
+
+    /**
+     * Returns the location of the files opened so far, in the order they were opened
+     */
+    @NonNull
+    public List<String> getExportedFiles() {
+        return Collections.unmodifiableList(mExportedFiles);
+    }
+
+    /**
+     * Creates the unbuffered stream of an exported file
+     *
+     * @param fileName Name of the file, including the extensions added by the compression
+     */
+    @NonNull
+    protected abstract OutputStream createStream(@NonNull String fileName) throws IOException;
+
+    /**
+     * Returns the string which identifies an exported file in {@link #getExportedFiles()}
+     *
+     * @param fileName Name of the file, including the extensions added by the compression
+     */
+    @NonNull
+    protected abstract String getLocation(@NonNull String fileName);
+
+    /**
+     * Removes a file from the destination, when the sink is aborted.
+     * <p>Its stream has already been closed. Sinks which publish a file only when its stream
+     * is closed should check {@link #isAborted()} instead, and do nothing here.</p>
+     *
+     * @param fileName Name of the file, including the extensions added by the compression
+     * @throws IOException if the file could not be removed
+     */
+    protected void discard(@NonNull String fileName) throws IOException {
+    }
+
+    private static final class DirectorySink extends ExportSink {
+        private final File mDirectory;
+
+        DirectorySink(File directory) {
+            mDirectory = directory;
+        }
+
+        @NonNull
+        @Override
+        protected OutputStream createStream(@NonNull String fileName) throws IOException {
+            mDirectory.mkdirs();
+            return new FileOutputStream(new File(mDirectory, fileName));
+        }
+
+        @NonNull
+        @Override
+        protected String getLocation(@NonNull String fileName) {
+            return new File(mDirectory, fileName).getAbsolutePath();
+        }
+
+        @Override
+        protected void discard(@NonNull String fileName) throws IOException {
+            File file = new File(mDirectory, fileName);
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Cannot delete " + file);
+            }
+        }
+    }
+
+    private static final class UriSink extends ExportSink {
+        private final ContentResolver mContentResolver;
+        private final Uri mUri;
+        private boolean mOpened = false;
+
+        UriSink(ContentResolver contentResolver, Uri uri) {
+            mContentResolver = contentResolver;
+            mUri = uri;
+        }
+
+        @NonNull
+        @Override
+        protected OutputStream createStream(@NonNull String fileName) throws IOException {
+            if (mOpened) {
+                throw new IOException("The export location " + mUri + " can only hold one file");
+            }
+            OutputStream outputStream = mContentResolver.openOutputStream(mUri);
+            if (outputStream == null) {
+                throw new FileNotFoundException("Cannot open the export location " + mUri);
+            }
+            mOpened = true;
+            return outputStream;
+        }
+
+        @NonNull
+        @Override
+        protected String getLocation(@NonNull String fileName) {
+            return mUri.toString();
+        }
+
+        /**
+         * Deletes the document, since it was created for the export.
+         * If the provider does not support it, the document is truncated instead.
+         */
+        @Override
+        protected void discard(@NonNull String fileName) throws IOException {
+            if (ContentResolver.SCHEME_FILE.equals(mUri.getScheme())) {
+                File file = new File(mUri.getPath());
+                if (file.exists() && !file.delete()) {
+                    throw new IOException("Cannot delete " + file);
+                }
+                return;
+            }
+            try {
+                if (DocumentsContract.deleteDocument(mContentResolver, mUri)) {
+                    return;
+                }
+            } catch (FileNotFoundException | RuntimeException e) {
+                Timber.w(e, "Cannot delete the export location %s, truncating it", mUri);
+            }
+            OutputStream outputStream = mContentResolver.openOutputStream(mUri, "wt");
+            if (outputStream == null) {
+                throw new FileNotFoundException("Cannot open the export location " + mUri);
+            }
+            outputStream.close();
+        }
+    }
+}
@@ -28,12 +28,11 @@ import org.gnucash.android.app.GnuCashApplication;
 import org.gnucash.android.db.DatabaseHelper;
 import org.gnucash.android.db.DatabaseSchema;
 import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.db.adapter.AdapterRegistry;
 import org.gnucash.android.db.adapter.BooksDbAdapter;
-import org.gnucash.android.db.adapter.BudgetAmountsDbAdapter;
 import org.gnucash.android.db.adapter.BudgetsDbAdapter;
 import org.gnucash.android.db.adapter.CommoditiesDbAdapter;
 import org.gnucash.android.db.adapter.PricesDbAdapter;
-import org.gnucash.android.db.adapter.RecurrenceDbAdapter;
 import org.gnucash.android.db.adapter.ScheduledActionDbAdapter;
 import org.gnucash.android.db.adapter.SplitsDbAdapter;
 import org.gnucash.android.db.adapter.TransactionsDbAdapter;
@@ -75,10 +74,11 @@ public abstract class Exporter {
     protected final ExportParams mExportParams;
 
     /**
-     * Cache directory to which files will be first exported before moved to final destination.
+     * Cache directory to which files are exported when no {@link ExportSink} has been set.
      * <p>There is a different cache dir per export format, which has the name of the export format.<br/>
      * The cache dir is cleared every time a new {@link Exporter} is instantiated.
-     * The files created here are only accessible within this application, and should be copied to SD card before they can be shared
+     * The files created here are only accessible within this application, and are used by the
+     * export targets which need a local file, such as sharing or the cloud uploaders
      * </p>
      */
     private final File mCacheDir;
@@ -98,7 +98,12 @@ public abstract class Exporter {
     protected final CommoditiesDbAdapter mCommoditiesDbAdapter;
     protected final BudgetsDbAdapter mBudgetsDbAdapter;
     protected final Context mContext;
-    private String mExportCacheFilePath;
+    private String mExportFileName;
+
+    /**
+     * Destination of the exported files
+     */
+    private ExportSink mExportSink;
 
     /**
      * Database being currently exported
@@ -123,16 +128,16 @@ public abstract class Exporter {
         DatabaseHelper dbHelper = new DatabaseHelper(context, bookUID);
         SQLiteDatabase db = dbHelper.getReadableDatabase();
         mDb = db;
-        mSplitsDbAdapter = new SplitsDbAdapter(db);
-        mTransactionsDbAdapter = new TransactionsDbAdapter(db, mSplitsDbAdapter);
-        mAccountsDbAdapter = new AccountsDbAdapter(db, mTransactionsDbAdapter);
-        mPricesDbAdapter = new PricesDbAdapter(db);
-        mCommoditiesDbAdapter = new CommoditiesDbAdapter(db);
-        RecurrenceDbAdapter recurrenceDbAdapter = new RecurrenceDbAdapter(db);
-        mBudgetsDbAdapter = new BudgetsDbAdapter(db, new BudgetAmountsDbAdapter(db), recurrenceDbAdapter);
-        mScheduledActionDbAdapter = new ScheduledActionDbAdapter(db, recurrenceDbAdapter);
-
-        mExportCacheFilePath = null;
+        AdapterRegistry adapters = AdapterRegistry.getInstance(db);
+        mSplitsDbAdapter = adapters.getSplitsDbAdapter();
+        mTransactionsDbAdapter = adapters.getTransactionsDbAdapter();
+        mAccountsDbAdapter = adapters.getAccountsDbAdapter();
+        mPricesDbAdapter = adapters.getPricesDbAdapter();
+        mCommoditiesDbAdapter = adapters.getCommoditiesDbAdapter();
+        mBudgetsDbAdapter = adapters.getBudgetsDbAdapter();
+        mScheduledActionDbAdapter = adapters.getScheduledActionDbAdapter();
+
+        mExportFileName = null;
         mCacheDir = new File(context.getCacheDir(), params.getExportFormat().name());
         mCacheDir.mkdirs();
         purgeDirectory(mCacheDir);
@@ -214,24 +219,45 @@ public abstract class Exporter {
     }
 
     /**
-     * Returns the path to the file where the exporter should save the export during generation
-     * <p>This path is a temporary cache file whose file extension matches the export format.<br>
-     * This file is deleted every time a new export is started</p>
+     * Sets the destination of the exported files.
+     * <p>It must be set before {@link #generateExport()} is called. By default, the files are
+     * written to a cache folder of the application.</p>
+     *
+     * @param sink Destination of the exported files
+     */
+    public void setExportSink(@NonNull ExportSink sink) {
+        mExportSink = sink;
+    }
+
+    /**
+     * Returns the destination to which the exporter should write the export during generation
+     *
+     * @return The sink set with {@link #setExportSink(ExportSink)}, or a sink to the cache folder.
+     * This folder is purged every time a new export is started
+     */
+    @NonNull
+    protected ExportSink getExportSink() {
+        if (mExportSink == null) {
+            mExportSink = ExportSink.toDirectory(mCacheDir);
+        }
+        return mExportSink;
+    }
+
+    /**
+     * Returns the name of the exported file, whose extension matches the export format
      *
-     * @return Absolute path to file
+     * @return File name, without any folder
      */
-    protected String getExportCacheFilePath() {
+    @NonNull
+    protected String getExportFileName() {
         // The file name contains a timestamp, so ensure it doesn't change with multiple calls to
         // avoid issues like #448
-        if (mExportCacheFilePath == null) {
-            String cachePath = mCacheDir.getAbsolutePath();
-            if (!cachePath.endsWith(File.separator))
-                cachePath += File.separator;
+        if (mExportFileName == null) {
             String bookName = mBooksDbADapter.getAttribute(mBookUID, DatabaseSchema.BookEntry.COLUMN_DISPLAY_NAME);
-            mExportCacheFilePath = cachePath + buildExportFilename(mExportParams.getExportFormat(), bookName);
+            mExportFileName = buildExportFilename(mExportParams.getExportFormat(), bookName);
         }
 
-        return mExportCacheFilePath;
+        return mExportFileName;
     }
 
     /**
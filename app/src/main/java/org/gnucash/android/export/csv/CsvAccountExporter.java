@@ -22,10 +22,10 @@ import androidx.annotation.NonNull;
 
 import org.gnucash.android.R;
 import org.gnucash.android.export.ExportParams;
+import org.gnucash.android.export.ExportSink;
 import org.gnucash.android.export.Exporter;
 import org.gnucash.android.model.Account;
 
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
@@ -57,8 +57,8 @@ public class CsvAccountExporter extends Exporter {
 
     @Override
     public List<String> generateExport() throws ExporterException {
-        String outputFile = getExportCacheFilePath();
-        try (CsvWriter writer = new CsvWriter(new FileWriter(outputFile), String.valueOf(mCsvSeparator))) {
+        ExportSink sink = getExportSink();
+        try (CsvWriter writer = new CsvWriter(sink.openWriter(getExportFileName()), String.valueOf(mCsvSeparator))) {
             generateExport(writer);
             close();
         } catch (IOException ex) {
@@ -66,7 +66,7 @@ public class CsvAccountExporter extends Exporter {
             throw new ExporterException(mExportParams, ex);
         }
 
-        return Arrays.asList(outputFile);
+        return sink.getExportedFiles();
     }
 
     /**
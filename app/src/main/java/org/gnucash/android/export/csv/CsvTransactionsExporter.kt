@@ -17,6 +17,7 @@ package org.gnucash.android.export.csv
 
 import android.content.Context
 import org.gnucash.android.R
+import org.gnucash.android.db.DatabaseSchema.TransactionEntry
 import org.gnucash.android.export.ExportParams
 import org.gnucash.android.export.Exporter
 import org.gnucash.android.model.Account
@@ -27,7 +28,6 @@ import org.gnucash.android.util.PreferencesHelper
 import org.gnucash.android.util.TimestampHelper
 import org.joda.time.format.DateTimeFormat
 import timber.log.Timber
-import java.io.FileWriter
 import java.io.IOException
 import java.text.NumberFormat
 
@@ -44,13 +44,13 @@ class CsvTransactionsExporter(context: Context,
 
     @Throws(ExporterException::class)
     override fun generateExport(): List<String> {
-        val outputFile = getExportCacheFilePath()
+        val sink = getExportSink()
         var csvWriter: CsvWriter? = null
 
         try {
-            csvWriter = CsvWriter(FileWriter(outputFile), mCsvSeparator.toString())
+            csvWriter = CsvWriter(sink.openWriter(getExportFileName()), mCsvSeparator.toString())
             generateExport(csvWriter)
-            return listOf(outputFile)
+            return sink.exportedFiles
         } catch (ex: IOException) {
             Timber.e(ex, "Error exporting CSV")
             throw ExporterException(mExportParams, ex)
@@ -107,21 +107,25 @@ class CsvTransactionsExporter(context: Context,
                csvWriter.writeToken(it)
             }
             csvWriter.newLine()
-            val cursor = mTransactionsDbAdapter.fetchTransactionsModifiedSince(mExportParams.exportStartTime)
-            Timber.d("Exporting %d transactions to CSV", cursor.count)
-            while (cursor.moveToNext()) {
-                val transaction = mTransactionsDbAdapter.buildModelInstance(cursor)
-                csvWriter.writeToken(dateFormat.print(transaction.timeMillis))
-                csvWriter.writeToken(transaction.uID)
-                csvWriter.writeToken(null)  // Transaction number
-                csvWriter.writeToken(transaction.description)
-                csvWriter.writeToken(transaction.note)
-                csvWriter.writeToken("CURRENCY::${transaction.currencyCode}")
-                csvWriter.writeToken(null)  // Void Reason
-                csvWriter.writeToken(null)  // Action
-                writeSplitsToCsv(transaction.splits, csvWriter)
+            val transactions = mTransactionsDbAdapter.iterateTransactions(
+                "${TransactionEntry.TABLE_NAME}.${TransactionEntry.COLUMN_MODIFIED_AT} >= ?",
+                arrayOf(TimestampHelper.getUtcStringFromTimestamp(mExportParams.exportStartTime)),
+                "${TransactionEntry.TABLE_NAME}.${TransactionEntry.COLUMN_TIMESTAMP} ASC"
+            )
+            Timber.d("Exporting %d transactions to CSV", transactions.count)
+            transactions.use {
+                for (transaction in it) {
+                    csvWriter.writeToken(dateFormat.print(transaction.timeMillis))
+                    csvWriter.writeToken(transaction.uID)
+                    csvWriter.writeToken(null)  // Transaction number
+                    csvWriter.writeToken(transaction.description)
+                    csvWriter.writeToken(transaction.note)
+                    csvWriter.writeToken("CURRENCY::${transaction.currencyCode}")
+                    csvWriter.writeToken(null)  // Void Reason
+                    csvWriter.writeToken(null)  // Action
+                    writeSplitsToCsv(transaction.splits, csvWriter)
+                }
             }
-            cursor.close()
             PreferencesHelper.setLastExportTime(TimestampHelper.getTimestampFromNow())
         } catch (e: Exception) {
             Timber.e(e, "Error while exporting transactions to CSV")
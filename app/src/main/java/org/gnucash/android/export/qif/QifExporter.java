@@ -25,29 +25,27 @@ import android.content.Context;
 import android.database.Cursor;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import org.gnucash.android.db.adapter.AccountsDbAdapter;
 import org.gnucash.android.db.adapter.TransactionsDbAdapter;
 import org.gnucash.android.export.ExportParams;
+import org.gnucash.android.export.ExportSink;
 import org.gnucash.android.export.Exporter;
 import org.gnucash.android.model.Commodity;
-import org.gnucash.android.util.FileUtils;
 import org.gnucash.android.util.PreferencesHelper;
 import org.gnucash.android.util.TimestampHelper;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 /**
  * Exports the accounts and transactions in the database to the QIF format
@@ -109,10 +107,21 @@ public class QifExporter extends Exporter {
                     "acct1_currency ASC, trans_uid ASC, trans_time ASC"
             );
 
-            File file = new File(getExportCacheFilePath());
-            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+            Writer writer = null;
+            CurrencyFilesWriter files = null;
 
             try {
+                boolean multipleCurrencies = false;
+                if (cursor.moveToFirst()) {
+                    int currencyColumn = cursor.getColumnIndexOrThrow("acct1_currency");
+                    String firstCurrencyCode = cursor.getString(currencyColumn);
+                    // the records are sorted by currency
+                    multipleCurrencies = cursor.moveToLast()
+                            && !firstCurrencyCode.equals(cursor.getString(currencyColumn));
+                    cursor.moveToPosition(-1);
+                }
+                files = new CurrencyFilesWriter(getExportSink(), getExportFileName(), multipleCurrencies);
+
                 String currentCurrencyCode = "";
                 String currentAccountUID = "";
                 String currentTransactionUID = "";
@@ -132,9 +141,7 @@ public class QifExporter extends Exporter {
                             //}
                             if (!currencyCode.equals(currentCurrencyCode)) {
                                 currentCurrencyCode = currencyCode;
-                                writer.append(QifHelper.INTERNAL_CURRENCY_PREFIX)
-                                        .append(currencyCode)
-                                        .append(newLine);
+                                writer = files.startCurrency(currencyCode);
                             }
                             // start new account
                             currentAccountUID = accountUID;
@@ -234,10 +241,11 @@ public class QifExporter extends Exporter {
                     // end last transaction
                     writer.append(QifHelper.ENTRY_TERMINATOR).append(newLine);
                 }
-                writer.flush();
             } finally {
                 cursor.close();
-                writer.close();
+                if (files != null) {
+                    files.close();
+                }
             }
 
             ContentValues contentValues = new ContentValues();
@@ -248,63 +256,75 @@ public class QifExporter extends Exporter {
             PreferencesHelper.setLastExportTime(TimestampHelper.getTimestampFromNow());
             close();
 
-            List<String> exportedFiles = splitQIF(file);
-            if (exportedFiles.isEmpty())
-                return Collections.emptyList();
-            else if (exportedFiles.size() > 1)
-                return zipQifs(exportedFiles);
-            else
-                return exportedFiles;
+            return getExportSink().getExportedFiles();
         } catch (IOException e) {
             throw new ExporterException(mExportParams, e);
         }
     }
 
-    @NonNull
-    private List<String> zipQifs(List<String> exportedFiles) throws IOException {
-        String zipFileName = getExportCacheFilePath() + ".zip";
-        FileUtils.zipFiles(exportedFiles, zipFileName);
-        return Collections.singletonList(zipFileName);
-    }
-
     /**
-     * Splits a Qif file into several ones for each currency.
-     *
-     * @param file File object of the Qif file to split.
-     * @return a list of paths of the newly created Qif files.
-     * @throws IOException if something went wrong while splitting the file.
+     * Writes the QIF records of each currency to a separate file, as they are generated.
+     * <p>When the export has a single currency, its records are written to a file named after
+     * the currency. Otherwise the records of each currency are written directly to their own
+     * entry of a zip archive. The records are expected to be grouped by currency.</p>
      */
-    private List<String> splitQIF(File file) throws IOException {
-        // split only at the last dot
-        String[] pathParts = file.getPath().split("(?=\\.[^\\.]+$)");
-        ArrayList<String> splitFiles = new ArrayList<>();
-        String line;
-        BufferedReader in = new BufferedReader(new FileReader(file));
-        BufferedWriter out = null;
-        try {
-            while ((line = in.readLine()) != null) {
-                if (line.startsWith(QifHelper.INTERNAL_CURRENCY_PREFIX)) {
-                    String currencyCode = line.substring(1);
-                    if (out != null) {
-                        out.close();
-                    }
-                    String newFileName = pathParts[0] + "_" + currencyCode + pathParts[1];
-                    splitFiles.add(newFileName);
-                    out = new BufferedWriter(new FileWriter(newFileName));
-                } else {
-                    if (out == null) {
-                        throw new IllegalArgumentException(file.getPath() + " format is not correct");
-                    }
-                    out.append(line).append(QifHelper.NEW_LINE);
+    private static final class CurrencyFilesWriter implements Closeable {
+        private final ExportSink mSink;
+        /**
+         * Name of the export file, before and after its extension
+         */
+        private final String[] mNameParts;
+        @Nullable
+        private final ZipOutputStream mZipOutputStream;
+        @Nullable
+        private Writer mWriter;
+
+        CurrencyFilesWriter(ExportSink sink, String exportFileName, boolean multipleCurrencies) throws IOException {
+            mSink = sink;
+            // split only at the last dot
+            mNameParts = exportFileName.split("(?=\\.[^\\.]+$)");
+            mZipOutputStream = multipleCurrencies ? sink.openZipStream(exportFileName) : null;
+        }
+
+        /**
+         * Starts the records of a currency
+         *
+         * @param currencyCode Code of the currency
+         * @return Writer of the records of the currency
+         * @throws IOException if the file could not be created
+         */
+        Writer startCurrency(String currencyCode) throws IOException {
+            String fileName = mNameParts[0] + "_" + currencyCode + (mNameParts.length > 1 ? mNameParts[1] : "");
+            if (mZipOutputStream == null) {
+                if (mWriter != null) {
+                    mWriter.close();
                 }
+                mWriter = mSink.openWriter(fileName);
+                return mWriter;
             }
-        } finally {
-            in.close();
-            if (out != null) {
-                out.close();
+            if (mWriter == null) {
+                // closing this writer would close the zip file, so it is only flushed between entries
+                mWriter = new BufferedWriter(new OutputStreamWriter(mZipOutputStream, "UTF-8"));
+            } else {
+                mWriter.flush();
+                mZipOutputStream.closeEntry();
+            }
+            mZipOutputStream.putNextEntry(new ZipEntry(fileName));
+            return mWriter;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (mZipOutputStream != null) {
+                if (mWriter != null) {
+                    mWriter.flush();
+                    mZipOutputStream.closeEntry();
+                }
+                mZipOutputStream.close();
+            } else if (mWriter != null) {
+                mWriter.close();
             }
         }
-        return splitFiles;
     }
 
     /**
@@ -40,7 +40,6 @@ public class QifHelper {
     public static final String ACCOUNT_HEADER = "!Account";
     public static final String ACCOUNT_NAME_PREFIX = "N";
     public static final String NEW_LINE = "\n";
-    public static final String INTERNAL_CURRENCY_PREFIX = "*";
 
     public static final String ENTRY_TERMINATOR = "^";
     private static final DateTimeFormatter QIF_DATE_FORMATTER = DateTimeFormat.forPattern("yyyy/M/d");
@@ -23,15 +23,19 @@ import static org.gnucash.android.db.DatabaseSchema.TransactionEntry;
 
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import android.os.SystemClock;
 import android.text.TextUtils;
 
 import org.gnucash.android.db.DatabaseSchema;
+import org.gnucash.android.db.adapter.AdapterRegistry;
 import org.gnucash.android.db.adapter.CommoditiesDbAdapter;
 import org.gnucash.android.db.adapter.RecurrenceDbAdapter;
 import org.gnucash.android.export.ExportParams;
+import org.gnucash.android.export.ExportSink;
 import org.gnucash.android.export.Exporter;
 import org.gnucash.android.model.Account;
 import org.gnucash.android.model.AccountType;
@@ -49,14 +53,13 @@ import org.gnucash.android.util.TimestampHelper;
 import org.xmlpull.v1.XmlPullParserFactory;
 import org.xmlpull.v1.XmlSerializer;
 
-import java.io.BufferedOutputStream;
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -72,6 +75,23 @@ import timber.log.Timber;
  */
 public class GncXmlExporter extends Exporter {
 
+    /**
+     * Name of the folder, in the cache directory, where serialized transactions are kept between incremental exports
+     */
+    private static final String CHUNK_CACHE_FOLDER = "xml_transactions";
+
+    /**
+     * SQL expression for a key which changes whenever a transaction or one of its splits is modified.
+     * It starts with the latest modification time, so that keys can be compared with timestamps.
+     */
+    private static final String MODIFICATION_KEY = "(SELECT MAX("
+            + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_MODIFIED_AT + ", "
+            + "IFNULL(MAX(s." + SplitEntry.COLUMN_MODIFIED_AT + "), '')) || '/' || "
+            + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_MODIFIED_AT + " || '/' || COUNT(*)"
+            + " FROM " + SplitEntry.TABLE_NAME + " s"
+            + " WHERE s." + SplitEntry.COLUMN_TRANSACTION_UID + " = "
+            + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + ")";
+
     /**
      * Root account for template accounts
      */
@@ -79,6 +99,23 @@ public class GncXmlExporter extends Exporter {
     private final Map<String, Account> mTransactionToTemplateAccountMap = new TreeMap<>();
     private final RecurrenceDbAdapter mRecurrenceDbAdapter;
 
+    /**
+     * Whether to reuse the XML of the transactions which did not change since the previous incremental export
+     */
+    private boolean mIncremental = false;
+
+    /**
+     * Cache of serialized transactions, only set during an incremental export
+     */
+    @Nullable
+    private TransactionChunkCache mChunkCache;
+
+    /**
+     * Output of the XML serializer, only set during an incremental export
+     */
+    @Nullable
+    private ChunkRecordingWriter mChunkWriter;
+
     /**
      * Overloaded constructor.
      * Creates an exporter with an already open database instance.
@@ -91,7 +128,28 @@ public class GncXmlExporter extends Exporter {
                           @NonNull ExportParams params,
                           @NonNull String bookUID) {
         super(context, params, bookUID);
-        mRecurrenceDbAdapter = new RecurrenceDbAdapter(mDb);
+        mRecurrenceDbAdapter = AdapterRegistry.getInstance(mDb).getRecurrenceDbAdapter();
+    }
+
+    /**
+     * Enables incremental exports.
+     * <p>The serialized XML of each transaction is then cached per book, and reused in the next
+     * incremental export if neither the transaction nor its splits were modified in the meantime.
+     * The output is the same as that of a full export.</p>
+     *
+     * @param incremental {@code true} to reuse the transactions cached by the previous incremental export
+     */
+    public void setIncremental(boolean incremental) {
+        mIncremental = incremental;
+    }
+
+    /**
+     * Returns the file in which the serialized transactions of the book are cached between incremental exports
+     *
+     * @return Cache file
+     */
+    private File getChunkCacheFile() {
+        return new File(new File(mContext.getCacheDir(), CHUNK_CACHE_FOLDER), getBookUID());
     }
 
     private void exportSlots(XmlSerializer xmlSerializer,
@@ -269,8 +327,7 @@ public class GncXmlExporter extends Exporter {
         if (exportTemplates) {
             where = TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TEMPLATE + "=1";
         }
-        final Cursor cursor = mTransactionsDbAdapter.fetchTransactionsWithSplits(
-            new String[]{
+        String[] projection = new String[]{
                 TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + " AS trans_uid",
                 TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_DESCRIPTION + " AS trans_desc",
                 TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_NOTES + " AS trans_notes",
@@ -285,11 +342,20 @@ public class GncXmlExporter extends Exporter {
                 SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_VALUE_NUM + " AS split_value_num",
                 SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_VALUE_DENOM + " AS split_value_denom",
                 SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_QUANTITY_NUM + " AS split_quantity_num",
-                SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_QUANTITY_DENOM + " AS split_quantity_denom", SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_ACCOUNT_UID + " AS split_acct_uid"},
+                SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_QUANTITY_DENOM + " AS split_quantity_denom", SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_ACCOUNT_UID + " AS split_acct_uid"};
+        // template transactions are not cached, their template accounts are generated anew in each export
+        TransactionChunkCache chunkCache = exportTemplates ? null : mChunkCache;
+        if (chunkCache != null) {
+            projection = Arrays.copyOf(projection, projection.length + 1);
+            projection[projection.length - 1] = MODIFICATION_KEY + " AS trans_modification_key";
+        }
+        final Cursor cursor = mTransactionsDbAdapter.fetchTransactionsWithSplits(projection,
             where, null,
             TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + " ASC , " +
                 TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TIMESTAMP + " ASC ");
         String lastTrxUID = "";
+        String lastTrxKey = null;
+        String cachedTrxUID = null;
         Commodity trnCommodity = null;
 
         if (exportTemplates) {
@@ -315,10 +381,30 @@ public class GncXmlExporter extends Exporter {
         //// FIXME: 12.10.2015 export split reconciled_state and reconciled_date to the export
         while (cursor.moveToNext()) {
             String curTrxUID = cursor.getString(cursor.getColumnIndexOrThrow("trans_uid"));
+            if (curTrxUID.equals(cachedTrxUID)) { // split of a transaction copied from the cache
+                continue;
+            }
             if (!lastTrxUID.equals(curTrxUID)) { // new transaction starts
                 if (!lastTrxUID.equals("")) { // there's an old transaction, close it
                     xmlSerializer.endTag(null, GncXmlHelper.TAG_TRN_SPLITS);
                     xmlSerializer.endTag(null, GncXmlHelper.TAG_TRANSACTION);
+                    if (chunkCache != null) {
+                        xmlSerializer.flush();
+                        chunkCache.put(lastTrxUID, lastTrxKey, mChunkWriter.stopRecording());
+                    }
+                    lastTrxUID = "";
+                }
+                if (chunkCache != null) {
+                    lastTrxKey = cursor.getString(cursor.getColumnIndexOrThrow("trans_modification_key"));
+                    String chunk = chunkCache.get(curTrxUID, lastTrxKey);
+                    xmlSerializer.flush();
+                    if (chunk != null) {
+                        mChunkWriter.write(chunk);
+                        chunkCache.put(curTrxUID, lastTrxKey, chunk);
+                        cachedTrxUID = curTrxUID;
+                        continue;
+                    }
+                    mChunkWriter.startRecording();
                 }
                 // new transaction
                 xmlSerializer.startTag(null, GncXmlHelper.TAG_TRANSACTION);
@@ -483,6 +569,10 @@ public class GncXmlExporter extends Exporter {
         if (!TextUtils.isEmpty(lastTrxUID)) { // there's an unfinished transaction, close it
             xmlSerializer.endTag(null, GncXmlHelper.TAG_TRN_SPLITS);
             xmlSerializer.endTag(null, GncXmlHelper.TAG_TRANSACTION);
+            if (chunkCache != null) {
+                xmlSerializer.flush();
+                chunkCache.put(lastTrxUID, lastTrxKey, mChunkWriter.stopRecording());
+            }
         }
         cursor.close();
     }
@@ -778,31 +868,21 @@ public class GncXmlExporter extends Exporter {
 
     @Override
     public List<String> generateExport() throws ExporterException {
-        OutputStreamWriter writer = null;
-        String outputFile = getExportCacheFilePath();
+        ExportSink sink = getExportSink();
         try {
-            FileOutputStream fileOutputStream = new FileOutputStream(outputFile);
-            BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(fileOutputStream);
-            writer = new OutputStreamWriter(bufferedOutputStream);
-
-            generateExport(writer);
+            Writer writer = sink.openWriter(getExportFileName());
+            try {
+                generateExport(writer);
+            } finally {
+                writer.close();
+            }
             close();
         } catch (IOException ex) {
             Timber.e(ex, "Error exporting XML");
-        } finally {
-            if (writer != null) {
-                try {
-                    writer.close();
-                } catch (IOException e) {
-                    throw new ExporterException(mExportParams, e);
-                }
-            }
+            throw new ExporterException(mExportParams, ex);
         }
 
-        List<String> exportedFiles = new ArrayList<>();
-        exportedFiles.add(outputFile);
-
-        return exportedFiles;
+        return sink.getExportedFiles();
     }
 
     /**
@@ -823,7 +903,14 @@ public class GncXmlExporter extends Exporter {
             } catch (IllegalStateException e) {
                 // Feature not supported. No problem
             }
-            xmlSerializer.setOutput(writer);
+            if (mIncremental) {
+                String cutoffKey = DatabaseUtils.stringForQuery(mDb, "SELECT CURRENT_TIMESTAMP", null);
+                mChunkCache = new TransactionChunkCache(getChunkCacheFile(), cutoffKey);
+                mChunkWriter = new ChunkRecordingWriter(writer);
+                xmlSerializer.setOutput(mChunkWriter);
+            } else {
+                xmlSerializer.setOutput(writer);
+            }
             xmlSerializer.startDocument("utf-8", true);
             // root tag
             xmlSerializer.startTag(null, GncXmlHelper.TAG_ROOT);
@@ -899,14 +986,91 @@ public class GncXmlExporter extends Exporter {
             xmlSerializer.endTag(null, GncXmlHelper.TAG_ROOT);
             xmlSerializer.endDocument();
             xmlSerializer.flush();
+            writer.flush();
+            if (mChunkCache != null) {
+                mChunkCache.commit();
+            }
         } catch (Exception e) {
             Timber.e(e);
             throw new ExporterException(mExportParams, e);
+        } finally {
+            if (mChunkCache != null) {
+                mChunkCache.close();
+                mChunkCache = null;
+                mChunkWriter = null;
+            }
         }
         final long timeFinish = SystemClock.elapsedRealtime();
         Timber.v("exported in %d ms", timeFinish - timeStart);
     }
 
+    /**
+     * Writer which passes the XML on to the output, and can record it for caching.
+     * <p>Flushing is not passed on, since the serializer is flushed around every transaction
+     * during incremental exports.</p>
+     */
+    private static class ChunkRecordingWriter extends Writer {
+        private final Writer mOutput;
+        private final StringBuilder mRecording = new StringBuilder();
+        private boolean mRecordingEnabled = false;
+
+        ChunkRecordingWriter(Writer output) {
+            mOutput = output;
+        }
+
+        /**
+         * Starts recording the text written from now on
+         */
+        void startRecording() {
+            mRecording.setLength(0);
+            mRecordingEnabled = true;
+        }
+
+        /**
+         * Stops recording
+         *
+         * @return Text written since {@link #startRecording()}
+         */
+        String stopRecording() {
+            mRecordingEnabled = false;
+            return mRecording.toString();
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            mOutput.write(c);
+            if (mRecordingEnabled) {
+                mRecording.append((char) c);
+            }
+        }
+
+        @Override
+        public void write(@NonNull char[] cbuf, int off, int len) throws IOException {
+            mOutput.write(cbuf, off, len);
+            if (mRecordingEnabled) {
+                mRecording.append(cbuf, off, len);
+            }
+        }
+
+        @Override
+        public void write(@NonNull String str, int off, int len) throws IOException {
+            mOutput.write(str, off, len);
+            if (mRecordingEnabled) {
+                mRecording.append(str, off, off + len);
+            }
+        }
+
+        @Override
+        public void flush() {
+            // the output is flushed once the export is complete
+        }
+
+        @Override
+        public void close() throws IOException {
+            mOutput.close();
+        }
+    }
+
     /**
      * Returns the MIME type for this exporter.
      *
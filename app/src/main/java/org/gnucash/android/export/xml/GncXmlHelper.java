@@ -155,6 +155,17 @@ public abstract class GncXmlHelper {
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormat.forPattern("yyyy-MM-dd HH:mm:ss Z");
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormat.forPattern("yyyy-MM-dd");
 
+    private static final int MILLIS_PER_MINUTE = 60 * 1000;
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+    /**
+     * Number of days in 400 years of the Gregorian calendar
+     */
+    private static final long DAYS_PER_ERA = 146097;
+    /**
+     * Days from 0000-03-01 to 1970-01-01. Counting years from March puts leap days at the end
+     */
+    private static final long DAYS_0000_03_01_TO_EPOCH = 719468;
+
     public static final String KEY_PLACEHOLDER = "placeholder";
     public static final String KEY_COLOR = "color";
     public static final String KEY_FAVORITE = "favorite";
@@ -199,11 +210,62 @@ public abstract class GncXmlHelper {
 
     /**
      * Formats dates for the GnuCash XML format
+     * <p>Times are formatted in the default time zone, like the other formatting methods.
+     * The usual cases are formatted directly, instead of by the Joda formatter.</p>
      *
      * @param milliseconds Milliseconds since epoch
      */
     public static String formatDateTime(long milliseconds) {
-        return TIME_FORMATTER.print(milliseconds);
+        int offset = DateTimeZone.getDefault().getOffset(milliseconds);
+        long localMillis = milliseconds + offset;
+        if (offset % MILLIS_PER_MINUTE != 0 || localMillis < 0) {
+            // historical offsets with seconds are truncated by the formatter
+            return TIME_FORMATTER.print(milliseconds);
+        }
+        long localSeconds = localMillis / 1000L;
+        long days = localSeconds / SECONDS_PER_DAY;
+        int secondOfDay = (int) (localSeconds % SECONDS_PER_DAY);
+
+        // civil date from the days since epoch, in the proleptic Gregorian calendar
+        long shifted = days + DAYS_0000_03_01_TO_EPOCH;
+        long era = shifted / DAYS_PER_ERA;
+        int dayOfEra = (int) (shifted - era * DAYS_PER_ERA);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        if (year > 9999) {
+            return TIME_FORMATTER.print(milliseconds);
+        }
+
+        char[] chars = new char[25];
+        putDigits(chars, 0, (int) year, 4);
+        chars[4] = '-';
+        putDigits(chars, 5, month, 2);
+        chars[7] = '-';
+        putDigits(chars, 8, day, 2);
+        chars[10] = ' ';
+        putDigits(chars, 11, secondOfDay / 3600, 2);
+        chars[13] = ':';
+        putDigits(chars, 14, secondOfDay / 60 % 60, 2);
+        chars[16] = ':';
+        putDigits(chars, 17, secondOfDay % 60, 2);
+        chars[19] = ' ';
+        int offsetMinutes = offset / MILLIS_PER_MINUTE;
+        chars[20] = offsetMinutes < 0 ? '-' : '+';
+        offsetMinutes = Math.abs(offsetMinutes);
+        putDigits(chars, 21, offsetMinutes / 60, 2);
+        putDigits(chars, 23, offsetMinutes % 60, 2);
+        return new String(chars);
+    }
+
+    private static void putDigits(char[] chars, int start, int value, int count) {
+        for (int i = start + count - 1; i >= start; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
     }
 
     /**
@@ -254,7 +316,77 @@ public abstract class GncXmlHelper {
      * @throws ParseException if the date string could not be parsed e.g. because of different format
      */
     public static long parseDateTime(String dateString) throws ParseException {
-        return TIME_FORMATTER.parseMillis(dateString);
+        // GnuCash always writes "2016-08-23 10:00:00 +0200", the other variants
+        // accepted by the Joda parser go through it
+        if (dateString.length() != 25
+                || dateString.charAt(4) != '-' || dateString.charAt(7) != '-'
+                || dateString.charAt(10) != ' ' || dateString.charAt(13) != ':'
+                || dateString.charAt(16) != ':' || dateString.charAt(19) != ' ') {
+            return TIME_FORMATTER.parseMillis(dateString);
+        }
+        int year = parseDigits(dateString, 0, 4);
+        int month = parseDigits(dateString, 5, 2);
+        int day = parseDigits(dateString, 8, 2);
+        int hour = parseDigits(dateString, 11, 2);
+        int minute = parseDigits(dateString, 14, 2);
+        int second = parseDigits(dateString, 17, 2);
+        char sign = dateString.charAt(20);
+        int offsetHours = parseDigits(dateString, 21, 2);
+        int offsetMinutes = parseDigits(dateString, 23, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59
+                || (sign != '+' && sign != '-')
+                || offsetHours < 0 || offsetHours > 23 || offsetMinutes < 0 || offsetMinutes > 59) {
+            // let the Joda parser report the error
+            return TIME_FORMATTER.parseMillis(dateString);
+        }
+
+        // days since epoch of the civil date, in the proleptic Gregorian calendar
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        long days = (long) era * DAYS_PER_ERA + dayOfEra - DAYS_0000_03_01_TO_EPOCH;
+
+        long offsetSeconds = offsetHours * 3600L + offsetMinutes * 60L;
+        if (sign == '-') {
+            offsetSeconds = -offsetSeconds;
+        }
+        long seconds = days * SECONDS_PER_DAY + hour * 3600L + minute * 60L + second - offsetSeconds;
+        return seconds * 1000L;
+    }
+
+    /**
+     * Parses the decimal digits of a part of a string
+     *
+     * @return Value of the digits, or -1 if one of the characters is not a digit
+     */
+    private static int parseDigits(String s, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leapYear = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leapYear ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
     }
 
     /**
@@ -266,12 +398,30 @@ public abstract class GncXmlHelper {
      * @throws ParseException if the amount could not be parsed
      */
     public static BigDecimal parseSplitAmount(String amountString) throws ParseException {
-        int pos = amountString.indexOf("/");
+        int pos = amountString.indexOf('/');
         if (pos < 0) {
             throw new ParseException("Cannot parse money string : " + amountString, 0);
         }
 
         int scale = amountString.length() - pos - 2; //do this before, because we could modify the string
+
+        // plain numerators which fit in a long, as written by GnuCash, are parsed directly
+        int start = pos > 0 && (amountString.charAt(0) == '-' || amountString.charAt(0) == '+') ? 1 : 0;
+        if (pos > start && pos - start <= 18) {
+            long value = 0;
+            int i = start;
+            for (; i < pos; i++) {
+                int digit = amountString.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                value = value * 10 + digit;
+            }
+            if (i == pos) {
+                return BigDecimal.valueOf(amountString.charAt(0) == '-' ? -value : value, scale);
+            }
+        }
+
         //String numerator = TransactionFormFragment.stripCurrencyFormatting(amountString.substring(0, pos));
         String numerator = amountString.substring(0, pos);
         numerator = TransactionFormFragment.stripCurrencyFormatting(numerator);
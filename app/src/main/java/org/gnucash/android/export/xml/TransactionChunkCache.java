@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2012-2024 GnuCash Android developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.export.xml;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.TimeZone;
+
+import timber.log.Timber;
+
+/**
+ * Cache of the serialized XML of transactions from the previous export of a book.
+ * <p>Each chunk of XML is stored with the UID of its transaction and a modification key,
+ * which changes whenever the transaction or its splits are modified. The chunks are stored sorted
+ * by transaction UID, so that the previous cache is read in a single pass alongside the
+ * transactions being exported, while the cache for the next export is written.</p>
+ * <p>The new cache replaces the previous one only when {@link #commit()} is called.</p>
+ */
+class TransactionChunkCache implements Closeable {
+
+    /**
+     * Version of the cache file format. Caches written with another version are ignored
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    private final File mFile;
+    private final File mNewFile;
+
+    /**
+     * Modification keys from this one on are not cached, since the transaction
+     * could still be modified without its key changing
+     */
+    private final String mCutoffKey;
+
+    @Nullable
+    private DataInputStream mInput;
+    private final DataOutputStream mOutput;
+
+    private String mNextUID;
+    private String mNextKey;
+    private String mNextChunk;
+
+    private int mHitCount = 0;
+    private int mMissCount = 0;
+
+    /**
+     * Opens the cache stored in a file
+     *
+     * @param file      Cache file. It does not need to exist
+     * @param cutoffKey Smallest modification key which is not cached
+     * @throws IOException if the new cache file cannot be created
+     */
+    TransactionChunkCache(@NonNull File file, @NonNull String cutoffKey) throws IOException {
+        mFile = file;
+        mNewFile = new File(file.getPath() + ".new");
+        mCutoffKey = cutoffKey;
+        file.getParentFile().mkdirs();
+
+        if (file.exists()) {
+            try {
+                mInput = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                if (mInput.readInt() != FORMAT_VERSION || !mInput.readUTF().equals(TimeZone.getDefault().getID())) {
+                    closeInput();
+                }
+            } catch (IOException e) {
+                Timber.w(e, "Could not read the transaction cache");
+                closeInput();
+            }
+        }
+        readNext();
+
+        mOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(mNewFile)));
+        mOutput.writeInt(FORMAT_VERSION);
+        mOutput.writeUTF(TimeZone.getDefault().getID());
+    }
+
+    /**
+     * Returns the cached XML of a transaction, if it has not been modified since it was cached.
+     * <p>Transactions must be requested in ascending order of their UID.</p>
+     *
+     * @param transactionUID   GUID of the transaction
+     * @param modificationKey  Current modification key of the transaction
+     * @return Serialized XML of the transaction, or {@code null} if it is not in the cache
+     */
+    @Nullable
+    String get(@NonNull String transactionUID, @NonNull String modificationKey) {
+        while (mNextUID != null && mNextUID.compareTo(transactionUID) < 0) {
+            readNext();
+        }
+        if (transactionUID.equals(mNextUID) && modificationKey.equals(mNextKey)) {
+            mHitCount++;
+            return mNextChunk;
+        }
+        mMissCount++;
+        return null;
+    }
+
+    /**
+     * Stores the XML of a transaction in the new cache.
+     * <p>Transactions must be stored in ascending order of their UID.</p>
+     *
+     * @param transactionUID  GUID of the transaction
+     * @param modificationKey Modification key of the transaction
+     * @param chunk           Serialized XML of the transaction
+     * @throws IOException if the cache file cannot be written
+     */
+    void put(@NonNull String transactionUID, @NonNull String modificationKey, @NonNull String chunk) throws IOException {
+        if (modificationKey.compareTo(mCutoffKey) >= 0) {
+            return;
+        }
+        byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+        mOutput.writeBoolean(true);
+        mOutput.writeUTF(transactionUID);
+        mOutput.writeUTF(modificationKey);
+        mOutput.writeInt(bytes.length);
+        mOutput.write(bytes);
+    }
+
+    /**
+     * Replaces the previous cache with the transactions stored in this one
+     *
+     * @throws IOException if the cache file cannot be written
+     */
+    void commit() throws IOException {
+        mOutput.writeBoolean(false);
+        mOutput.close();
+        closeInput();
+        if (!mNewFile.renameTo(mFile)) {
+            throw new IOException("Could not replace the transaction cache " + mFile);
+        }
+        Timber.d("Transaction cache: %d chunks reused, %d serialized", mHitCount, mMissCount);
+    }
+
+    /**
+     * Closes the cache files. If the cache was not committed, the new cache is discarded.
+     */
+    @Override
+    public void close() {
+        closeInput();
+        try {
+            mOutput.close();
+        } catch (IOException e) {
+            Timber.w(e, "Could not close the transaction cache");
+        }
+        if (mNewFile.exists() && !mNewFile.delete()) {
+            Timber.w("Could not delete %s", mNewFile);
+        }
+    }
+
+    private void readNext() {
+        mNextUID = null;
+        mNextKey = null;
+        mNextChunk = null;
+        if (mInput == null) {
+            return;
+        }
+        try {
+            if (mInput.readBoolean()) {
+                mNextUID = mInput.readUTF();
+                mNextKey = mInput.readUTF();
+                byte[] bytes = new byte[mInput.readInt()];
+                mInput.readFully(bytes);
+                mNextChunk = new String(bytes, StandardCharsets.UTF_8);
+            } else {
+                closeInput();
+            }
+        } catch (IOException e) {
+            Timber.w(e, "Could not read the transaction cache");
+            mNextUID = null;
+            closeInput();
+        }
+    }
+
+    private void closeInput() {
+        if (mInput != null) {
+            try {
+                mInput.close();
+            } catch (IOException e) {
+                Timber.w(e, "Could not close the transaction cache");
+            }
+            mInput = null;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2012-2024 GnuCash Android developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.importer;
+
+import androidx.annotation.NonNull;
+
+import org.xml.sax.SAXException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import timber.log.Timber;
+
+/**
+ * Runs the database writes of an import on a dedicated thread, in the order they were submitted.
+ * <p>The parser hands over batches of parsed records and keeps on parsing while the previous
+ * batches are inserted. At most {@code capacity} batches are queued: when the writer falls behind,
+ * {@link #submit(Runnable)} blocks until there is room, which bounds the memory used by the import.</p>
+ * <p>Since an SQLite transaction belongs to the thread which started it, every statement of the
+ * import, from the start of the transaction to the closing of the database, must be submitted
+ * to the writer.</p>
+ * <p>When a batch fails, the remaining batches are skipped, except for the final one which is
+ * always run so that the database can be closed. The failure is rethrown to the parser by the
+ * next call to {@link #submit(Runnable)} or {@link #finish(Runnable)}.</p>
+ */
+final class BatchWriter {
+
+    private static final class Batch {
+        final Runnable mTask;
+        final boolean mLast;
+
+        Batch(Runnable task, boolean last) {
+            mTask = task;
+            mLast = last;
+        }
+    }
+
+    private final BlockingQueue<Batch> mQueue;
+    private final Thread mThread;
+    private volatile Throwable mError;
+    private boolean mFinished = false;
+
+    /**
+     * Starts the writer thread
+     *
+     * @param name     Name of the thread
+     * @param capacity Maximum number of batches waiting to be written
+     */
+    BatchWriter(@NonNull String name, int capacity) {
+        mQueue = new ArrayBlockingQueue<>(capacity);
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeBatches();
+            }
+        }, name);
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    private void writeBatches() {
+        while (true) {
+            Batch batch;
+            try {
+                batch = mQueue.take();
+            } catch (InterruptedException e) {
+                // the writer is only stopped by its last batch
+                continue;
+            }
+            if (mError == null || batch.mLast) {
+                try {
+                    batch.mTask.run();
+                } catch (Throwable e) {
+                    Timber.e(e, "Error writing imported records");
+                    if (mError == null) {
+                        mError = e;
+                    }
+                }
+            }
+            if (batch.mLast) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Queues a batch of writes, waiting for room in the queue if needed
+     *
+     * @param task Writes to run on the writer thread
+     * @throws SAXException if a previous batch failed or the parser was interrupted
+     */
+    void submit(@NonNull Runnable task) throws SAXException {
+        if (mFinished) {
+            throw new IllegalStateException("The writer has already been finished");
+        }
+        rethrowError();
+        try {
+            mQueue.put(new Batch(task, false));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SAXException("Import interrupted", e);
+        }
+    }
+
+    /**
+     * Queues the last batch of writes and waits until all the batches have been run
+     *
+     * @param task Writes to run even if a previous batch failed, such as closing the database
+     * @throws SAXException if one of the batches failed
+     */
+    void finish(@NonNull Runnable task) throws SAXException {
+        if (mFinished) {
+            throw new IllegalStateException("The writer has already been finished");
+        }
+        mFinished = true;
+        boolean interrupted = false;
+        Batch last = new Batch(task, true);
+        while (true) {
+            try {
+                mQueue.put(last);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        while (mThread.isAlive()) {
+            try {
+                mThread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        rethrowError();
+    }
+
+    /**
+     * Checks if {@link #finish(Runnable)} has been called
+     */
+    boolean isFinished() {
+        return mFinished;
+    }
+
+    private void rethrowError() throws SAXException {
+        Throwable error = mError;
+        if (error == null) {
+            return;
+        }
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        throw new SAXException((Exception) error);
+    }
+}
@@ -20,19 +20,18 @@ package org.gnucash.android.importer;
 import android.database.sqlite.SQLiteDatabase;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 
 import org.gnucash.android.app.GnuCashApplication;
 import org.gnucash.android.db.DatabaseHelper;
 import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.db.adapter.AdapterRegistry;
 import org.gnucash.android.db.adapter.BooksDbAdapter;
-import org.gnucash.android.db.adapter.BudgetAmountsDbAdapter;
 import org.gnucash.android.db.adapter.BudgetsDbAdapter;
 import org.gnucash.android.db.adapter.CommoditiesDbAdapter;
 import org.gnucash.android.db.adapter.DatabaseAdapter;
 import org.gnucash.android.db.adapter.PricesDbAdapter;
-import org.gnucash.android.db.adapter.RecurrenceDbAdapter;
 import org.gnucash.android.db.adapter.ScheduledActionDbAdapter;
-import org.gnucash.android.db.adapter.SplitsDbAdapter;
 import org.gnucash.android.db.adapter.TransactionsDbAdapter;
 import org.gnucash.android.export.xml.GncXmlHelper;
 import org.gnucash.android.model.Account;
@@ -116,7 +115,18 @@ public class GncXmlHandler extends DefaultHandler {
     Account mAccount;
 
     /**
-     * All the accounts found in a file to be imported, used for bulk import mode
+     * Number of transactions or prices which are buffered before they are written to the database.
+     * This bounds the memory used by the import, independently of the size of the book.
+     */
+    public static final int BATCH_SIZE = 1000;
+
+    /**
+     * Number of batches which can wait to be written while the parser goes on
+     */
+    private static final int WRITE_QUEUE_CAPACITY = 4;
+
+    /**
+     * Accounts found in the file which have not been saved to the database yet
      */
     List<Account> mAccountList;
 
@@ -135,6 +145,16 @@ public class GncXmlHandler extends DefaultHandler {
      */
     HashMap<String, Account> mAccountMap;
 
+    /**
+     * Full names of the accounts, by account UID
+     */
+    HashMap<String, String> mAccountFullNames;
+
+    /**
+     * Top level imbalance accounts, by currency code
+     */
+    HashMap<String, Account> mImbalanceAccounts;
+
     /**
      * ROOT account of the imported book
      */
@@ -146,9 +166,14 @@ public class GncXmlHandler extends DefaultHandler {
     Transaction mTransaction;
 
     /**
-     * All the transaction instances found in a file to be inserted, used in bulk mode
+     * Dates and split amounts of {@link #mTransaction}, which are converted after the transaction is read
+     */
+    TransactionConverter.Record mTransactionRecord;
+
+    /**
+     * Transactions found in the file which have not been handed over for conversion yet
      */
-    List<Transaction> mTransactionList;
+    List<TransactionConverter.Record> mTransactionList;
 
     /**
      * All the template transactions found during parsing of the XML
@@ -161,14 +186,14 @@ public class GncXmlHandler extends DefaultHandler {
     Split mSplit;
 
     /**
-     * (Absolute) quantity of the split, which uses split account currency
+     * Text of the quantity of the split, which uses split account currency
      */
-    BigDecimal mQuantity;
+    String mQuantity;
 
     /**
-     * (Absolute) value of the split, which uses transaction currency
+     * Text of the value of the split, which uses transaction currency
      */
-    BigDecimal mValue;
+    String mValue;
 
     /**
      * price table entry
@@ -201,7 +226,7 @@ public class GncXmlHandler extends DefaultHandler {
     ScheduledAction mScheduledAction;
 
     /**
-     * List of scheduled actions to be bulk inserted
+     * Scheduled actions which have not been saved to the database yet
      */
     List<ScheduledAction> mScheduledActionsList;
 
@@ -279,10 +304,46 @@ public class GncXmlHandler extends DefaultHandler {
     private Book mBook;
     private SQLiteDatabase mDB;
 
+    /**
+     * Commodities of the book by currency code, loaded before parsing so that the parser
+     * does not need the database while the writer holds it
+     */
+    private Map<String, Commodity> mCommodities;
+
+    /**
+     * Number of threads of {@link #mConverter}
+     */
+    private final int mConverterThreads;
+
+    /**
+     * Converts the dates and amounts of the parsed transactions. Started with the document
+     */
+    private TransactionConverter mConverter;
+
+    /**
+     * Writes the parsed records to the database. Started with the document
+     */
+    private BatchWriter mWriter;
+    private long mImportStartTime;
+
     /**
      * Creates a handler for handling XML stream events when parsing the XML backup file
+     * <p>The dates and amounts of the transactions are converted on one thread per core,
+     * except for two cores left to the parser and to the database writer.</p>
      */
     public GncXmlHandler() {
+        this(TransactionConverter.getDefaultThreadCount());
+    }
+
+    /**
+     * Creates a handler for handling XML stream events when parsing the XML backup file
+     *
+     * @param converterThreads Number of threads converting the dates and amounts of the
+     *                         transactions, or 0 to convert them on the parser thread
+     */
+    @VisibleForTesting
+    public GncXmlHandler(int converterThreads) {
+        mConverterThreads = converterThreads;
         init();
     }
 
@@ -294,19 +355,24 @@ public class GncXmlHandler extends DefaultHandler {
 
         DatabaseHelper databaseHelper = new DatabaseHelper(GnuCashApplication.getAppContext(), mBook.getUID());
         mDB = databaseHelper.getWritableDatabase();
-        mTransactionsDbAdapter = new TransactionsDbAdapter(mDB, new SplitsDbAdapter(mDB));
-        mAccountsDbAdapter = new AccountsDbAdapter(mDB, mTransactionsDbAdapter);
-        RecurrenceDbAdapter recurrenceDbAdapter = new RecurrenceDbAdapter(mDB);
-        mScheduledActionsDbAdapter = new ScheduledActionDbAdapter(mDB, recurrenceDbAdapter);
-        mCommoditiesDbAdapter = new CommoditiesDbAdapter(mDB);
-        mPricesDbAdapter = new PricesDbAdapter(mDB);
-        mBudgetsDbAdapter = new BudgetsDbAdapter(mDB, new BudgetAmountsDbAdapter(mDB), recurrenceDbAdapter);
-
+        AdapterRegistry adapters = AdapterRegistry.getInstance(mDB);
+        mTransactionsDbAdapter = adapters.getTransactionsDbAdapter();
+        mAccountsDbAdapter = adapters.getAccountsDbAdapter();
+        mScheduledActionsDbAdapter = adapters.getScheduledActionDbAdapter();
+        mCommoditiesDbAdapter = adapters.getCommoditiesDbAdapter();
+        mPricesDbAdapter = adapters.getPricesDbAdapter();
+        mBudgetsDbAdapter = adapters.getBudgetsDbAdapter();
+        mCommodities = new HashMap<>();
+        for (Commodity commodity : mCommoditiesDbAdapter.getAllRecords()) {
+            mCommodities.put(commodity.getMnemonic(), commodity);
+        }
 
         mContent = new StringBuilder();
 
         mAccountList = new ArrayList<>();
         mAccountMap = new HashMap<>();
+        mAccountFullNames = new HashMap<>();
+        mImbalanceAccounts = new HashMap<>();
         mTransactionList = new ArrayList<>();
         mScheduledActionsList = new ArrayList<>();
         mBudgetList = new ArrayList<>();
@@ -332,6 +398,7 @@ public class GncXmlHandler extends DefaultHandler {
             case GncXmlHelper.TAG_TRANSACTION:
                 mTransaction = new Transaction(""); // dummy name will be replaced
                 mTransaction.setExported(true);     // default to exported when import transactions
+                mTransactionRecord = new TransactionConverter.Record(mTransaction);
                 mISO4217Currency = false;
                 break;
             case GncXmlHelper.TAG_TRN_SPLIT:
@@ -436,7 +503,7 @@ public class GncXmlHandler extends DefaultHandler {
                 break;
             case GncXmlHelper.TAG_COMMODITY_ID:
                 String currencyCode = mISO4217Currency ? characterString : NO_CURRENCY_CODE;
-                Commodity commodity = mCommoditiesDbAdapter.getCommodity(currencyCode);
+                Commodity commodity = mCommodities.get(currencyCode);
                 if (mAccount != null) {
                     if (commodity != null) {
                         mAccount.setCommodity(commodity);
@@ -455,11 +522,11 @@ public class GncXmlHandler extends DefaultHandler {
                 }
                 if (mPrice != null) {
                     if (mPriceCommodity) {
-                        mPrice.setCommodityUID(mCommoditiesDbAdapter.getCommodityUID(currencyCode));
+                        mPrice.setCommodityUID(getCommodityUID(currencyCode));
                         mPriceCommodity = false;
                     }
                     if (mPriceCurrency) {
-                        mPrice.setCurrencyUID(mCommoditiesDbAdapter.getCommodityUID(currencyCode));
+                        mPrice.setCurrencyUID(getCommodityUID(currencyCode));
                         mPriceCurrency = false;
                     }
                 }
@@ -600,23 +667,23 @@ public class GncXmlHandler extends DefaultHandler {
                 mTransaction.setDescription(characterString);
                 break;
             case GncXmlHelper.TAG_TS_DATE:
-                try {
-                    if (mIsDatePosted && mTransaction != null) {
-                        mTransaction.setTime(GncXmlHelper.parseDateTime(characterString));
-                        mIsDatePosted = false;
-                    }
-                    if (mIsDateEntered && mTransaction != null) {
-                        Timestamp timestamp = new Timestamp(GncXmlHelper.parseDateTime(characterString));
-                        mTransaction.setCreatedTimestamp(timestamp);
-                        mIsDateEntered = false;
-                    }
-                    if (mPrice != null) {
+                // the dates of the transactions are parsed by the converter
+                if (mIsDatePosted && mTransaction != null) {
+                    mTransactionRecord.mDatePosted = characterString;
+                    mIsDatePosted = false;
+                }
+                if (mIsDateEntered && mTransaction != null) {
+                    mTransactionRecord.mDateEntered = characterString;
+                    mIsDateEntered = false;
+                }
+                if (mPrice != null) {
+                    try {
                         mPrice.setDate(new Timestamp(GncXmlHelper.parseDateTime(characterString)));
+                    } catch (ParseException e) {
+                        String message = "Unable to parse transaction time - " + characterString;
+                        Timber.e(e, message);
+                        throw new SAXException(message, e);
                     }
-                } catch (ParseException e) {
-                    String message = "Unable to parse transaction time - " + characterString;
-                    Timber.e(e, message);
-                    throw new SAXException(message, e);
                 }
                 break;
             case GncXmlHelper.TAG_RECURRENCE_PERIOD: //for parsing of old backup files
@@ -630,41 +697,23 @@ public class GncXmlHandler extends DefaultHandler {
                 mSplit.setMemo(characterString);
                 break;
             case GncXmlHelper.TAG_SPLIT_VALUE:
-                try {
-                    // The value and quantity can have different sign for custom currency(stock).
-                    // Use the sign of value for split, as it would not be custom currency
-                    String q = characterString;
-                    if (q.charAt(0) == '-') {
-                        mNegativeQuantity = true;
-                        q = q.substring(1);
-                    } else {
-                        mNegativeQuantity = false;
-                    }
-                    mValue = GncXmlHelper.parseSplitAmount(characterString).abs(); // use sign from quantity
-                } catch (ParseException e) {
-                    String msg = "Error parsing split quantity - " + characterString;
-                    Timber.e(e, msg);
-                    throw new SAXException(msg, e);
-                }
+                // The value and quantity can have different sign for custom currency(stock).
+                // Use the sign of value for split, as it would not be custom currency
+                mNegativeQuantity = characterString.startsWith("-");
+                // parsed by the converter, which uses the absolute amount
+                mValue = characterString;
                 break;
             case GncXmlHelper.TAG_SPLIT_QUANTITY:
                 // delay the assignment of currency when the split account is seen
-                try {
-                    mQuantity = GncXmlHelper.parseSplitAmount(characterString).abs();
-                } catch (ParseException e) {
-                    String msg = "Error parsing split quantity - " + characterString;
-                    Timber.e(e, msg);
-                    throw new SAXException(msg, e);
-                }
+                mQuantity = characterString;
                 break;
             case GncXmlHelper.TAG_SPLIT_ACCOUNT:
                 if (!mInTemplates) {
                     //this is intentional: GnuCash XML formats split amounts, credits are negative, debits are positive.
                     mSplit.setType(mNegativeQuantity ? TransactionType.CREDIT : TransactionType.DEBIT);
-                    //the split amount uses the account currency
-                    mSplit.setQuantity(new Money(mQuantity, getCommodityForAccount(characterString)));
-                    //the split value uses the transaction currency
-                    mSplit.setValue(new Money(mValue, mTransaction.getCommodity()));
+                    //the split amount uses the account currency, the split value uses the transaction currency
+                    mTransactionRecord.mSplits.add(new TransactionConverter.SplitRecord(mSplit,
+                            mValue, mTransaction.getCommodity(), mQuantity, getCommodityForAccount(characterString)));
                     mSplit.setAccountUID(characterString);
                 } else {
                     if (!mIgnoreTemplateTransaction)
@@ -677,15 +726,16 @@ public class GncXmlHandler extends DefaultHandler {
                 break;
             case GncXmlHelper.TAG_TRANSACTION:
                 mTransaction.setTemplate(mInTemplates);
-                Split imbSplit = mTransaction.createAutoBalanceSplit();
-                if (imbSplit != null) {
-                    mAutoBalanceSplits.add(imbSplit);
-                }
                 if (mInTemplates) {
+                    // the few template transactions are converted right away
+                    TransactionConverter.convert(mTransactionRecord);
+                    if (mTransactionRecord.mAutoBalanceSplit != null) {
+                        mAutoBalanceSplits.add(mTransactionRecord.mAutoBalanceSplit);
+                    }
                     if (!mIgnoreTemplateTransaction)
                         mTemplateTransactions.add(mTransaction);
                 } else {
-                    mTransactionList.add(mTransaction);
+                    mTransactionList.add(mTransactionRecord);
                 }
                 if (mRecurrencePeriod > 0) { //if we find an old format recurrence period, parse it
                     mTransaction.setTemplate(true);
@@ -695,6 +745,10 @@ public class GncXmlHandler extends DefaultHandler {
                 mRecurrencePeriod = 0;
                 mIgnoreTemplateTransaction = true;
                 mTransaction = null;
+                mTransactionRecord = null;
+                if (mTransactionList.size() >= BATCH_SIZE) {
+                    flushTransactions();
+                }
                 break;
             case GncXmlHelper.TAG_TEMPLATE_TRANSACTIONS:
                 mInTemplates = false;
@@ -784,6 +838,9 @@ public class GncXmlHandler extends DefaultHandler {
                     mScheduledActionsList.add(mScheduledAction);
                     int count = generateMissedScheduledTransactions(mScheduledAction);
                     Timber.i("Generated %d transactions from scheduled action", count);
+                    if (mTransactionList.size() >= BATCH_SIZE) {
+                        flushTransactions();
+                    }
                 }
                 mIgnoreScheduledAction = false;
                 break;
@@ -820,6 +877,9 @@ public class GncXmlHandler extends DefaultHandler {
                 if (mPrice != null) {
                     mPriceList.add(mPrice);
                     mPrice = null;
+                    if (mPriceList.size() >= BATCH_SIZE) {
+                        flushPrices();
+                    }
                 }
                 break;
 
@@ -855,25 +915,124 @@ public class GncXmlHandler extends DefaultHandler {
         mContent.append(chars, start, length);
     }
 
+    @Override
+    public void startDocument() throws SAXException {
+        super.startDocument();
+        Timber.d("bulk insert starts");
+        mImportStartTime = System.nanoTime();
+        mConverter = new TransactionConverter(mConverterThreads);
+        mWriter = new BatchWriter("gnucash-import-writer", WRITE_QUEUE_CAPACITY);
+        mWriter.submit(() -> {
+            mAccountsDbAdapter.beginTransaction();
+            // foreign keys stay enforced: PRAGMA foreign_keys has no effect inside a transaction
+            mAccountsDbAdapter.deleteAllRecords();
+        });
+    }
+
     @Override
     public void endDocument() throws SAXException {
         super.endDocument();
-        HashMap<String, String> mapFullName = new HashMap<>(mAccountList.size());
-        HashMap<String, Account> mapImbalanceAccount = new HashMap<>();
+        try {
+            flushTransactions();
+            saveConvertedTransactions(true);
+
+            final List<Transaction> templateTransactions = mTemplateTransactions;
+            mWriter.submit(() -> {
+                long nTempTransactions = mTransactionsDbAdapter.bulkAddRecords(templateTransactions, DatabaseAdapter.UpdateMethod.insert);
+                Timber.d("%d template transactions inserted", nTempTransactions);
+            });
+
+            flushPrices();
+
+            //// TODO: 01.06.2016 Re-enable import of Budget stuff when the UI is complete
+//            long nBudgets = mBudgetsDbAdapter.bulkAddRecords(mBudgetList, DatabaseAdapter.UpdateMethod.insert);
+
+            String mostAppearedCurrency = "";
+            int mostCurrencyAppearance = 0;
+            for (Map.Entry<String, Integer> entry : mCurrencyCount.entrySet()) {
+                if (entry.getValue() > mostCurrencyAppearance) {
+                    mostCurrencyAppearance = entry.getValue();
+                    mostAppearedCurrency = entry.getKey();
+                }
+            }
+            final String defaultCurrencyCode = mostCurrencyAppearance > 0 ? mostAppearedCurrency : null;
+            final String rootAccountUID = mRootAccount.getUID();
+
+            mWriter.submit(() -> {
+                if (defaultCurrencyCode != null) {
+                    GnuCashApplication.setDefaultCurrencyCode(defaultCurrencyCode);
+                }
+
+                Timber.d("bulk insert time: %d", System.nanoTime() - mImportStartTime);
+
+                //if all of the import went smoothly, then add the book to the book db
+                BooksDbAdapter booksDbAdapter = BooksDbAdapter.getInstance();
+                mBook.setRootAccountUID(rootAccountUID);
+                mBook.setDisplayName(booksDbAdapter.generateDefaultBookName());
+                //we on purpose do not set the book active. Only import. Caller should handle activation
+                booksDbAdapter.addRecord(mBook, DatabaseAdapter.UpdateMethod.insert);
+                mAccountsDbAdapter.setTransactionSuccessful();
+            });
+        } finally {
+            mConverter.shutdown();
+            mWriter.finish(this::closeDatabase);
+        }
+    }
+
+    /**
+     * Discards everything imported so far. Must be called if parsing fails before the end of the document.
+     */
+    public void abort() {
+        if (mConverter != null) {
+            mConverter.shutdown();
+        }
+        if (mWriter == null) {
+            if (mDB.isOpen()) {
+                mDB.close();
+            }
+        } else if (!mWriter.isFinished()) {
+            try {
+                mWriter.finish(this::closeDatabase);
+            } catch (SAXException | RuntimeException e) {
+                // already reported by the parser
+                Timber.w(e, "Error while aborting the import");
+            }
+        }
+    }
 
-        // The XML has no ROOT, create one
+    /**
+     * Rolls back the import unless it was marked successful, and closes the database.
+     * Must run on the writer thread, which owns the database transaction.
+     */
+    private void closeDatabase() {
+        if (mDB.inTransaction()) {
+            mAccountsDbAdapter.endTransaction();
+        }
+        mDB.close(); //close it after import
+    }
+
+    /**
+     * Saves the accounts parsed so far to the database.
+     * <p>The ROOT account is created if the file has none, top level accounts are attached to it
+     * and the full names of the accounts are computed.</p>
+     */
+    private void saveAccounts() throws SAXException {
         if (mRootAccount == null) {
+            // The XML has no ROOT, create one
             mRootAccount = new Account("ROOT");
             mRootAccount.setAccountType(AccountType.ROOT);
             mAccountList.add(mRootAccount);
             mAccountMap.put(mRootAccount.getUID(), mRootAccount);
         }
+        if (mAccountList.isEmpty()) {
+            return;
+        }
 
         String imbalancePrefix = AccountsDbAdapter.getImbalanceAccountPrefix();
 
         // Add all account without a parent to ROOT, and collect top level imbalance accounts
         for (Account account : mAccountList) {
-            mapFullName.put(account.getUID(), null);
+            mAccountFullNames.put(account.getUID(), null);
             boolean topLevel = false;
             if (account.getParentUID() == null && account.getAccountType() != AccountType.ROOT) {
                 account.setParentUID(mRootAccount.getUID());
@@ -881,29 +1040,14 @@ public class GncXmlHandler extends DefaultHandler {
             }
             if (topLevel || (mRootAccount.getUID().equals(account.getParentUID()))) {
                 if (account.getName().startsWith(imbalancePrefix)) {
-                    mapImbalanceAccount.put(account.getName().substring(imbalancePrefix.length()), account);
+                    mImbalanceAccounts.put(account.getName().substring(imbalancePrefix.length()), account);
                 }
             }
         }
 
-        // Set the account for created balancing splits to correct imbalance accounts
-        for (Split split : mAutoBalanceSplits) {
-            // XXX: yes, getAccountUID() returns a currency code in this case (see Transaction.createAutoBalanceSplit())
-            String currencyCode = split.getAccountUID();
-            Account imbAccount = mapImbalanceAccount.get(currencyCode);
-            if (imbAccount == null) {
-                imbAccount = new Account(imbalancePrefix + currencyCode, mCommoditiesDbAdapter.getCommodity(currencyCode));
-                imbAccount.setParentUID(mRootAccount.getUID());
-                imbAccount.setAccountType(AccountType.BANK);
-                mapImbalanceAccount.put(currencyCode, imbAccount);
-                mAccountList.add(imbAccount);
-            }
-            split.setAccountUID(imbAccount.getUID());
-        }
-
         java.util.Stack<Account> stack = new Stack<>();
         for (Account account : mAccountList) {
-            if (mapFullName.get(account.getUID()) != null) {
+            if (mAccountFullNames.get(account.getUID()) != null) {
                 continue;
             }
             stack.push(account);
@@ -912,7 +1056,7 @@ public class GncXmlHandler extends DefaultHandler {
                 Account acc = stack.peek();
                 if (acc.getAccountType() == AccountType.ROOT) {
                     // ROOT_ACCOUNT_FULL_NAME should ensure ROOT always sorts first
-                    mapFullName.put(acc.getUID(), AccountsDbAdapter.ROOT_ACCOUNT_FULL_NAME);
+                    mAccountFullNames.put(acc.getUID(), AccountsDbAdapter.ROOT_ACCOUNT_FULL_NAME);
                     stack.pop();
                     continue;
                 }
@@ -922,90 +1066,122 @@ public class GncXmlHandler extends DefaultHandler {
                 // has an empty parent
                 if (parentAccount.getAccountType() == AccountType.ROOT) {
                     // top level account, full name is the same as its name
-                    mapFullName.put(acc.getUID(), acc.getName());
+                    mAccountFullNames.put(acc.getUID(), acc.getName());
                     stack.pop();
                     continue;
                 }
-                parentAccountFullName = mapFullName.get(parentUID);
+                parentAccountFullName = mAccountFullNames.get(parentUID);
                 if (parentAccountFullName == null) {
                     // non-top-level account, parent full name still unknown
                     stack.push(parentAccount);
                     continue;
                 }
-                mapFullName.put(acc.getUID(), parentAccountFullName +
+                mAccountFullNames.put(acc.getUID(), parentAccountFullName +
                         AccountsDbAdapter.ACCOUNT_NAME_SEPARATOR + acc.getName());
                 stack.pop();
             }
         }
         for (Account account : mAccountList) {
-            account.setFullName(mapFullName.get(account.getUID()));
+            account.setFullName(mAccountFullNames.get(account.getUID()));
         }
 
-        String mostAppearedCurrency = "";
-        int mostCurrencyAppearance = 0;
-        for (Map.Entry<String, Integer> entry : mCurrencyCount.entrySet()) {
-            if (entry.getValue() > mostCurrencyAppearance) {
-                mostCurrencyAppearance = entry.getValue();
-                mostAppearedCurrency = entry.getKey();
+        final List<Account> accounts = mAccountList;
+        mAccountList = new ArrayList<>();
+        mWriter.submit(() -> {
+            long nAccounts = mAccountsDbAdapter.bulkAddRecords(accounts, DatabaseAdapter.UpdateMethod.insert);
+            Timber.d("%d accounts inserted", nAccounts);
+        });
+    }
+
+    /**
+     * Sets the account of the created balancing splits to the imbalance account of their currency.
+     * <p>Missing imbalance accounts are created and saved immediately.</p>
+     */
+    private void resolveAutoBalanceSplits() throws SAXException {
+        String imbalancePrefix = AccountsDbAdapter.getImbalanceAccountPrefix();
+        for (Split split : mAutoBalanceSplits) {
+            // XXX: yes, getAccountUID() returns a currency code in this case (see Transaction.createAutoBalanceSplit())
+            String currencyCode = split.getAccountUID();
+            Account imbAccount = mImbalanceAccounts.get(currencyCode);
+            if (imbAccount == null) {
+                imbAccount = new Account(imbalancePrefix + currencyCode, mCommodities.get(currencyCode));
+                imbAccount.setParentUID(mRootAccount.getUID());
+                imbAccount.setAccountType(AccountType.BANK);
+                mImbalanceAccounts.put(currencyCode, imbAccount);
+                mAccountMap.put(imbAccount.getUID(), imbAccount);
+                mAccountList.add(imbAccount);
             }
+            split.setAccountUID(imbAccount.getUID());
         }
-        if (mostCurrencyAppearance > 0) {
-            GnuCashApplication.setDefaultCurrencyCode(mostAppearedCurrency);
-        }
+        mAutoBalanceSplits.clear();
+        saveAccounts();
+    }
 
-        saveToDatabase();
+    /**
+     * Saves the buffered transactions to the database, together with the accounts
+     * and scheduled actions they depend on.
+     * <p>Accounts are saved with the first batch of transactions, since GnuCash writes all accounts
+     * of a book before its transactions.</p>
+     * <p>The transactions are handed over to the converter, and the parser goes on with new lists.
+     * The batches whose conversion is complete are handed over to the writer thread.</p>
+     */
+    private void flushTransactions() throws SAXException {
+        saveAccounts();
+        resolveAutoBalanceSplits();
+        //We need to add scheduled actions first because there is a foreign key constraint on transactions
+        //which are generated from scheduled actions (we do auto-create some transactions during import)
+        if (!mScheduledActionsList.isEmpty()) {
+            final List<ScheduledAction> scheduledActions = mScheduledActionsList;
+            mScheduledActionsList = new ArrayList<>();
+            mWriter.submit(() -> {
+                long nSchedActions = mScheduledActionsDbAdapter.bulkAddRecords(scheduledActions, DatabaseAdapter.UpdateMethod.insert);
+                Timber.d("%d scheduled actions inserted", nSchedActions);
+            });
+        }
+        if (!mTransactionList.isEmpty()) {
+            mConverter.submit(mTransactionList);
+            mTransactionList = new ArrayList<>(BATCH_SIZE);
+        }
+        saveConvertedTransactions(false);
     }
 
     /**
-     * Saves the imported data to the database
+     * Saves the converted batches of transactions, in the order they were read.
+     * <p>The balancing splits created by the conversion are assigned to the imbalance accounts
+     * before the transactions are handed over to the writer thread.</p>
      *
-     * @return GUID of the newly created book, or null if not successful
+     * @param all {@code true} to wait for the conversion of all the batches,
+     *            {@code false} to save only the batches which are already converted
      */
-    private void saveToDatabase() {
-        BooksDbAdapter booksDbAdapter = BooksDbAdapter.getInstance();
-        mBook.setRootAccountUID(mRootAccount.getUID());
-        mBook.setDisplayName(booksDbAdapter.generateDefaultBookName());
-        //we on purpose do not set the book active. Only import. Caller should handle activation
-
-        long startTime = System.nanoTime();
-        Timber.d("bulk insert starts");
-        try {
-            mAccountsDbAdapter.beginTransaction();
-            // disable foreign key. The database structure should be ensured by the data inserted.
-            // it will make insertion much faster.
-            mAccountsDbAdapter.enableForeignKey(false);
-            Timber.d("before clean up db");
-            mAccountsDbAdapter.deleteAllRecords();
-            Timber.d("deb clean up done %d ns", System.nanoTime() - startTime);
-            long nAccounts = mAccountsDbAdapter.bulkAddRecords(mAccountList, DatabaseAdapter.UpdateMethod.insert);
-            Timber.d("%d accounts inserted", nAccounts);
-            //We need to add scheduled actions first because there is a foreign key constraint on transactions
-            //which are generated from scheduled actions (we do auto-create some transactions during import)
-            long nSchedActions = mScheduledActionsDbAdapter.bulkAddRecords(mScheduledActionsList, DatabaseAdapter.UpdateMethod.insert);
-            Timber.d("%d scheduled actions inserted", nSchedActions);
-
-            long nTempTransactions = mTransactionsDbAdapter.bulkAddRecords(mTemplateTransactions, DatabaseAdapter.UpdateMethod.insert);
-            Timber.d("%d template transactions inserted", nTempTransactions);
-
-            long nTransactions = mTransactionsDbAdapter.bulkAddRecords(mTransactionList, DatabaseAdapter.UpdateMethod.insert);
-            Timber.d("%d transactions inserted", nTransactions);
-
-            long nPrices = mPricesDbAdapter.bulkAddRecords(mPriceList, DatabaseAdapter.UpdateMethod.insert);
-            Timber.d("%d prices inserted", nPrices);
-
-            //// TODO: 01.06.2016 Re-enable import of Budget stuff when the UI is complete
-//            long nBudgets = mBudgetsDbAdapter.bulkAddRecords(mBudgetList, DatabaseAdapter.UpdateMethod.insert);
-
-            long endTime = System.nanoTime();
-            Timber.d("bulk insert time: %d", endTime - startTime);
+    private void saveConvertedTransactions(boolean all) throws SAXException {
+        List<TransactionConverter.Record> records;
+        while ((records = mConverter.poll(all)) != null) {
+            final List<Transaction> transactions = new ArrayList<>(records.size());
+            for (TransactionConverter.Record record : records) {
+                transactions.add(record.mTransaction);
+                if (record.mAutoBalanceSplit != null) {
+                    mAutoBalanceSplits.add(record.mAutoBalanceSplit);
+                }
+            }
+            resolveAutoBalanceSplits();
+            mWriter.submit(() -> {
+                long nTransactions = mTransactionsDbAdapter.bulkAddRecords(transactions, DatabaseAdapter.UpdateMethod.insert);
+                Timber.d("%d transactions inserted", nTransactions);
+            });
+        }
+    }
 
-            //if all of the import went smoothly, then add the book to the book db
-            booksDbAdapter.addRecord(mBook, DatabaseAdapter.UpdateMethod.insert);
-            mAccountsDbAdapter.setTransactionSuccessful();
-        } finally {
-            mAccountsDbAdapter.enableForeignKey(true);
-            mAccountsDbAdapter.endTransaction();
-            mDB.close(); //close it after import
+    /**
+     * Saves the buffered prices to the database
+     */
+    private void flushPrices() throws SAXException {
+        if (!mPriceList.isEmpty()) {
+            final List<Price> prices = mPriceList;
+            mPriceList = new ArrayList<>(BATCH_SIZE);
+            mWriter.submit(() -> {
+                long nPrices = mPricesDbAdapter.bulkAddRecords(prices, DatabaseAdapter.UpdateMethod.insert);
+                Timber.d("%d prices inserted", nPrices);
+            });
         }
     }
 
@@ -1018,6 +1194,21 @@ public class GncXmlHandler extends DefaultHandler {
         return mBook.getUID();
     }
 
+    /**
+     * Returns the GUID of a commodity of the book
+     *
+     * @param currencyCode Currency code of the commodity
+     * @return GUID of the commodity
+     * @throws IllegalArgumentException if the book has no commodity with the code
+     */
+    private String getCommodityUID(String currencyCode) {
+        Commodity commodity = mCommodities.get(currencyCode);
+        if (commodity == null) {
+            throw new IllegalArgumentException("Currency code not found in commodities");
+        }
+        return commodity.getUID();
+    }
+
     /**
      * Returns the currency for an account which has been parsed (but not yet saved to the db)
      * <p>This is used when parsing splits to assign the right currencies to the splits</p>
@@ -1092,7 +1283,8 @@ public class GncXmlHandler extends DefaultHandler {
                     Transaction transaction = new Transaction(templateTransaction, true);
                     transaction.setTime(lastRuntime);
                     transaction.setScheduledActionUID(scheduledAction.getUID());
-                    mTransactionList.add(transaction);
+                    // the copy keeps the amounts and the balancing split of the template
+                    mTransactionList.add(TransactionConverter.Record.ofConverted(transaction));
                     //autobalance splits are generated with the currency of the transactions as the GUID
                     //so we add them to the mAutoBalanceSplits which will be updated to real GUIDs before saving
                     List<Split> autoBalanceSplits = transaction.getSplits(transaction.getCurrencyCode());
@@ -16,6 +16,8 @@
  */
 package org.gnucash.android.importer;
 
+import androidx.annotation.VisibleForTesting;
+
 import org.gnucash.android.db.adapter.TransactionsDbAdapter;
 import org.gnucash.android.util.PreferencesHelper;
 import org.xml.sax.InputSource;
@@ -41,33 +43,73 @@ import timber.log.Timber;
  */
 public class GncXmlImporter {
 
+    /**
+     * Number of bytes read from the file at a time
+     */
+    private static final int READ_AHEAD_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Maximum number of chunks read ahead of the parser
+     */
+    private static final int READ_AHEAD_CHUNKS = 16;
+
     /**
      * Parse GnuCash XML input and populates the database
+     * <p>The import runs as a pipeline: the file is read and decompressed on one thread,
+     * parsed on the calling thread, the dates and amounts of the transactions are converted
+     * by a pool of threads which grows with the number of cores, and the records are written
+     * to the database on a last thread. The stages are connected by bounded queues,
+     * so a slow stage holds back the others.</p>
      *
      * @param gncXmlInputStream InputStream source of the GnuCash XML file
      * @return GUID of the book into which the XML was imported
      */
     public static String parse(InputStream gncXmlInputStream) throws ParserConfigurationException, SAXException, IOException {
+        return parse(gncXmlInputStream, TransactionConverter.getDefaultThreadCount());
+    }
+
+    /**
+     * Parse GnuCash XML input and populates the database,
+     * converting the transactions on a given number of threads
+     *
+     * @param gncXmlInputStream InputStream source of the GnuCash XML file
+     * @param converterThreads  Number of threads converting the dates and amounts of the
+     *                          transactions, or 0 to convert them on the parser thread
+     * @return GUID of the book into which the XML was imported
+     * @see #parse(InputStream)
+     */
+    @VisibleForTesting
+    public static String parse(InputStream gncXmlInputStream, int converterThreads) throws ParserConfigurationException, SAXException, IOException {
         SAXParserFactory spf = SAXParserFactory.newInstance();
         SAXParser sp = spf.newSAXParser();
         XMLReader xr = sp.getXMLReader();
 
-        BufferedInputStream bos;
+        InputStream source;
         PushbackInputStream pb = new PushbackInputStream(gncXmlInputStream, 2); //we need a pushbackstream to look ahead
         byte[] signature = new byte[2];
         pb.read(signature); //read the signature
         pb.unread(signature); //push back the signature to the stream
         if (signature[0] == (byte) 0x1f && signature[1] == (byte) 0x8b) //check if matches standard gzip magic number
-            bos = new BufferedInputStream(new GZIPInputStream(pb));
+            source = new GZIPInputStream(pb, READ_AHEAD_CHUNK_SIZE);
         else
-            bos = new BufferedInputStream(pb);
+            source = pb;
+        // the file is read and decompressed on another thread, while the previous chunks are parsed
+        ReadAheadInputStream readAhead = new ReadAheadInputStream(source, READ_AHEAD_CHUNK_SIZE, READ_AHEAD_CHUNKS);
+        BufferedInputStream bos = new BufferedInputStream(readAhead);
 
         //TODO: Set an error handler which can log errors
         Timber.d("Start import");
-        GncXmlHandler handler = new GncXmlHandler();
+        GncXmlHandler handler = new GncXmlHandler(converterThreads);
         xr.setContentHandler(handler);
         long startTime = System.nanoTime();
-        xr.parse(new InputSource(bos));
+        try {
+            xr.parse(new InputSource(bos));
+        } catch (SAXException | IOException | RuntimeException e) {
+            handler.abort();
+            throw e;
+        } finally {
+            readAhead.close();
+        }
         long endTime = System.nanoTime();
         Timber.d("%d ns spent on importing the file", endTime - startTime);
 
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2012-2024 GnuCash Android developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.importer;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Input stream which reads its source on a background thread.
+ * <p>Used to decompress a gzipped file while the XML parser works on the previous chunks.
+ * The background thread reads ahead at most {@code capacity} chunks of {@code chunkSize} bytes,
+ * then waits for the parser to consume them.</p>
+ * <p>Errors of the source are thrown by {@link #read(byte[], int, int)} once the chunks read
+ * before them have been consumed.</p>
+ */
+final class ReadAheadInputStream extends InputStream {
+
+    /**
+     * Marks the end of the source in the queue
+     */
+    private static final byte[] END_OF_STREAM = new byte[0];
+
+    private final BlockingQueue<byte[]> mChunks;
+    private final Thread mThread;
+    private volatile IOException mError;
+    private volatile boolean mClosed = false;
+
+    private byte[] mChunk;
+    private int mPosition;
+
+    /**
+     * Starts reading the source
+     *
+     * @param source    Stream to read. It is closed when this stream is closed
+     * @param chunkSize Number of bytes of each read of the source
+     * @param capacity  Maximum number of chunks read ahead
+     */
+    ReadAheadInputStream(@NonNull final InputStream source, final int chunkSize, int capacity) {
+        mChunks = new ArrayBlockingQueue<>(capacity);
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readSource(source, chunkSize);
+            }
+        }, "gnucash-import-reader");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    private void readSource(InputStream source, int chunkSize) {
+        try {
+            while (!mClosed) {
+                byte[] buffer = new byte[chunkSize];
+                int length = 0;
+                int count;
+                while (length < chunkSize && (count = source.read(buffer, length, chunkSize - length)) != -1) {
+                    length += count;
+                }
+                if (length == 0) {
+                    break;
+                }
+                if (length < chunkSize) {
+                    byte[] chunk = new byte[length];
+                    System.arraycopy(buffer, 0, chunk, 0, length);
+                    buffer = chunk;
+                }
+                mChunks.put(buffer);
+            }
+        } catch (IOException e) {
+            mError = e;
+        } catch (InterruptedException e) {
+            // closed by the reader
+            return;
+        } finally {
+            try {
+                source.close();
+            } catch (IOException ignored) {
+            }
+        }
+        try {
+            mChunks.put(END_OF_STREAM);
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextChunk()) {
+            return -1;
+        }
+        return mChunk[mPosition++] & 0xff;
+    }
+
+    @Override
+    public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!nextChunk()) {
+            return -1;
+        }
+        int count = Math.min(length, mChunk.length - mPosition);
+        System.arraycopy(mChunk, mPosition, buffer, offset, count);
+        mPosition += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return mChunk == null || mChunk == END_OF_STREAM ? 0 : mChunk.length - mPosition;
+    }
+
+    /**
+     * Makes sure that there are unread bytes in the current chunk
+     *
+     * @return {@code false} at the end of the source
+     */
+    private boolean nextChunk() throws IOException {
+        if (mClosed) {
+            throw new IOException("Stream closed");
+        }
+        while (mChunk == null || (mChunk != END_OF_STREAM && mPosition == mChunk.length)) {
+            try {
+                mChunk = mChunks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading the import file");
+            }
+            mPosition = 0;
+        }
+        if (mChunk == END_OF_STREAM) {
+            if (mError != null) {
+                throw mError;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        if (!mClosed) {
+            mClosed = true;
+            mThread.interrupt();
+            mChunks.clear();
+        }
+    }
+}
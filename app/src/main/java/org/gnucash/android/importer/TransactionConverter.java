@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2012-2024 GnuCash Android developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.importer;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.gnucash.android.export.xml.GncXmlHelper;
+import org.gnucash.android.model.Commodity;
+import org.gnucash.android.model.Money;
+import org.gnucash.android.model.Split;
+import org.gnucash.android.model.Transaction;
+import org.xml.sax.SAXException;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import timber.log.Timber;
+
+/**
+ * Converts the dates and amounts of the imported transactions on a pool of threads.
+ * <p>The parser reads the text of the dates and amounts of each transaction into a
+ * {@link Record}, and hands the records over in batches. The workers parse the text,
+ * set the amounts of the splits and create the balancing split of each transaction,
+ * while the parser goes on with the next batches.</p>
+ * <p>Converted batches are returned in the order they were submitted. At most twice as many
+ * batches as there are workers are in flight: when the parser gets ahead, {@link #poll(boolean)}
+ * waits for the oldest batch, which bounds the memory used by the import.
+ * Without workers, the batches are converted on the parser thread when they are submitted.</p>
+ */
+final class TransactionConverter {
+
+    /**
+     * Maximum number of workers, which also bounds the number of batches held in memory
+     */
+    private static final int MAX_THREADS = 8;
+
+    /**
+     * Transaction whose dates and split amounts have been read, but not converted yet
+     */
+    static final class Record {
+        final Transaction mTransaction;
+        @Nullable
+        String mDatePosted;
+        @Nullable
+        String mDateEntered;
+        final List<SplitRecord> mSplits = new ArrayList<>(2);
+        /**
+         * Balancing split created by the conversion, whose account is still to be resolved
+         */
+        @Nullable
+        Split mAutoBalanceSplit;
+        private boolean mConverted = false;
+
+        Record(@NonNull Transaction transaction) {
+            mTransaction = transaction;
+        }
+
+        /**
+         * Returns a record for a transaction whose dates and amounts are already set,
+         * such as a run of a scheduled action copied from its template.
+         * <p>The record is left as is by the conversion.</p>
+         *
+         * @param transaction Transaction, including its balancing split if it needs one
+         * @return Converted record of the transaction
+         */
+        static Record ofConverted(@NonNull Transaction transaction) {
+            Record record = new Record(transaction);
+            record.mConverted = true;
+            return record;
+        }
+    }
+
+    /**
+     * Split whose amounts have been read, but not converted yet
+     */
+    static final class SplitRecord {
+        final Split mSplit;
+        final String mValue;
+        final Commodity mValueCommodity;
+        final String mQuantity;
+        final Commodity mQuantityCommodity;
+
+        /**
+         * @param split             Split to which the amounts are assigned
+         * @param value             Text of the value, in the currency of the transaction
+         * @param valueCommodity    Currency of the transaction
+         * @param quantity          Text of the quantity, in the commodity of the account
+         * @param quantityCommodity Commodity of the account of the split
+         */
+        SplitRecord(@NonNull Split split, @NonNull String value, @NonNull Commodity valueCommodity,
+                    @NonNull String quantity, @NonNull Commodity quantityCommodity) {
+            mSplit = split;
+            mValue = value;
+            mValueCommodity = valueCommodity;
+            mQuantity = quantity;
+            mQuantityCommodity = quantityCommodity;
+        }
+    }
+
+    @Nullable
+    private final ExecutorService mExecutor;
+    private final int mCapacity;
+    private final ArrayDeque<Future<List<Record>>> mBatches = new ArrayDeque<>();
+
+    /**
+     * Starts the workers
+     *
+     * @param threadCount Number of workers, or 0 to convert the batches on the parser thread
+     */
+    TransactionConverter(int threadCount) {
+        if (threadCount > 0) {
+            final AtomicInteger threadNumber = new AtomicInteger();
+            mExecutor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable runnable) {
+                    Thread thread = new Thread(runnable, "gnucash-import-converter-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        } else {
+            mExecutor = null;
+        }
+        mCapacity = 2 * threadCount;
+    }
+
+    /**
+     * Returns the default number of workers.
+     * <p>Two cores are left to the parser and to the writer of the import, so that small devices
+     * convert the transactions on the parser thread.</p>
+     */
+    static int getDefaultThreadCount() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return Math.max(0, Math.min(MAX_THREADS, cores - 2));
+    }
+
+    /**
+     * Queues a batch of records for conversion
+     *
+     * @param records Records, which must not be modified by the parser anymore
+     */
+    void submit(@NonNull final List<Record> records) {
+        Callable<List<Record>> conversion = new Callable<List<Record>>() {
+            @Override
+            public List<Record> call() throws SAXException {
+                for (Record record : records) {
+                    convert(record);
+                }
+                return records;
+            }
+        };
+        if (mExecutor == null) {
+            FutureTask<List<Record>> task = new FutureTask<>(conversion);
+            task.run();
+            mBatches.add(task);
+        } else {
+            mBatches.add(mExecutor.submit(conversion));
+        }
+    }
+
+    /**
+     * Returns the oldest converted batch, if it is available
+     *
+     * @param wait {@code true} to wait for the oldest batch, if it is still being converted.
+     *             The oldest batch is also waited for when too many batches are in flight
+     * @return Converted records of the oldest batch, or {@code null} if there is none to return
+     * @throws SAXException if the conversion of the batch failed or the parser was interrupted
+     */
+    @Nullable
+    List<Record> poll(boolean wait) throws SAXException {
+        Future<List<Record>> batch = mBatches.peek();
+        if (batch == null || !(wait || batch.isDone() || mBatches.size() > mCapacity)) {
+            return null;
+        }
+        mBatches.remove();
+        try {
+            return batch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SAXException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SAXException) {
+                throw (SAXException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new SAXException((Exception) cause);
+        }
+    }
+
+    /**
+     * Stops the workers and discards the batches which have not been returned yet
+     */
+    void shutdown() {
+        for (Future<List<Record>> batch : mBatches) {
+            batch.cancel(true);
+        }
+        mBatches.clear();
+        if (mExecutor != null) {
+            mExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Parses the dates and amounts of a transaction and creates its balancing split
+     * <p>The conversion is only run once, even if the record is converted again.</p>
+     *
+     * @param record Transaction read by the parser
+     * @throws SAXException if a date or an amount cannot be parsed
+     */
+    static void convert(@NonNull Record record) throws SAXException {
+        if (record.mConverted) {
+            return;
+        }
+        Transaction transaction = record.mTransaction;
+        if (record.mDatePosted != null) {
+            transaction.setTime(parseDateTime(record.mDatePosted));
+        }
+        if (record.mDateEntered != null) {
+            transaction.setCreatedTimestamp(new Timestamp(parseDateTime(record.mDateEntered)));
+        }
+        for (SplitRecord splitRecord : record.mSplits) {
+            Split split = splitRecord.mSplit;
+            // the sign is given by the type of the split
+            split.setQuantity(new Money(parseAmount(splitRecord.mQuantity).abs(), splitRecord.mQuantityCommodity));
+            split.setValue(new Money(parseAmount(splitRecord.mValue).abs(), splitRecord.mValueCommodity));
+        }
+        record.mAutoBalanceSplit = transaction.createAutoBalanceSplit();
+        record.mConverted = true;
+    }
+
+    private static long parseDateTime(String dateString) throws SAXException {
+        try {
+            return GncXmlHelper.parseDateTime(dateString);
+        } catch (ParseException e) {
+            String message = "Unable to parse transaction time - " + dateString;
+            Timber.e(e, message);
+            throw new SAXException(message, e);
+        }
+    }
+
+    private static BigDecimal parseAmount(String amountString) throws SAXException {
+        try {
+            return GncXmlHelper.parseSplitAmount(amountString);
+        } catch (ParseException e) {
+            String message = "Error parsing split quantity - " + amountString;
+            Timber.e(e, message);
+            throw new SAXException(message, e);
+        }
+    }
+}
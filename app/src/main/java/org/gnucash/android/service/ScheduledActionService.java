@@ -27,12 +27,12 @@ import androidx.core.app.JobIntentService;
 
 import org.gnucash.android.app.GnuCashApplication;
 import org.gnucash.android.db.DatabaseHelper;
+import org.gnucash.android.db.DatabaseReaderPool;
 import org.gnucash.android.db.DatabaseSchema;
+import org.gnucash.android.db.adapter.AdapterRegistry;
 import org.gnucash.android.db.adapter.BooksDbAdapter;
 import org.gnucash.android.db.adapter.DatabaseAdapter;
-import org.gnucash.android.db.adapter.RecurrenceDbAdapter;
 import org.gnucash.android.db.adapter.ScheduledActionDbAdapter;
-import org.gnucash.android.db.adapter.SplitsDbAdapter;
 import org.gnucash.android.db.adapter.TransactionsDbAdapter;
 import org.gnucash.android.export.ExportAsyncTask;
 import org.gnucash.android.export.ExportParams;
@@ -46,6 +46,10 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import timber.log.Timber;
 
@@ -65,6 +69,10 @@ public class ScheduledActionService extends JobIntentService {
 
     private static final int JOB_ID = 1001;
 
+    /**
+     * Maximum number of books processed at the same time
+     */
+    private static final int MAX_BOOK_WORKERS = 4;
 
     public static void enqueueWork(Context context) {
         Intent intent = new Intent(context, ScheduledActionService.class);
@@ -76,34 +84,101 @@ public class ScheduledActionService extends JobIntentService {
         Timber.i("Starting scheduled action service");
 
         BooksDbAdapter booksDbAdapter = BooksDbAdapter.getInstance();
-        List<Book> books = booksDbAdapter.getAllRecords();
-        for (Book book : books) { //// TODO: 20.04.2017 Retrieve only the book UIDs with new method
+        List<Book> books = booksDbAdapter.getAllRecords(); //// TODO: 20.04.2017 Retrieve only the book UIDs with new method
+        processBooks(books);
+
+        Timber.i("Completed service @ %s", DateTimeFormat.longDateTime().print(System.currentTimeMillis()));
+    }
+
+    /**
+     * Executes the scheduled actions of several books.
+     * <p>The books are independent databases, so they are processed in parallel by a bounded
+     * pool of threads, each with its own writable connection to its book.
+     * A failure in one book is logged and does not prevent the others from being processed.</p>
+     *
+     * @param books Books whose scheduled actions are executed
+     */
+    @VisibleForTesting
+    public static void processBooks(List<Book> books) {
+        if (books.isEmpty()) {
+            return;
+        }
+        int workerCount = Math.min(books.size(),
+            Math.min(MAX_BOOK_WORKERS, Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, workerCount));
+        List<Future<Long>> results = new ArrayList<>(books.size());
+        for (final Book book : books) {
+            results.add(executor.submit(() -> processBook(book)));
+        }
+        executor.shutdown();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < books.size(); i++) {
+            Book book = books.get(i);
+            try {
+                long elapsedMillis = results.get(i).get();
+                Timber.i("Processed scheduled actions of book %s in %d ms", book.getDisplayName(), elapsedMillis);
+            } catch (ExecutionException e) {
+                Timber.e(e.getCause(), "Error processing scheduled actions of book %s", book.getDisplayName());
+            } catch (InterruptedException e) {
+                Timber.w("Interrupted while processing scheduled actions");
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        Timber.i("Processed scheduled actions of %d books in %d ms",
+            books.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Executes the scheduled actions of a book
+     *
+     * @param book Book whose scheduled actions are executed
+     * @return Time spent on the book, in milliseconds
+     */
+    private static long processBook(Book book) {
+        long start = System.nanoTime();
+        //the active book is written through the connection of the application
+        boolean isActiveBook = book.getUID().equals(GnuCashApplication.getActiveBookUID());
+        SQLiteDatabase db;
+        if (isActiveBook) {
+            db = GnuCashApplication.getActiveDb();
+        } else {
             DatabaseHelper dbHelper = new DatabaseHelper(GnuCashApplication.getAppContext(), book.getUID());
-            SQLiteDatabase db = dbHelper.getWritableDatabase();
-            RecurrenceDbAdapter recurrenceDbAdapter = new RecurrenceDbAdapter(db);
-            ScheduledActionDbAdapter scheduledActionDbAdapter = new ScheduledActionDbAdapter(db, recurrenceDbAdapter);
+            db = dbHelper.getWritableDatabase();
+        }
+        try {
+            ScheduledActionDbAdapter scheduledActionDbAdapter = AdapterRegistry.getInstance(db).getScheduledActionDbAdapter();
 
             List<ScheduledAction> scheduledActions = scheduledActionDbAdapter.getAllEnabledScheduledActions();
             Timber.i("Processing %d total scheduled actions for Book: %s",
                 scheduledActions.size(), book.getDisplayName());
             processScheduledActions(scheduledActions, db);
-
+        } finally {
             //close all databases except the currently active database
-            if (!db.getPath().equals(GnuCashApplication.getActiveDb().getPath()))
-                db.close();
+            if (isActiveBook) {
+                // the pool is gone if the adapters were destroyed meanwhile
+                DatabaseReaderPool readerPool = GnuCashApplication.getDatabaseReaderPool();
+                if (readerPool != null)
+                    readerPool.scheduleCheckpoint();
+            } else
+                db.close(); // the write-ahead log is checkpointed when the last connection closes
         }
-
-        Timber.i("Completed service @ %s", DateTimeFormat.longDateTime().print(System.currentTimeMillis()));
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
     }
 
     /**
      * Process scheduled actions and execute any pending actions
+     * <p>The transactions generated by all the actions and the updated execution counts
+     * are saved in a single database transaction. Backups are run afterwards.</p>
      *
      * @param scheduledActions List of scheduled actions
      */
     //made public static for testing. Do not call these methods directly
     @VisibleForTesting
     public static void processScheduledActions(List<ScheduledAction> scheduledActions, SQLiteDatabase db) {
+        List<ScheduledAction> dueActions = new ArrayList<>();
         for (ScheduledAction scheduledAction : scheduledActions) {
 
             long now = System.currentTimeMillis();
@@ -119,29 +194,49 @@ public class ScheduledActionService extends JobIntentService {
                 continue;
             }
 
-            executeScheduledEvent(scheduledAction, db);
+            dueActions.add(scheduledAction);
+        }
+        if (dueActions.isEmpty()) {
+            return;
+        }
+
+        TransactionsDbAdapter transactionsDbAdapter = AdapterRegistry.getInstance(db).getTransactionsDbAdapter();
+        List<Transaction> transactions = new ArrayList<>();
+        // the adapter ends the transaction, so that the accounts it creates are seen by the other threads
+        transactionsDbAdapter.beginTransaction();
+        try {
+            for (ScheduledAction scheduledAction : dueActions) {
+                if (scheduledAction.getActionType() == ScheduledAction.ActionType.TRANSACTION) {
+                    Timber.i("Executing scheduled action: %s", scheduledAction.toString());
+                    int executionCount = executeTransactions(scheduledAction, transactionsDbAdapter, transactions, db);
+                    saveExecutions(scheduledAction, executionCount, db);
+                }
+            }
+            if (!transactions.isEmpty()) {
+                transactionsDbAdapter.bulkAddRecords(transactions, DatabaseAdapter.UpdateMethod.insert);
+            }
+            transactionsDbAdapter.setTransactionSuccessful();
+        } finally {
+            transactionsDbAdapter.endTransaction();
+        }
+
+        //the export reads the book on another thread, so it must not wait for the transaction
+        for (ScheduledAction scheduledAction : dueActions) {
+            if (scheduledAction.getActionType() == ScheduledAction.ActionType.BACKUP) {
+                Timber.i("Executing scheduled action: %s", scheduledAction.toString());
+                int executionCount = executeBackup(scheduledAction, GnuCashApplication.getActiveBookUID());
+                saveExecutions(scheduledAction, executionCount, db);
+            }
         }
     }
 
     /**
-     * Executes a scheduled event according to the specified parameters
+     * Records the executions of a scheduled action, in the action and in the database
      *
-     * @param scheduledAction ScheduledEvent to be executed
+     * @param scheduledAction Scheduled action which was executed
+     * @param executionCount  Number of executions, nothing is recorded if it is 0
      */
-    private static void executeScheduledEvent(ScheduledAction scheduledAction, SQLiteDatabase db) {
-        Timber.i("Executing scheduled action: %s", scheduledAction.toString());
-        int executionCount = 0;
-
-        switch (scheduledAction.getActionType()) {
-            case TRANSACTION:
-                executionCount += executeTransactions(scheduledAction, db);
-                break;
-
-            case BACKUP:
-                executionCount += executeBackup(scheduledAction, GnuCashApplication.getActiveBookUID());
-                break;
-        }
-
+    private static void saveExecutions(ScheduledAction scheduledAction, int executionCount, SQLiteDatabase db) {
         if (executionCount > 0) {
             scheduledAction.setLastRun(System.currentTimeMillis());
             // Set the execution count in the object because it will be checked
@@ -217,14 +312,17 @@ public class ScheduledActionService extends JobIntentService {
      * <p>If a schedule was missed, all the intervening transactions will be generated, even if
      * the end time of the transaction was already reached</p>
      *
-     * @param scheduledAction Scheduled action which references the transaction
-     * @param db              SQLiteDatabase where the transactions are to be executed
+     * @param scheduledAction       Scheduled action which references the transaction
+     * @param transactionsDbAdapter Adapter of the book where the transactions are to be executed
+     * @param transactions          List to which the created transactions are added, to be saved by the caller
+     * @param db                    SQLiteDatabase where the transactions are to be executed
      * @return Number of transactions created as a result of this action
      */
-    private static int executeTransactions(ScheduledAction scheduledAction, SQLiteDatabase db) {
+    private static int executeTransactions(ScheduledAction scheduledAction,
+                                           TransactionsDbAdapter transactionsDbAdapter,
+                                           List<Transaction> transactions, SQLiteDatabase db) {
         int executionCount = 0;
         String actionUID = scheduledAction.getActionUID();
-        TransactionsDbAdapter transactionsDbAdapter = new TransactionsDbAdapter(db, new SplitsDbAdapter(db));
         Transaction trxnTemplate;
         try {
             trxnTemplate = transactionsDbAdapter.getRecord(actionUID);
@@ -240,27 +338,21 @@ public class ScheduledActionService extends JobIntentService {
         //if there is no end time, we execute all schedules until now
         long endTime = scheduledAction.getEndTime() > 0 ? Math.min(scheduledAction.getEndTime(), now) : now;
         int totalPlannedExecutions = scheduledAction.getTotalPlannedExecutionCount();
-        List<Transaction> transactions = new ArrayList<>();
 
-        int previousExecutionCount = scheduledAction.getExecutionCount(); // We'll modify it
+        int previousExecutionCount = scheduledAction.getExecutionCount();
         //we may be executing scheduled action significantly after scheduled time (depending on when Android fires the alarm)
-        //so compute the actual transaction time from pre-known values
-        long transactionTime = scheduledAction.computeNextCountBasedScheduledExecutionTime();
-        while (transactionTime <= endTime) {
+        //so compute the actual transaction times from pre-known values
+        int dueExecutionCount = scheduledAction.getExecutionCountUntil(endTime);
+        if (totalPlannedExecutions > 0) {
+            dueExecutionCount = Math.min(dueExecutionCount, totalPlannedExecutions);
+        }
+        for (int executionIndex = previousExecutionCount; executionIndex < dueExecutionCount; executionIndex++) {
             Transaction recurringTrxn = new Transaction(trxnTemplate, true);
-            recurringTrxn.setTime(transactionTime);
+            recurringTrxn.setTime(scheduledAction.computeScheduledExecutionTime(executionIndex));
             transactions.add(recurringTrxn);
             recurringTrxn.setScheduledActionUID(scheduledAction.getUID());
-            scheduledAction.setExecutionCount(++executionCount); //required for computingNextScheduledExecutionTime
-
-            if (totalPlannedExecutions > 0 && executionCount >= totalPlannedExecutions)
-                break; //if we hit the total planned executions set, then abort
-            transactionTime = scheduledAction.computeNextCountBasedScheduledExecutionTime();
+            executionCount++;
         }
-
-        transactionsDbAdapter.bulkAddRecords(transactions, DatabaseAdapter.UpdateMethod.insert);
-        // Be nice and restore the parameter's original state to avoid confusing the callers
-        scheduledAction.setExecutionCount(previousExecutionCount);
         return executionCount;
     }
 }
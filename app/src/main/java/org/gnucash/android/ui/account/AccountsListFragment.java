@@ -67,11 +67,13 @@ import org.gnucash.android.model.Money;
 import org.gnucash.android.ui.common.FormActivity;
 import org.gnucash.android.ui.common.Refreshable;
 import org.gnucash.android.ui.common.UxArgument;
-import org.gnucash.android.ui.util.AccountBalanceTask;
+import org.gnucash.android.ui.transaction.TransactionsActivity;
 import org.gnucash.android.ui.util.CursorRecyclerAdapter;
 import org.gnucash.android.util.BackupManager;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import timber.log.Timber;
 
@@ -361,6 +363,7 @@ public class AccountsListFragment extends Fragment implements
     @Override
     public void onLoadFinished(@NonNull Loader<Cursor> loader, Cursor cursor) {
         Timber.d("Accounts loader finished. Swapping in cursor");
+        mAccountRecyclerAdapter.setAccountBalances(((AccountsCursorLoader) loader).getAccountBalances());
         mAccountRecyclerAdapter.swapCursor(cursor);
         mAccountRecyclerAdapter.notifyDataSetChanged();
         if (getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.RESUMED)) {
@@ -418,6 +421,7 @@ public class AccountsListFragment extends Fragment implements
         private String mParentAccountUID = null;
         private String mFilter;
         private DisplayMode mDisplayMode = DisplayMode.TOP_LEVEL;
+        private Map<String, Money> mAccountBalances = Collections.emptyMap();
 
         /**
          * Initializes the loader to load accounts from the database.
@@ -447,7 +451,7 @@ public class AccountsListFragment extends Fragment implements
 
         @Override
         public Cursor loadInBackground() {
-            final AccountsDbAdapter adapter = AccountsDbAdapter.getInstance();
+            final AccountsDbAdapter adapter = getReader().getAccountsDbAdapter();
             mDatabaseAdapter = adapter;
             Cursor cursor;
 
@@ -473,10 +477,28 @@ public class AccountsListFragment extends Fragment implements
                 }
             }
 
-            if (cursor != null)
+            if (cursor != null) {
                 registerContentObserver(cursor);
+                // balances of sub-accounts are rolled up in one pass instead of one query per row
+                String rootAccountUID = mFilter == null && !TextUtils.isEmpty(mParentAccountUID) ? mParentAccountUID : null;
+                try {
+                    mAccountBalances = adapter.getAccountBalances(rootAccountUID, -1, -1);
+                } catch (Exception ex) {
+                    Timber.e(ex, "Error computing account balances");
+                    mAccountBalances = Collections.emptyMap();
+                }
+            }
             return cursor;
         }
+
+        /**
+         * Returns the balances of the accounts computed with the last load, including sub-accounts
+         *
+         * @return Map of account GUID to account balance
+         */
+        public Map<String, Money> getAccountBalances() {
+            return mAccountBalances;
+        }
     }
 
     @Override
@@ -489,10 +511,21 @@ public class AccountsListFragment extends Fragment implements
 
     class AccountRecyclerAdapter extends CursorRecyclerAdapter<AccountRecyclerAdapter.AccountViewHolder> {
 
+        private Map<String, Money> mAccountBalances = Collections.emptyMap();
+
         public AccountRecyclerAdapter(Cursor cursor) {
             super(cursor);
         }
 
+        /**
+         * Sets the precomputed balances of the accounts in the list
+         *
+         * @param accountBalances Map of account GUID to account balance
+         */
+        public void setAccountBalances(@NonNull Map<String, Money> accountBalances) {
+            mAccountBalances = accountBalances;
+        }
+
         @NonNull
         @Override
         public AccountViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
@@ -517,8 +550,13 @@ public class AccountsListFragment extends Fragment implements
 
             // add a summary of transactions to the account view
 
-            // Make sure the balance task is truly multithread
-            new AccountBalanceTask(holder.binding.accountBalance).execute(accountUID);
+            Money accountBalance = mAccountBalances.get(accountUID);
+            if (accountBalance != null) {
+                TransactionsActivity.displayBalance(holder.binding.accountBalance, accountBalance);
+            } else {
+                // the balances could not be computed when the accounts were loaded
+                holder.binding.accountBalance.setText(null);
+            }
 
             String accountColor = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseSchema.AccountEntry.COLUMN_COLOR_CODE));
             Integer colorValue = parseColor(accountColor);
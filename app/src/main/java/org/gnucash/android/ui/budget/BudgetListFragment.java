@@ -305,7 +305,7 @@ public class BudgetListFragment extends Fragment implements Refreshable,
 
         @Override
         public Cursor loadInBackground() {
-            mDatabaseAdapter = BudgetsDbAdapter.getInstance();
+            mDatabaseAdapter = getReader().getBudgetsDbAdapter();
             return mDatabaseAdapter.fetchAllRecords(null, null, DatabaseSchema.BudgetEntry.COLUMN_NAME + " ASC");
         }
     }
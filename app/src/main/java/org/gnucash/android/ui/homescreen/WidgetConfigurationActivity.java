@@ -43,6 +43,7 @@ import org.gnucash.android.db.BookDbHelper;
 import org.gnucash.android.db.DatabaseHelper;
 import org.gnucash.android.db.DatabaseSchema;
 import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.db.adapter.AdapterRegistry;
 import org.gnucash.android.db.adapter.BooksDbAdapter;
 import org.gnucash.android.model.Account;
 import org.gnucash.android.model.Book;
@@ -132,7 +133,7 @@ public class WidgetConfigurationActivity extends Activity {
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
                 Book book = BooksDbAdapter.getInstance().getRecord(id);
                 SQLiteDatabase db = new DatabaseHelper(WidgetConfigurationActivity.this, book.getUID()).getWritableDatabase();
-                mAccountsDbAdapter = new AccountsDbAdapter(db);
+                mAccountsDbAdapter = AdapterRegistry.getInstance(db).getAccountsDbAdapter();
 
                 Cursor cursor = mAccountsDbAdapter.fetchAllRecordsOrderedByFullName();
                 mAccountsCursorAdapter.swapCursor(cursor);
@@ -249,7 +250,8 @@ public class WidgetConfigurationActivity extends Activity {
             return;
         }
 
-        AccountsDbAdapter accountsDbAdapter = new AccountsDbAdapter(BookDbHelper.getDatabase(bookUID));
+        AccountsDbAdapter accountsDbAdapter = AdapterRegistry.getInstance(BookDbHelper.getDatabase(bookUID))
+            .getAccountsDbAdapter();
 
         final Account account;
         try {
@@ -277,7 +279,7 @@ public class WidgetConfigurationActivity extends Activity {
                 R.layout.widget_4x1);
         views.setTextViewText(R.id.account_name, account.getName());
 
-        Money accountBalance = accountsDbAdapter.getAccountBalance(accountUID, -1, System.currentTimeMillis());
+        Money accountBalance = accountsDbAdapter.getAccountBalances(accountUID, -1, System.currentTimeMillis()).get(accountUID);
 
         if (hideAccountBalance) {
             views.setViewVisibility(R.id.transactions_summary, View.GONE);
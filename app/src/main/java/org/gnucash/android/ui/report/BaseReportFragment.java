@@ -43,6 +43,7 @@ import com.github.mikephil.charting.listener.OnChartValueSelectedListener;
 import org.gnucash.android.R;
 import org.gnucash.android.app.GnuCashApplication;
 import org.gnucash.android.databinding.FragmentPieChartBinding;
+import org.gnucash.android.db.adapter.AccountsDbAdapter;
 import org.gnucash.android.db.adapter.CommoditiesDbAdapter;
 import org.gnucash.android.model.AccountType;
 import org.gnucash.android.model.Commodity;
@@ -51,6 +52,7 @@ import org.joda.time.LocalDateTime;
 import org.joda.time.Months;
 import org.joda.time.Years;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -232,6 +234,16 @@ public abstract class BaseReportFragment extends Fragment implements
     }
 
 
+    /**
+     * Converts a balance in the smallest unit of the report commodity to a chart value
+     *
+     * @param amount Balance as returned by {@link AccountsDbAdapter#getAccountsPeriodBalances}
+     * @return Chart value of the balance
+     */
+    protected float toChartValue(long amount) {
+        return BigDecimal.valueOf(amount, mCommodity.getSmallestFractionDigits()).floatValue();
+    }
+
     /**
      * Calculates difference between two date values accordingly to {@code mGroupInterval}
      *
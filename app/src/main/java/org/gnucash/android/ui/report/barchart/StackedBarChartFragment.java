@@ -53,7 +53,6 @@ import org.joda.time.LocalDateTime;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -137,12 +136,12 @@ public class StackedBarChartFragment extends BaseReportFragment {
         LocalDateTime tmpDate = new LocalDateTime(getStartDate(mAccountType).toDate().getTime());
         int count = getDateDiff(new LocalDateTime(getStartDate(mAccountType).toDate().getTime()),
                 new LocalDateTime(getEndDate(mAccountType).toDate().getTime()));
+        long[] periodStarts = new long[count + 1];
+        long end = 0;
         for (int i = 0; i <= count; i++) {
-            long start = 0;
-            long end = 0;
             switch (mGroupInterval) {
                 case MONTH:
-                    start = tmpDate.dayOfMonth().withMinimumValue().millisOfDay().withMinimumValue().toDate().getTime();
+                    periodStarts[i] = tmpDate.dayOfMonth().withMinimumValue().millisOfDay().withMinimumValue().toDate().getTime();
                     end = tmpDate.dayOfMonth().withMaximumValue().millisOfDay().withMaximumValue().toDate().getTime();
 
                     xValues.add(tmpDate.toString(X_AXIS_MONTH_PATTERN));
@@ -150,60 +149,68 @@ public class StackedBarChartFragment extends BaseReportFragment {
                     break;
                 case QUARTER:
                     int quarter = getQuarter(tmpDate);
-                    start = tmpDate.withMonthOfYear(quarter * 3 - 2).dayOfMonth().withMinimumValue().millisOfDay().withMinimumValue().toDate().getTime();
+                    periodStarts[i] = tmpDate.withMonthOfYear(quarter * 3 - 2).dayOfMonth().withMinimumValue().millisOfDay().withMinimumValue().toDate().getTime();
                     end = tmpDate.withMonthOfYear(quarter * 3).dayOfMonth().withMaximumValue().millisOfDay().withMaximumValue().toDate().getTime();
 
                     xValues.add(String.format(X_AXIS_QUARTER_PATTERN, quarter, tmpDate.toString(" YY")));
                     tmpDate = tmpDate.plusMonths(3);
                     break;
                 case YEAR:
-                    start = tmpDate.dayOfYear().withMinimumValue().millisOfDay().withMinimumValue().toDate().getTime();
+                    periodStarts[i] = tmpDate.dayOfYear().withMinimumValue().millisOfDay().withMinimumValue().toDate().getTime();
                     end = tmpDate.dayOfYear().withMaximumValue().millisOfDay().withMaximumValue().toDate().getTime();
 
                     xValues.add(tmpDate.toString(X_AXIS_YEAR_PATTERN));
                     tmpDate = tmpDate.plusYears(1);
                     break;
             }
+        }
+
+        List<Account> accounts = new ArrayList<>();
+        for (Account account : mAccountsDbAdapter.getSimpleAccountList()) {
+            if (account.getAccountType() == mAccountType
+                    && !account.isPlaceholderAccount()
+                    && account.getCommodity().equals(mCommodity)) {
+                accounts.add(account);
+            }
+        }
+        long[][] balances = mAccountsDbAdapter.getAccountsPeriodBalances(accounts, periodStarts, end, mCommodity);
+
+        for (int i = 0; i <= count; i++) {
             List<Float> stack = new ArrayList<>();
-            for (Account account : mAccountsDbAdapter.getSimpleAccountList()) {
-                if (account.getAccountType() == mAccountType
-                        && !account.isPlaceholderAccount()
-                        && account.getCommodity().equals(mCommodity)) {
-
-                    double balance = mAccountsDbAdapter.getAccountsBalance(
-                            Collections.singletonList(account.getUID()), start, end).getAmount().doubleValue();
-                    if (balance != 0) {
-                        stack.add((float) balance);
-
-                        String accountName = account.getName();
-                        while (labels.contains(accountName)) {
-                            if (!accountToColorMap.containsKey(account.getUID())) {
-                                for (String label : labels) {
-                                    if (label.equals(accountName)) {
-                                        accountName += " ";
-                                    }
+            for (int j = 0; j < accounts.size(); j++) {
+                Account account = accounts.get(j);
+                float balance = toChartValue(balances[j][i]);
+                if (balance != 0) {
+                    stack.add(balance);
+
+                    String accountName = account.getName();
+                    while (labels.contains(accountName)) {
+                        if (!accountToColorMap.containsKey(account.getUID())) {
+                            for (String label : labels) {
+                                if (label.equals(accountName)) {
+                                    accountName += " ";
                                 }
-                            } else {
-                                break;
                             }
+                        } else {
+                            break;
                         }
-                        labels.add(accountName);
-
-                        if (!accountToColorMap.containsKey(account.getUID())) {
-                            Integer color;
-                            if (mUseAccountColor) {
-                                color = (account.getColor() != Account.DEFAULT_COLOR)
-                                        ? account.getColor()
-                                        : COLORS[accountToColorMap.size() % COLORS.length];
-                            } else {
-                                color = COLORS[accountToColorMap.size() % COLORS.length];
-                            }
-                            accountToColorMap.put(account.getUID(), color);
+                    }
+                    labels.add(accountName);
+
+                    if (!accountToColorMap.containsKey(account.getUID())) {
+                        Integer color;
+                        if (mUseAccountColor) {
+                            color = (account.getColor() != Account.DEFAULT_COLOR)
+                                    ? account.getColor()
+                                    : COLORS[accountToColorMap.size() % COLORS.length];
+                        } else {
+                            color = COLORS[accountToColorMap.size() % COLORS.length];
                         }
-                        colors.add(accountToColorMap.get(account.getUID()));
-
-                        Timber.d(mAccountType + tmpDate.toString(" MMMM yyyy ") + account.getName() + " = " + stack.get(stack.size() - 1));
+                        accountToColorMap.put(account.getUID(), color);
                     }
+                    colors.add(accountToColorMap.get(account.getUID()));
+
+                    Timber.d(mAccountType + " " + xValues.get(i) + " " + account.getName() + " = " + balance);
                 }
             }
 
@@ -214,12 +214,12 @@ public class CashFlowLineChartFragment extends BaseReportFragment {
      * @return entries which represent a user data
      */
     private List<Entry> getEntryList(AccountType accountType) {
-        List<String> accountUIDList = new ArrayList<>();
+        List<Account> accounts = new ArrayList<>();
         for (Account account : mAccountsDbAdapter.getSimpleAccountList()) {
             if (account.getAccountType() == accountType
                     && !account.isPlaceholderAccount()
                     && account.getCommodity().equals(mCommodity)) {
-                accountUIDList.add(account.getUID());
+                accounts.add(account);
             }
         }
 
@@ -237,10 +237,10 @@ public class CashFlowLineChartFragment extends BaseReportFragment {
 
         int xAxisOffset = getDateDiff(new LocalDateTime(mEarliestTransactionTimestamp), earliest);
         int count = getDateDiff(earliest, latest);
-        List<Entry> values = new ArrayList<>(count + 1);
+        long[] periodStarts = new long[count + 1];
+        long end = 0;
         for (int i = 0; i <= count; i++) {
             long start = 0;
-            long end = 0;
             switch (mGroupInterval) {
                 case QUARTER:
                     int quarter = getQuarter(earliest);
@@ -262,9 +262,19 @@ public class CashFlowLineChartFragment extends BaseReportFragment {
                     earliest = earliest.plusYears(1);
                     break;
             }
-            float balance = mAccountsDbAdapter.getAccountsBalance(accountUIDList, start, end).getAmount().floatValue();
+            periodStarts[i] = start;
+        }
+
+        long[][] balances = mAccountsDbAdapter.getAccountsPeriodBalances(accounts, periodStarts, end, mCommodity);
+        List<Entry> values = new ArrayList<>(count + 1);
+        for (int i = 0; i <= count; i++) {
+            long total = 0;
+            for (long[] accountBalances : balances) {
+                total += accountBalances[i];
+            }
+            float balance = toChartValue(total);
             values.add(new Entry(balance, i + xAxisOffset));
-            Timber.d(accountType + earliest.toString(" MMM yyyy") + ", balance = " + balance);
+            Timber.d(accountType + " period " + i + ", balance = " + balance);
         }
 
         return values;
@@ -154,26 +154,32 @@ public class PieChartFragment extends BaseReportFragment {
         PieDataSet dataSet = new PieDataSet(null, "");
         List<String> labels = new ArrayList<>();
         List<Integer> colors = new ArrayList<>();
+        List<Account> accounts = new ArrayList<>();
         for (Account account : mAccountsDbAdapter.getSimpleAccountList()) {
             if (account.getAccountType() == mAccountType
                     && !account.isPlaceholderAccount()
                     && account.getCommodity().equals(mCommodity)) {
+                accounts.add(account);
+            }
+        }
 
-                float balance = mAccountsDbAdapter.getAccountsBalance(Collections.singletonList(account.getUID()),
-                        mReportPeriodStart, mReportPeriodEnd).getAmount().floatValue();
-                if (balance > 0) {
-                    dataSet.addEntry(new Entry(balance, dataSet.getEntryCount()));
-                    int color;
-                    if (mUseAccountColor) {
-                        color = (account.getColor() != Account.DEFAULT_COLOR)
-                                ? account.getColor()
-                                : ReportsActivity.COLORS[(dataSet.getEntryCount() - 1) % ReportsActivity.COLORS.length];
-                    } else {
-                        color = ReportsActivity.COLORS[(dataSet.getEntryCount() - 1) % ReportsActivity.COLORS.length];
-                    }
-                    colors.add(color);
-                    labels.add(account.getName());
+        long[][] balances = mAccountsDbAdapter.getAccountsPeriodBalances(accounts,
+                new long[]{mReportPeriodStart}, mReportPeriodEnd, mCommodity);
+        for (int i = 0; i < accounts.size(); i++) {
+            Account account = accounts.get(i);
+            float balance = toChartValue(balances[i][0]);
+            if (balance > 0) {
+                dataSet.addEntry(new Entry(balance, dataSet.getEntryCount()));
+                int color;
+                if (mUseAccountColor) {
+                    color = (account.getColor() != Account.DEFAULT_COLOR)
+                            ? account.getColor()
+                            : ReportsActivity.COLORS[(dataSet.getEntryCount() - 1) % ReportsActivity.COLORS.length];
+                } else {
+                    color = ReportsActivity.COLORS[(dataSet.getEntryCount() - 1) % ReportsActivity.COLORS.length];
                 }
+                colors.add(color);
+                labels.add(account.getName());
             }
         }
         dataSet.setColors(colors);
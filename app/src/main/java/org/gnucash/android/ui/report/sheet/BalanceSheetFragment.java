@@ -41,6 +41,7 @@ import org.gnucash.android.ui.transaction.TransactionsActivity;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -53,6 +54,7 @@ public class BalanceSheetFragment extends BaseReportFragment {
 
     private Money mAssetsBalance;
     private Money mLiabilitiesBalance;
+    private Map<String, Money> mAccountBalances;
     private List<AccountType> mAssetAccountTypes;
     private List<AccountType> mLiabilityAccountTypes;
     private List<AccountType> mEquityAccountTypes;
@@ -105,6 +107,7 @@ public class BalanceSheetFragment extends BaseReportFragment {
     protected void generateReport() {
         mAssetsBalance = mAccountsDbAdapter.getAccountBalance(mAssetAccountTypes, -1, System.currentTimeMillis());
         mLiabilitiesBalance = mAccountsDbAdapter.getAccountBalance(mLiabilityAccountTypes, -1, System.currentTimeMillis());
+        mAccountBalances = mAccountsDbAdapter.getAccountBalances(null, -1, -1);
     }
 
     @Override
@@ -139,7 +142,10 @@ public class BalanceSheetFragment extends BaseReportFragment {
         while (cursor.moveToNext()) {
             String accountUID = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseSchema.AccountEntry.COLUMN_UID));
             String name = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseSchema.AccountEntry.COLUMN_NAME));
-            Money balance = mAccountsDbAdapter.getAccountBalance(accountUID);
+            Money balance = mAccountBalances.get(accountUID);
+            if (balance == null) {
+                balance = mAccountsDbAdapter.getAccountBalance(accountUID);
+            }
             View view = inflater.inflate(R.layout.row_balance_sheet, tableLayout, false);
             ((TextView) view.findViewById(R.id.account_name)).setText(name);
             TextView balanceTextView = (TextView) view.findViewById(R.id.account_balance);
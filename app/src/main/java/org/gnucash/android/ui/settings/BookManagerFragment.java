@@ -56,8 +56,8 @@ import org.gnucash.android.db.DatabaseCursorLoader;
 import org.gnucash.android.db.DatabaseHelper;
 import org.gnucash.android.db.DatabaseSchema.BookEntry;
 import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.db.adapter.AdapterRegistry;
 import org.gnucash.android.db.adapter.BooksDbAdapter;
-import org.gnucash.android.db.adapter.SplitsDbAdapter;
 import org.gnucash.android.db.adapter.TransactionsDbAdapter;
 import org.gnucash.android.ui.account.AccountsActivity;
 import org.gnucash.android.ui.common.Refreshable;
@@ -326,11 +326,12 @@ public class BookManagerFragment extends ListFragment implements
             final Context context = view.getContext();
             DatabaseHelper dbHelper = new DatabaseHelper(context, bookUID);
             SQLiteDatabase db = dbHelper.getReadableDatabase();
-            TransactionsDbAdapter trnAdapter = new TransactionsDbAdapter(db, new SplitsDbAdapter(db));
+            AdapterRegistry adapters = AdapterRegistry.getInstance(db);
+            TransactionsDbAdapter trnAdapter = adapters.getTransactionsDbAdapter();
             int transactionCount = (int) trnAdapter.getRecordsCount();
             String transactionStats = getResources().getQuantityString(R.plurals.book_transaction_stats, transactionCount, transactionCount);
 
-            AccountsDbAdapter accountsDbAdapter = new AccountsDbAdapter(db, trnAdapter);
+            AccountsDbAdapter accountsDbAdapter = adapters.getAccountsDbAdapter();
             int accountsCount = (int) accountsDbAdapter.getRecordsCount();
             String accountStats = getResources().getQuantityString(R.plurals.book_account_stats, accountsCount, accountsCount);
             String stats = accountStats + ", " + transactionStats;
@@ -627,7 +627,7 @@ public class ScheduledActionsListFragment extends ListFragment implements
 
         @Override
         public Cursor loadInBackground() {
-            mDatabaseAdapter = TransactionsDbAdapter.getInstance();
+            mDatabaseAdapter = getReader().getTransactionsDbAdapter();
 
             Cursor c = ((TransactionsDbAdapter) mDatabaseAdapter).fetchAllScheduledTransactions();
 
@@ -649,7 +649,7 @@ public class ScheduledActionsListFragment extends ListFragment implements
 
         @Override
         public Cursor loadInBackground() {
-            mDatabaseAdapter = ScheduledActionDbAdapter.getInstance();
+            mDatabaseAdapter = getReader().getScheduledActionDbAdapter();
 
             Cursor c = mDatabaseAdapter.fetchAllRecords(
                 DatabaseSchema.ScheduledActionEntry.COLUMN_TYPE + "=?",
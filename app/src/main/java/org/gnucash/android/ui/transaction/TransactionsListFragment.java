@@ -52,13 +52,12 @@ import org.gnucash.android.databinding.CardviewCompactTransactionBinding;
 import org.gnucash.android.databinding.CardviewTransactionBinding;
 import org.gnucash.android.databinding.FragmentTransactionsListBinding;
 import org.gnucash.android.db.DatabaseCursorLoader;
+import org.gnucash.android.db.DatabaseReaderPool;
 import org.gnucash.android.db.DatabaseSchema;
 import org.gnucash.android.db.adapter.AccountsDbAdapter;
 import org.gnucash.android.db.adapter.DatabaseAdapter;
-import org.gnucash.android.db.adapter.SplitsDbAdapter;
 import org.gnucash.android.db.adapter.TransactionsDbAdapter;
 import org.gnucash.android.model.Money;
-import org.gnucash.android.model.Split;
 import org.gnucash.android.model.Transaction;
 import org.gnucash.android.ui.common.FormActivity;
 import org.gnucash.android.ui.common.Refreshable;
@@ -66,11 +65,9 @@ import org.gnucash.android.ui.common.UxArgument;
 import org.gnucash.android.ui.homescreen.WidgetConfigurationActivity;
 import org.gnucash.android.ui.settings.PreferenceActivity;
 import org.gnucash.android.ui.transaction.dialog.BulkMoveDialogFragment;
-import org.gnucash.android.ui.util.CursorRecyclerAdapter;
+import org.gnucash.android.ui.util.PagedCursorRecyclerAdapter;
 import org.gnucash.android.util.BackupManager;
 
-import java.util.List;
-
 import timber.log.Timber;
 
 /**
@@ -81,8 +78,14 @@ import timber.log.Timber;
 public class TransactionsListFragment extends Fragment implements
     Refreshable, LoaderManager.LoaderCallbacks<Cursor>, FragmentResultListener {
 
+    /**
+     * Number of transactions loaded at a time while scrolling through the list
+     */
+    private static final int PAGE_SIZE = 50;
+
     private TransactionsDbAdapter mTransactionsDbAdapter;
     private String mAccountUID;
+    private String mAccountCurrencyCode;
 
     private boolean mUseCompactView = false;
 
@@ -96,6 +99,7 @@ public class TransactionsListFragment extends Fragment implements
         setHasOptionsMenu(true);
         Bundle args = getArguments();
         mAccountUID = args.getString(UxArgument.SELECTED_ACCOUNT_UID);
+        mAccountCurrencyCode = AccountsDbAdapter.getInstance().getAccountCurrencyCode(mAccountUID);
 
         mUseCompactView = PreferenceActivity.getActiveBookSharedPreferences()
                 .getBoolean(getActivity().getString(R.string.key_use_compact_list), !GnuCashApplication.isDoubleEntryEnabled());
@@ -139,7 +143,7 @@ public class TransactionsListFragment extends Fragment implements
         aBar.setDisplayShowTitleEnabled(false);
         aBar.setDisplayHomeAsUpEnabled(true);
 
-        mTransactionRecyclerAdapter = new TransactionRecyclerAdapter(null);
+        mTransactionRecyclerAdapter = new TransactionRecyclerAdapter();
         mBinding.transactionRecyclerView.setAdapter(mTransactionRecyclerAdapter);
 
         setHasOptionsMenu(true);
@@ -153,6 +157,7 @@ public class TransactionsListFragment extends Fragment implements
     @Override
     public void refresh(String accountUID) {
         mAccountUID = accountUID;
+        mAccountCurrencyCode = AccountsDbAdapter.getInstance().getAccountCurrencyCode(accountUID);
         refresh();
     }
 
@@ -171,6 +176,13 @@ public class TransactionsListFragment extends Fragment implements
         refresh();
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (mTransactionRecyclerAdapter != null)
+            mTransactionRecyclerAdapter.shutdown();
+    }
+
     public void onListItemClick(long id) {
         Intent intent = new Intent(getActivity(), TransactionDetailActivity.class);
         intent.putExtra(UxArgument.SELECTED_TRANSACTION_UID, mTransactionsDbAdapter.getUID(id));
@@ -234,7 +246,8 @@ public class TransactionsListFragment extends Fragment implements
     }
 
     /**
-     * {@link DatabaseCursorLoader} for loading transactions asynchronously from the database
+     * {@link DatabaseCursorLoader} for loading the first page of transactions asynchronously from the database.
+     * The following pages are loaded by the {@link TransactionRecyclerAdapter} as the list is scrolled.
      *
      * @author Ngewi Fet <ngewif@gmail.com>
      */
@@ -248,21 +261,54 @@ public class TransactionsListFragment extends Fragment implements
 
         @Override
         public Cursor loadInBackground() {
-            mDatabaseAdapter = TransactionsDbAdapter.getInstance();
-            Cursor c = ((TransactionsDbAdapter) mDatabaseAdapter).fetchAllTransactionsForAccount(accountUID);
+            mDatabaseAdapter = getReader().getTransactionsDbAdapter();
+            Cursor c = ((TransactionsDbAdapter) mDatabaseAdapter).fetchTransactionsPageForAccount(accountUID,
+                    Long.MAX_VALUE, Long.MAX_VALUE, PAGE_SIZE);
             if (c != null)
                 registerContentObserver(c);
             return c;
         }
     }
 
-    public class TransactionRecyclerAdapter extends CursorRecyclerAdapter<TransactionRecyclerAdapter.ViewHolder> {
+    /**
+     * Loads the pages of transactions following the first one, after the timestamp and ID of the previous page
+     */
+    private class TransactionPageSource implements PagedCursorRecyclerAdapter.PageSource<long[]> {
+
+        @Override
+        public int getCount() {
+            return getTransactionsDbAdapter().getTransactionsCount(mAccountUID);
+        }
+
+        @NonNull
+        @Override
+        public Cursor loadPage(@NonNull long[] after, int pageSize) {
+            return DatabaseReaderPool.retainConnection(
+                getTransactionsDbAdapter().fetchTransactionsPageForAccount(mAccountUID, after[0], after[1], pageSize));
+        }
+
+        private TransactionsDbAdapter getTransactionsDbAdapter() {
+            DatabaseReaderPool readerPool = GnuCashApplication.getDatabaseReaderPool();
+            return readerPool == null ? mTransactionsDbAdapter : readerPool.acquire().getTransactionsDbAdapter();
+        }
+
+        @NonNull
+        @Override
+        public long[] getKey(@NonNull Cursor cursor) {
+            return new long[]{
+                cursor.getLong(cursor.getColumnIndexOrThrow(DatabaseSchema.TransactionEntry.COLUMN_TIMESTAMP)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(DatabaseSchema.TransactionEntry._ID))
+            };
+        }
+    }
+
+    public class TransactionRecyclerAdapter extends PagedCursorRecyclerAdapter<TransactionRecyclerAdapter.ViewHolder, long[]> {
 
         public static final int ITEM_TYPE_COMPACT = 0x111;
         public static final int ITEM_TYPE_FULL = 0x100;
 
-        public TransactionRecyclerAdapter(Cursor cursor) {
-            super(cursor);
+        public TransactionRecyclerAdapter() {
+            super(new TransactionPageSource(), PAGE_SIZE);
         }
 
         @Override
@@ -281,67 +327,60 @@ public class TransactionsListFragment extends Fragment implements
             return mUseCompactView ? ITEM_TYPE_COMPACT : ITEM_TYPE_FULL;
         }
 
+        @Override
+        public void onBindViewHolderPlaceholder(ViewHolder holder) {
+            holder.transactionId = 0;
+            holder.transactionUID = null;
+            holder.primaryText.setText(null);
+            holder.secondaryText.setText(null);
+            holder.secondaryText.setError(null);
+            holder.transactionAmount.setText(null);
+            if (holder.transactionDate != null) {
+                holder.transactionDate.setText(null);
+            }
+        }
+
         @Override
         public void onBindViewHolderCursor(ViewHolder holder, Cursor cursor) {
             holder.transactionId = cursor.getLong(cursor.getColumnIndexOrThrow(DatabaseSchema.TransactionEntry._ID));
+            holder.transactionUID = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseSchema.TransactionEntry.COLUMN_UID));
 
             String description = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseSchema.TransactionEntry.COLUMN_DESCRIPTION));
             holder.primaryText.setText(description);
 
-            final String transactionUID = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseSchema.TransactionEntry.COLUMN_UID));
-            Money amount = mTransactionsDbAdapter.getBalance(transactionUID, mAccountUID);
+            long amountNum = cursor.getLong(cursor.getColumnIndexOrThrow(TransactionsDbAdapter.COLUMN_ACCOUNT_AMOUNT_NUM));
+            long amountDenom = cursor.getLong(cursor.getColumnIndexOrThrow(TransactionsDbAdapter.COLUMN_ACCOUNT_AMOUNT_DENOM));
+            Money amount = amountDenom == 0 ? Money.createZeroInstance(mAccountCurrencyCode)
+                    : new Money(amountNum, amountDenom, mAccountCurrencyCode);
             TransactionsActivity.displayBalance(holder.transactionAmount, amount);
 
             long dateMillis = cursor.getLong(cursor.getColumnIndexOrThrow(DatabaseSchema.TransactionEntry.COLUMN_TIMESTAMP));
             String dateText = TransactionsActivity.getPrettyDateFormat(getActivity(), dateMillis);
 
-            final long id = holder.transactionId;
-            holder.itemView.setOnClickListener(new View.OnClickListener() {
-                @Override
-                public void onClick(View v) {
-                    onListItemClick(id);
-                }
-            });
-
             if (mUseCompactView) {
                 holder.secondaryText.setText(dateText);
             } else {
-
-                List<Split> splits = SplitsDbAdapter.getInstance().getSplitsForTransaction(transactionUID);
+                int splitCount = cursor.getInt(cursor.getColumnIndexOrThrow(TransactionsDbAdapter.COLUMN_SPLIT_COUNT));
                 String text = "";
                 String error = null;
 
-                if (splits.size() == 2) {
-                    if (splits.get(0).isPairOf(splits.get(1))) {
-                        for (Split split : splits) {
-                            if (!split.getAccountUID().equals(mAccountUID)) {
-                                text = AccountsDbAdapter.getInstance().getFullyQualifiedAccountName(split.getAccountUID());
-                                break;
-                            }
-                        }
+                if (splitCount == 2) {
+                    String counterAccountName = cursor.getString(
+                            cursor.getColumnIndexOrThrow(TransactionsDbAdapter.COLUMN_COUNTER_ACCOUNT_FULL_NAME));
+                    if (counterAccountName != null) {
+                        text = counterAccountName;
                     }
                     if (TextUtils.isEmpty(text)) {
-                        text = getString(R.string.label_split_count, splits.size());
+                        text = getString(R.string.label_split_count, splitCount);
                         error = getString(R.string.imbalance_account_name);
                     }
                 }
-                if (splits.size() > 2) {
-                    text = getString(R.string.label_split_count, splits.size());
+                if (splitCount > 2) {
+                    text = getString(R.string.label_split_count, splitCount);
                 }
                 holder.secondaryText.setText(text);
                 holder.secondaryText.setError(error);
                 holder.transactionDate.setText(dateText);
-
-                holder.editTransaction.setOnClickListener(new View.OnClickListener() {
-                    @Override
-                    public void onClick(View v) {
-                        Intent intent = new Intent(getActivity(), FormActivity.class);
-                        intent.putExtra(UxArgument.FORM_TYPE, FormActivity.FormType.TRANSACTION.name());
-                        intent.putExtra(UxArgument.SELECTED_TRANSACTION_UID, transactionUID);
-                        intent.putExtra(UxArgument.SELECTED_ACCOUNT_UID, mAccountUID);
-                        startActivity(intent);
-                    }
-                });
             }
         }
 
@@ -358,6 +397,7 @@ public class TransactionsListFragment extends Fragment implements
             public ImageView editTransaction;
 
             long transactionId;
+            String transactionUID;
 
             public ViewHolder(CardviewCompactTransactionBinding binding) {
                 super(binding.getRoot());
@@ -381,6 +421,19 @@ public class TransactionsListFragment extends Fragment implements
 
             private void setup() {
                 primaryText.setTextSize(18);
+                itemView.setOnClickListener(v -> {
+                    if (transactionId != 0) onListItemClick(transactionId);
+                });
+                if (editTransaction != null) {
+                    editTransaction.setOnClickListener(v -> {
+                        if (transactionUID == null) return;
+                        Intent intent = new Intent(getActivity(), FormActivity.class);
+                        intent.putExtra(UxArgument.FORM_TYPE, FormActivity.FormType.TRANSACTION.name());
+                        intent.putExtra(UxArgument.SELECTED_TRANSACTION_UID, transactionUID);
+                        intent.putExtra(UxArgument.SELECTED_ACCOUNT_UID, mAccountUID);
+                        startActivity(intent);
+                    });
+                }
                 optionsMenu.setOnClickListener(v -> {
                     PopupMenu popup = new PopupMenu(getActivity(), v);
                     popup.setOnMenuItemClickListener(ViewHolder.this);
@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2012-2024 GnuCash Android developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.ui.util;
+
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.SparseArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import timber.log.Timber;
+
+/**
+ * {@link CursorRecyclerAdapter} which loads its items in pages of fixed size, on demand.
+ * <p>The cursor of the adapter holds the first page. The following pages are loaded in the background
+ * when they are about to be displayed, each one continuing after the key of the last item of the
+ * previous page (keyset pagination). Only the pages around the displayed items are kept open,
+ * so the memory used does not depend on the total number of items.</p>
+ * <p>Items whose page is not loaded yet are bound with {@link #onBindViewHolderPlaceholder(RecyclerView.ViewHolder)},
+ * and bound again once their page is loaded.</p>
+ * <p>The methods of this class must be called from the main thread. The adapter must be
+ * {@link #shutdown() shut down} when its view is destroyed.</p>
+ *
+ * @param <VH> View holder type
+ * @param <K>  Type of the keys which identify where a page starts
+ */
+public abstract class PagedCursorRecyclerAdapter<VH extends RecyclerView.ViewHolder, K>
+        extends CursorRecyclerAdapter<VH> {
+
+    /**
+     * Source of the pages of a {@link PagedCursorRecyclerAdapter}.
+     * <p>{@link #getCount()} and {@link #loadPage(Object, int)} are called from a background thread.</p>
+     *
+     * @param <K> Type of the keys which identify where a page starts
+     */
+    public interface PageSource<K> {
+        /**
+         * Returns the total number of items
+         */
+        int getCount();
+
+        /**
+         * Loads the items following a key
+         *
+         * @param after    Key of the last item of the previous page
+         * @param pageSize Maximum number of items to load
+         * @return Cursor with the items of the page
+         */
+        @NonNull
+        Cursor loadPage(@NonNull K after, int pageSize);
+
+        /**
+         * Returns the key of the item at the current position of a cursor
+         *
+         * @param cursor Cursor returned by {@link #loadPage(Object, int)}, or the first page
+         * @return Key of the item
+         */
+        @NonNull
+        K getKey(@NonNull Cursor cursor);
+    }
+
+    /**
+     * Number of pages kept open on each side of the page being displayed
+     */
+    private static final int PAGE_WINDOW = 1;
+
+    private final PageSource<K> mPageSource;
+    private final int mPageSize;
+
+    /**
+     * Items from the end (or the start) of a page at which the next (or previous) page is prefetched
+     */
+    private final int mPrefetchDistance;
+
+    private final ExecutorService mExecutor;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Pages loaded in the background, by page index. The first page is the cursor of the adapter.
+     */
+    private final SparseArray<Cursor> mPages = new SparseArray<>();
+
+    /**
+     * Key of the last item of each page whose end is known, by page index.
+     * Page <code>i + 1</code> is loaded with the key at index <code>i</code>.
+     */
+    private final List<K> mPageEndKeys = new ArrayList<>();
+
+    private int mCount = 0;
+    private int mTargetPage = 0;
+    private int mPrefetchPage = -1;
+    private int mLoadingPage = -1;
+
+    /**
+     * Index of the last page, once a page with less than a full page of items was loaded
+     */
+    private int mLastPage = -1;
+
+    /**
+     * Incremented when the data set is replaced, so that pages loaded for the previous one are discarded
+     */
+    private int mGeneration = 0;
+
+    /**
+     * Creates a paged adapter
+     *
+     * @param pageSource Source of the pages following the first one
+     * @param pageSize   Number of items in each page. The first page must be loaded with the same size
+     */
+    public PagedCursorRecyclerAdapter(@NonNull PageSource<K> pageSource, int pageSize) {
+        this(pageSource, pageSize, newPageExecutor());
+    }
+
+    /**
+     * Creates a paged adapter which loads its pages on an executor
+     *
+     * @param pageSource Source of the pages following the first one
+     * @param pageSize   Number of items in each page. The first page must be loaded with the same size
+     * @param executor   Executor of the page loads, shut down with the adapter
+     */
+    protected PagedCursorRecyclerAdapter(@NonNull PageSource<K> pageSource, int pageSize,
+                                         @NonNull ExecutorService executor) {
+        super(null);
+        mPageSource = pageSource;
+        mPageSize = pageSize;
+        mPrefetchDistance = Math.max(1, pageSize / 4);
+        mExecutor = executor;
+    }
+
+    private static ExecutorService newPageExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Binds a view holder whose item is not loaded yet
+     *
+     * @param holder View holder
+     */
+    public abstract void onBindViewHolderPlaceholder(VH holder);
+
+    @Override
+    public void onBindViewHolder(VH holder, int position) {
+        int page = position / mPageSize;
+        int offset = position % mPageSize;
+        requestPage(page, offset);
+
+        Cursor cursor = getPage(page);
+        if (cursor != null && cursor.moveToPosition(offset)) {
+            onBindViewHolderCursor(holder, cursor);
+        } else {
+            onBindViewHolderPlaceholder(holder);
+        }
+    }
+
+    @Override
+    public int getItemCount() {
+        return mCount;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        Cursor cursor = getPage(position / mPageSize);
+        if (cursor != null && cursor.moveToPosition(position % mPageSize)) {
+            return cursor.getLong(cursor.getColumnIndexOrThrow("_id"));
+        }
+        return RecyclerView.NO_ID;
+    }
+
+    /**
+     * Swaps in the first page of a new data set. The pages loaded for the previous data set are closed.
+     * <p>The total number of items is loaded in the background if the first page is full.</p>
+     *
+     * @param newCursor First page of items
+     * @return Returns the previously set Cursor, or null if there was not one
+     */
+    @Override
+    public Cursor swapCursor(Cursor newCursor) {
+        if (newCursor == getCursor()) {
+            return null;
+        }
+        mGeneration++;
+        for (int i = 0; i < mPages.size(); i++) {
+            mPages.valueAt(i).close();
+        }
+        mPages.clear();
+        mPageEndKeys.clear();
+        mTargetPage = 0;
+        mPrefetchPage = -1;
+        mLoadingPage = -1;
+        mLastPage = -1;
+        if (newCursor == null) {
+            // the items of the previous data set are counted when they are removed
+            Cursor oldCursor = super.swapCursor(null);
+            mCount = 0;
+            return oldCursor;
+        }
+
+        mCount = newCursor.getCount();
+        if (mCount == mPageSize && !mExecutor.isShutdown()) {
+            final int generation = mGeneration;
+            mExecutor.execute(() -> {
+                final int count = mPageSource.getCount();
+                mMainHandler.post(() -> onCountLoaded(count, generation));
+            });
+        }
+        return super.swapCursor(newCursor);
+    }
+
+    /**
+     * Stops loading pages and closes the pages loaded in the background.
+     * <p>The first page, which is the cursor of the adapter, is not closed.</p>
+     */
+    public void shutdown() {
+        mGeneration++;
+        mExecutor.shutdownNow();
+        for (int i = 0; i < mPages.size(); i++) {
+            mPages.valueAt(i).close();
+        }
+        mPages.clear();
+        mLoadingPage = -1;
+    }
+
+    @Nullable
+    private Cursor getPage(int page) {
+        return page == 0 ? getCursor() : mPages.get(page);
+    }
+
+    private void requestPage(int page, int offset) {
+        mTargetPage = page;
+        if (offset >= mPageSize - mPrefetchDistance) {
+            mPrefetchPage = page + 1;
+        } else if (offset < mPrefetchDistance && page > 0) {
+            mPrefetchPage = page - 1;
+        } else {
+            mPrefetchPage = -1;
+        }
+        loadNextPage();
+    }
+
+    /**
+     * Starts loading the page which is displayed, or the one to prefetch.
+     * <p>Pages can only be loaded once the key of the end of the previous page is known,
+     * so the pages before a page which is not reachable yet are loaded first.</p>
+     */
+    private void loadNextPage() {
+        if (mLoadingPage >= 0 || getCursor() == null || mExecutor.isShutdown()) {
+            return;
+        }
+        int page = mTargetPage;
+        if (getPage(page) != null) {
+            page = mPrefetchPage;
+            if (page < 0 || page * mPageSize >= mCount || getPage(page) != null) {
+                return;
+            }
+        }
+        if (mLastPage >= 0 && page > mLastPage) {
+            return;
+        }
+        page = Math.min(page, mPageEndKeys.size());
+        if (page == 0) {
+            // the end of the first page is not known yet
+            if (!addPageEndKey(getCursor())) {
+                return;
+            }
+            page = 1;
+        }
+
+        final int loadingPage = page;
+        final K after = mPageEndKeys.get(loadingPage - 1);
+        final int generation = mGeneration;
+        mLoadingPage = loadingPage;
+        mExecutor.execute(() -> {
+            Cursor cursor = null;
+            try {
+                cursor = mPageSource.loadPage(after, mPageSize);
+                cursor.getCount(); // fills the cursor window off the main thread
+            } catch (Exception e) {
+                Timber.e(e, "Error loading page %d", loadingPage);
+            }
+            final Cursor loaded = cursor;
+            mMainHandler.post(() -> onPageLoaded(loadingPage, loaded, generation));
+        });
+    }
+
+    private void onPageLoaded(int page, @Nullable Cursor cursor, int generation) {
+        if (generation != mGeneration) {
+            if (cursor != null) cursor.close();
+            return;
+        }
+        mLoadingPage = -1;
+        if (cursor == null) {
+            return;
+        }
+        if (page == mPageEndKeys.size()) {
+            addPageEndKey(cursor);
+        }
+
+        if (Math.abs(page - mTargetPage) <= PAGE_WINDOW) {
+            mPages.put(page, cursor);
+            int itemCount = Math.min(cursor.getCount(), mCount - page * mPageSize);
+            if (itemCount > 0) {
+                notifyItemRangeChanged(page * mPageSize, itemCount);
+            }
+        } else {
+            // only loaded to reach the end of the page, on the way to the displayed page
+            cursor.close();
+        }
+        evictPages();
+        loadNextPage();
+    }
+
+    private void onCountLoaded(int count, int generation) {
+        // once the last page is loaded, the number of items is known exactly
+        if (generation != mGeneration || mLastPage >= 0) {
+            return;
+        }
+        setCount(count);
+    }
+
+    private void setCount(int count) {
+        int oldCount = mCount;
+        if (count == oldCount) {
+            return;
+        }
+        mCount = count;
+        if (count > oldCount) {
+            notifyItemRangeInserted(oldCount, count - oldCount);
+        } else {
+            notifyItemRangeRemoved(count, oldCount - count);
+        }
+    }
+
+    /**
+     * Records the key of the last item of a full page.
+     * <p>When the page is the last one, the number of items is corrected if it was counted
+     * before items were added or deleted, so that no placeholder is left after the last item.</p>
+     *
+     * @return {@code true} if the page was full, {@code false} if it was the last page
+     */
+    private boolean addPageEndKey(Cursor cursor) {
+        int page = mPageEndKeys.size();
+        if (cursor.getCount() < mPageSize || !cursor.moveToLast()) {
+            mLastPage = page;
+            setCount(page * mPageSize + cursor.getCount());
+            return false;
+        }
+        mPageEndKeys.add(mPageSource.getKey(cursor));
+        return true;
+    }
+
+    /**
+     * Closes the pages which are far from the displayed page
+     */
+    private void evictPages() {
+        for (int i = mPages.size() - 1; i >= 0; i--) {
+            if (Math.abs(mPages.keyAt(i) - mTargetPage) > PAGE_WINDOW) {
+                mPages.valueAt(i).close();
+                mPages.removeAt(i);
+            }
+        }
+    }
+}
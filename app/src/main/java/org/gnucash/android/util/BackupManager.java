@@ -37,22 +37,16 @@ import org.gnucash.android.app.GnuCashApplication;
 import org.gnucash.android.db.adapter.BooksDbAdapter;
 import org.gnucash.android.export.ExportFormat;
 import org.gnucash.android.export.ExportParams;
-import org.gnucash.android.export.Exporter;
+import org.gnucash.android.export.ExportSink;
 import org.gnucash.android.export.xml.GncXmlExporter;
-import org.gnucash.android.model.Book;
 import org.gnucash.android.receivers.PeriodicJobReceiver;
 import org.gnucash.android.ui.common.GnucashProgressDialog;
 import org.gnucash.android.ui.settings.PreferenceActivity;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.zip.GZIPOutputStream;
 
 import kotlin.Unit;
 import kotlin.jvm.functions.Function1;
@@ -124,46 +118,30 @@ public class BackupManager {
     @WorkerThread
     public static boolean backupBook(Context context, String bookUID) {
         ExportParams params = new ExportParams(ExportFormat.XML);
-        OutputStream outputStream;
+        ExportSink sink = null;
         try {
             Uri backupUri = getBookBackupFileUri(bookUID);
             if (backupUri != null) {
-                outputStream = context.getContentResolver().openOutputStream(backupUri);
+                sink = ExportSink.toUri(context.getContentResolver(), backupUri);
             } else { //no Uri set by user, use default location on SD card
-                File backupFile = getBackupFile(bookUID, params);
-                outputStream = new FileOutputStream(backupFile);
+                sink = ExportSink.toDirectory(getBackupFolder(bookUID));
             }
             params.setExportLocation(backupUri);
 
-            BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(outputStream);
-            GZIPOutputStream gzipOutputStream = new GZIPOutputStream(bufferedOutputStream);
-            OutputStreamWriter writer = new OutputStreamWriter(gzipOutputStream);
-
-            new GncXmlExporter(context, params, bookUID).generateExport(writer);
-            writer.close();
+            GncXmlExporter exporter = new GncXmlExporter(context, params, bookUID);
+            exporter.setIncremental(true);
+            exporter.setExportSink(sink.gzipped());
+            exporter.generateExport();
             return true;
         } catch (Throwable e) {
             Timber.e(e, "Error creating XML backup");
+            if (sink != null) {
+                sink.abort();
+            }
         }
         return false;
     }
 
-    /**
-     * Returns the full path of a file to make database backup of the specified book.
-     * Backups are done in XML format and are Gzipped (with ".gnca" extension).
-     *
-     * @param bookUID GUID of the book
-     * @param params the export parameters.
-     * @return the file for backups of the database.
-     * @see #getBackupFolder(String)
-     */
-    private static File getBackupFile(@NonNull String bookUID, @Nullable ExportParams params) {
-        Book book = BooksDbAdapter.getInstance().getRecord(bookUID);
-        ExportFormat format = (params != null) ? params.getExportFormat() : ExportFormat.XML;
-        String name = Exporter.buildExportFilename(format, book.getDisplayName()) + ".gz";
-        return new File(getBackupFolder(book.getUID()), name);
-    }
-
     /**
      * Returns the path to the backups folder for the book with GUID {@code bookUID}.
      *
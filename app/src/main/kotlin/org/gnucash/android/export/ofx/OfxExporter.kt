@@ -23,53 +23,38 @@ import org.gnucash.android.export.ExportParams
 import org.gnucash.android.export.Exporter
 import org.gnucash.android.export.Exporter.ExporterException
 import org.gnucash.android.model.Account
+import org.gnucash.android.model.Money
+import org.gnucash.android.model.MoneyAccumulator
+import org.gnucash.android.model.Transaction
+import org.gnucash.android.model.TransactionType
 import org.gnucash.android.util.PreferencesHelper
 import org.gnucash.android.util.TimestampHelper
-import org.w3c.dom.Document
-import org.w3c.dom.Element
-import org.w3c.dom.Node
-import timber.log.Timber
-import java.io.BufferedWriter
-import java.io.File
-import java.io.FileOutputStream
 import java.io.IOException
-import java.io.OutputStreamWriter
-import java.io.StringWriter
-import java.io.Writer
-import javax.xml.parsers.DocumentBuilder
-import javax.xml.parsers.DocumentBuilderFactory
-import javax.xml.parsers.ParserConfigurationException
-import javax.xml.transform.OutputKeys
-import javax.xml.transform.TransformerException
-import javax.xml.transform.TransformerFactory
-import javax.xml.transform.dom.DOMSource
-import javax.xml.transform.stream.StreamResult
 
 /**
  * Exports the data in the database in OFX format.
  *
+ * The document is written to the export sink while the transactions of each account are read
+ * from the database, without building it in memory first.
+ *
  * @author Ngewi Fet <ngewi.fet@gmail.com>
  * @author Yongxin Wang <fefe.wyx@gmail.com>
  */
 class OfxExporter(context: Context, params: ExportParams, bookUID: String) :
     Exporter(context, params, bookUID) {
     /**
-     * Converts all expenses into OFX XML format and adds them to the XML document.
+     * Writes the statements of the accounts in OFX format.
      *
      * @param accounts List of accounts to export.
-     * @param doc DOM document of the OFX expenses.
-     * @param parent Parent node for all expenses in report.
+     * @param ofx Writer of the OFX document.
      */
-    private fun generateOfx(accounts: List<Account>, doc: Document, parent: Element) {
-        val transactionUid = doc.createElement(OfxHelper.TAG_TRANSACTION_UID)
+    @Throws(IOException::class)
+    private fun generateOfx(accounts: List<Account>, ofx: OfxWriter) {
+        ofx.startTag("OFX")
+        ofx.startTag(OfxHelper.TAG_BANK_MESSAGES_V1)
+        ofx.startTag(OfxHelper.TAG_STATEMENT_TRANSACTION_RESPONSE)
         // Unsolicited because the data exported is not as a result of a request.
-        transactionUid.appendChild(doc.createTextNode(OfxHelper.UNSOLICITED_TRANSACTION_ID))
-        val statementTransactionResponse =
-            doc.createElement(OfxHelper.TAG_STATEMENT_TRANSACTION_RESPONSE)
-        statementTransactionResponse.appendChild(transactionUid)
-        val bankmsgs = doc.createElement(OfxHelper.TAG_BANK_MESSAGES_V1)
-        bankmsgs.appendChild(statementTransactionResponse)
-        parent.appendChild(bankmsgs)
+        ofx.element(OfxHelper.TAG_TRANSACTION_UID, OfxHelper.UNSOLICITED_TRANSACTION_ID)
         accounts
             .filter { it.transactionCount > 0 }
             .filter {
@@ -79,50 +64,95 @@ class OfxExporter(context: Context, params: ExportParams, bookUID: String) :
                         it.name?.contains(mContext.getString(R.string.imbalance_account_name)) != true
             }
             .forEach { account ->
-                // Add account details (transactions) to the XML document.
-                account.toOfx(doc, statementTransactionResponse, mExportParams.exportStartTime)
+                // Add account details (transactions) to the document.
+                writeAccount(account, ofx)
                 // Mark as exported.
                 mAccountsDbAdapter.markAsExported(account.uID)
             }
+        ofx.endTag(OfxHelper.TAG_STATEMENT_TRANSACTION_RESPONSE)
+        ofx.endTag(OfxHelper.TAG_BANK_MESSAGES_V1)
+        ofx.endTag("OFX")
     }
 
     /**
-     * Generate OFX export file from the transactions in the database.
+     * Writes the statement of an account, with its transactions which were modified since
+     * the export start time. The transactions are read one at a time, and the balance of the
+     * account is computed from all of them in the same pass.
      *
-     * @param accounts List of accounts to export.
-     * @return String containing OFX export.
-     * @throws ExporterException if an XML builder could not be created.
+     * @param account Account to export
+     * @param ofx Writer of the OFX document
      */
-    @Throws(ExporterException::class)
-    private fun generateOfxExport(accounts: List<Account>): String {
-        val document = makeDocBuilder().newDocument()
-        val root = document.createElement("OFX")
-        val pi = document.createProcessingInstruction("OFX", OfxHelper.OFX_HEADER)
-        document.appendChild(pi)
-        document.appendChild(root)
-        generateOfx(accounts, document, root)
-        val useXmlHeader = PreferenceManager.getDefaultSharedPreferences(mContext)
-            .getBoolean(mContext.getString(R.string.key_xml_ofx_header), false)
-        PreferencesHelper.setLastExportTime(TimestampHelper.getTimestampFromNow())
-        val stringWriter = StringWriter()
-        if (useXmlHeader) {
-            write(document, stringWriter, false)
-            return stringWriter.toString()
+    @Throws(IOException::class)
+    private fun writeAccount(account: Account, ofx: OfxWriter) {
+        val accountUID = account.uID!!
+        ofx.startTag(OfxHelper.TAG_STATEMENT_TRANSACTIONS)
+        ofx.element(OfxHelper.TAG_CURRENCY_DEF, account.commodity.currencyCode)
+
+        ofx.startTag(OfxHelper.TAG_BANK_ACCOUNT_FROM)
+        ofx.element(OfxHelper.TAG_BANK_ID, OfxHelper.APP_ID)
+        ofx.element(OfxHelper.TAG_ACCOUNT_ID, accountUID)
+        ofx.element(OfxHelper.TAG_ACCOUNT_TYPE,
+            Account.convertToOfxAccountType(account.accountType).toString())
+        ofx.endTag(OfxHelper.TAG_BANK_ACCOUNT_FROM)
+
+        val formattedCurrentTimeString = OfxHelper.getFormattedCurrentTime()
+        ofx.startTag(OfxHelper.TAG_BANK_TRANSACTION_LIST)
+        ofx.element(OfxHelper.TAG_DATE_START, formattedCurrentTimeString)
+        ofx.element(OfxHelper.TAG_DATE_END, formattedCurrentTimeString)
+        val balance = MoneyAccumulator(account.commodity)
+        val exportStartTime = mExportParams.exportStartTime
+        mTransactionsDbAdapter.iterateTransactionsForAccount(accountUID, false).use { iterator ->
+            for (transaction in iterator) {
+                val amount = transaction.getBalance(accountUID)
+                balance.add(amount)
+                if (transaction.modifiedTimestamp.before(exportStartTime)) continue
+                writeTransaction(transaction, accountUID, amount, ofx)
+            }
         }
-        // If we want SGML OFX headers, write first to string and then prepend header.
-        val ofxNode = document.getElementsByTagName("OFX").item(0)
-        write(ofxNode, stringWriter, true)
-        return OfxHelper.OFX_SGML_HEADER + "\n" + stringWriter
+        ofx.endTag(OfxHelper.TAG_BANK_TRANSACTION_LIST)
+
+        ofx.startTag(OfxHelper.TAG_LEDGER_BALANCE)
+        ofx.element(OfxHelper.TAG_BALANCE_AMOUNT, balance.toMoney().toPlainString())
+        ofx.element(OfxHelper.TAG_DATE_AS_OF, formattedCurrentTimeString)
+        ofx.endTag(OfxHelper.TAG_LEDGER_BALANCE)
+        ofx.endTag(OfxHelper.TAG_STATEMENT_TRANSACTIONS)
     }
 
-    @Throws(ExporterException::class)
-    private fun makeDocBuilder(): DocumentBuilder {
-        val docFactory = DocumentBuilderFactory.newInstance()
-        try {
-            return docFactory.newDocumentBuilder()
-        } catch (e: ParserConfigurationException) {
-            throw ExporterException(mExportParams, e)
+    /**
+     * Writes a transaction of an account as a statement transaction
+     *
+     * @param transaction Transaction to export
+     * @param accountUID GUID of the account of the statement
+     * @param amount Balance of the transaction in the account
+     * @param ofx Writer of the OFX document
+     */
+    @Throws(IOException::class)
+    private fun writeTransaction(transaction: Transaction, accountUID: String, amount: Money, ofx: OfxWriter) {
+        val transactionType = if (amount.isNegative) TransactionType.DEBIT else TransactionType.CREDIT
+        val time = OfxHelper.getOfxFormattedTime(transaction.timeMillis)
+        ofx.startTag(OfxHelper.TAG_STATEMENT_TRANSACTION)
+        ofx.element(OfxHelper.TAG_TRANSACTION_TYPE, transactionType.toString())
+        ofx.element(OfxHelper.TAG_DATE_POSTED, time)
+        ofx.element(OfxHelper.TAG_DATE_USER, time)
+        ofx.element(OfxHelper.TAG_TRANSACTION_AMOUNT, amount.toPlainString())
+        ofx.element(OfxHelper.TAG_TRANSACTION_FITID, transaction.uID)
+        ofx.element(OfxHelper.TAG_NAME, transaction.description)
+        val note = transaction.note
+        if (!note.isNullOrEmpty()) {
+            ofx.element(OfxHelper.TAG_MEMO, note)
+        }
+
+        val splits = transaction.splits
+        if (splits.size == 2) { //if we have exactly one other split, then treat it like a transfer
+            val transferAccountUID = splits.firstOrNull { it.accountUID != accountUID }?.accountUID ?: accountUID
+            ofx.startTag(OfxHelper.TAG_BANK_ACCOUNT_TO)
+            ofx.element(OfxHelper.TAG_BANK_ID, OfxHelper.APP_ID)
+            ofx.element(OfxHelper.TAG_ACCOUNT_ID, transferAccountUID)
+            ofx.element(OfxHelper.TAG_ACCOUNT_TYPE,
+                Account.convertToOfxAccountType(mAccountsDbAdapter.getAccountType(transferAccountUID)).toString())
+            ofx.endTag(OfxHelper.TAG_BANK_ACCOUNT_TO)
         }
+        ofx.endTag(OfxHelper.TAG_STATEMENT_TRANSACTION)
     }
 
     @Throws(ExporterException::class)
@@ -132,49 +162,25 @@ class OfxExporter(context: Context, params: ExportParams, bookUID: String) :
             close()
             return listOf()
         }
-        var writer: BufferedWriter? = null
+        val useXmlHeader = PreferenceManager.getDefaultSharedPreferences(mContext)
+            .getBoolean(mContext.getString(R.string.key_xml_ofx_header), false)
+        val sink = exportSink
         try {
-            val file = File(exportCacheFilePath)
-            writer = BufferedWriter(OutputStreamWriter(FileOutputStream(file), "UTF-8"))
-            writer.write(generateOfxExport(accounts))
-            close()
-        } catch (e: IOException) {
-            throw ExporterException(mExportParams, e)
-        } finally {
-            if (writer != null) {
-                try {
-                    writer.close()
-                } catch (e: IOException) {
-                    throw ExporterException(mExportParams, e)
+            sink.openWriter(exportFileName).use { writer ->
+                val ofx = OfxWriter(writer)
+                if (useXmlHeader) {
+                    ofx.writeXmlHeader()
+                } else {
+                    ofx.writeSgmlHeader()
                 }
+                generateOfx(accounts, ofx)
             }
-        }
-        return listOf(exportCacheFilePath)
-    }
-
-    /**
-     * Writes out the document held in `node` to `outputWriter`
-     *
-     * @param node Node, containing the OFX document structure. Usually the parent node.
-     * @param outputWriter Writer to use in writing the file to stream.
-     * @param omitXmlDeclaration Flag which causes the XML declaration to be omitted.
-     */
-    private fun write(node: Node, outputWriter: Writer, omitXmlDeclaration: Boolean) {
-        try {
-            val transformerFactory = TransformerFactory.newInstance()
-            val transformer = transformerFactory.newTransformer()
-            val source = DOMSource(node)
-            val result = StreamResult(outputWriter)
-            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2")
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes")
-            if (omitXmlDeclaration) {
-                transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes")
-            }
-            transformer.transform(source, result)
-        } catch (e: TransformerException) {
-            Timber.e(e)
+            PreferencesHelper.setLastExportTime(TimestampHelper.getTimestampFromNow())
+            close()
+        } catch (e: IOException) {
             throw ExporterException(mExportParams, e)
         }
+        return sink.exportedFiles
     }
 
     /**
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2012-2024 Gnucash Android Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gnucash.android.export.ofx
+
+import java.io.IOException
+import java.io.Writer
+
+/**
+ * Writes an OFX document element by element, as it is generated.
+ *
+ * Elements are indented by two spaces per level, with the text of leaf elements on the same line.
+ * The document is written in its XML form, preceded by either the XML or the SGML OFX header.
+ *
+ * @param writer Destination of the document. It is not closed by this writer
+ */
+internal class OfxWriter(private val writer: Writer) {
+    private var depth = 0
+
+    /**
+     * Writes the XML declaration and the OFX processing instruction
+     */
+    @Throws(IOException::class)
+    fun writeXmlHeader() {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>")
+        writer.write("<?OFX ")
+        writer.write(OfxHelper.OFX_HEADER)
+        writer.write("?>\n")
+    }
+
+    /**
+     * Writes the SGML header, for compatibility with desktop GnuCash
+     */
+    @Throws(IOException::class)
+    fun writeSgmlHeader() {
+        writer.write(OfxHelper.OFX_SGML_HEADER)
+        writer.write("\n")
+    }
+
+    /**
+     * Opens an element which contains other elements
+     *
+     * @param name Tag of the element
+     */
+    @Throws(IOException::class)
+    fun startTag(name: String) {
+        indent()
+        writer.write("<")
+        writer.write(name)
+        writer.write(">\n")
+        depth++
+    }
+
+    /**
+     * Closes the last element opened with [startTag]
+     *
+     * @param name Tag of the element
+     */
+    @Throws(IOException::class)
+    fun endTag(name: String) {
+        depth--
+        indent()
+        writer.write("</")
+        writer.write(name)
+        writer.write(">\n")
+    }
+
+    /**
+     * Writes an element which only contains text
+     *
+     * @param name Tag of the element
+     * @param text Text of the element, which is escaped
+     */
+    @Throws(IOException::class)
+    fun element(name: String, text: String?) {
+        indent()
+        writer.write("<")
+        writer.write(name)
+        writer.write(">")
+        writeEscaped(text ?: "")
+        writer.write("</")
+        writer.write(name)
+        writer.write(">\n")
+    }
+
+    private fun indent() {
+        for (i in 0 until depth) {
+            writer.write("  ")
+        }
+    }
+
+    private fun writeEscaped(text: String) {
+        var start = 0
+        for (i in text.indices) {
+            val replacement = when (text[i]) {
+                '&' -> "&amp;"
+                '<' -> "&lt;"
+                '>' -> "&gt;"
+                else -> continue
+            }
+            writer.write(text, start, i - start)
+            writer.write(replacement)
+            start = i + 1
+        }
+        writer.write(text, start, text.length - start)
+    }
+}
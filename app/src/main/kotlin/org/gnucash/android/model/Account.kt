@@ -17,14 +17,11 @@ package org.gnucash.android.model
 
 import android.graphics.Color
 import androidx.annotation.ColorInt
-import java.sql.Timestamp
 import org.gnucash.android.BuildConfig
-import org.gnucash.android.export.ofx.OfxHelper
+import org.gnucash.android.db.adapter.TransactionIterator
 import org.gnucash.android.util.NotSet
 import org.gnucash.android.util.formatHexRGB
 import org.gnucash.android.util.parseColor
-import org.w3c.dom.Document
-import org.w3c.dom.Element
 
 /**
  * An account represents a transaction account in with [Transaction]s may be recorded
@@ -78,6 +75,11 @@ class Account : BaseModel {
      */
     private var _transactionsList: MutableList<Transaction> = ArrayList()
 
+    /**
+     * Loader of the transactions of this account, until they are loaded into [_transactionsList]
+     */
+    private var _transactionLoader: TransactionLoader? = null
+
     /**
      * Account UID of the parent account. Can be null
      */
@@ -145,16 +147,18 @@ class Account : BaseModel {
      */
     fun addTransaction(transaction: Transaction) {
         transaction.commodity = commodity
-        _transactionsList.add(transaction)
+        loadTransactions().add(transaction)
     }
 
     /**
-     * Returns a list of transactions for this account
+     * Returns a list of transactions for this account.
+     *
+     * Transactions of an account read from the database are loaded on the first access.
      *
      * @return Array list of transactions for the account
      */
     var transactions: List<Transaction>
-        get() = _transactionsList
+        get() = loadTransactions()
         /**
          * Sets a list of transactions for this account.
          * Overrides any previous transactions with those in the list.
@@ -164,16 +168,62 @@ class Account : BaseModel {
          * @param value List of [Transaction]s to be set.
          */
         set(value) {
+            _transactionLoader = null
             _transactionsList = value.toMutableList()
         }
 
+    /**
+     * Returns the transactions of this account with a time in an interval, newest first.
+     *
+     * If the transactions were not loaded yet, only those in the interval are read
+     * from the database, and they are not kept by the account.
+     *
+     * @param startTime Start of the interval (inclusive) in milliseconds since Epoch
+     * @param endTime   End of the interval (exclusive) in milliseconds since Epoch
+     * @return List of transactions in the interval
+     */
+    fun getTransactions(startTime: Long, endTime: Long): List<Transaction> {
+        val loader = _transactionLoader
+            ?: return _transactionsList.filter { it.timeMillis in startTime until endTime }
+        return loader.iterateTransactions(startTime, endTime).use { iterator ->
+            val transactions = ArrayList<Transaction>()
+            iterator.forEach { transactions.add(it) }
+            transactions
+        }
+    }
+
+    /**
+     * Sets the loader of the transactions of this account, which are then read on first access
+     * instead of being held by the account. The transactions must be accessed while the
+     * database of the loader is open.
+     *
+     * @param loader Loader of the transactions
+     */
+    fun setTransactionLoader(loader: TransactionLoader) {
+        _transactionLoader = loader
+        _transactionsList = ArrayList()
+    }
+
+    private fun loadTransactions(): MutableList<Transaction> {
+        val loader = _transactionLoader
+        if (loader != null) {
+            _transactionsList = loader.iterateTransactions(Long.MIN_VALUE, Long.MAX_VALUE).use { iterator ->
+                val transactions = ArrayList<Transaction>(iterator.count)
+                iterator.forEach { transactions.add(it) }
+                transactions
+            }
+            _transactionLoader = null
+        }
+        return _transactionsList
+    }
+
     /**
      * Returns the number of transactions in this account
      *
      * @return Number transactions in account
      */
     val transactionCount: Int
-        get() = _transactionsList.size
+        get() = _transactionLoader?.countTransactions() ?: _transactionsList.size
 
     /**
      * Returns the aggregate of all transactions in this account.
@@ -183,11 +233,11 @@ class Account : BaseModel {
      */
     val balance: Money
         get() {
-            var balance = Money.createZeroInstance(commodity.currencyCode)
-            for (transaction in _transactionsList) {
-                balance = balance.plus(transaction.getBalance(uID!!))
+            val balance = MoneyAccumulator(commodity.currencyCode)
+            for (transaction in loadTransactions()) {
+                balance.add(transaction.getBalance(uID!!))
             }
-            return balance
+            return balance.toMoney()
         }
 
     /**
@@ -297,72 +347,22 @@ class Account : BaseModel {
     }
 
     /**
-     * Converts this account's transactions into XML and adds them to the DOM document
-     *
-     * @param doc             XML DOM document for the OFX data
-     * @param parent          Parent node to which to add this account's transactions in XML
-     * @param exportStartTime Time from which to export transactions which are created/modified after
-     */
-    fun toOfx(doc: Document, parent: Element, exportStartTime: Timestamp?) {
-        val currency = doc.createElement(OfxHelper.TAG_CURRENCY_DEF)
-        currency.appendChild(doc.createTextNode(commodity.currencyCode))
-
-        //================= BEGIN BANK ACCOUNT INFO (BANKACCTFROM) =================================
-        val bankId = doc.createElement(OfxHelper.TAG_BANK_ID)
-        bankId.appendChild(doc.createTextNode(OfxHelper.APP_ID))
-        val acctId = doc.createElement(OfxHelper.TAG_ACCOUNT_ID)
-        acctId.appendChild(doc.createTextNode(uID))
-        val accttype = doc.createElement(OfxHelper.TAG_ACCOUNT_TYPE)
-        val ofxAccountType = convertToOfxAccountType(
-            accountType
-        ).toString()
-        accttype.appendChild(doc.createTextNode(ofxAccountType))
-        val bankFrom = doc.createElement(OfxHelper.TAG_BANK_ACCOUNT_FROM)
-        bankFrom.appendChild(bankId)
-        bankFrom.appendChild(acctId)
-        bankFrom.appendChild(accttype)
-
-        //================= END BANK ACCOUNT INFO ============================================
-
-
-        //================= BEGIN ACCOUNT BALANCE INFO =================================
-        val balance = balance.toPlainString()
-        val formattedCurrentTimeString = OfxHelper.getFormattedCurrentTime()
-        val balanceAmount = doc.createElement(OfxHelper.TAG_BALANCE_AMOUNT)
-        balanceAmount.appendChild(doc.createTextNode(balance))
-        val dtasof = doc.createElement(OfxHelper.TAG_DATE_AS_OF)
-        dtasof.appendChild(doc.createTextNode(formattedCurrentTimeString))
-        val ledgerBalance = doc.createElement(OfxHelper.TAG_LEDGER_BALANCE)
-        ledgerBalance.appendChild(balanceAmount)
-        ledgerBalance.appendChild(dtasof)
-
-        //================= END ACCOUNT BALANCE INFO =================================
-
-
-        //================= BEGIN TIME PERIOD INFO =================================
-        val dtstart = doc.createElement(OfxHelper.TAG_DATE_START)
-        dtstart.appendChild(doc.createTextNode(formattedCurrentTimeString))
-        val dtend = doc.createElement(OfxHelper.TAG_DATE_END)
-        dtend.appendChild(doc.createTextNode(formattedCurrentTimeString))
-
-        //================= END TIME PERIOD INFO =================================
-
-
-        //================= BEGIN TRANSACTIONS LIST =================================
-        val bankTransactionsList = doc.createElement(OfxHelper.TAG_BANK_TRANSACTION_LIST)
-        bankTransactionsList.appendChild(dtstart)
-        bankTransactionsList.appendChild(dtend)
-        for (transaction in _transactionsList) {
-            if (transaction.modifiedTimestamp.before(exportStartTime)) continue
-            bankTransactionsList.appendChild(transaction.toOFX(doc, uID!!))
-        }
-        //================= END TRANSACTIONS LIST =================================
-        val statementTransactions = doc.createElement(OfxHelper.TAG_STATEMENT_TRANSACTIONS)
-        statementTransactions.appendChild(currency)
-        statementTransactions.appendChild(bankFrom)
-        statementTransactions.appendChild(bankTransactionsList)
-        statementTransactions.appendChild(ledgerBalance)
-        parent.appendChild(statementTransactions)
+     * Reads the transactions of an account from the database when they are first needed
+     */
+    interface TransactionLoader {
+        /**
+         * Returns an iterator over the transactions of the account with a time in an interval,
+         * newest first. The iterator must be closed after use.
+         *
+         * @param startTime Start of the interval (inclusive) in milliseconds since Epoch
+         * @param endTime   End of the interval (exclusive) in milliseconds since Epoch
+         */
+        fun iterateTransactions(startTime: Long, endTime: Long): TransactionIterator
+
+        /**
+         * Returns the number of transactions of the account
+         */
+        fun countTransactions(): Int
     }
 
     companion object {
@@ -155,6 +155,9 @@ class Commodity(
         /**
          * Returns an instance of commodity for the specified currencyCode
          *
+         * Commodities other than the common currencies are looked up in the commodities
+         * of the active book, which are kept in memory.
+         *
          * @param currencyCode ISO 4217 currency code (3-letter)
          */
         @JvmStatic
@@ -47,6 +47,12 @@ data class Money(private val _amount: BigDecimal, val commodity: Commodity) : Co
         _amount.setScale(commodity.smallestFractionDigits, MONEY_ROUNDING_MODE)
     }
 
+    /**
+     * The amount as constructed, before rounding to the smallest fraction of the commodity
+     */
+    internal val exactAmount: BigDecimal
+        get() = _amount
+
     /**
      * Constructs a new money amount given the amount and currency code.
      *
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2012-2024 GnuCash Android developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gnucash.android.model
+
+import java.math.BigDecimal
+import java.math.MathContext
+import java.math.RoundingMode
+
+/**
+ * Mutable sum of amounts in a single commodity, for aggregation loops.
+ *
+ * <p>Unlike [Money], which allocates a new [BigDecimal]-backed object for each operation,
+ * the accumulator keeps the running total as a `long` number of the smallest units of the
+ * commodity, so adding amounts does not allocate. Amounts which do not fit in that
+ * representation, because the sum overflows or because they are finer than the smallest
+ * fraction of the commodity, are kept exactly in a [BigDecimal] instead.</p>
+ *
+ * <p>Accumulators are not thread-safe. Use [toMoney] to get the total as a [Money].</p>
+ *
+ * @param commodity Commodity of the amounts to be added
+ */
+class MoneyAccumulator(val commodity: Commodity) {
+    /**
+     * Number of decimal digits of the smallest unit of the commodity
+     */
+    private val scale: Int = commodity.smallestFractionDigits.coerceAtLeast(0)
+
+    /**
+     * Denominator of the total, the number of smallest units in one unit of the commodity
+     */
+    val denominator: Long = pow10(scale)
+
+    private var units: Long = 0
+
+    /**
+     * Part of the total which does not fit in [units], or `null` if there is none
+     */
+    private var remainder: BigDecimal? = null
+
+    /**
+     * Constructs an accumulator for amounts in the commodity with the currency code
+     *
+     * @param currencyCode Currency code of the amounts, as for [Money.createZeroInstance]
+     */
+    constructor(currencyCode: String) : this(
+        Commodity.getInstance(currencyCode) ?: Commodity.DEFAULT_COMMODITY
+    )
+
+    /**
+     * Adds the fraction `numerator / denominator` to the total
+     *
+     * @param numerator   Numerator of the amount
+     * @param denominator Denominator of the amount, a positive number
+     * @return This accumulator
+     */
+    fun add(numerator: Long, denominator: Long): MoneyAccumulator {
+        if (denominator == this.denominator) {
+            addUnits(numerator)
+        } else if (denominator > 0 && this.denominator % denominator == 0L) {
+            try {
+                addUnits(Math.multiplyExact(numerator, this.denominator / denominator))
+            } catch (e: ArithmeticException) {
+                addRemainder(BigDecimal.valueOf(numerator).divide(BigDecimal.valueOf(denominator)))
+            }
+        } else {
+            addRemainder(BigDecimal.valueOf(numerator).divide(BigDecimal.valueOf(denominator), MathContext.DECIMAL128))
+        }
+        return this
+    }
+
+    /**
+     * Subtracts the fraction `numerator / denominator` from the total
+     *
+     * @param numerator   Numerator of the amount
+     * @param denominator Denominator of the amount, a positive number
+     * @return This accumulator
+     */
+    fun subtract(numerator: Long, denominator: Long): MoneyAccumulator {
+        return if (numerator == Long.MIN_VALUE) {
+            addRemainder(BigDecimal.valueOf(numerator).negate().divide(BigDecimal.valueOf(denominator), MathContext.DECIMAL128))
+            this
+        } else {
+            add(-numerator, denominator)
+        }
+    }
+
+    /**
+     * Adds the product of a fraction and a price to the total.
+     * The product is rounded to the smallest unit of the commodity, using [RoundingMode.HALF_EVEN].
+     *
+     * @param numerator        Numerator of the amount
+     * @param denominator      Denominator of the amount, a positive number
+     * @param priceNumerator   Numerator of the price, a positive number
+     * @param priceDenominator Denominator of the price, a positive number
+     * @return This accumulator
+     */
+    fun addConverted(numerator: Long, denominator: Long, priceNumerator: Long, priceDenominator: Long): MoneyAccumulator {
+        try {
+            val num = Math.multiplyExact(Math.multiplyExact(numerator, priceNumerator), this.denominator)
+            val denom = Math.multiplyExact(denominator, priceDenominator)
+            addUnits(divideHalfEven(num, denom))
+        } catch (e: ArithmeticException) {
+            addRemainder(BigDecimal.valueOf(numerator).multiply(BigDecimal.valueOf(priceNumerator))
+                .divide(BigDecimal.valueOf(denominator).multiply(BigDecimal.valueOf(priceDenominator)),
+                    scale, RoundingMode.HALF_EVEN))
+        }
+        return this
+    }
+
+    /**
+     * Adds an amount to the total
+     *
+     * @param money Amount to add
+     * @return This accumulator
+     * @throws Money.CurrencyMismatchException if the amount is in another commodity
+     */
+    fun add(money: Money): MoneyAccumulator {
+        if (money.commodity != commodity) throw money.CurrencyMismatchException()
+        addDecimal(money.exactAmount)
+        return this
+    }
+
+    /**
+     * Subtracts an amount from the total
+     *
+     * @param money Amount to subtract
+     * @return This accumulator
+     * @throws Money.CurrencyMismatchException if the amount is in another commodity
+     */
+    fun subtract(money: Money): MoneyAccumulator {
+        if (money.commodity != commodity) throw money.CurrencyMismatchException()
+        addDecimal(money.exactAmount.negate())
+        return this
+    }
+
+    /**
+     * Adds the total of another accumulator to this one
+     *
+     * @param other Accumulator of amounts in the same commodity
+     * @return This accumulator
+     */
+    fun add(other: MoneyAccumulator): MoneyAccumulator {
+        if (other.commodity != commodity) throw IllegalArgumentException("Cannot add amounts in different commodities")
+        addUnits(other.units)
+        other.remainder?.let { addRemainder(it) }
+        return this
+    }
+
+    /**
+     * Sets the total back to zero, so that the accumulator can be reused
+     */
+    fun reset() {
+        units = 0
+        remainder = null
+    }
+
+    /**
+     * Checks if the total is exactly zero
+     */
+    val isZero: Boolean
+        get() = remainder.let { if (it == null) units == 0L else toBigDecimal().signum() == 0 }
+
+    /**
+     * Returns the total as a number of smallest units of the commodity, that is the numerator
+     * of the total over [denominator], rounded using [RoundingMode.HALF_EVEN]
+     *
+     * @throws ArithmeticException if the total does not fit in a `long`
+     */
+    val numerator: Long
+        get() = if (remainder == null) {
+            units
+        } else {
+            toBigDecimal().setScale(scale, RoundingMode.HALF_EVEN).unscaledValue().longValueExact()
+        }
+
+    /**
+     * Returns the exact total
+     */
+    fun toBigDecimal(): BigDecimal {
+        val total = BigDecimal.valueOf(units, scale)
+        return remainder?.let { total.add(it) } ?: total
+    }
+
+    /**
+     * Returns the total as a [Money] in the commodity of the accumulator
+     */
+    fun toMoney(): Money = Money(toBigDecimal(), commodity)
+
+    override fun toString(): String = toMoney().toString()
+
+    private fun addUnits(amount: Long) {
+        val sum = units + amount
+        // overflow iff both operands have the same sign, which differs from the sign of the sum
+        if ((units xor sum) and (amount xor sum) < 0) {
+            addRemainder(BigDecimal.valueOf(units, scale).add(BigDecimal.valueOf(amount, scale)))
+            units = 0
+        } else {
+            units = sum
+        }
+    }
+
+    private fun addDecimal(amount: BigDecimal) {
+        if (amount.scale() == scale && amount.precision() < 19) {
+            addUnits(amount.unscaledValue().toLong())
+        } else if (amount.scale() in 0 until scale && amount.precision() + scale - amount.scale() < 19) {
+            addUnits(amount.unscaledValue().toLong() * pow10(scale - amount.scale()))
+        } else {
+            addRemainder(amount)
+        }
+    }
+
+    private fun addRemainder(amount: BigDecimal) {
+        remainder = remainder?.add(amount) ?: amount
+    }
+
+    private companion object {
+        fun pow10(exponent: Int): Long {
+            var result = 1L
+            repeat(exponent) { result = Math.multiplyExact(result, 10L) }
+            return result
+        }
+
+        /**
+         * Divides two longs, rounding the quotient half to even
+         */
+        fun divideHalfEven(dividend: Long, divisor: Long): Long {
+            var quotient = dividend / divisor
+            val remainder = dividend % divisor
+            if (remainder != 0L) {
+                val twiceRemainder = Math.abs(remainder) * 2
+                val absDivisor = Math.abs(divisor)
+                if (twiceRemainder < 0 || twiceRemainder > absDivisor
+                    || (twiceRemainder == absDivisor && quotient % 2 != 0L)) {
+                    quotient += if ((dividend < 0) == (divisor < 0)) 1 else -1
+                }
+            }
+            return quotient
+        }
+    }
+}
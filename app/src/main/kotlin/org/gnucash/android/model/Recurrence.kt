@@ -23,12 +23,12 @@ import org.joda.time.Hours
 import org.joda.time.LocalDate
 import org.joda.time.LocalDateTime
 import org.joda.time.Months
-import org.joda.time.ReadablePeriod
 import org.joda.time.Weeks
 import org.joda.time.Years
 import java.sql.Timestamp
 import java.util.Collections
 import java.util.Date
+import kotlin.math.max
 import org.joda.time.format.DateTimeFormat
 
 /**
@@ -250,43 +250,80 @@ class Recurrence(periodType: PeriodType) : BaseModel() {
     val count: Int
         get() {
             if (periodEnd == null) return -1
-            val multiple = multiplier
-            val jodaPeriod: ReadablePeriod
-            jodaPeriod = when (periodType) {
-                PeriodType.HOUR -> Hours.hours(multiple)
-                PeriodType.DAY -> Days.days(multiple)
-                PeriodType.WEEK -> Weeks.weeks(multiple)
-                PeriodType.MONTH -> Months.months(multiple)
-                PeriodType.YEAR -> Years.years(multiple)
-            }
-            var count = 0
-            var startTime = LocalDateTime(periodStart.time)
-            while (startTime.toDateTime().millis < periodEnd!!.time) {
-                ++count
-                startTime = startTime.plus(jodaPeriod)
-            }
-            return count
-
-            /*
-        //this solution does not use looping, but is not very accurate
-
-        int multiplier = mMultiplier;
-        LocalDateTime startDate = new LocalDateTime(mPeriodStart.getTime());
-        LocalDateTime endDate = new LocalDateTime(mPeriodEnd.getTime());
-        switch (mPeriodType){
-            case DAY:
-                return Days.daysBetween(startDate, endDate).dividedBy(multiplier).getDays();
-            case WEEK:
-                return Weeks.weeksBetween(startDate, endDate).dividedBy(multiplier).getWeeks();
-            case MONTH:
-                return Months.monthsBetween(startDate, endDate).dividedBy(multiplier).getMonths();
-            case YEAR:
-                return Years.yearsBetween(startDate, endDate).dividedBy(multiplier).getYears();
-            default:
-                return -1;
+            return countOccurrences(periodStart.time, periodEnd!!.time)
         }
-*/
+
+    /**
+     * Returns the time of an occurrence of this recurrence, without considering [byDays].
+     *
+     * Occurrence `n` is `n * multiplier` periods after the start, so that its time does not
+     * depend on the previous occurrences: a monthly recurrence starting on the 31st is due on the
+     * last day of shorter months, and on the 31st again afterwards.
+     *
+     * @param index Index of the occurrence, starting at 0 for the start of the recurrence
+     * @return Time of the occurrence in milliseconds since Epoch
+     */
+    fun getOccurrenceTime(index: Int): Long {
+        return plusPeriods(LocalDateTime(periodStart.time), index * multiplier).toDateTime().millis
+    }
+
+    /**
+     * Counts the occurrences of this recurrence in an interval, without considering [byDays].
+     *
+     * The count is computed from the number of periods in the interval,
+     * without going through the occurrences.
+     *
+     * @param fromTime Start of the interval (inclusive) in milliseconds since Epoch
+     * @param toTime   End of the interval (exclusive) in milliseconds since Epoch
+     * @return Number of occurrences in the interval
+     */
+    fun countOccurrences(fromTime: Long, toTime: Long): Int {
+        return max(0, indexOfOccurrenceAtOrAfter(toTime) - indexOfOccurrenceAtOrAfter(fromTime))
+    }
+
+    /**
+     * Returns the index of the first occurrence which is not before a time
+     */
+    private fun indexOfOccurrenceAtOrAfter(time: Long): Int {
+        val start = LocalDateTime(periodStart.time)
+        if (time <= start.toDateTime().millis) return 0
+        // only complete periods are counted, so this is the last occurrence before the time or the one at it
+        var index = periodsBetween(start, LocalDateTime(time)) / multiplier
+        while (plusPeriods(start, index * multiplier).toDateTime().millis < time) {
+            index++
+        }
+        return index
+    }
+
+    /**
+     * Adds periods of the type of this recurrence to a time
+     *
+     * @param time    Local time to add the periods to
+     * @param periods Number of periods, already multiplied by the [multiplier]
+     * @return Shifted local time
+     */
+    internal fun plusPeriods(time: LocalDateTime, periods: Int): LocalDateTime {
+        return when (periodType) {
+            PeriodType.HOUR -> time.plusHours(periods)
+            PeriodType.DAY -> time.plusDays(periods)
+            PeriodType.WEEK -> time.plusWeeks(periods)
+            PeriodType.MONTH -> time.plusMonths(periods)
+            PeriodType.YEAR -> time.plusYears(periods)
         }
+    }
+
+    /**
+     * Returns the number of complete periods of the type of this recurrence between two times
+     */
+    internal fun periodsBetween(start: LocalDateTime, end: LocalDateTime): Int {
+        return when (periodType) {
+            PeriodType.HOUR -> Hours.hoursBetween(start, end).hours
+            PeriodType.DAY -> Days.daysBetween(start, end).days
+            PeriodType.WEEK -> Weeks.weeksBetween(start, end).weeks
+            PeriodType.MONTH -> Months.monthsBetween(start, end).months
+            PeriodType.YEAR -> Years.yearsBetween(start, end).years
+        }
+    }
 
     /**
      * Sets the end time of this recurrence by specifying the number of occurences
@@ -294,16 +331,7 @@ class Recurrence(periodType: PeriodType) : BaseModel() {
      * @param numberOfOccurences Number of occurences from the start time
      */
     fun setPeriodEnd(numberOfOccurences: Int) {
-        val localDate = LocalDateTime(periodStart.time)
-        val endDate: LocalDateTime
-        val occurrenceDuration = numberOfOccurences * multiplier
-        endDate = when (periodType) {
-            PeriodType.HOUR -> localDate.plusHours(occurrenceDuration)
-            PeriodType.DAY -> localDate.plusDays(occurrenceDuration)
-            PeriodType.WEEK -> localDate.plusWeeks(occurrenceDuration)
-            PeriodType.MONTH -> localDate.plusMonths(occurrenceDuration)
-            PeriodType.YEAR -> localDate.plusYears(occurrenceDuration)
-        }
+        val endDate = plusPeriods(LocalDateTime(periodStart.time), numberOfOccurences * multiplier)
         periodEnd = Timestamp(endDate.toDateTime().millis)
     }
 
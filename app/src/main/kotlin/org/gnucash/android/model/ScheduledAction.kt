@@ -18,6 +18,7 @@ package org.gnucash.android.model
 import androidx.annotation.StringRes
 import org.gnucash.android.R
 import org.gnucash.android.app.GnuCashApplication
+import org.joda.time.DateTimeConstants
 import org.joda.time.LocalDateTime
 import java.sql.Timestamp
 import java.util.Calendar
@@ -145,9 +146,86 @@ class ScheduledAction    //all actions are enabled by default
      * @return Next run time in milliseconds
      */
     fun computeNextCountBasedScheduledExecutionTime(): Long {
-        return computeNextScheduledExecutionTimeStartingAt(timeOfLastSchedule)
+        return computeScheduledExecutionTime(executionCount)
     }
 
+    /**
+     * Computes the time at which an execution of this scheduled action is due.
+     *
+     * The time is computed from the start time and the recurrence, without going through the
+     * previous executions. The first execution is due at the start time. For weekly
+     * recurrences, the following ones are due on each of the [Recurrence.byDays] in every
+     * `multiplier` weeks; otherwise execution `n` is due `n * multiplier` periods after the start.
+     *
+     * @param executionIndex Index of the execution, starting at 0
+     * @return Time at which the execution is due, in milliseconds since Epoch. A time in the
+     * future if a weekly recurrence has no days of the week set.
+     */
+    fun computeScheduledExecutionTime(executionIndex: Int): Long {
+        if (executionIndex <= 0) return _startDate
+        val recurrence = recurrence!!
+        val startTime = LocalDateTime.fromDateFields(Date(_startDate))
+        if (recurrence.periodType !== PeriodType.WEEK) {
+            return recurrence.plusPeriods(startTime, executionIndex * recurrence.multiplier)
+                .toDate().time
+        }
+
+        val daysOfWeek = weeklyExecutionDays
+        if (daysOfWeek.isEmpty()) return LocalDateTime.now().plusDays(1).toDate().time // Just a date in the future
+        // executions in the week of the start time, after the start time
+        val daysLeftInFirstWeek = daysOfWeek.count { it > startTime.dayOfWeek }
+        if (executionIndex <= daysLeftInFirstWeek) {
+            val day = daysOfWeek[daysOfWeek.size - daysLeftInFirstWeek + executionIndex - 1]
+            return startTime.withDayOfWeek(day).toDate().time
+        }
+        val index = executionIndex - daysLeftInFirstWeek - 1
+        val week = 1 + index / daysOfWeek.size
+        return startTime.plusWeeks(week * recurrence.multiplier)
+            .withDayOfWeek(daysOfWeek[index % daysOfWeek.size])
+            .toDate().time
+    }
+
+    /**
+     * Computes the number of executions of this scheduled action which are due at a time,
+     * counting from the first one.
+     *
+     * The count is estimated from the number of periods since the start time
+     * and then adjusted, so it does not depend on the number of executions.
+     *
+     * This method does not consider the end time, or number of times it should be run.
+     *
+     * @param time Time in milliseconds since Epoch
+     * @return Number of executions due at or before the time
+     */
+    fun getExecutionCountUntil(time: Long): Int {
+        if (time < _startDate) return 0
+        val recurrence = recurrence!!
+        val startTime = LocalDateTime.fromDateFields(Date(_startDate))
+        val periods = recurrence.periodsBetween(startTime, LocalDateTime.fromDateFields(Date(time)))
+        var count = if (recurrence.periodType !== PeriodType.WEEK) {
+            periods / recurrence.multiplier
+        } else {
+            val daysOfWeek = weeklyExecutionDays
+            if (daysOfWeek.isEmpty()) return 1
+            // the executions before the week which contains the time
+            val weeks = periods / recurrence.multiplier
+            if (weeks == 0) 0 else daysOfWeek.count { it > startTime.dayOfWeek } + (weeks - 1) * daysOfWeek.size
+        }
+        while (count > 0 && computeScheduledExecutionTime(count) > time) {
+            count--
+        }
+        while (computeScheduledExecutionTime(count + 1) <= time) {
+            count++
+        }
+        return count + 1
+    }
+
+    /**
+     * Days of the week of a weekly recurrence, as sorted Joda day of week constants
+     */
+    private val weeklyExecutionDays: List<Int>
+        get() = recurrence!!.byDays.map { convertCalendarDayOfWeekToJoda(it) }.distinct().sorted()
+
     /**
      * Computes the next time that this scheduled action is supposed to be
      * executed based on the time of the last run.
@@ -223,9 +301,7 @@ class ScheduledAction    //all actions are enabled by default
      * @return day of the week constant equivalent from org.joda.time.DateTimeConstants
      */
     private fun convertCalendarDayOfWeekToJoda(calendarDayOfWeek: Int): Int {
-        val cal = Calendar.getInstance()
-        cal[Calendar.DAY_OF_WEEK] = calendarDayOfWeek
-        return LocalDateTime.fromCalendarFields(cal).dayOfWeek
+        return if (calendarDayOfWeek == Calendar.SUNDAY) DateTimeConstants.SUNDAY else calendarDayOfWeek - 1
     }
 
     /**
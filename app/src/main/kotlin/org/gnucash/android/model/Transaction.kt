@@ -18,11 +18,7 @@ package org.gnucash.android.model
 import android.content.Intent
 import org.gnucash.android.BuildConfig
 import org.gnucash.android.db.adapter.AccountsDbAdapter
-import org.gnucash.android.export.ofx.OfxHelper
-import org.gnucash.android.model.Account.Companion.convertToOfxAccountType
 import org.gnucash.android.model.Money.Companion.createZeroInstance
-import org.w3c.dom.Document
-import org.w3c.dom.Element
 import java.util.Date
 
 /**
@@ -226,7 +222,7 @@ class Transaction : BaseModel {
      */
     private val imbalance: Money
         get() {
-            var imbalance = createZeroInstance(commodity.currencyCode)
+            val imbalance = MoneyAccumulator(commodity.currencyCode)
             for (split in _splitList) {
                 if (split.quantity!!.commodity != _commodity) {
                     // this may happen when importing XML exported from GNCA before 2.0.0
@@ -235,13 +231,13 @@ class Transaction : BaseModel {
                     return createZeroInstance(commodity.currencyCode)
                 }
                 val amount = split.value!!
-                imbalance = if (split.type === TransactionType.DEBIT) {
-                    imbalance.minus(amount)
+                if (split.type === TransactionType.DEBIT) {
+                    imbalance.subtract(amount)
                 } else {
-                    imbalance.plus(amount)
+                    imbalance.add(amount)
                 }
             }
-            return imbalance
+            return imbalance.toMoney()
         }
 
     /**
@@ -287,84 +283,6 @@ class Transaction : BaseModel {
         timeMillis = timeInMillis
     }
 
-    /**
-     * Converts transaction to XML DOM corresponding to OFX Statement transaction and
-     * returns the element node for the transaction.
-     * The Unique ID of the account is needed in order to properly export double entry transactions
-     *
-     * @param doc        XML document to which transaction should be added
-     * @param accountUID Unique Identifier of the account which called the method.  @return Element in DOM corresponding to transaction
-     */
-    fun toOFX(doc: Document, accountUID: String): Element {
-        val balance = getBalance(accountUID)
-        val transactionType = if (balance.isNegative) {
-            TransactionType.DEBIT
-        } else {
-            TransactionType.CREDIT
-        }
-
-        val transactionNode = doc.createElement(OfxHelper.TAG_STATEMENT_TRANSACTION)
-        val typeNode = doc.createElement(OfxHelper.TAG_TRANSACTION_TYPE)
-        typeNode.appendChild(doc.createTextNode(transactionType.toString()))
-        transactionNode.appendChild(typeNode)
-
-        val datePosted = doc.createElement(OfxHelper.TAG_DATE_POSTED)
-        datePosted.appendChild(doc.createTextNode(OfxHelper.getOfxFormattedTime(timeMillis)))
-        transactionNode.appendChild(datePosted)
-
-        val dateUser = doc.createElement(OfxHelper.TAG_DATE_USER)
-        dateUser.appendChild(doc.createTextNode(OfxHelper.getOfxFormattedTime(timeMillis)))
-        transactionNode.appendChild(dateUser)
-
-        val amount = doc.createElement(OfxHelper.TAG_TRANSACTION_AMOUNT)
-        amount.appendChild(doc.createTextNode(balance.toPlainString()))
-        transactionNode.appendChild(amount)
-
-        val transID = doc.createElement(OfxHelper.TAG_TRANSACTION_FITID)
-        transID.appendChild(doc.createTextNode(uID))
-        transactionNode.appendChild(transID)
-
-        val name = doc.createElement(OfxHelper.TAG_NAME)
-        name.appendChild(doc.createTextNode(description))
-        transactionNode.appendChild(name)
-
-        if (note != null && note!!.isNotEmpty()) {
-            val memo = doc.createElement(OfxHelper.TAG_MEMO)
-            memo.appendChild(doc.createTextNode(note))
-            transactionNode.appendChild(memo)
-        }
-
-        if (_splitList.size == 2) { //if we have exactly one other split, then treat it like a transfer
-            var transferAccountUID = accountUID
-            for (split in _splitList) {
-                if (split.accountUID != accountUID) {
-                    transferAccountUID = split.accountUID!!
-                    break
-                }
-            }
-            val bankId = doc.createElement(OfxHelper.TAG_BANK_ID)
-            bankId.appendChild(doc.createTextNode(OfxHelper.APP_ID))
-
-            val acctId = doc.createElement(OfxHelper.TAG_ACCOUNT_ID)
-            acctId.appendChild(doc.createTextNode(transferAccountUID))
-
-            val accttype = doc.createElement(OfxHelper.TAG_ACCOUNT_TYPE)
-            val acctDbAdapter = AccountsDbAdapter.getInstance()
-            val ofxAccountType = convertToOfxAccountType(
-                acctDbAdapter.getAccountType(transferAccountUID)
-            )
-            accttype.appendChild(doc.createTextNode(ofxAccountType.toString()))
-
-            val bankAccountTo = doc.createElement(OfxHelper.TAG_BANK_ACCOUNT_TO)
-            bankAccountTo.appendChild(bankId)
-            bankAccountTo.appendChild(acctId)
-            bankAccountTo.appendChild(accttype)
-
-            transactionNode.appendChild(bankAccountTo)
-        }
-        return transactionNode
-    }
-
     companion object {
         /**
          * Mime type for transactions in Gnucash.
@@ -426,7 +344,7 @@ class Transaction : BaseModel {
             val accountType = accountsDbAdapter.getAccountType(accountUID)
             val accountCurrencyCode = accountsDbAdapter.getAccountCurrencyCode(accountUID)
             val isDebitAccount = accountType.hasDebitNormalBalance()
-            var balance = createZeroInstance(accountCurrencyCode)
+            val balance = MoneyAccumulator(accountCurrencyCode)
             for (split in splitList) {
                 if (split.accountUID != accountUID) continue
                 val amount: Money = if (split.value!!.commodity.currencyCode == accountCurrencyCode) {
@@ -435,19 +353,13 @@ class Transaction : BaseModel {
                     split.quantity!!
                 }
                 val isDebitSplit = split.type === TransactionType.DEBIT
-                balance = if (isDebitAccount) {
-                    if (isDebitSplit) {
-                        balance.plus(amount)
-                    } else {
-                        balance.minus(amount)
-                    }
-                } else if (isDebitSplit) {
-                    balance.minus(amount)
+                if (isDebitAccount == isDebitSplit) {
+                    balance.add(amount)
                 } else {
-                    balance.plus(amount)
+                    balance.subtract(amount)
                 }
             }
-            return balance
+            return balance.toMoney()
         }
 
         /**
@@ -38,6 +38,10 @@ public abstract class BookHelperTest {
     protected ScheduledActionDbAdapter mScheduledActionDbAdapter;
 
     protected String importGnuCashXml(String filename) {
+        return importGnuCashXml(getClass().getClassLoader().getResourceAsStream(filename));
+    }
+
+    protected String importGnuCashXml(InputStream inputStream) {
         SAXParser parser;
         GncXmlHandler handler = null;
         try {
@@ -45,7 +49,6 @@ public abstract class BookHelperTest {
             XMLReader reader = parser.getXMLReader();
             handler = new GncXmlHandler();
             reader.setContentHandler(handler);
-            InputStream inputStream = getClass().getClassLoader().getResourceAsStream(filename);
             InputSource inputSource = new InputSource(new BufferedInputStream(inputStream));
             reader.parse(inputSource);
         } catch (ParserConfigurationException | SAXException | IOException e) {
@@ -57,7 +60,7 @@ public abstract class BookHelperTest {
         return bookUID;
     }
 
-    private void setUpDbAdapters(String bookUID) {
+    protected void setUpDbAdapters(String bookUID) {
         DatabaseHelper databaseHelper = new DatabaseHelper(GnuCashApplication.getAppContext(), bookUID);
         SQLiteDatabase mainDb = databaseHelper.getReadableDatabase();
         mTransactionsDbAdapter = new TransactionsDbAdapter(mainDb, new SplitsDbAdapter(mainDb));
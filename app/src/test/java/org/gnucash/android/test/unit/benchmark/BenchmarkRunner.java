@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2012-2024 GnuCash Android developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gnucash.android.test.unit.benchmark;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+
+import timber.log.Timber;
+
+/**
+ * Times operations and appends the results to a file, one JSON object per line.
+ * <p>Each result records the label of the run, the size of the synthetic book and the
+ * time statistics of the measured iterations, so that the results of runs at different commits
+ * can be compared line by line.</p>
+ * <p>The runner is configured with the system properties:</p>
+ * <ul>
+ *     <li><code>gnucash.benchmark.iterations</code>: number of measured iterations, 5 by default</li>
+ *     <li><code>gnucash.benchmark.warmup</code>: number of iterations run before measuring, 1 by default</li>
+ *     <li><code>gnucash.benchmark.label</code>: label of the run, typically the commit being measured</li>
+ *     <li><code>gnucash.benchmark.output</code>: file the results are appended to,
+ *     <code>build/benchmark-results.jsonl</code> by default</li>
+ * </ul>
+ */
+class BenchmarkRunner {
+
+    /**
+     * Operation being measured
+     */
+    interface Trial {
+        void run() throws Exception;
+    }
+
+    /**
+     * Prepares a trial. The time spent preparing it is not measured
+     */
+    interface TrialFactory {
+        @NonNull
+        Trial prepare() throws Exception;
+    }
+
+    /**
+     * System property which enables the benchmarks
+     */
+    private static final String ENABLED_PROPERTY = "gnucash.benchmark";
+
+    private final SyntheticBook.Size mSize;
+    private final int mIterations;
+    private final int mWarmupIterations;
+    private final String mLabel;
+    private final File mOutputFile;
+
+    BenchmarkRunner(@NonNull SyntheticBook.Size size) {
+        mSize = size;
+        String prefix = SyntheticBook.Size.PROPERTY_PREFIX;
+        mIterations = Math.max(1, Integer.getInteger(prefix + "iterations", 5));
+        mWarmupIterations = Math.max(0, Integer.getInteger(prefix + "warmup", 1));
+        mLabel = System.getProperty(prefix + "label", "");
+        mOutputFile = new File(System.getProperty(prefix + "output", "build/benchmark-results.jsonl"));
+    }
+
+    /**
+     * Measures a trial prepared anew for each iteration, and records the result
+     *
+     * @param name    Name of the benchmark
+     * @param factory Prepares the trial of each iteration
+     */
+    void measureEach(@NonNull String name, @NonNull TrialFactory factory) throws Exception {
+        for (int i = 0; i < mWarmupIterations; i++) {
+            factory.prepare().run();
+        }
+        long[] samples = new long[mIterations];
+        for (int i = 0; i < mIterations; i++) {
+            Trial trial = factory.prepare();
+            long start = System.nanoTime();
+            trial.run();
+            samples[i] = System.nanoTime() - start;
+        }
+        record(name, samples);
+    }
+
+    /**
+     * Measures the same trial in each iteration, and records the result
+     */
+    void measure(@NonNull String name, @NonNull Trial trial) throws Exception {
+        measureEach(name, () -> trial);
+    }
+
+    /**
+     * Returns {@code true} if the benchmarks are enabled with the system property <code>gnucash.benchmark</code>
+     */
+    static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+
+    private void record(String name, long[] samples) throws IOException {
+        Arrays.sort(samples);
+        long total = 0;
+        for (long sample : samples) {
+            total += sample;
+        }
+        int n = samples.length;
+        double median = n % 2 == 1 ? samples[n / 2] : (samples[n / 2 - 1] + samples[n / 2]) / 2.0;
+        String line = String.format(Locale.US,
+            "{\"label\":\"%s\",\"benchmark\":\"%s\",\"book\":%s,\"iterations\":%d,"
+                + "\"min_ms\":%.3f,\"median_ms\":%.3f,\"mean_ms\":%.3f,\"max_ms\":%.3f,\"timestamp\":%d}",
+            escape(mLabel), escape(name), mSize.toJson(), n,
+            samples[0] / 1e6, median / 1e6, total / 1e6 / n, samples[n - 1] / 1e6,
+            System.currentTimeMillis());
+        Timber.i("Benchmark %s", line);
+
+        File parent = mOutputFile.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        try (Writer writer = new FileWriter(mOutputFile, true)) {
+            writer.write(line);
+            writer.write('\n');
+        }
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2012-2024 GnuCash Android developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gnucash.android.test.unit.benchmark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import android.content.Context;
+
+import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.adapter.BooksDbAdapter;
+import org.gnucash.android.db.adapter.DatabaseAdapter;
+import org.gnucash.android.db.adapter.TransactionsDbAdapter;
+import org.gnucash.android.export.ExportFormat;
+import org.gnucash.android.export.ExportParams;
+import org.gnucash.android.export.csv.CsvTransactionsExporter;
+import org.gnucash.android.export.qif.QifExporter;
+import org.gnucash.android.export.xml.GncXmlExporter;
+import org.gnucash.android.importer.GncXmlImporter;
+import org.gnucash.android.model.Account;
+import org.gnucash.android.model.AccountType;
+import org.gnucash.android.model.Transaction;
+import org.gnucash.android.test.unit.testutil.ShadowCrashlytics;
+import org.gnucash.android.test.unit.testutil.ShadowUserVoice;
+import org.gnucash.android.util.TimestampHelper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Benchmarks of the database adapters, importer and exporters on a {@link SyntheticBook}.
+ * <p>The benchmarks are skipped unless the system property <code>gnucash.benchmark</code> is set.
+ * They are run with, for example:</p>
+ * <pre>
+ * ./gradlew testDebugUnitTest --tests '*.benchmark.*' -Dgnucash.benchmark=true \
+ *     -Dgnucash.benchmark.transactions=10000 -Dgnucash.benchmark.label=$(git rev-parse --short HEAD)
+ * </pre>
+ * <p>See {@link SyntheticBook.Size} and {@link BenchmarkRunner} for the other properties.</p>
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21, shadows = {ShadowCrashlytics.class, ShadowUserVoice.class})
+public class HotPathBenchmarkTest {
+
+    private Context mContext;
+    private SyntheticBook.Size mSize;
+    private BenchmarkRunner mRunner;
+    private SyntheticBook mBook;
+
+    @Before
+    public void setUp() {
+        assumeTrue(BenchmarkRunner.isEnabled());
+        mContext = GnuCashApplication.getAppContext();
+        mSize = SyntheticBook.Size.fromSystemProperties();
+        mRunner = new BenchmarkRunner(mSize);
+    }
+
+    @After
+    public void tearDown() {
+        if (mBook != null) {
+            mBook.close();
+            mBook = null;
+        }
+    }
+
+    @Test
+    public void getAccountBalance() throws Exception {
+        mBook = new SyntheticBook(mContext, mSize).addTransactions();
+        List<Account> accounts = mBook.getTopLevelAccounts();
+        mRunner.measure("AccountsDbAdapter.getAccountBalance", () -> {
+            for (Account account : accounts) {
+                mBook.getAccountsDbAdapter().getAccountBalance(account.getUID());
+            }
+        });
+    }
+
+    @Test
+    public void getTimestampOfEarliestAndLatestTransaction() throws Exception {
+        mBook = new SyntheticBook(mContext, mSize).addTransactions();
+        TransactionsDbAdapter transactionsDbAdapter = mBook.getTransactionsDbAdapter();
+        // CASH has no accounts in the synthetic book, which is the worst case of the queries
+        AccountType[] types = {AccountType.ASSET, AccountType.EXPENSE, AccountType.CASH};
+        String[] currencyCodes = {"USD", "EUR"};
+        mRunner.measure("TransactionsDbAdapter.getTimestampOfEarliestAndLatestTransaction", () -> {
+            for (AccountType type : types) {
+                for (String currencyCode : currencyCodes) {
+                    transactionsDbAdapter.getTimestampOfEarliestTransaction(type, currencyCode);
+                    transactionsDbAdapter.getTimestampOfLatestTransaction(type, currencyCode);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void bulkAddTransactions() throws Exception {
+        mBook = new SyntheticBook(mContext, mSize);
+        mRunner.measureEach("TransactionsDbAdapter.bulkAddRecords", () -> {
+            mBook.getTransactionsDbAdapter().deleteAllRecords();
+            List<Transaction> transactions = mBook.generateTransactions(mSize.transactions);
+            return () -> mBook.getTransactionsDbAdapter()
+                .bulkAddRecords(transactions, DatabaseAdapter.UpdateMethod.insert);
+        });
+        assertThat(mBook.getTransactionsDbAdapter().getRecordsCount()).isEqualTo(mSize.transactions);
+    }
+
+    @Test
+    public void importGncXml() throws Exception {
+        mBook = new SyntheticBook(mContext, mSize).addTransactions();
+        File xmlFile = new File(mContext.getCacheDir(), "benchmark.gnca");
+        try (Writer writer = new BufferedWriter(
+            new OutputStreamWriter(new FileOutputStream(xmlFile), StandardCharsets.UTF_8))) {
+            new GncXmlExporter(mContext, createExportParams(ExportFormat.XML), mBook.getBookUID())
+                .generateExport(writer);
+        }
+
+        final String[] importedBookUID = {null};
+        try {
+            // the baseline converts the transactions on the parser thread
+            mRunner.measureEach("GncXmlImporter.parse, without converter threads", () -> {
+                deleteBook(importedBookUID[0]);
+                InputStream input = new BufferedInputStream(new FileInputStream(xmlFile));
+                return () -> {
+                    try {
+                        importedBookUID[0] = GncXmlImporter.parse(input, 0);
+                    } finally {
+                        input.close();
+                    }
+                };
+            });
+            mRunner.measureEach("GncXmlImporter.parse", () -> {
+                deleteBook(importedBookUID[0]);
+                InputStream input = new BufferedInputStream(new FileInputStream(xmlFile));
+                return () -> {
+                    try {
+                        importedBookUID[0] = GncXmlImporter.parse(input);
+                    } finally {
+                        input.close();
+                    }
+                };
+            });
+        } finally {
+            deleteBook(importedBookUID[0]);
+            xmlFile.delete();
+        }
+    }
+
+    @Test
+    public void exportGncXml() throws Exception {
+        mBook = new SyntheticBook(mContext, mSize).addTransactions();
+        mRunner.measure("GncXmlExporter.generateExport", () ->
+            new GncXmlExporter(mContext, createExportParams(ExportFormat.XML), mBook.getBookUID())
+                .generateExport());
+    }
+
+    @Test
+    public void exportQif() throws Exception {
+        mBook = new SyntheticBook(mContext, mSize).addTransactions();
+        mRunner.measure("QifExporter.generateExport", () ->
+            new QifExporter(mContext, createExportParams(ExportFormat.QIF), mBook.getBookUID())
+                .generateExport());
+    }
+
+    @Test
+    public void exportCsvTransactions() throws Exception {
+        mBook = new SyntheticBook(mContext, mSize).addTransactions();
+        mRunner.measure("CsvTransactionsExporter.generateExport", () ->
+            new CsvTransactionsExporter(mContext, createExportParams(ExportFormat.CSVT), mBook.getBookUID())
+                .generateExport());
+    }
+
+    private static ExportParams createExportParams(ExportFormat format) {
+        ExportParams exportParams = new ExportParams(format);
+        exportParams.setExportStartTime(TimestampHelper.getTimestampFromEpochZero());
+        exportParams.setExportTarget(ExportParams.ExportTarget.SD_CARD);
+        exportParams.setDeleteTransactionsAfterExport(false);
+        return exportParams;
+    }
+
+    private static void deleteBook(String bookUID) {
+        if (bookUID != null) {
+            BooksDbAdapter.getInstance().deleteBook(bookUID);
+        }
+    }
+}
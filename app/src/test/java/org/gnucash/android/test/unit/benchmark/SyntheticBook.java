@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2012-2024 GnuCash Android developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gnucash.android.test.unit.benchmark;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.NonNull;
+
+import org.gnucash.android.db.DatabaseHelper;
+import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.db.adapter.BooksDbAdapter;
+import org.gnucash.android.db.adapter.CommoditiesDbAdapter;
+import org.gnucash.android.db.adapter.DatabaseAdapter;
+import org.gnucash.android.db.adapter.SplitsDbAdapter;
+import org.gnucash.android.db.adapter.TransactionsDbAdapter;
+import org.gnucash.android.model.Account;
+import org.gnucash.android.model.AccountType;
+import org.gnucash.android.model.Book;
+import org.gnucash.android.model.Commodity;
+import org.gnucash.android.model.Money;
+import org.gnucash.android.model.Split;
+import org.gnucash.android.model.Transaction;
+import org.gnucash.android.model.TransactionType;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Book filled with generated accounts and transactions, used as input of the benchmarks.
+ * <p>The content of the book only depends on its {@link Size}, so that results obtained
+ * at different commits are comparable.</p>
+ */
+class SyntheticBook implements Closeable {
+
+    /**
+     * Currencies used by the accounts, in order. All of them have a smallest fraction of 1/100
+     */
+    private static final String[] CURRENCY_CODES = {
+        "USD", "EUR", "GBP", "CHF", "CAD", "AUD", "NZD", "SEK", "NOK", "DKK"
+    };
+
+    private static final AccountType[] TOP_LEVEL_TYPES = {
+        AccountType.ASSET, AccountType.EXPENSE, AccountType.INCOME, AccountType.LIABILITY, AccountType.EQUITY
+    };
+
+    /**
+     * Time of the first generated transaction: 2015-01-01T00:00:00Z
+     */
+    private static final long START_TIME_MILLIS = 1420070400000L;
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    /**
+     * Dimensions of a synthetic book
+     */
+    static class Size {
+        static final String PROPERTY_PREFIX = "gnucash.benchmark.";
+
+        final int accounts;
+        final int depth;
+        final int transactions;
+        final int splits;
+        final int commodities;
+
+        Size(int accounts, int depth, int transactions, int splits, int commodities) {
+            if (accounts < 2 || depth < 1 || transactions < 0 || splits < 2
+                || commodities < 1 || commodities > CURRENCY_CODES.length) {
+                throw new IllegalArgumentException(String.format(Locale.US, "Invalid book size: %d accounts, "
+                    + "depth %d, %d transactions, %d splits, %d commodities",
+                    accounts, depth, transactions, splits, commodities));
+            }
+            this.accounts = accounts;
+            this.depth = depth;
+            this.transactions = transactions;
+            this.splits = Math.min(splits, accounts);
+            this.commodities = commodities;
+        }
+
+        /**
+         * Reads the size from the system properties <code>gnucash.benchmark.accounts</code>,
+         * <code>.depth</code>, <code>.transactions</code>, <code>.splits</code> (per transaction)
+         * and <code>.commodities</code>
+         */
+        static Size fromSystemProperties() {
+            return new Size(
+                Integer.getInteger(PROPERTY_PREFIX + "accounts", 50),
+                Integer.getInteger(PROPERTY_PREFIX + "depth", 3),
+                Integer.getInteger(PROPERTY_PREFIX + "transactions", 1000),
+                Integer.getInteger(PROPERTY_PREFIX + "splits", 2),
+                Integer.getInteger(PROPERTY_PREFIX + "commodities", 2));
+        }
+
+        String toJson() {
+            return String.format(Locale.US,
+                "{\"accounts\":%d,\"depth\":%d,\"transactions\":%d,\"splits\":%d,\"commodities\":%d}",
+                accounts, depth, transactions, splits, commodities);
+        }
+
+        @Override
+        public String toString() {
+            return toJson();
+        }
+    }
+
+    private final Size mSize;
+    private final Book mBook;
+    private final SQLiteDatabase mDb;
+    private final AccountsDbAdapter mAccountsDbAdapter;
+    private final TransactionsDbAdapter mTransactionsDbAdapter;
+    private final Commodity[] mCommodities;
+    private final List<Account> mAccounts = new ArrayList<>();
+    private final List<Account> mTopLevelAccounts = new ArrayList<>();
+    private final Random mRandom = new Random(42);
+    private int mTransactionCount = 0;
+
+    /**
+     * Creates an empty book with the generated account tree and registers it in the books database.
+     * The transactions are added with {@link #addTransactions()}.
+     */
+    SyntheticBook(@NonNull Context context, @NonNull Size size) {
+        mSize = size;
+        mBook = new Book();
+        mDb = new DatabaseHelper(context, mBook.getUID()).getWritableDatabase();
+        mTransactionsDbAdapter = new TransactionsDbAdapter(mDb, new SplitsDbAdapter(mDb));
+        mAccountsDbAdapter = new AccountsDbAdapter(mDb, mTransactionsDbAdapter);
+        mBook.setRootAccountUID(mAccountsDbAdapter.getOrCreateGnuCashRootAccountUID());
+        BooksDbAdapter.getInstance().addRecord(mBook);
+
+        CommoditiesDbAdapter commoditiesDbAdapter = new CommoditiesDbAdapter(mDb);
+        mCommodities = new Commodity[size.commodities];
+        for (int i = 0; i < size.commodities; i++) {
+            mCommodities[i] = commoditiesDbAdapter.getCommodity(CURRENCY_CODES[i]);
+        }
+        createAccounts();
+    }
+
+    /**
+     * Creates the accounts. Each account below the top level is added to a random parent
+     * which is above the deepest level, so that the tree reaches the configured depth.
+     */
+    private void createAccounts() {
+        List<Account> parents = new ArrayList<>();
+        List<Integer> parentLevels = new ArrayList<>();
+        int topLevelCount = Math.max(1, Math.min(TOP_LEVEL_TYPES.length, mSize.accounts / (mSize.depth * 2)));
+        for (int i = 0; i < mSize.accounts; i++) {
+            Commodity commodity = mCommodities[i % mCommodities.length];
+            Account account = new Account(String.format(Locale.US, "Account %04d", i), commodity);
+            int level = 0;
+            if (i < topLevelCount || parents.isEmpty()) {
+                account.setAccountType(TOP_LEVEL_TYPES[i % TOP_LEVEL_TYPES.length]);
+                mTopLevelAccounts.add(account);
+            } else {
+                int parentIndex = mRandom.nextInt(parents.size());
+                Account parent = parents.get(parentIndex);
+                account.setAccountType(parent.getAccountType());
+                account.setParentUID(parent.getUID());
+                level = parentLevels.get(parentIndex) + 1;
+            }
+            mAccountsDbAdapter.addRecord(account, DatabaseAdapter.UpdateMethod.insert);
+            mAccounts.add(account);
+            if (level < mSize.depth - 1) {
+                parents.add(account);
+                parentLevels.add(level);
+            }
+        }
+    }
+
+    /**
+     * Generates the next transactions of the book, without saving them
+     *
+     * @param count Number of transactions
+     * @return New balanced transactions, with new UIDs
+     */
+    List<Transaction> generateTransactions(int count) {
+        List<Transaction> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            transactions.add(generateTransaction());
+        }
+        return transactions;
+    }
+
+    private Transaction generateTransaction() {
+        int index = mTransactionCount++;
+        List<Account> accounts = new ArrayList<>(mSize.splits);
+        while (accounts.size() < mSize.splits) {
+            Account account = mAccounts.get(mRandom.nextInt(mAccounts.size()));
+            if (!accounts.contains(account)) {
+                accounts.add(account);
+            }
+        }
+
+        Transaction transaction = new Transaction(String.format(Locale.US, "Transaction %06d", index));
+        transaction.setTime(START_TIME_MILLIS + index % 730 * DAY_MILLIS + mRandom.nextInt((int) DAY_MILLIS));
+        Commodity currency = accounts.get(0).getCommodity();
+        transaction.setCommodity(currency);
+
+        long total = 0;
+        for (int i = 0; i < accounts.size(); i++) {
+            boolean last = i == accounts.size() - 1;
+            long cents = last ? total : 100 + mRandom.nextInt(100000);
+            total += cents;
+            transaction.addSplit(createSplit(accounts.get(i), currency, cents,
+                last ? TransactionType.CREDIT : TransactionType.DEBIT));
+        }
+        return transaction;
+    }
+
+    private Split createSplit(Account account, Commodity currency, long cents, TransactionType type) {
+        Money value = new Money(cents, 100, currency.getCurrencyCode());
+        Commodity accountCommodity = account.getCommodity();
+        Money quantity = value;
+        if (!accountCommodity.equals(currency)) {
+            // arbitrary but constant exchange rate between each pair of currencies
+            long rate = 100 + indexOf(accountCommodity) * 10 - indexOf(currency) * 5;
+            quantity = new Money(cents * rate / 100, 100, accountCommodity.getCurrencyCode());
+        }
+        Split split = new Split(value, quantity, account.getUID());
+        split.setType(type);
+        return split;
+    }
+
+    private int indexOf(Commodity commodity) {
+        for (int i = 0; i < mCommodities.length; i++) {
+            if (mCommodities[i].equals(commodity)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Generates and saves all the transactions of the book
+     */
+    SyntheticBook addTransactions() {
+        int batchSize = 1000;
+        for (int added = 0; added < mSize.transactions; added += batchSize) {
+            List<Transaction> transactions = generateTransactions(Math.min(batchSize, mSize.transactions - added));
+            mTransactionsDbAdapter.bulkAddRecords(transactions, DatabaseAdapter.UpdateMethod.insert);
+        }
+        return this;
+    }
+
+    String getBookUID() {
+        return mBook.getUID();
+    }
+
+    Size getSize() {
+        return mSize;
+    }
+
+    AccountsDbAdapter getAccountsDbAdapter() {
+        return mAccountsDbAdapter;
+    }
+
+    TransactionsDbAdapter getTransactionsDbAdapter() {
+        return mTransactionsDbAdapter;
+    }
+
+    List<Account> getTopLevelAccounts() {
+        return mTopLevelAccounts;
+    }
+
+    /**
+     * Closes the database of the book and deletes it
+     */
+    @Override
+    public void close() {
+        mDb.close();
+        BooksDbAdapter.getInstance().deleteBook(mBook.getUID());
+    }
+}
@@ -18,12 +18,14 @@ package org.gnucash.android.test.unit.db;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
 
+import android.content.ContentValues;
 import android.database.sqlite.SQLiteDatabase;
 
 import org.assertj.core.data.Index;
 import org.gnucash.android.R;
 import org.gnucash.android.app.GnuCashApplication;
 import org.gnucash.android.db.DatabaseHelper;
+import org.gnucash.android.db.DatabaseSchema;
 import org.gnucash.android.db.adapter.AccountsDbAdapter;
 import org.gnucash.android.db.adapter.BooksDbAdapter;
 import org.gnucash.android.db.adapter.BudgetAmountsDbAdapter;
@@ -37,6 +39,7 @@ import org.gnucash.android.db.adapter.TransactionsDbAdapter;
 import org.gnucash.android.importer.GncXmlImporter;
 import org.gnucash.android.model.Account;
 import org.gnucash.android.model.AccountType;
+import org.gnucash.android.model.BaseModel;
 import org.gnucash.android.model.Budget;
 import org.gnucash.android.model.BudgetAmount;
 import org.gnucash.android.model.Commodity;
@@ -61,6 +64,7 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -154,6 +158,37 @@ public class AccountsDbAdapterTest {
         assertThat(mAccountsDbAdapter.getRecord(account1.getUID()).getTransactions()).hasSize(1);
     }
 
+    /**
+     * Transactions of accounts read from the database are only loaded when they are accessed,
+     * and are kept when the account is saved again
+     */
+    @Test
+    public void accountTransactions_shouldBeLoadedOnDemand() {
+        Account account1 = new Account("AlphaAccount");
+        Account account2 = new Account("BetaAccount");
+        mAccountsDbAdapter.addRecord(account1);
+        mAccountsDbAdapter.addRecord(account2);
+        for (int i = 1; i <= 3; i++) {
+            Transaction transaction = new Transaction("Transaction " + i);
+            transaction.setTime(i * 1000L);
+            Split split = new Split(new Money(BigDecimal.TEN, account1.getCommodity()), account1.getUID());
+            transaction.addSplit(split);
+            transaction.addSplit(split.createPair(account2.getUID()));
+            mTransactionsDbAdapter.addRecord(transaction);
+        }
+
+        Account account = mAccountsDbAdapter.getRecord(account1.getUID());
+        assertThat(account.getTransactionCount()).isEqualTo(3);
+        List<Transaction> transactions = account.getTransactions(2000L, 3000L);
+        assertThat(transactions).hasSize(1);
+        assertThat(transactions.get(0).getDescription()).isEqualTo("Transaction 2");
+
+        mAccountsDbAdapter.addRecord(account, DatabaseAdapter.UpdateMethod.replace);
+        assertThat(mTransactionsDbAdapter.getTransactionsCount(account1.getUID())).isEqualTo(3);
+        assertThat(account.getTransactions()).hasSize(3);
+        assertThat(account.getTransactions(Long.MIN_VALUE, 3000L)).hasSize(2);
+    }
+
     @Test
     public void shouldAddAccountsToDatabase() {
         Account account1 = new Account("AlphaAccount");
@@ -243,6 +278,134 @@ public class AccountsDbAdapterTest {
         assertThat(child.getFullName()).isEqualTo("Test:Child");
     }
 
+    @Test
+    public void accountLookupsShouldFollowWrites() {
+        Account parent = new Account("Parent");
+        parent.setPlaceHolderFlag(true);
+        Account child = new Account("Child", Commodity.EUR);
+        child.setParentUID(parent.getUID());
+        child.setAccountType(AccountType.EXPENSE);
+        mAccountsDbAdapter.addRecord(parent);
+        mAccountsDbAdapter.addRecord(child);
+
+        AccountsDbAdapter otherAdapter = new AccountsDbAdapter(GnuCashApplication.getActiveDb());
+        assertThat(otherAdapter.getSubAccountCount(parent.getUID())).isEqualTo(1);
+        assertThat(otherAdapter.getDescendantAccountUIDs(parent.getUID(), null, null)).containsExactly(child.getUID());
+        assertThat(otherAdapter.isPlaceholderAccount(parent.getUID())).isTrue();
+        assertThat(otherAdapter.isFavoriteAccount(child.getUID())).isFalse();
+        assertThat(otherAdapter.getAccountType(child.getUID())).isEqualTo(AccountType.EXPENSE);
+        assertThat(otherAdapter.getAccountCurrencyCode(child.getUID())).isEqualTo("EUR");
+        assertThat(otherAdapter.getFullyQualifiedAccountName(child.getUID())).isEqualTo("Parent:Child");
+        assertThat(otherAdapter.findAccountUidByFullName("Parent:Child")).isEqualTo(child.getUID());
+
+        mAccountsDbAdapter.updateRecord(child.getUID(), DatabaseSchema.AccountEntry.COLUMN_FAVORITE, "1");
+        assertThat(otherAdapter.isFavoriteAccount(child.getUID())).isTrue();
+
+        Account grandChild = new Account("Grandchild");
+        grandChild.setParentUID(child.getUID());
+        mAccountsDbAdapter.addRecord(grandChild);
+        assertThat(otherAdapter.getDescendantAccountUIDs(parent.getUID(), null, null))
+            .containsExactly(child.getUID(), grandChild.getUID());
+        assertThat(otherAdapter.getAccountFullName(grandChild.getUID())).isEqualTo("Parent:Child:Grandchild");
+
+        mAccountsDbAdapter.reassignDescendantAccounts(child.getUID(), parent.getUID());
+        assertThat(otherAdapter.getSubAccountCount(child.getUID())).isZero();
+        assertThat(otherAdapter.getFullyQualifiedAccountName(grandChild.getUID())).isEqualTo("Parent:Grandchild");
+
+        mAccountsDbAdapter.deleteRecord(child.getUID());
+        assertThat(otherAdapter.getSubAccountCount(parent.getUID())).isEqualTo(1);
+        assertThat(otherAdapter.findAccountUidByFullName("Parent:Child")).isNull();
+    }
+
+    @Test
+    public void accountsCreatedInARolledBackTransaction_shouldNotBeLookedUp() {
+        Account account = new Account("Test", Commodity.USD);
+        mAccountsDbAdapter.addRecord(account);
+        String rootUID = mAccountsDbAdapter.getOrCreateGnuCashRootAccountUID();
+        AccountsDbAdapter otherAdapter = new AccountsDbAdapter(GnuCashApplication.getActiveDb());
+        assertThat(otherAdapter.getImbalanceAccountUID(Commodity.USD)).isNull();
+
+        String imbalanceUID;
+        mTransactionsDbAdapter.beginTransaction();
+        try {
+            mTransactionsDbAdapter.addRecord(createUnbalancedTransaction(account));
+            imbalanceUID = mAccountsDbAdapter.getImbalanceAccountUID(Commodity.USD);
+            assertThat(imbalanceUID).isNotNull();
+            assertThat(mAccountsDbAdapter.getDescendantAccountUIDs(rootUID, null, null)).contains(imbalanceUID);
+
+            // the uncommitted imbalance account is reused instead of being created again
+            mTransactionsDbAdapter.addRecord(createUnbalancedTransaction(account));
+            assertThat(mAccountsDbAdapter.getImbalanceAccountUID(Commodity.USD)).isEqualTo(imbalanceUID);
+            assertThat(mAccountsDbAdapter.getRecordsCount()).isEqualTo(3L);
+        } finally {
+            mTransactionsDbAdapter.endTransaction();
+        }
+
+        assertThat(otherAdapter.getImbalanceAccountUID(Commodity.USD)).isNull();
+        assertThat(mAccountsDbAdapter.getDescendantAccountUIDs(rootUID, null, null)).doesNotContain(imbalanceUID);
+        assertThat(mAccountsDbAdapter.getRecordsCount()).isEqualTo(2L);
+    }
+
+    @Test
+    public void accountsCreatedInATransactionOfAnotherAdapter_shouldBeLookedUpAfterCommit() {
+        Account account = new Account("Test", Commodity.USD);
+        mAccountsDbAdapter.addRecord(account);
+        AccountsDbAdapter otherAdapter = new AccountsDbAdapter(GnuCashApplication.getActiveDb());
+        assertThat(otherAdapter.getImbalanceAccountUID(Commodity.USD)).isNull();
+
+        mTransactionsDbAdapter.beginTransaction();
+        try {
+            mTransactionsDbAdapter.addRecord(createUnbalancedTransaction(account));
+            mTransactionsDbAdapter.setTransactionSuccessful();
+        } finally {
+            mTransactionsDbAdapter.endTransaction();
+        }
+
+        String imbalanceUID = otherAdapter.getImbalanceAccountUID(Commodity.USD);
+        assertThat(imbalanceUID).isNotNull();
+        assertThat(otherAdapter.getAccountType(imbalanceUID)).isEqualTo(AccountType.BANK);
+        assertThat(mAccountsDbAdapter.getOrCreateImbalanceAccountUID(Commodity.USD)).isEqualTo(imbalanceUID);
+        assertThat(mAccountsDbAdapter.getRecordsCount()).isEqualTo(3L);
+    }
+
+    @Test
+    public void accountsMissingFromTheTree_shouldBeLookedUpInTheDatabase() {
+        String rootUID = mAccountsDbAdapter.getOrCreateGnuCashRootAccountUID();
+        assertThat(mAccountsDbAdapter.findAccountUidByFullName("Outside")).isNull();
+
+        // written without the adapter, so the loaded tree does not include them
+        SQLiteDatabase db = GnuCashApplication.getActiveDb();
+        String parentUID = insertAccountRow(db, "Outside", "Outside", rootUID);
+        String childUID = insertAccountRow(db, "Child", "Outside:Child", parentUID);
+
+        assertThat(mAccountsDbAdapter.findAccountUidByFullName("Outside")).isEqualTo(parentUID);
+        assertThat(mAccountsDbAdapter.getSubAccountCount(parentUID)).isEqualTo(1);
+        assertThat(mAccountsDbAdapter.getDescendantAccountUIDs(parentUID, null, null)).containsExactly(childUID);
+    }
+
+    private Transaction createUnbalancedTransaction(Account account) {
+        Transaction transaction = new Transaction("Unbalanced");
+        transaction.setCommodity(Commodity.USD);
+        Split split = new Split(new Money(BigDecimal.TEN, Commodity.USD), account.getUID());
+        split.setType(TransactionType.DEBIT);
+        transaction.addSplit(split);
+        return transaction;
+    }
+
+    private String insertAccountRow(SQLiteDatabase db, String name, String fullName, String parentUID) {
+        String uid = BaseModel.generateUID();
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(DatabaseSchema.AccountEntry.COLUMN_UID, uid);
+        contentValues.put(DatabaseSchema.AccountEntry.COLUMN_NAME, name);
+        contentValues.put(DatabaseSchema.AccountEntry.COLUMN_FULL_NAME, fullName);
+        contentValues.put(DatabaseSchema.AccountEntry.COLUMN_TYPE, AccountType.EXPENSE.name());
+        contentValues.put(DatabaseSchema.AccountEntry.COLUMN_CURRENCY, "USD");
+        contentValues.put(DatabaseSchema.AccountEntry.COLUMN_COMMODITY_UID, mCommoditiesDbAdapter.getCommodityUID("USD"));
+        contentValues.put(DatabaseSchema.AccountEntry.COLUMN_PARENT_ACCOUNT_UID, parentUID);
+        db.insert(DatabaseSchema.AccountEntry.TABLE_NAME, null, contentValues);
+        return uid;
+    }
+
     @Test
     public void shouldAddTransactionsAndSplitsWhenAddingAccounts() {
         Account account = new Account("Test");
@@ -411,6 +574,79 @@ public class AccountsDbAdapterTest {
         assertThat(descendants).hasSize(4);
     }
 
+    @Test
+    public void shouldRollUpBalancesOfAccountTree() {
+        loadDefaultAccounts();
+
+        String assetsUID = mAccountsDbAdapter.findAccountUidByFullName("Assets");
+        String savingsUID = mAccountsDbAdapter.findAccountUidByFullName("Assets:Current Assets:Savings Account");
+        String walletUID = mAccountsDbAdapter.findAccountUidByFullName("Assets:Current Assets:Cash in Wallet");
+        String expenseUID = mAccountsDbAdapter.findAccountUidByFullName("Expenses:Auto");
+
+        Transaction transaction = new Transaction("Transfer");
+        Split split = new Split(new Money("50", "USD"), savingsUID);
+        split.setType(TransactionType.DEBIT);
+        transaction.addSplit(split);
+        transaction.addSplit(split.createPair(expenseUID));
+        mTransactionsDbAdapter.addRecord(transaction);
+
+        transaction = new Transaction("Withdrawal");
+        split = new Split(new Money("20", "USD"), walletUID);
+        split.setType(TransactionType.DEBIT);
+        transaction.addSplit(split);
+        transaction.addSplit(split.createPair(savingsUID));
+        mTransactionsDbAdapter.addRecord(transaction);
+
+        Map<String, Money> balances = mAccountsDbAdapter.getAccountBalances(null, -1, -1);
+        assertThat(balances).hasSize(mAccountsDbAdapter.getRecordsCount());
+        assertThat(balances.get(savingsUID)).isEqualTo(new Money("30", "USD"));
+        assertThat(balances.get(walletUID)).isEqualTo(new Money("20", "USD"));
+        assertThat(balances.get(assetsUID)).isEqualTo(new Money("50", "USD"));
+        for (Map.Entry<String, Money> entry : balances.entrySet()) {
+            assertThat(entry.getValue()).isEqualTo(mAccountsDbAdapter.getAccountBalance(entry.getKey()));
+        }
+
+        Map<String, Money> subtreeBalances = mAccountsDbAdapter.getAccountBalances(assetsUID, -1, -1);
+        assertThat(subtreeBalances).doesNotContainKey(expenseUID);
+        assertThat(subtreeBalances.get(assetsUID)).isEqualTo(new Money("50", "USD"));
+        assertThat(subtreeBalances.keySet()).hasSize(mAccountsDbAdapter.getDescendantAccountUIDs(assetsUID, null, null).size() + 1);
+    }
+
+    @Test
+    public void shouldComputeBalancesPerPeriod() {
+        loadDefaultAccounts();
+
+        Account savings = mAccountsDbAdapter.getRecord(mAccountsDbAdapter.findAccountUidByFullName("Assets:Current Assets:Savings Account"));
+        Account expense = mAccountsDbAdapter.getRecord(mAccountsDbAdapter.findAccountUidByFullName("Expenses:Auto"));
+        addTransfer(savings, expense, "50", 1500);
+        addTransfer(savings, expense, "20", 2500);
+        addTransfer(savings, expense, "5", 2600);
+        addTransfer(savings, expense, "100", 4000); // after the last period
+
+        List<Account> accounts = new ArrayList<>();
+        accounts.add(savings);
+        accounts.add(expense);
+        long[][] balances = mAccountsDbAdapter.getAccountsPeriodBalances(accounts,
+                new long[]{1000, 2000, 3000}, 3500, Commodity.USD);
+
+        assertThat(balances[0]).containsExactly(-5000, -2500, 0);
+        assertThat(balances[1]).containsExactly(5000, 2500, 0);
+
+        balances = mAccountsDbAdapter.getAccountsPeriodBalances(accounts, new long[]{-1}, -1, Commodity.USD);
+        assertThat(balances[1]).containsExactly(17500);
+        assertThat(balances[1][0]).isEqualTo(mAccountsDbAdapter.getAccountBalance(expense.getUID()).getNumerator());
+    }
+
+    private void addTransfer(Account from, Account to, String amount, long timestamp) {
+        Transaction transaction = new Transaction("Transfer");
+        transaction.setTime(timestamp);
+        Split split = new Split(new Money(amount, "USD"), to.getUID());
+        split.setType(TransactionType.DEBIT);
+        transaction.addSplit(split);
+        transaction.addSplit(split.createPair(from.getUID()));
+        mTransactionsDbAdapter.addRecord(transaction);
+    }
+
     @Test
     public void shouldReassignDescendantAccounts() {
         loadDefaultAccounts();
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2012-2024 GnuCash Android developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gnucash.android.test.unit.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.DatabaseHelper;
+import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.db.adapter.AdapterRegistry;
+import org.gnucash.android.db.adapter.BudgetsDbAdapter;
+import org.gnucash.android.db.adapter.TransactionsDbAdapter;
+import org.gnucash.android.test.unit.testutil.ShadowCrashlytics;
+import org.gnucash.android.test.unit.testutil.ShadowUserVoice;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Tests for the registry of the database adapters of a connection
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21, shadows = {ShadowCrashlytics.class, ShadowUserVoice.class})
+public class AdapterRegistryTest {
+
+    @Test
+    public void registryOfActiveDatabase_shouldHoldTheApplicationAdapters() {
+        AdapterRegistry registry = AdapterRegistry.getInstance(GnuCashApplication.getActiveDb());
+
+        assertThat(registry.getAccountsDbAdapter()).isSameAs(AccountsDbAdapter.getInstance());
+        assertThat(registry.getTransactionsDbAdapter()).isSameAs(TransactionsDbAdapter.getInstance());
+        assertThat(registry.getBudgetsDbAdapter()).isSameAs(BudgetsDbAdapter.getInstance());
+    }
+
+    @Test
+    public void otherConnection_shouldHaveItsOwnAdaptersAndTemporaryViews() {
+        DatabaseHelper dbHelper = new DatabaseHelper(GnuCashApplication.getAppContext(),
+            GnuCashApplication.getActiveBookUID());
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        try {
+            AdapterRegistry registry = AdapterRegistry.getInstance(db);
+            assertThat(registry).isNotSameAs(AdapterRegistry.getInstance(GnuCashApplication.getActiveDb()));
+            assertThat(AdapterRegistry.getInstance(db)).isSameAs(registry);
+
+            AccountsDbAdapter accountsDbAdapter = registry.getAccountsDbAdapter();
+            assertThat(accountsDbAdapter).isNotSameAs(AccountsDbAdapter.getInstance());
+            assertThat(registry.getAccountsDbAdapter()).isSameAs(accountsDbAdapter);
+            assertThat(registry.getBudgetsDbAdapter()).isSameAs(registry.getBudgetsDbAdapter());
+
+            long viewCount = DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM sqlite_temp_master WHERE type = 'view'", null);
+            assertThat(viewCount).isEqualTo(2);
+            assertThat(DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM trans_extra_info", null))
+                .isGreaterThanOrEqualTo(0);
+        } finally {
+            db.close();
+        }
+    }
+}
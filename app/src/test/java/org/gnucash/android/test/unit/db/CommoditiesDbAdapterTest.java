@@ -0,0 +1,96 @@
+package org.gnucash.android.test.unit.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.adapter.CommoditiesDbAdapter;
+import org.gnucash.android.model.Commodity;
+import org.gnucash.android.test.unit.testutil.ShadowCrashlytics;
+import org.gnucash.android.test.unit.testutil.ShadowUserVoice;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Tests the commodity lookups of {@link CommoditiesDbAdapter}
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21, shadows = {ShadowCrashlytics.class, ShadowUserVoice.class})
+public class CommoditiesDbAdapterTest {
+
+    private CommoditiesDbAdapter mCommoditiesDbAdapter;
+
+    @Before
+    public void setUp() {
+        mCommoditiesDbAdapter = CommoditiesDbAdapter.getInstance();
+    }
+
+    @Test
+    public void lookupsShouldReturnTheSameCommodity() {
+        Commodity commodity = mCommoditiesDbAdapter.getCommodity("SEK");
+        assertThat(commodity).isNotNull();
+        assertThat(mCommoditiesDbAdapter.getCommodity("SEK")).isSameAs(commodity);
+        assertThat(mCommoditiesDbAdapter.getRecord(commodity.getUID())).isSameAs(commodity);
+        assertThat(mCommoditiesDbAdapter.getCommodityUID("SEK")).isEqualTo(commodity.getUID());
+        assertThat(mCommoditiesDbAdapter.getCurrencyCode(commodity.getUID())).isEqualTo("SEK");
+        assertThat(Commodity.getInstance("SEK")).isSameAs(commodity);
+        assertThat(mCommoditiesDbAdapter.getCommodity("NOT_A_COMMODITY")).isNull();
+    }
+
+    @Test
+    public void writesShouldBeVisibleToAllAdaptersOfTheBook() {
+        CommoditiesDbAdapter otherAdapter = new CommoditiesDbAdapter(GnuCashApplication.getActiveDb(), false);
+        assertThat(otherAdapter.getCommodity("ACME")).isNull();
+
+        Commodity commodity = new Commodity("Acme Corporation", "ACME", 10000);
+        mCommoditiesDbAdapter.addRecord(commodity);
+        Commodity saved = otherAdapter.getCommodity("ACME");
+        assertThat(saved).isNotNull();
+        assertThat(saved.getUID()).isEqualTo(commodity.getUID());
+        assertThat(saved.getSmallestFraction()).isEqualTo(10000);
+
+        mCommoditiesDbAdapter.deleteRecord(commodity.getUID());
+        assertThat(otherAdapter.getCommodity("ACME")).isNull();
+    }
+
+    @Test
+    public void commoditiesOfARolledBackTransaction_shouldNotBeLookedUp() {
+        CommoditiesDbAdapter otherAdapter = new CommoditiesDbAdapter(GnuCashApplication.getActiveDb(), false);
+        assertThat(otherAdapter.getCommodity("ACME")).isNull();
+
+        Commodity commodity = new Commodity("Acme Corporation", "ACME", 10000);
+        mCommoditiesDbAdapter.beginTransaction();
+        try {
+            mCommoditiesDbAdapter.addRecord(commodity);
+            // the transaction sees its own commodities
+            assertThat(otherAdapter.getCommodity("ACME")).isNotNull();
+            assertThat(mCommoditiesDbAdapter.getCommodityUID("ACME")).isEqualTo(commodity.getUID());
+        } finally {
+            mCommoditiesDbAdapter.endTransaction();
+        }
+
+        assertThat(otherAdapter.getCommodity("ACME")).isNull();
+        assertThat(mCommoditiesDbAdapter.getCommodity("ACME")).isNull();
+    }
+
+    @Test
+    public void commoditiesOfACommittedTransaction_shouldBeLookedUp() {
+        CommoditiesDbAdapter otherAdapter = new CommoditiesDbAdapter(GnuCashApplication.getActiveDb(), false);
+        assertThat(otherAdapter.getCommodity("ACME")).isNull();
+
+        Commodity commodity = new Commodity("Acme Corporation", "ACME", 10000);
+        mCommoditiesDbAdapter.beginTransaction();
+        try {
+            mCommoditiesDbAdapter.addRecord(commodity);
+            mCommoditiesDbAdapter.setTransactionSuccessful();
+        } finally {
+            mCommoditiesDbAdapter.endTransaction();
+        }
+
+        assertThat(otherAdapter.getCommodityUID("ACME")).isEqualTo(commodity.getUID());
+        mCommoditiesDbAdapter.deleteRecord(commodity.getUID());
+        assertThat(otherAdapter.getCommodity("ACME")).isNull();
+    }
+}
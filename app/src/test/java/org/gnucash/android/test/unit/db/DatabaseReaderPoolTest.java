@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2012-2024 GnuCash Android developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gnucash.android.test.unit.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.DatabaseHelper;
+import org.gnucash.android.db.DatabaseReaderPool;
+import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.db.adapter.TransactionsDbAdapter;
+import org.gnucash.android.model.Account;
+import org.gnucash.android.model.Money;
+import org.gnucash.android.model.Split;
+import org.gnucash.android.model.Transaction;
+import org.gnucash.android.test.unit.testutil.ShadowCrashlytics;
+import org.gnucash.android.test.unit.testutil.ShadowUserVoice;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Tests reading the active book from the connections of the {@link DatabaseReaderPool}
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21, shadows = {ShadowCrashlytics.class, ShadowUserVoice.class})
+public class DatabaseReaderPoolTest {
+
+    private AccountsDbAdapter mAccountsDbAdapter;
+    private TransactionsDbAdapter mTransactionsDbAdapter;
+    private DatabaseReaderPool mReaderPool;
+    private Account mAccount;
+    private Account mTransferAccount;
+
+    @Before
+    public void setUp() {
+        SQLiteDatabase db = GnuCashApplication.getActiveDb();
+        String journalMode = DatabaseUtils.stringForQuery(db, "PRAGMA journal_mode=WAL", null);
+        assertThat(journalMode).isEqualToIgnoringCase("wal");
+        mReaderPool = new DatabaseReaderPool(db, true, 2);
+
+        mAccountsDbAdapter = AccountsDbAdapter.getInstance();
+        mTransactionsDbAdapter = TransactionsDbAdapter.getInstance();
+        mAccount = new Account("Alpha");
+        mTransferAccount = new Account("Bravo");
+        mAccountsDbAdapter.addRecord(mAccount);
+        mAccountsDbAdapter.addRecord(mTransferAccount);
+    }
+
+    @Test
+    public void readersShouldSeeCommittedTransactions() {
+        DatabaseReaderPool.Reader reader = mReaderPool.acquire();
+        assertThat(reader.getTransactionsDbAdapter().getTransactionsCount(mAccount.getUID())).isZero();
+
+        addTransaction();
+
+        assertThat(reader.getTransactionsDbAdapter().getTransactionsCount(mAccount.getUID())).isEqualTo(1);
+        assertThat(reader.getAccountsDbAdapter().getRecord(mAccount.getUID())).isEqualTo(mAccount);
+    }
+
+    @Test
+    public void readersShouldNotWaitForWriteTransactions() {
+        SQLiteDatabase db = GnuCashApplication.getActiveDb();
+        addTransaction();
+
+        DatabaseReaderPool.Reader reader = mReaderPool.acquire();
+        db.beginTransaction();
+        try {
+            addTransaction();
+            // the reader sees the last committed state while the write transaction is open
+            assertThat(reader.getTransactionsDbAdapter().getTransactionsCount(mAccount.getUID())).isEqualTo(1);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        assertThat(reader.getTransactionsDbAdapter().getTransactionsCount(mAccount.getUID())).isEqualTo(2);
+
+        DatabaseHelper.checkpoint(db);
+        assertThat(reader.getTransactionsDbAdapter().getTransactionsCount(mAccount.getUID())).isEqualTo(2);
+    }
+
+    @Test
+    public void retainedCursorsShouldOutliveThePool() {
+        addTransaction();
+        DatabaseReaderPool.Reader reader = mReaderPool.acquire();
+        assertThat(reader.getTransactionsDbAdapter().isOpen()).isTrue();
+        // the rows are only read on first access, as with the pages of the transactions list
+        Cursor cursor = DatabaseReaderPool.retainConnection(
+            reader.getTransactionsDbAdapter().fetchAllTransactionsForAccount(mAccount.getUID()));
+
+        mReaderPool.close();
+        try {
+            assertThat(reader.getTransactionsDbAdapter().isOpen()).isTrue();
+            assertThat(cursor.getCount()).isEqualTo(1);
+        } finally {
+            cursor.close();
+        }
+        assertThat(reader.getTransactionsDbAdapter().isOpen()).isFalse();
+    }
+
+    @Test
+    public void closingThePoolShouldCloseConnectionsWithoutCursors() {
+        DatabaseReaderPool.Reader reader = mReaderPool.acquire();
+        assertThat(reader.getTransactionsDbAdapter().getTransactionsCount(mAccount.getUID())).isZero();
+
+        mReaderPool.close();
+        assertThat(reader.getTransactionsDbAdapter().isOpen()).isFalse();
+        assertThat(mReaderPool.acquire().getTransactionsDbAdapter()).isSameAs(TransactionsDbAdapter.getInstance());
+    }
+
+    private void addTransaction() {
+        Transaction transaction = new Transaction("Transfer");
+        Split split = new Split(new Money("10", mAccount.getCommodity().getCurrencyCode()), mAccount.getUID());
+        transaction.addSplit(split);
+        transaction.addSplit(split.createPair(mTransferAccount.getUID()));
+        mTransactionsDbAdapter.addRecord(transaction);
+    }
+
+    @After
+    public void tearDown() {
+        mReaderPool.close();
+        mAccountsDbAdapter.deleteAllRecords();
+    }
+}
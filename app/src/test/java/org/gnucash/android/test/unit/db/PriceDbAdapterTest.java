@@ -2,6 +2,9 @@ package org.gnucash.android.test.unit.db;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import android.util.Pair;
+
+import org.gnucash.android.app.GnuCashApplication;
 import org.gnucash.android.db.adapter.CommoditiesDbAdapter;
 import org.gnucash.android.db.adapter.PricesDbAdapter;
 import org.gnucash.android.model.Price;
@@ -12,6 +15,8 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.sql.Timestamp;
+
 /**
  * Test price functions
  */
@@ -58,4 +63,73 @@ public class PriceDbAdapterTest {
 
         assertThat(pricesDbAdapter.getRecordsCount()).isEqualTo(2);
     }
+
+    @Test
+    public void shouldLookUpPricesAsOfDate() {
+        String commodityUID = CommoditiesDbAdapter.getInstance().getCommodityUID("EUR");
+        String currencyUID = CommoditiesDbAdapter.getInstance().getCommodityUID("CHF");
+        PricesDbAdapter pricesDbAdapter = PricesDbAdapter.getInstance();
+        pricesDbAdapter.addRecord(createPrice(commodityUID, currencyUID, 110, 100, 1000000000000L));
+        // prices in the other direction are inverted
+        pricesDbAdapter.addRecord(createPrice(currencyUID, commodityUID, 100, 120, 1200000000000L));
+
+        assertThat(pricesDbAdapter.getPrice(commodityUID, currencyUID)).isEqualTo(new Pair<>(6L, 5L));
+        assertThat(pricesDbAdapter.getPrice(commodityUID, currencyUID, 1100000000000L)).isEqualTo(new Pair<>(11L, 10L));
+        assertThat(pricesDbAdapter.getPrice(currencyUID, commodityUID, 1100000000000L)).isEqualTo(new Pair<>(10L, 11L));
+        // before the first price, the earliest price is used
+        assertThat(pricesDbAdapter.getPrice(commodityUID, currencyUID, 0)).isEqualTo(new Pair<>(11L, 10L));
+        assertThat(pricesDbAdapter.getPrice(commodityUID, currencyUID, 1200000000000L)).isEqualTo(new Pair<>(6L, 5L));
+    }
+
+    @Test
+    public void shouldConvertThroughTheDefaultCurrency() {
+        CommoditiesDbAdapter commoditiesDbAdapter = CommoditiesDbAdapter.getInstance();
+        String baseCode = GnuCashApplication.getDefaultCurrencyCode();
+        String baseUID = commoditiesDbAdapter.getCommodityUID(baseCode);
+        String commodityUID = commoditiesDbAdapter.getCommodityUID(baseCode.equals("GBP") ? "AUD" : "GBP");
+        String currencyUID = commoditiesDbAdapter.getCommodityUID(baseCode.equals("JPY") ? "AUD" : "JPY");
+        PricesDbAdapter pricesDbAdapter = PricesDbAdapter.getInstance();
+        assertThat(pricesDbAdapter.getPrice(commodityUID, currencyUID)).isEqualTo(new Pair<>(0L, 0L));
+
+        pricesDbAdapter.addRecord(createPrice(commodityUID, baseUID, 3, 2, 1000000000000L));
+        pricesDbAdapter.addRecord(createPrice(currencyUID, baseUID, 1, 100, 1000000000000L));
+
+        assertThat(pricesDbAdapter.getPrice(commodityUID, currencyUID)).isEqualTo(new Pair<>(150L, 1L));
+    }
+
+    @Test
+    public void pricesOfARolledBackTransaction_shouldNotBeLookedUp() {
+        String commodityUID = CommoditiesDbAdapter.getInstance().getCommodityUID("EUR");
+        String currencyUID = CommoditiesDbAdapter.getInstance().getCommodityUID("CAD");
+        PricesDbAdapter pricesDbAdapter = PricesDbAdapter.getInstance();
+        PricesDbAdapter otherAdapter = new PricesDbAdapter(GnuCashApplication.getActiveDb());
+        assertThat(otherAdapter.getPrice(commodityUID, currencyUID)).isEqualTo(new Pair<>(0L, 0L));
+
+        pricesDbAdapter.beginTransaction();
+        try {
+            pricesDbAdapter.addRecord(createPrice(commodityUID, currencyUID, 3, 2, 1000000000000L));
+            // the transaction sees its own prices
+            assertThat(otherAdapter.getPrice(commodityUID, currencyUID)).isEqualTo(new Pair<>(3L, 2L));
+        } finally {
+            pricesDbAdapter.endTransaction();
+        }
+        assertThat(otherAdapter.getPrice(commodityUID, currencyUID)).isEqualTo(new Pair<>(0L, 0L));
+
+        pricesDbAdapter.beginTransaction();
+        try {
+            pricesDbAdapter.addRecord(createPrice(commodityUID, currencyUID, 5, 4, 1000000000000L));
+            pricesDbAdapter.setTransactionSuccessful();
+        } finally {
+            pricesDbAdapter.endTransaction();
+        }
+        assertThat(otherAdapter.getPrice(commodityUID, currencyUID)).isEqualTo(new Pair<>(5L, 4L));
+    }
+
+    private static Price createPrice(String commodityUID, String currencyUID, long num, long denom, long date) {
+        Price price = new Price(commodityUID, currencyUID);
+        price.setValueNum(num);
+        price.setValueDenom(denom);
+        price.setDate(new Timestamp(date));
+        return price;
+    }
 }
@@ -17,18 +17,30 @@ package org.gnucash.android.test.unit.db;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
+import android.util.Pair;
 
+import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.DatabaseHelper;
 import org.gnucash.android.db.DatabaseSchema;
 import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.db.adapter.DatabaseAdapter;
 import org.gnucash.android.db.adapter.SplitsDbAdapter;
 import org.gnucash.android.db.adapter.TransactionsDbAdapter;
 import org.gnucash.android.model.Account;
+import org.gnucash.android.model.AccountType;
+import org.gnucash.android.model.Commodity;
 import org.gnucash.android.model.Money;
 import org.gnucash.android.model.Split;
 import org.gnucash.android.model.Transaction;
+import org.gnucash.android.model.TransactionType;
 import org.gnucash.android.test.unit.testutil.ShadowCrashlytics;
 import org.gnucash.android.test.unit.testutil.ShadowUserVoice;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -36,7 +48,11 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Some tests for the splits database adapter
@@ -120,6 +136,162 @@ public class SplitsDbAdapterTest {
         assertThat(Boolean.parseBoolean(isExported)).isFalse();
     }
 
+    @Test
+    public void accountBalancesShouldFollowSplitChanges() {
+        Account assetAccount = new Account("Asset", Commodity.USD);
+        assetAccount.setAccountType(AccountType.ASSET);
+        mAccountsDbAdapter.addRecord(assetAccount);
+
+        Transaction transaction = new Transaction("Salary");
+        transaction.setTime(new DateTime(2024, 1, 15, 12, 0, DateTimeZone.UTC).getMillis());
+        Split split = new Split(new Money("20", "USD"), assetAccount.getUID());
+        split.setType(TransactionType.DEBIT);
+        transaction.addSplit(split);
+        transaction.addSplit(split.createPair(mAccount.getUID()));
+        mTransactionsDbAdapter.addRecord(transaction);
+
+        assertThat(mAccountsDbAdapter.getAccountBalance(assetAccount.getUID())).isEqualTo(new Money("20", "USD"));
+
+        split.setQuantity(new Money("30", "USD"));
+        split.setValue(new Money("30", "USD"));
+        mSplitsDbAdapter.addRecord(split);
+        assertThat(mAccountsDbAdapter.getAccountBalance(assetAccount.getUID())).isEqualTo(new Money("30", "USD"));
+
+        transaction.setTime(new DateTime(2024, 3, 1, 0, 0, DateTimeZone.UTC).getMillis());
+        mTransactionsDbAdapter.addRecord(transaction, DatabaseAdapter.UpdateMethod.update);
+        long march = new DateTime(2024, 3, 1, 0, 0, DateTimeZone.UTC).getMillis();
+        assertThat(mAccountsDbAdapter.getAccountBalance(assetAccount.getUID(), -1, march - 1))
+                .isEqualTo(new Money("0", "USD"));
+        assertThat(mAccountsDbAdapter.getAccountBalance(assetAccount.getUID(), march, -1))
+                .isEqualTo(new Money("30", "USD"));
+
+        mSplitsDbAdapter.deleteRecord(split.getUID());
+        assertThat(mAccountsDbAdapter.getAccountBalance(assetAccount.getUID())).isEqualTo(new Money("0", "USD"));
+        assertThat(DatabaseHelper.checkAccountBalances(GnuCashApplication.getActiveDb())).isTrue();
+    }
+
+    @Test
+    public void timeBoundedBalanceShouldCombineBucketsAndSplits() {
+        Account assetAccount = new Account("Asset", Commodity.USD);
+        assetAccount.setAccountType(AccountType.ASSET);
+        mAccountsDbAdapter.addRecord(assetAccount);
+
+        addDebit(assetAccount, new DateTime(2024, 1, 15, 12, 0, DateTimeZone.UTC), "1");
+        addDebit(assetAccount, new DateTime(2024, 2, 10, 12, 0, DateTimeZone.UTC), "2");
+        addDebit(assetAccount, new DateTime(2024, 3, 1, 0, 0, DateTimeZone.UTC), "4");
+        addDebit(assetAccount, new DateTime(2024, 3, 20, 12, 0, DateTimeZone.UTC), "8");
+        assertThat(DatabaseHelper.checkAccountBalances(GnuCashApplication.getActiveDb())).isTrue();
+
+        String accountUID = assetAccount.getUID();
+        long march = new DateTime(2024, 3, 1, 0, 0, DateTimeZone.UTC).getMillis();
+        assertThat(mAccountsDbAdapter.getAccountBalance(accountUID, -1, -1)).isEqualTo(new Money("15", "USD"));
+        assertThat(mAccountsDbAdapter.getAccountBalance(accountUID,
+                new DateTime(2024, 1, 20, 0, 0, DateTimeZone.UTC).getMillis(), march))
+                .isEqualTo(new Money("6", "USD"));
+        assertThat(mAccountsDbAdapter.getAccountBalance(accountUID, -1, march - 1)).isEqualTo(new Money("3", "USD"));
+        assertThat(mAccountsDbAdapter.getAccountBalance(accountUID,
+                new DateTime(2024, 2, 1, 0, 0, DateTimeZone.UTC).getMillis(), -1))
+                .isEqualTo(new Money("14", "USD"));
+        assertThat(mAccountsDbAdapter.getAccountBalance(accountUID, march, march)).isEqualTo(new Money("4", "USD"));
+    }
+
+    @Test
+    public void balanceShouldAddQuantitiesWithDifferentDenominators() {
+        Account assetAccount = new Account("Asset", Commodity.USD);
+        assetAccount.setAccountType(AccountType.ASSET);
+        mAccountsDbAdapter.addRecord(assetAccount);
+
+        addDebit(assetAccount, new DateTime(2024, 1, 10, 12, 0, DateTimeZone.UTC), "1");
+        Transaction transaction = new Transaction("");
+        transaction.setTime(new DateTime(2024, 1, 20, 12, 0, DateTimeZone.UTC).getMillis());
+        Split split = new Split(new Money("2", "USD"), assetAccount.getUID());
+        split.setType(TransactionType.DEBIT);
+        transaction.addSplit(split);
+        transaction.addSplit(split.createPair(mAccount.getUID()));
+        mTransactionsDbAdapter.addRecord(transaction);
+
+        // as imported from a book where the commodity had a smaller fraction
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(DatabaseSchema.SplitEntry.COLUMN_QUANTITY_NUM, 2000);
+        contentValues.put(DatabaseSchema.SplitEntry.COLUMN_QUANTITY_DENOM, 1000);
+        mSplitsDbAdapter.updateRecord(split.getUID(), contentValues);
+        assertThat(DatabaseHelper.checkAccountBalances(GnuCashApplication.getActiveDb())).isTrue();
+
+        String accountUID = assetAccount.getUID();
+        assertThat(mAccountsDbAdapter.getAccountBalance(accountUID, -1, -1)).isEqualTo(new Money("3", "USD"));
+        assertThat(mAccountsDbAdapter.getAccountBalance(accountUID,
+                new DateTime(2024, 1, 5, 0, 0, DateTimeZone.UTC).getMillis(),
+                new DateTime(2024, 1, 25, 0, 0, DateTimeZone.UTC).getMillis()))
+                .isEqualTo(new Money("3", "USD"));
+    }
+
+    @Test
+    public void addingQuantities_shouldNotOverflowTheCommonDenominator() {
+        Map<String, long[]> quantities = new HashMap<>();
+        SplitsDbAdapter.addQuantity(quantities, "USD", 2_100_000_000_000_000_000L, 6);
+        SplitsDbAdapter.addQuantity(quantities, "USD", 5, 10);
+        // the sum is reduced to lowest terms
+        assertThat(quantities.get("USD")).containsExactly(700_000_000_000_000_001L, 2);
+
+        SplitsDbAdapter.addQuantity(quantities, "EUR", Long.MAX_VALUE / 2, 1000);
+        SplitsDbAdapter.addQuantity(quantities, "EUR", 1, 3);
+        // the sum is rounded to thousandths
+        assertThat(quantities.get("EUR")).containsExactly(Long.MAX_VALUE / 2 + 333, 1000);
+
+        SplitsDbAdapter.addQuantity(quantities, "EUR", -(Long.MAX_VALUE / 2 + 333), 1000);
+        assertThat(quantities.get("EUR")).containsExactly(0, 1000);
+    }
+
+    @Test
+    public void balanceAndAccountQueriesShouldNotScanTables() {
+        SQLiteDatabase db = GnuCashApplication.getActiveDb();
+        String accountUID = mAccount.getUID();
+        long march = new DateTime(2024, 3, 1, 0, 0, DateTimeZone.UTC).getMillis();
+
+        List<Pair<String, String[]>> queries = new ArrayList<>();
+        queries.add(SplitsDbAdapter.buildSplitQuantitiesQuery(Collections.singletonList(accountUID),
+                0, march, -1, -1));
+        queries.add(SplitsDbAdapter.buildSplitQuantitiesQuery(Collections.singletonList(accountUID),
+                0, march, 0, march));
+        queries.add(mTransactionsDbAdapter.buildAccountTransactionsQuery(accountUID));
+        queries.add(mTransactionsDbAdapter.buildTransactionsPageQuery(accountUID, Long.MAX_VALUE, Long.MAX_VALUE, 50));
+        queries.add(TransactionsDbAdapter.buildTimestampQuery("MIN", AccountType.CASH, "USD"));
+        queries.add(TransactionsDbAdapter.buildTimestampQuery("MAX", AccountType.CASH, "USD"));
+
+        for (Pair<String, String[]> query : queries) {
+            assertThat(DatabaseHelper.getFullScans(db, query.first, query.second))
+                    .as(query.first).isEmpty();
+        }
+    }
+
+    @Test
+    public void timestampQueriesShouldSearchTheCurrencyAndTimestamp() {
+        SQLiteDatabase db = GnuCashApplication.getActiveDb();
+        Pair<String, String[]> query = TransactionsDbAdapter.buildTimestampQuery("MIN", AccountType.CASH, "USD");
+        List<String> plan = new ArrayList<>();
+        Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + query.first, query.second);
+        try {
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(cursor.getColumnIndexOrThrow("detail")));
+            }
+        } finally {
+            cursor.close();
+        }
+        assertThat(plan).anySatisfy(detail -> assertThat(detail)
+                .contains(DatabaseSchema.TransactionEntry.INDEX_TIMESTAMP)
+                .contains("currency_code=?"));
+    }
+
+    private void addDebit(Account account, DateTime time, String amount) {
+        Transaction transaction = new Transaction("");
+        transaction.setTime(time.getMillis());
+        Split split = new Split(new Money(amount, "USD"), account.getUID());
+        split.setType(TransactionType.DEBIT);
+        transaction.addSplit(split);
+        transaction.addSplit(split.createPair(mAccount.getUID()));
+        mTransactionsDbAdapter.addRecord(transaction);
+    }
+
     @After
     public void tearDown() {
         mAccountsDbAdapter.deleteAllRecords();
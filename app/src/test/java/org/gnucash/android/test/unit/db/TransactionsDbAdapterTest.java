@@ -16,16 +16,23 @@
 package org.gnucash.android.test.unit.db;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.gnucash.android.db.DatabaseSchema.SplitEntry;
+import static org.gnucash.android.db.DatabaseSchema.TransactionEntry;
+
+import android.content.ContentValues;
+import android.database.Cursor;
 
 import org.assertj.core.data.Index;
 import org.gnucash.android.db.adapter.AccountsDbAdapter;
 import org.gnucash.android.db.adapter.SplitsDbAdapter;
+import org.gnucash.android.db.adapter.TransactionIterator;
 import org.gnucash.android.db.adapter.TransactionsDbAdapter;
 import org.gnucash.android.model.Account;
 import org.gnucash.android.model.Commodity;
 import org.gnucash.android.model.Money;
 import org.gnucash.android.model.Split;
 import org.gnucash.android.model.Transaction;
+import org.gnucash.android.model.TransactionType;
 import org.gnucash.android.test.unit.testutil.ShadowCrashlytics;
 import org.gnucash.android.test.unit.testutil.ShadowUserVoice;
 import org.junit.After;
@@ -36,6 +43,7 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 
 
@@ -144,6 +152,190 @@ public class TransactionsDbAdapterTest {
         assertThat(savedBalance.getCommodity()).isEqualTo(secondSplitAmount.getCommodity());
     }
 
+    @Test
+    public void iteratorShouldLoadTransactionsWithTheirSplits() {
+        Transaction t1 = new Transaction("Three way");
+        t1.setTime(System.currentTimeMillis() - 10000);
+        Split split = new Split(new Money("30", DEFAULT_CURRENCY.getCurrencyCode()), alphaAccount.getUID());
+        split.setType(TransactionType.DEBIT);
+        t1.addSplit(split);
+        split = new Split(new Money("10", DEFAULT_CURRENCY.getCurrencyCode()), bravoAccount.getUID());
+        split.setType(TransactionType.CREDIT);
+        t1.addSplit(split);
+        split = new Split(new Money("20", DEFAULT_CURRENCY.getCurrencyCode()), bravoAccount.getUID());
+        split.setType(TransactionType.CREDIT);
+        t1.addSplit(split);
+
+        Transaction t2 = new Transaction("Bravo only");
+        t2.setTime(t1.getTimeMillis());
+        Split split2 = new Split(new Money("5", DEFAULT_CURRENCY.getCurrencyCode()), bravoAccount.getUID());
+        t2.addSplit(split2);
+        t2.addSplit(split2.createPair(bravoAccount.getUID()));
+
+        Transaction t3 = new Transaction("Newest");
+        t3.setTime(System.currentTimeMillis());
+        Split split3 = new Split(new Money("7", DEFAULT_CURRENCY.getCurrencyCode()), alphaAccount.getUID());
+        t3.addSplit(split3);
+        t3.addSplit(split3.createPair(bravoAccount.getUID()));
+
+        mTransactionsDbAdapter.addRecord(t1);
+        mTransactionsDbAdapter.addRecord(t2);
+        mTransactionsDbAdapter.addRecord(t3);
+
+        List<Transaction> transactions = mTransactionsDbAdapter.getAllTransactions();
+        assertThat(transactions).containsOnly(t1, t2, t3);
+        for (Transaction transaction : transactions) {
+            Transaction expected = mTransactionsDbAdapter.getRecord(transaction.getUID());
+            assertThat(transaction.getSplits()).containsOnlyElementsOf(expected.getSplits());
+            assertThat(transaction.getSplits()).hasSameSizeAs(expected.getSplits());
+            assertThat(transaction.getCommodity()).isEqualTo(expected.getCommodity());
+        }
+
+        try (TransactionIterator iterator = mTransactionsDbAdapter.iterateTransactionsForAccount(alphaAccount.getUID(), false)) {
+            assertThat(iterator.getCount()).isEqualTo(2);
+            assertThat(iterator.next()).isEqualTo(t3);
+            Transaction transaction = iterator.next();
+            assertThat(transaction).isEqualTo(t1);
+            assertThat(transaction.getSplits()).hasSize(3);
+            assertThat(iterator.hasNext()).isFalse();
+        }
+    }
+
+    @Test
+    public void pagesShouldContainEachTransactionOfAccountOnce() {
+        long time = System.currentTimeMillis();
+        List<String> expectedUIDs = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Transaction transaction = new Transaction("Page " + i);
+            // several transactions with the same timestamp, across page boundaries
+            transaction.setTime(time - (i / 3) * 1000);
+            Split split = new Split(new Money("1", DEFAULT_CURRENCY.getCurrencyCode()), alphaAccount.getUID());
+            transaction.addSplit(split);
+            transaction.addSplit(split.createPair(i == 4 ? alphaAccount.getUID() : bravoAccount.getUID()));
+            mTransactionsDbAdapter.addRecord(transaction);
+            expectedUIDs.add(transaction.getUID());
+        }
+        Transaction other = new Transaction("Bravo only");
+        Split split = new Split(new Money("5", DEFAULT_CURRENCY.getCurrencyCode()), bravoAccount.getUID());
+        other.addSplit(split);
+        other.addSplit(split.createPair(bravoAccount.getUID()));
+        mTransactionsDbAdapter.addRecord(other);
+
+        List<String> pagedUIDs = new ArrayList<>();
+        long lastTimestamp = Long.MAX_VALUE;
+        long lastId = Long.MAX_VALUE;
+        int pageCount = 0;
+        while (true) {
+            Cursor cursor = mTransactionsDbAdapter.fetchTransactionsPageForAccount(alphaAccount.getUID(),
+                    lastTimestamp, lastId, 3);
+            try {
+                if (!cursor.moveToFirst()) break;
+                pageCount++;
+                assertThat(cursor.getCount()).isLessThanOrEqualTo(3);
+                do {
+                    long timestamp = cursor.getLong(cursor.getColumnIndexOrThrow(TransactionEntry.COLUMN_TIMESTAMP));
+                    long id = cursor.getLong(cursor.getColumnIndexOrThrow(TransactionEntry._ID));
+                    assertThat(timestamp < lastTimestamp || (timestamp == lastTimestamp && id < lastId)).isTrue();
+                    lastTimestamp = timestamp;
+                    lastId = id;
+                    pagedUIDs.add(cursor.getString(cursor.getColumnIndexOrThrow(TransactionEntry.COLUMN_UID)));
+                } while (cursor.moveToNext());
+            } finally {
+                cursor.close();
+            }
+        }
+
+        assertThat(pageCount).isEqualTo(3);
+        assertThat(pagedUIDs).doesNotHaveDuplicates();
+        assertThat(pagedUIDs).containsOnlyElementsOf(expectedUIDs);
+        assertThat(pagedUIDs).hasSameSizeAs(expectedUIDs);
+        assertThat(mTransactionsDbAdapter.getTransactionsCount(alphaAccount.getUID())).isEqualTo(expectedUIDs.size());
+    }
+
+    @Test
+    public void accountTransactionsShouldIncludeAmountAndCounterAccount() {
+        Transaction transfer = new Transaction("Transfer");
+        transfer.setTime(System.currentTimeMillis());
+        Split split = new Split(new Money("12.50", DEFAULT_CURRENCY.getCurrencyCode()), alphaAccount.getUID());
+        split.setType(TransactionType.CREDIT);
+        transfer.addSplit(split);
+        transfer.addSplit(split.createPair(bravoAccount.getUID()));
+
+        Transaction threeWay = new Transaction("Three way");
+        threeWay.setTime(System.currentTimeMillis() - 10000);
+        split = new Split(new Money("30", DEFAULT_CURRENCY.getCurrencyCode()), alphaAccount.getUID());
+        split.setType(TransactionType.DEBIT);
+        threeWay.addSplit(split);
+        split = new Split(new Money("10", DEFAULT_CURRENCY.getCurrencyCode()), bravoAccount.getUID());
+        split.setType(TransactionType.CREDIT);
+        threeWay.addSplit(split);
+        split = new Split(new Money("20", DEFAULT_CURRENCY.getCurrencyCode()), bravoAccount.getUID());
+        split.setType(TransactionType.CREDIT);
+        threeWay.addSplit(split);
+
+        mTransactionsDbAdapter.addRecord(transfer);
+        mTransactionsDbAdapter.addRecord(threeWay);
+
+        Cursor cursor = mTransactionsDbAdapter.fetchAllTransactionsForAccount(alphaAccount.getUID());
+        try {
+            assertThat(cursor.getCount()).isEqualTo(2);
+            while (cursor.moveToNext()) {
+                String transactionUID = cursor.getString(cursor.getColumnIndexOrThrow(TransactionEntry.COLUMN_UID));
+                Money amount = new Money(
+                        cursor.getLong(cursor.getColumnIndexOrThrow(TransactionsDbAdapter.COLUMN_ACCOUNT_AMOUNT_NUM)),
+                        cursor.getLong(cursor.getColumnIndexOrThrow(TransactionsDbAdapter.COLUMN_ACCOUNT_AMOUNT_DENOM)),
+                        alphaAccount.getCommodity().getCurrencyCode());
+                assertThat(amount).isEqualTo(mTransactionsDbAdapter.getBalance(transactionUID, alphaAccount.getUID()));
+
+                int splitCount = cursor.getInt(cursor.getColumnIndexOrThrow(TransactionsDbAdapter.COLUMN_SPLIT_COUNT));
+                String counterAccountName = cursor.getString(
+                        cursor.getColumnIndexOrThrow(TransactionsDbAdapter.COLUMN_COUNTER_ACCOUNT_FULL_NAME));
+                if (transactionUID.equals(transfer.getUID())) {
+                    assertThat(splitCount).isEqualTo(2);
+                    assertThat(counterAccountName).isEqualTo(mAccountsDbAdapter.getAccountFullName(bravoAccount.getUID()));
+                } else {
+                    assertThat(splitCount).isEqualTo(3);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void accountTransactionsAmount_shouldAddQuantitiesWithDifferentDenominators() {
+        Transaction transaction = new Transaction("Mixed denominators");
+        Split first = new Split(new Money("1.50", DEFAULT_CURRENCY.getCurrencyCode()), alphaAccount.getUID());
+        first.setType(TransactionType.DEBIT);
+        Split second = new Split(new Money("0.25", DEFAULT_CURRENCY.getCurrencyCode()), alphaAccount.getUID());
+        second.setType(TransactionType.DEBIT);
+        Split counter = new Split(new Money("1.75", DEFAULT_CURRENCY.getCurrencyCode()), bravoAccount.getUID());
+        counter.setType(TransactionType.CREDIT);
+        transaction.addSplit(first);
+        transaction.addSplit(second);
+        transaction.addSplit(counter);
+        mTransactionsDbAdapter.addRecord(transaction);
+
+        // as imported from a book where the commodity had a smaller fraction
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(SplitEntry.COLUMN_QUANTITY_NUM, 250);
+        contentValues.put(SplitEntry.COLUMN_QUANTITY_DENOM, 1000);
+        mSplitsDbAdapter.updateRecord(second.getUID(), contentValues);
+
+        Cursor cursor = mTransactionsDbAdapter.fetchAllTransactionsForAccount(alphaAccount.getUID());
+        try {
+            assertThat(cursor.moveToFirst()).isTrue();
+            long amountNum = cursor.getLong(cursor.getColumnIndexOrThrow(TransactionsDbAdapter.COLUMN_ACCOUNT_AMOUNT_NUM));
+            long amountDenom = cursor.getLong(cursor.getColumnIndexOrThrow(TransactionsDbAdapter.COLUMN_ACCOUNT_AMOUNT_DENOM));
+            assertThat(amountDenom).isEqualTo(1000);
+            assertThat(amountNum).isEqualTo(1750);
+            assertThat(new Money(amountNum, amountDenom, DEFAULT_CURRENCY.getCurrencyCode()))
+                    .isEqualTo(mTransactionsDbAdapter.getBalance(transaction.getUID(), alphaAccount.getUID()));
+        } finally {
+            cursor.close();
+        }
+    }
+
     @After
     public void tearDown() throws Exception {
         mAccountsDbAdapter.deleteAllRecords();
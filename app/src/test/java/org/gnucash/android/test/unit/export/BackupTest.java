@@ -16,17 +16,32 @@
 package org.gnucash.android.test.unit.export;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.fail;
+import static org.robolectric.Shadows.shadowOf;
 
 import android.content.Context;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
 
 import org.gnucash.android.R;
 import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.DatabaseSchema.CommonColumns;
+import org.gnucash.android.db.DatabaseSchema.SplitEntry;
+import org.gnucash.android.db.DatabaseSchema.TransactionEntry;
+import org.gnucash.android.db.adapter.AccountsDbAdapter;
 import org.gnucash.android.db.adapter.BooksDbAdapter;
+import org.gnucash.android.db.adapter.TransactionsDbAdapter;
 import org.gnucash.android.export.ExportFormat;
 import org.gnucash.android.export.ExportParams;
+import org.gnucash.android.export.ExportSink;
 import org.gnucash.android.export.Exporter;
 import org.gnucash.android.export.xml.GncXmlExporter;
 import org.gnucash.android.importer.GncXmlImporter;
+import org.gnucash.android.model.Money;
+import org.gnucash.android.model.Split;
+import org.gnucash.android.model.Transaction;
 import org.gnucash.android.test.unit.testutil.ShadowCrashlytics;
 import org.gnucash.android.test.unit.testutil.ShadowUserVoice;
 import org.junit.Before;
@@ -36,9 +51,19 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 import org.xml.sax.SAXException;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -67,6 +92,202 @@ public class BackupTest {
             .hasExtension(ExportFormat.XML.extension.substring(1));
     }
 
+    @Test
+    public void exportToGzippedSink_shouldWriteCompressedFileDirectly() throws IOException {
+        Context context = GnuCashApplication.getAppContext();
+        String bookUID = GnuCashApplication.getActiveBookUID();
+        File folder = new File(context.getCacheDir(), "sink");
+        Exporter exporter = new GncXmlExporter(context, new ExportParams(ExportFormat.XML), bookUID);
+        exporter.setExportSink(ExportSink.toDirectory(folder).gzipped());
+        List<String> xmlFiles = exporter.generateExport();
+
+        assertThat(xmlFiles).hasSize(1);
+        File file = new File(xmlFiles.get(0));
+        assertThat(file).exists().hasExtension("gz");
+        assertThat(file.getParentFile()).isEqualTo(folder.getAbsoluteFile());
+        assertThat(file.getName()).endsWith(ExportFormat.XML.extension + ".gz");
+        BufferedReader reader = new BufferedReader(
+            new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), "UTF-8"));
+        StringBuilder xml = new StringBuilder();
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                xml.append(line).append('\n');
+            }
+        } finally {
+            reader.close();
+        }
+        assertThat(xml.toString()).startsWith("<?xml").contains("<gnc-v2", "</gnc-v2>");
+    }
+
+    @Test
+    public void failedExport_shouldBeRemovedWhenTheSinkIsAborted() throws IOException {
+        Context context = GnuCashApplication.getAppContext();
+        String bookUID = GnuCashApplication.getActiveBookUID();
+        File folder = new File(context.getCacheDir(), "failing");
+        folder.mkdirs();
+        File previousExport = new File(folder, "previous.xml");
+        assertThat(previousExport.createNewFile()).isTrue();
+        FailingSink sink = new FailingSink(folder, 1024);
+        Exporter exporter = new GncXmlExporter(context, new ExportParams(ExportFormat.XML), bookUID);
+        exporter.setExportSink(sink);
+
+        try {
+            exporter.generateExport();
+            fail("The export should have failed");
+        } catch (Exporter.ExporterException expected) {
+            sink.abort();
+        }
+
+        assertThat(sink.mFiles).hasSize(1);
+        assertThat(sink.mFiles.get(0)).doesNotExist();
+        assertThat(sink.getExportedFiles()).isEmpty();
+        assertThat(previousExport).exists();
+        assertThatThrownBy(() -> sink.openStream("other.xml")).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void abortedDirectorySink_shouldDeleteOpenAndClosedFiles() throws IOException {
+        File folder = new File(GnuCashApplication.getAppContext().getCacheDir(), "aborted");
+        ExportSink sink = ExportSink.toDirectory(folder);
+        OutputStream closed = sink.openStream("closed.xml");
+        closed.write(new byte[]{1, 2, 3});
+        closed.close();
+        OutputStream open = sink.openStream("open.xml");
+        open.write(new byte[]{1, 2, 3});
+        assertThat(new File(folder, "closed.xml")).exists();
+
+        sink.abort();
+
+        assertThat(folder.list()).isEmpty();
+    }
+
+    @Test
+    public void uriSink_shouldHoldASingleFile() throws IOException {
+        Context context = GnuCashApplication.getAppContext();
+        Uri uri = Uri.parse("content://org.gnucash.android.test/export.xml");
+        ByteArrayOutputStream document = new ByteArrayOutputStream();
+        shadowOf(context.getContentResolver()).registerOutputStream(uri, document);
+        ExportSink sink = ExportSink.toUri(context.getContentResolver(), uri);
+
+        OutputStream stream = sink.openStream("first.xml");
+        stream.write(new byte[]{1, 2, 3});
+        stream.close();
+
+        assertThatThrownBy(() -> sink.openStream("second.xml"))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("one file");
+        assertThat(document.toByteArray()).containsExactly(1, 2, 3);
+        assertThat(sink.getExportedFiles()).containsExactly(uri.toString());
+    }
+
+    @Test
+    public void abortedUriSink_shouldDeleteTheDocument() throws IOException {
+        Context context = GnuCashApplication.getAppContext();
+        File file = new File(context.getCacheDir(), "document.xml");
+        assertThat(file.createNewFile()).isTrue();
+        ExportSink sink = ExportSink.toUri(context.getContentResolver(), Uri.fromFile(file));
+        sink.openStream(file.getName()).write(new byte[]{1, 2, 3});
+
+        sink.abort();
+
+        assertThat(file).doesNotExist();
+    }
+
+    @Test
+    public void incrementalExportShouldMatchFullExport() throws Exception {
+        AccountsDbAdapter accountsDbAdapter = AccountsDbAdapter.getInstance();
+        TransactionsDbAdapter transactionsDbAdapter = TransactionsDbAdapter.getInstance();
+        String assetUID = accountsDbAdapter.findAccountUidByFullName("Assets:Current Assets:Cash in Wallet");
+        String expenseUID = accountsDbAdapter.findAccountUidByFullName("Expenses:Groceries");
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Transaction transaction = new Transaction("Groceries " + i);
+            Split split = new Split(new Money(String.valueOf(i + 1), "USD"), expenseUID);
+            transaction.addSplit(split);
+            transaction.addSplit(split.createPair(assetUID));
+            transactionsDbAdapter.addRecord(transaction);
+            transactions.add(transaction);
+        }
+        // transactions modified in the same second as an export are not cached
+        backdateModifications(TransactionEntry.TABLE_NAME);
+        backdateModifications(SplitEntry.TABLE_NAME);
+
+        assertThat(exportBook(true)).isEqualTo(exportBook(false));
+        assertThat(exportBook(true)).isEqualTo(exportBook(false));
+
+        Transaction modified = transactions.get(2);
+        modified.setDescription("Modified");
+        transactionsDbAdapter.addRecord(modified);
+        String fullExport = exportBook(false);
+        assertThat(fullExport).contains("Modified");
+        assertThat(exportBook(true)).isEqualTo(fullExport);
+    }
+
+    /**
+     * Sets the modification time of all the records of a table to the day before,
+     * as if they had been written long before the next export
+     */
+    private static void backdateModifications(String tableName) {
+        GnuCashApplication.getActiveDb().execSQL("UPDATE " + tableName
+            + " SET " + CommonColumns.COLUMN_MODIFIED_AT + " = datetime('now', '-1 day')");
+    }
+
+    /**
+     * Exports the active book to XML, without its randomly generated book ID
+     */
+    private String exportBook(boolean incremental) {
+        GncXmlExporter exporter = new GncXmlExporter(GnuCashApplication.getAppContext(),
+            new ExportParams(ExportFormat.XML), GnuCashApplication.getActiveBookUID());
+        exporter.setIncremental(incremental);
+        StringWriter writer = new StringWriter();
+        exporter.generateExport(writer);
+        return writer.toString().replaceAll("(<book:id[^>]*>)[^<]*", "$1");
+    }
+
+    /**
+     * Sink to a folder whose files fail to be written after a number of bytes
+     */
+    private static final class FailingSink extends ExportSink {
+        private final File mDirectory;
+        private final int mLimit;
+        final List<File> mFiles = new ArrayList<>();
+
+        FailingSink(File directory, int limit) {
+            mDirectory = directory;
+            mLimit = limit;
+        }
+
+        @NonNull
+        @Override
+        protected OutputStream createStream(@NonNull String fileName) throws IOException {
+            File file = new File(mDirectory, fileName);
+            mFiles.add(file);
+            return new FilterOutputStream(new FileOutputStream(file)) {
+                private int mWritten = 0;
+
+                @Override
+                public void write(int b) throws IOException {
+                    if (++mWritten > mLimit) {
+                        throw new IOException("No space left on device");
+                    }
+                    out.write(b);
+                }
+            };
+        }
+
+        @NonNull
+        @Override
+        protected String getLocation(@NonNull String fileName) {
+            return new File(mDirectory, fileName).getAbsolutePath();
+        }
+
+        @Override
+        protected void discard(@NonNull String fileName) {
+            new File(mDirectory, fileName).delete();
+        }
+    }
+
     /**
      * Loads the default accounts from file resource
      */
@@ -21,12 +21,14 @@ import static org.assertj.core.api.Assertions.assertThat;
 import org.gnucash.android.app.GnuCashApplication;
 import org.gnucash.android.export.xml.GncXmlHelper;
 import org.gnucash.android.model.Commodity;
+import org.gnucash.android.ui.transaction.TransactionFormFragment;
 import org.joda.time.DateTimeZone;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 import org.junit.Test;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.Timestamp;
 import java.text.DateFormat;
 import java.text.ParseException;
@@ -34,6 +36,7 @@ import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
+import java.util.Random;
 import java.util.TimeZone;
 
 /**
@@ -241,4 +244,104 @@ public class GncXmlHelperTest {
         dtf = DateTimeFormat.forPattern("EEE, d MMM");
         assertThat(df.format(new Date(now))).isEqualTo(dtf.print(now));
     }
+
+    /**
+     * Compares the parsing of random timestamps with the Joda parser
+     */
+    @Test
+    public void parseDateTimeShouldMatchJodaParser() throws ParseException {
+        DateTimeFormatter reference = DateTimeFormat.forPattern("yyyy-MM-dd HH:mm:ss Z");
+        Random random = new Random(20240519);
+        for (int i = 0; i < 20000; i++) {
+            long millis = randomMillis(random);
+            int offsetMinutes = random.nextInt(2 * 24 * 60 - 1) - (24 * 60 - 1);
+            String dateString = reference.withZone(DateTimeZone.forOffsetMillis(offsetMinutes * 60000))
+                    .print(millis);
+            assertThat(GncXmlHelper.parseDateTime(dateString))
+                    .as(dateString)
+                    .isEqualTo(reference.parseMillis(dateString));
+        }
+
+        String[] variants = {"2016-08-23 10:00:00 +02:00", "2016-8-23 10:00:00 +0200",
+                "0000-01-01 00:00:00 +0000", "12016-08-23 10:00:00 +0200"};
+        for (String dateString : variants) {
+            assertThat(GncXmlHelper.parseDateTime(dateString))
+                    .as(dateString)
+                    .isEqualTo(reference.parseMillis(dateString));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldFailToParseInvalidDateTime() throws ParseException {
+        GncXmlHelper.parseDateTime("2023-02-29 10:00:00 +0000");
+    }
+
+    /**
+     * Compares the formatting of random times with the Joda formatter, in several time zones
+     */
+    @Test
+    public void formatDateTimeShouldMatchJodaFormatter() {
+        DateTimeFormatter reference = DateTimeFormat.forPattern("yyyy-MM-dd HH:mm:ss Z");
+        String[] zones = {"UTC", "Europe/Kiev", "America/St_Johns", "Asia/Kolkata",
+                "Australia/Lord_Howe", "Pacific/Kiritimati", "America/Los_Angeles"};
+        DateTimeZone defaultZone = DateTimeZone.getDefault();
+        Random random = new Random(20240228);
+        try {
+            for (String zone : zones) {
+                DateTimeZone.setDefault(DateTimeZone.forID(zone));
+                for (int i = 0; i < 5000; i++) {
+                    long millis = randomMillis(random);
+                    assertThat(GncXmlHelper.formatDateTime(millis))
+                            .as(zone + " " + millis)
+                            .isEqualTo(reference.print(millis));
+                }
+            }
+        } finally {
+            DateTimeZone.setDefault(defaultZone);
+        }
+    }
+
+    /**
+     * Compares the parsing of random split amounts with the parsing through {@link BigInteger}
+     */
+    @Test
+    public void parseSplitAmountShouldMatchBigIntegerParser() throws ParseException {
+        Random random = new Random(12345);
+        for (int i = 0; i < 20000; i++) {
+            long numerator = random.nextBoolean() ? random.nextInt(1000000) : random.nextLong();
+            String sign = numerator >= 0 && random.nextInt(10) == 0 ? "+" : "";
+            String amountString = sign + numerator + "/" + BigInteger.TEN.pow(random.nextInt(7));
+            assertThat(GncXmlHelper.parseSplitAmount(amountString))
+                    .as(amountString)
+                    .isEqualTo(parseSplitAmountWithBigInteger(amountString));
+        }
+
+        String[] variants = {"0/1", "-0/100", "007/100", "1.234,50/100", "123456789012345678901/100",
+                "-999999999999999999/1000000", "12 345/100", "5/3"};
+        for (String amountString : variants) {
+            assertThat(GncXmlHelper.parseSplitAmount(amountString))
+                    .as(amountString)
+                    .isEqualTo(parseSplitAmountWithBigInteger(amountString));
+        }
+    }
+
+    /**
+     * Returns a random time between the years 1800 and 2200, rounded to the second
+     */
+    private static long randomMillis(Random random) {
+        long min = -5364662400000L;
+        long max = 7258118400000L;
+        return (min + (long) (random.nextDouble() * (max - min))) / 1000 * 1000;
+    }
+
+    /**
+     * Parses a split amount like {@link GncXmlHelper#parseSplitAmount(String)} did
+     * before it had a fast path
+     */
+    private static BigDecimal parseSplitAmountWithBigInteger(String amountString) {
+        int pos = amountString.indexOf("/");
+        int scale = amountString.length() - pos - 2;
+        String numerator = TransactionFormFragment.stripCurrencyFormatting(amountString.substring(0, pos));
+        return new BigDecimal(new BigInteger(numerator), scale);
+    }
 }
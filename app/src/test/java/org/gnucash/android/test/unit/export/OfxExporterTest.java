@@ -19,7 +19,9 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
+import android.preference.PreferenceManager;
 
+import org.gnucash.android.R;
 import org.gnucash.android.app.GnuCashApplication;
 import org.gnucash.android.db.DatabaseHelper;
 import org.gnucash.android.db.adapter.AccountsDbAdapter;
@@ -43,12 +45,22 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
 
 import java.io.File;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 import java.util.TimeZone;
 
+import javax.xml.parsers.DocumentBuilderFactory;
+
 
 @RunWith(RobolectricTestRunner.class)
 //package is required so that resources can be found in dev mode
@@ -100,6 +112,70 @@ public class OfxExporterTest {
         file.delete();
     }
 
+    /**
+     * Test that the statements of the accounts are written with both OFX headers
+     */
+    @Test
+    public void generatedOfx_shouldContainStatementTransactions() throws Exception {
+        Context context = GnuCashApplication.getAppContext();
+        AccountsDbAdapter accountsDbAdapter = GnuCashApplication.getAccountsDbAdapter();
+
+        Account account = new Account("Basic Account");
+        Account transferAccount = new Account("Transfer Account");
+        accountsDbAdapter.addRecord(transferAccount);
+        Transaction transaction = new Transaction("Fish & chips <take-away>");
+        transaction.setNote("Friday");
+        Split split = new Split(new Money(new BigDecimal("12.50"), account.getCommodity()), account.getUID());
+        transaction.addSplit(split);
+        transaction.addSplit(split.createPair(transferAccount.getUID()));
+        account.addTransaction(transaction);
+        accountsDbAdapter.addRecord(account);
+
+        for (boolean useXmlHeader : new boolean[]{false, true}) {
+            PreferenceManager.getDefaultSharedPreferences(context).edit()
+                    .putBoolean(context.getString(R.string.key_xml_ofx_header), useXmlHeader)
+                    .commit();
+            ExportParams exportParameters = new ExportParams(ExportFormat.OFX);
+            exportParameters.setExportStartTime(TimestampHelper.getTimestampFromEpochZero());
+            exportParameters.setExportTarget(ExportParams.ExportTarget.SD_CARD);
+            exportParameters.setDeleteTransactionsAfterExport(false);
+
+            OfxExporter exporter = new OfxExporter(context, exportParameters, GnuCashApplication.getActiveBookUID());
+            List<String> exportedFiles = exporter.generateExport();
+            assertThat(exportedFiles).hasSize(1);
+            File file = new File(exportedFiles.get(0));
+            String ofx = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            file.delete();
+
+            String body;
+            if (useXmlHeader) {
+                assertThat(ofx).startsWith("<?xml");
+                assertThat(ofx).contains("<?OFX " + OfxHelper.OFX_HEADER + "?>");
+                body = ofx;
+            } else {
+                assertThat(ofx).startsWith(OfxHelper.OFX_SGML_HEADER + "\n<OFX>");
+                body = ofx.substring(OfxHelper.OFX_SGML_HEADER.length() + 1);
+            }
+            Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                    .parse(new InputSource(new StringReader(body)));
+            NodeList statements = document.getElementsByTagName(OfxHelper.TAG_STATEMENT_TRANSACTIONS);
+            assertThat(statements.getLength()).isEqualTo(2);
+            NodeList transactions = document.getElementsByTagName(OfxHelper.TAG_STATEMENT_TRANSACTION);
+            assertThat(transactions.getLength()).isEqualTo(2);
+            assertThat(document.getElementsByTagName(OfxHelper.TAG_NAME).item(0).getTextContent())
+                    .isEqualTo("Fish & chips <take-away>");
+            assertThat(document.getElementsByTagName(OfxHelper.TAG_MEMO).item(0).getTextContent())
+                    .isEqualTo("Friday");
+            assertThat(document.getElementsByTagName(OfxHelper.TAG_BANK_ACCOUNT_TO).getLength()).isEqualTo(2);
+            List<String> amounts = new ArrayList<>();
+            NodeList balances = document.getElementsByTagName(OfxHelper.TAG_BALANCE_AMOUNT);
+            for (int i = 0; i < balances.getLength(); i++) {
+                amounts.add(balances.item(i).getTextContent());
+            }
+            assertThat(amounts).containsOnly("12.50", "-12.50");
+        }
+    }
+
     @Test
     public void testDateTime() {
         TimeZone tz = TimeZone.getTimeZone("EST");
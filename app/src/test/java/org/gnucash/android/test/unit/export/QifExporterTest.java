@@ -54,8 +54,11 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.math.BigDecimal;
+import java.util.Collections;
 import java.util.List;
+import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 @RunWith(RobolectricTestRunner.class)
@@ -169,6 +172,62 @@ public class QifExporterTest extends BookHelperTest {
         file.delete();
     }
 
+    /**
+     * Test that the records of each currency are written to their own file in the zip
+     */
+    @Test
+    public void recordsOfEachCurrency_shouldBeWrittenToTheirOwnZippedFile() throws IOException {
+        Context context = GnuCashApplication.getAppContext();
+        AccountsDbAdapter accountsDbAdapter = new AccountsDbAdapter(mDb);
+        for (String currencyCode : new String[]{"EUR", "USD"}) {
+            Account account = new Account("Account " + currencyCode, Commodity.getInstance(currencyCode));
+            Account transferAccount = new Account("Transfer " + currencyCode, Commodity.getInstance(currencyCode));
+            accountsDbAdapter.addRecord(transferAccount);
+            Transaction transaction = new Transaction("Transaction " + currencyCode);
+            Split split = new Split(new Money("10", currencyCode), account.getUID());
+            transaction.addSplit(split);
+            transaction.addSplit(split.createPair(transferAccount.getUID()));
+            account.addTransaction(transaction);
+            accountsDbAdapter.addRecord(account);
+        }
+
+        ExportParams exportParameters = new ExportParams(ExportFormat.QIF);
+        exportParameters.setExportStartTime(TimestampHelper.getTimestampFromEpochZero());
+        exportParameters.setExportTarget(ExportParams.ExportTarget.SD_CARD);
+        exportParameters.setDeleteTransactionsAfterExport(false);
+
+        QifExporter exporter = new QifExporter(context, exportParameters, mBookUID);
+        List<String> exportedFiles = exporter.generateExport();
+
+        assertThat(exportedFiles).hasSize(1);
+        File file = new File(exportedFiles.get(0));
+        assertThat(file).exists().hasExtension("zip");
+        ZipFile zipFile = new ZipFile(file);
+        try {
+            assertThat(zipFile.size()).isEqualTo(2);
+            for (String currencyCode : new String[]{"EUR", "USD"}) {
+                ZipEntry entry = null;
+                for (ZipEntry zipEntry : Collections.list(zipFile.entries())) {
+                    if (zipEntry.getName().endsWith("_" + currencyCode + ".qif")) {
+                        entry = zipEntry;
+                    }
+                }
+                assertThat(entry).isNotNull();
+                BufferedReader reader = new BufferedReader(new InputStreamReader(zipFile.getInputStream(entry), "UTF-8"));
+                StringBuilder content = new StringBuilder();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    content.append(line).append(QifHelper.NEW_LINE);
+                }
+                assertThat(content.toString()).contains(QifHelper.PAYEE_PREFIX + "Transaction " + currencyCode)
+                        .doesNotContain(currencyCode.equals("EUR") ? "Transaction USD" : "Transaction EUR");
+            }
+        } finally {
+            zipFile.close();
+        }
+        file.delete();
+    }
+
     /**
      * Test that the memo and description fields of transactions are exported.
      */
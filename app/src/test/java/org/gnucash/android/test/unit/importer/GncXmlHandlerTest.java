@@ -16,9 +16,13 @@
 package org.gnucash.android.test.unit.importer;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
+import org.gnucash.android.db.adapter.AccountsDbAdapter;
 import org.gnucash.android.db.adapter.BooksDbAdapter;
 import org.gnucash.android.export.xml.GncXmlHelper;
+import org.gnucash.android.importer.GncXmlHandler;
+import org.gnucash.android.importer.GncXmlImporter;
 import org.gnucash.android.model.Account;
 import org.gnucash.android.model.AccountType;
 import org.gnucash.android.model.Money;
@@ -34,9 +38,17 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
+import org.xml.sax.SAXException;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.text.ParseException;
 import java.util.Calendar;
+import java.util.Scanner;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Imports GnuCash XML files and checks the objects defined in them are imported correctly.
@@ -347,4 +359,181 @@ public class GncXmlHandlerTest extends BookHelperTest {
         //assertThat(split2.getQuantity()).isEqualTo(new Money("20", "USD"));
         assertThat(split2.isPairOf(split1)).isTrue();
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that books with more transactions than fit in one batch are imported completely,
+     * and that a single imbalance account is created for transactions of several batches.
+     */
+    @Test
+    public void transactionsImportInSeveralBatches() {
+        int transactionCount = 2 * GncXmlHandler.BATCH_SIZE + 1;
+        String xml = buildBookWithTransactions(transactionCount);
+
+        String bookUID = importGnuCashXml(new ByteArrayInputStream(xml.getBytes(Charset.forName("UTF-8"))));
+        assertThat(BooksDbAdapter.isBookDatabase(bookUID)).isTrue();
+
+        assertThat(mTransactionsDbAdapter.getRecordsCount()).isEqualTo(transactionCount);
+        assertThat(mAccountsDbAdapter.getRecordsCount()).isEqualTo(6); // 5 accounts + imbalance
+        assertThat(mTransactionsDbAdapter.getSplitDbAdapter().getRecordsCount())
+                .isEqualTo(2 * transactionCount + 3);
+
+        Transaction transaction = mTransactionsDbAdapter.getRecord(String.format("%032x", GncXmlHandler.BATCH_SIZE));
+        assertThat(transaction.getSplits()).hasSize(3);
+        Account imbalanceAccount = mAccountsDbAdapter.getRecord(transaction.getSplits().get(2).getAccountUID());
+        assertThat(imbalanceAccount.getName()).startsWith(AccountsDbAdapter.getImbalanceAccountPrefix());
+        assertThat(imbalanceAccount.getParentUID()).isEqualTo("308ade8cf0be2b0b05c5eec3114a65fa");
+    }
+
+    /**
+     * Tests that gzipped books are imported completely through the import pipeline,
+     * where the file is decompressed, parsed and saved on different threads.
+     */
+    @Test
+    public void gzippedBookImportsThroughPipeline() throws Exception {
+        int transactionCount = 3 * GncXmlHandler.BATCH_SIZE + 7;
+        String xml = buildBookWithTransactions(transactionCount);
+
+        String bookUID = GncXmlImporter.parse(new ByteArrayInputStream(gzip(xml)));
+        setUpDbAdapters(bookUID);
+
+        assertThat(mBooksDbAdapter.getRecord(bookUID).getRootAccountUID())
+                .isEqualTo("308ade8cf0be2b0b05c5eec3114a65fa");
+        assertThat(mTransactionsDbAdapter.getRecordsCount()).isEqualTo(transactionCount);
+        assertThat(mAccountsDbAdapter.getRecordsCount()).isEqualTo(6); // 5 accounts + imbalance
+        assertThat(mTransactionsDbAdapter.getSplitDbAdapter().getRecordsCount())
+                .isEqualTo(2 * transactionCount + 4);
+    }
+
+    /**
+     * Tests that a book is not added when the file is truncated after some batches were saved
+     */
+    @Test
+    public void truncatedBookIsNotImported() throws Exception {
+        String xml = buildBookWithTransactions(2 * GncXmlHandler.BATCH_SIZE + 1);
+        xml = xml.substring(0, xml.lastIndexOf("<gnc:transaction "));
+
+        try {
+            GncXmlImporter.parse(new ByteArrayInputStream(gzip(xml)));
+            fail("Truncated file should not be imported");
+        } catch (SAXException expected) {
+            // the parser reports the missing end of the document
+        }
+        assertThat(mBooksDbAdapter.getRecordsCount()).isZero();
+    }
+
+    /**
+     * Tests that the batches of transactions converted on several threads are all saved,
+     * with their dates, amounts and balancing splits
+     */
+    @Test
+    public void transactionsConvertedOnSeveralThreadsImport() throws Exception {
+        int transactionCount = 5 * GncXmlHandler.BATCH_SIZE + 7;
+        String xml = buildBookWithTransactions(transactionCount);
+
+        String bookUID = GncXmlImporter.parse(new ByteArrayInputStream(gzip(xml)), 3);
+        setUpDbAdapters(bookUID);
+
+        assertThat(mTransactionsDbAdapter.getRecordsCount()).isEqualTo(transactionCount);
+        assertThat(mAccountsDbAdapter.getRecordsCount()).isEqualTo(6); // 5 accounts + imbalance
+        // one imbalanced transaction in each of the 6 batches
+        assertThat(mTransactionsDbAdapter.getSplitDbAdapter().getRecordsCount())
+                .isEqualTo(2 * transactionCount + 6);
+
+        Transaction transaction = mTransactionsDbAdapter.getRecord(String.format("%032x", transactionCount - 1));
+        assertThat(transaction.getTimeMillis())
+                .isEqualTo(GncXmlHelper.parseDateTime("2016-08-23 10:00:00 +0200"));
+        assertThat(transaction.getCreatedTimestamp().getTime())
+                .isEqualTo(GncXmlHelper.parseDateTime("2016-08-23 12:44:19 +0200"));
+        assertThat(transaction.getSplits()).hasSize(2);
+        for (Split split : transaction.getSplits()) {
+            assertThat(split.getValue()).isEqualTo(new Money("10", "USD"));
+            assertThat(split.getQuantity()).isEqualTo(new Money("10", "USD"));
+        }
+
+        Transaction imbalanced = mTransactionsDbAdapter.getRecord(String.format("%032x", 5 * GncXmlHandler.BATCH_SIZE));
+        assertThat(imbalanced.getSplits()).hasSize(3);
+        Account imbalanceAccount = mAccountsDbAdapter.getRecord(imbalanced.getSplits().get(2).getAccountUID());
+        assertThat(imbalanceAccount.getName()).startsWith(AccountsDbAdapter.getImbalanceAccountPrefix());
+    }
+
+    /**
+     * Tests that an amount which cannot be converted fails the import, even after some batches were saved
+     */
+    @Test
+    public void invalidAmountIsNotImported() throws Exception {
+        String xml = buildBookWithTransactions(2 * GncXmlHandler.BATCH_SIZE + 1);
+        int amount = xml.lastIndexOf("-1000/100");
+        xml = xml.substring(0, amount) + "-1000" + xml.substring(amount + "-1000/100".length());
+
+        try {
+            GncXmlImporter.parse(new ByteArrayInputStream(gzip(xml)), 2);
+            fail("Invalid amount should not be imported");
+        } catch (SAXException expected) {
+            assertThat(expected).hasMessageContaining("-1000");
+        }
+        assertThat(mBooksDbAdapter.getRecordsCount()).isZero();
+    }
+
+    /**
+     * Tests that the runs of a scheduled action missed since the book was last opened are saved
+     * along with the converted transactions, with the splits of their template
+     */
+    @Test
+    public void missedScheduledTransactionsImport() throws Exception {
+        InputStream inputStream = getClass().getClassLoader()
+                .getResourceAsStream("bug562_scheduledTransactionImportedWithImbalancedSplits.xml");
+        String xml = new Scanner(inputStream, "UTF-8").useDelimiter("\\A").next()
+                .replace("<sx:autoCreate>n</sx:autoCreate>", "<sx:autoCreate>y</sx:autoCreate>");
+
+        String bookUID = GncXmlImporter.parse(new ByteArrayInputStream(gzip(xml)), 2);
+        setUpDbAdapters(bookUID);
+
+        ScheduledAction scheduledAction = mScheduledActionDbAdapter.getRecord("9def659b35e85b09fe2bfade35053487");
+        int executionCount = scheduledAction.getExecutionCount();
+        assertThat(executionCount).isGreaterThan(0);
+        assertThat(mTransactionsDbAdapter.getRecordsCount()).isEqualTo(1 + executionCount);
+        for (Transaction transaction : mTransactionsDbAdapter.getAllTransactions()) {
+            assertThat(transaction.isTemplate()).isFalse();
+            assertThat(transaction.getSplits()).hasSize(2);
+            if (!transaction.getUID().equals("04e2b1077b5f92b017dcc96e7730f4f7")) {
+                assertThat(transaction.getScheduledActionUID()).isEqualTo(scheduledAction.getUID());
+                assertThat(transaction.getDescription()).isEqualTo("Los pollos hermanos");
+            }
+        }
+    }
+
+    /**
+     * Builds a book with the accounts of simpleTransactionImport.xml and copies of its transaction.
+     * The first transaction of each batch is imbalanced.
+     *
+     * @param transactionCount Number of transactions of the book
+     * @return XML of the book
+     */
+    private String buildBookWithTransactions(int transactionCount) {
+        InputStream inputStream = getClass().getClassLoader().getResourceAsStream("simpleTransactionImport.xml");
+        String xml = new Scanner(inputStream, "UTF-8").useDelimiter("\\A").next();
+        int start = xml.indexOf("<gnc:transaction ");
+        int end = xml.indexOf("</gnc:transaction>") + "</gnc:transaction>".length();
+        String transactionXml = xml.substring(start, end);
+        String imbalancedTransactionXml = transactionXml.replace("-1000/100", "-900/100");
+
+        StringBuilder transactions = new StringBuilder();
+        for (int i = 0; i < transactionCount; i++) {
+            // one imbalanced transaction in each batch
+            String template = i % GncXmlHandler.BATCH_SIZE == 0 ? imbalancedTransactionXml : transactionXml;
+            transactions.append(template
+                    .replace("b33c8a6160494417558fd143731fc26a", String.format("%032x", i))
+                    .replace("ad2cbc774fc4e71885d17e6932448e8e", String.format("a%031x", i))
+                    .replace("61d4d604bc00a59cabff4e8875d00bee", String.format("b%031x", i)));
+        }
+        return xml.substring(0, start) + transactions + xml.substring(end);
+    }
+
+    private static byte[] gzip(String xml) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(xml.getBytes(Charset.forName("UTF-8")));
+        }
+        return bytes.toByteArray();
+    }
+}
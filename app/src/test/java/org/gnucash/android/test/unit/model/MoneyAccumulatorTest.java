@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2012-2024 GnuCash Android developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.test.unit.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.gnucash.android.model.Commodity;
+import org.gnucash.android.model.Money;
+import org.gnucash.android.model.MoneyAccumulator;
+import org.gnucash.android.test.unit.testutil.ShadowCrashlytics;
+import org.gnucash.android.test.unit.testutil.ShadowUserVoice;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.math.BigDecimal;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21, shadows = {ShadowCrashlytics.class, ShadowUserVoice.class})
+public class MoneyAccumulatorTest {
+
+    private static final String CURRENCY_CODE = "EUR";
+
+    @Test
+    public void shouldAddFractionsOfTheCommodity() {
+        MoneyAccumulator accumulator = new MoneyAccumulator(CURRENCY_CODE);
+        assertThat(accumulator.isZero()).isTrue();
+        assertThat(accumulator.getDenominator()).isEqualTo(100L);
+
+        accumulator.add(1575, 100).add(5, 1).subtract(25, 10);
+        assertThat(accumulator.getNumerator()).isEqualTo(1825L);
+        assertThat(accumulator.toMoney()).isEqualTo(new Money("18.25", CURRENCY_CODE));
+
+        accumulator.reset();
+        assertThat(accumulator.isZero()).isTrue();
+        assertThat(accumulator.getNumerator()).isEqualTo(0L);
+    }
+
+    @Test
+    public void shouldAddMoney() {
+        MoneyAccumulator accumulator = new MoneyAccumulator(CURRENCY_CODE);
+        accumulator.add(new Money("15.75", CURRENCY_CODE)).subtract(new Money("20", CURRENCY_CODE));
+        assertThat(accumulator.toMoney()).isEqualTo(new Money("-4.25", CURRENCY_CODE));
+
+        assertThatThrownBy(() -> accumulator.add(new Money("1", "USD")))
+            .isInstanceOf(Money.CurrencyMismatchException.class);
+    }
+
+    @Test
+    public void shouldKeepAmountsFinerThanTheCommodity() {
+        MoneyAccumulator accumulator = new MoneyAccumulator(CURRENCY_CODE);
+        accumulator.add(1, 1000).add(new Money(new BigDecimal("0.004"), Commodity.getInstance(CURRENCY_CODE)));
+        assertThat(accumulator.toBigDecimal()).isEqualByComparingTo("0.005");
+        assertThat(accumulator.isZero()).isFalse();
+        assertThat(accumulator.getNumerator()).isEqualTo(0L);
+
+        accumulator.add(1, 1000);
+        assertThat(accumulator.getNumerator()).isEqualTo(1L);
+    }
+
+    @Test
+    public void shouldFallBackToBigDecimalOnOverflow() {
+        MoneyAccumulator accumulator = new MoneyAccumulator(CURRENCY_CODE);
+        accumulator.add(Long.MAX_VALUE, 100).add(Long.MAX_VALUE, 100).subtract(Long.MAX_VALUE, 100);
+        assertThat(accumulator.getNumerator()).isEqualTo(Long.MAX_VALUE);
+
+        accumulator.add(Long.MAX_VALUE / 10, 10);
+        BigDecimal expected = BigDecimal.valueOf(Long.MAX_VALUE, 2)
+            .add(BigDecimal.valueOf(Long.MAX_VALUE / 10, 1));
+        assertThat(accumulator.toBigDecimal()).isEqualByComparingTo(expected);
+        assertThatThrownBy(accumulator::getNumerator).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    public void shouldRoundConvertedAmountsHalfEven() {
+        MoneyAccumulator accumulator = new MoneyAccumulator(CURRENCY_CODE);
+        // 1.00 * 1/8 = 0.125 is rounded to 0.12, 3.00 * 1/8 = 0.375 to 0.38
+        accumulator.addConverted(100, 100, 1, 8);
+        assertThat(accumulator.getNumerator()).isEqualTo(12L);
+        accumulator.addConverted(-300, 100, 1, 8);
+        assertThat(accumulator.getNumerator()).isEqualTo(-26L);
+
+        accumulator.reset();
+        accumulator.addConverted(Long.MAX_VALUE, 100, 3, 2);
+        BigDecimal expected = BigDecimal.valueOf(Long.MAX_VALUE, 2).multiply(BigDecimal.valueOf(3))
+            .divide(BigDecimal.valueOf(2), 2, java.math.RoundingMode.HALF_EVEN);
+        assertThat(accumulator.toBigDecimal()).isEqualByComparingTo(expected);
+    }
+}
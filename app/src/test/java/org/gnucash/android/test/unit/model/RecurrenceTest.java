@@ -21,6 +21,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import org.gnucash.android.model.PeriodType;
 import org.gnucash.android.model.Recurrence;
 import org.joda.time.DateTime;
+import org.joda.time.Days;
 import org.junit.Test;
 
 import java.sql.Timestamp;
@@ -84,4 +85,39 @@ public class RecurrenceTest {
 
         assertThat(recurrence.getCount()).isEqualTo(-1);
     }
+
+    /**
+     * Occurrences are counted from the start of the recurrence, so monthly recurrences
+     * starting at the end of a month do not drift after shorter months
+     */
+    @Test
+    public void monthlyRecurrenceAtEndOfMonth_shouldCountOccurrencesFromStart() {
+        Recurrence recurrence = new Recurrence(PeriodType.MONTH);
+        DateTime start = new DateTime(2016, 1, 31, 9, 0);
+        recurrence.setPeriodStart(new Timestamp(start.getMillis()));
+
+        assertThat(recurrence.getOccurrenceTime(1)).isEqualTo(new DateTime(2016, 2, 29, 9, 0).getMillis());
+        assertThat(recurrence.getOccurrenceTime(2)).isEqualTo(new DateTime(2016, 3, 31, 9, 0).getMillis());
+
+        recurrence.setPeriodEnd(new Timestamp(new DateTime(2016, 3, 31, 9, 0).getMillis()));
+        assertThat(recurrence.getCount()).isEqualTo(2);
+        recurrence.setPeriodEnd(new Timestamp(new DateTime(2016, 3, 31, 9, 1).getMillis()));
+        assertThat(recurrence.getCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void countingOccurrences_shouldOnlyCountThoseInInterval() {
+        Recurrence recurrence = new Recurrence(PeriodType.DAY);
+        recurrence.setMultiplier(3);
+        DateTime start = new DateTime(2010, 3, 1, 12, 0);
+        recurrence.setPeriodStart(new Timestamp(start.getMillis()));
+
+        assertThat(recurrence.countOccurrences(start.minusDays(10).getMillis(), start.getMillis())).isZero();
+        assertThat(recurrence.countOccurrences(start.getMillis(), start.plusDays(3).getMillis())).isEqualTo(1);
+        assertThat(recurrence.countOccurrences(start.plusDays(1).getMillis(), start.plusDays(3).getMillis() + 1)).isEqualTo(1);
+        // about 15 years of occurrences every 3 days
+        DateTime end = new DateTime(2025, 3, 1, 12, 0);
+        int days = Days.daysBetween(start, end).getDays();
+        assertThat(recurrence.countOccurrences(start.getMillis(), end.getMillis())).isEqualTo((days + 2) / 3);
+    }
 }
@@ -196,6 +196,53 @@ public class ScheduledActionTest {
         assertThat(scheduledAction.computeNextTimeBasedScheduledExecutionTime()).isGreaterThan(now);
     }
 
+    /**
+     * Count-based executions of weekly actions should be due on each day of the week set,
+     * every {@code multiplier} weeks
+     */
+    @Test
+    public void weeklyActionsOnMultipleDays_shouldComputeEachExecutionTime() {
+        ScheduledAction scheduledAction = new ScheduledAction(ScheduledAction.ActionType.TRANSACTION);
+        Recurrence recurrence = new Recurrence(PeriodType.WEEK);
+        recurrence.setMultiplier(2);
+        recurrence.setByDays(Arrays.asList(Calendar.MONDAY, Calendar.THURSDAY));
+        scheduledAction.setRecurrence(recurrence);
+        scheduledAction.setStartTime(new DateTime(2016, 6, 6, 9, 0).getMillis()); // Monday
+
+        assertThat(scheduledAction.computeScheduledExecutionTime(0)).isEqualTo(new DateTime(2016, 6, 6, 9, 0).getMillis());
+        assertThat(scheduledAction.computeScheduledExecutionTime(1)).isEqualTo(new DateTime(2016, 6, 9, 9, 0).getMillis());
+        assertThat(scheduledAction.computeScheduledExecutionTime(2)).isEqualTo(new DateTime(2016, 6, 20, 9, 0).getMillis());
+        assertThat(scheduledAction.computeScheduledExecutionTime(3)).isEqualTo(new DateTime(2016, 6, 23, 9, 0).getMillis());
+        assertThat(scheduledAction.computeScheduledExecutionTime(4)).isEqualTo(new DateTime(2016, 7, 4, 9, 0).getMillis());
+
+        scheduledAction.setExecutionCount(3);
+        assertThat(scheduledAction.computeNextCountBasedScheduledExecutionTime())
+                .isEqualTo(new DateTime(2016, 6, 23, 9, 0).getMillis());
+
+        assertThat(scheduledAction.getExecutionCountUntil(new DateTime(2016, 6, 6, 8, 0).getMillis())).isZero();
+        assertThat(scheduledAction.getExecutionCountUntil(new DateTime(2016, 6, 23, 9, 0).getMillis())).isEqualTo(4);
+        assertThat(scheduledAction.getExecutionCountUntil(new DateTime(2016, 7, 3, 9, 0).getMillis())).isEqualTo(4);
+    }
+
+    /**
+     * The number of due executions should match the execution times, however long the action was not run
+     */
+    @Test
+    public void executionCountUntil_shouldMatchExecutionTimes() {
+        ScheduledAction scheduledAction = new ScheduledAction(ScheduledAction.ActionType.TRANSACTION);
+        Recurrence recurrence = new Recurrence(PeriodType.MONTH);
+        scheduledAction.setRecurrence(recurrence);
+        scheduledAction.setStartTime(new DateTime(2001, 1, 31, 12, 0).getMillis());
+
+        long now = new DateTime(2016, 5, 31, 11, 0).getMillis();
+        int count = scheduledAction.getExecutionCountUntil(now);
+        assertThat(count).isEqualTo(15 * 12 + 4);
+        assertThat(scheduledAction.computeScheduledExecutionTime(count - 1)).isLessThanOrEqualTo(now);
+        assertThat(scheduledAction.computeScheduledExecutionTime(count)).isGreaterThan(now);
+        assertThat(scheduledAction.computeScheduledExecutionTime(count - 1))
+                .isEqualTo(new DateTime(2016, 4, 30, 12, 0).getMillis());
+    }
+
     private long getTimeInMillis(int year, int month, int day) {
         Calendar calendar = Calendar.getInstance();
         calendar.set(year, month, day);
@@ -23,7 +23,9 @@ import android.database.sqlite.SQLiteDatabase;
 
 import org.gnucash.android.R;
 import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.DatabaseHelper;
 import org.gnucash.android.db.DatabaseSchema;
+import org.gnucash.android.db.adapter.AdapterRegistry;
 import org.gnucash.android.db.adapter.AccountsDbAdapter;
 import org.gnucash.android.db.adapter.BooksDbAdapter;
 import org.gnucash.android.db.adapter.CommoditiesDbAdapter;
@@ -35,6 +37,7 @@ import org.gnucash.android.export.ExportParams;
 import org.gnucash.android.export.Exporter;
 import org.gnucash.android.importer.GncXmlImporter;
 import org.gnucash.android.model.Account;
+import org.gnucash.android.model.Book;
 import org.gnucash.android.model.Commodity;
 import org.gnucash.android.model.Money;
 import org.gnucash.android.model.PeriodType;
@@ -273,6 +276,136 @@ public class ScheduledActionServiceTest {
         assertThat(transactionsDbAdapter.getRecordsCount()).isEqualTo(expectedCount); //would be 6 if the end time is not respected
     }
 
+    /**
+     * Test that only the schedules after those already executed are generated
+     */
+    @Test
+    public void partiallyExecutedScheduledTransactions_shouldResumeAfterLastExecution() {
+        ScheduledAction scheduledAction = new ScheduledAction(ScheduledAction.ActionType.TRANSACTION);
+        DateTime startTime = new DateTime(2016, 6, 6, 9, 0);
+        scheduledAction.setStartTime(startTime.getMillis());
+        scheduledAction.setActionUID(mActionUID);
+
+        Recurrence recurrence = new Recurrence(PeriodType.WEEK);
+        recurrence.setMultiplier(2);
+        recurrence.setByDays(Collections.singletonList(Calendar.MONDAY));
+        scheduledAction.setRecurrence(recurrence);
+        scheduledAction.setEndTime(new DateTime(2016, 8, 8, 9, 0).getMillis());
+        scheduledAction.setExecutionCount(3);
+        ScheduledActionDbAdapter.getInstance().addRecord(scheduledAction, DatabaseAdapter.UpdateMethod.insert);
+
+        TransactionsDbAdapter transactionsDbAdapter = TransactionsDbAdapter.getInstance();
+        List<ScheduledAction> actions = new ArrayList<>();
+        actions.add(scheduledAction);
+        ScheduledActionService.processScheduledActions(actions, mDb);
+
+        assertThat(scheduledAction.getExecutionCount()).isEqualTo(5);
+        assertThat(transactionsDbAdapter.getRecordsCount()).isEqualTo(2);
+        List<Long> times = new ArrayList<>();
+        for (Transaction transaction : transactionsDbAdapter.getAllTransactions()) {
+            if (!transaction.isTemplate()) {
+                times.add(transaction.getTimeMillis());
+            }
+        }
+        assertThat(times).containsOnly(new DateTime(2016, 7, 18, 9, 0).getMillis(),
+                new DateTime(2016, 8, 1, 9, 0).getMillis());
+    }
+
+    /**
+     * Test that the scheduled actions of the books are executed and their execution counts saved
+     */
+    @Test
+    public void scheduledActionsOfBooks_shouldBeExecutedAndSaved() {
+        ScheduledAction scheduledAction = createBiweeklyAction(mActionUID);
+        ScheduledActionDbAdapter scheduledActionDbAdapter = ScheduledActionDbAdapter.getInstance();
+        scheduledActionDbAdapter.addRecord(scheduledAction, DatabaseAdapter.UpdateMethod.insert);
+
+        TransactionsDbAdapter transactionsDbAdapter = TransactionsDbAdapter.getInstance();
+        assertThat(transactionsDbAdapter.getRecordsCount()).isZero();
+
+        ScheduledActionService.processBooks(BooksDbAdapter.getInstance().getAllRecords());
+
+        int expectedCount = 5;
+        assertThat(transactionsDbAdapter.getRecordsCount()).isEqualTo(expectedCount);
+        ScheduledAction savedAction = scheduledActionDbAdapter.getRecord(scheduledAction.getUID());
+        assertThat(savedAction.getExecutionCount()).isEqualTo(expectedCount);
+        assertThat(savedAction.getLastRunTime()).isGreaterThan(scheduledAction.getEndTime());
+    }
+
+    /**
+     * Test that a failure in the scheduled actions of one book does not prevent the other books
+     * from being saved, and that the executions of the failing book are rolled back
+     */
+    @Test
+    public void failingBook_shouldBeRolledBackWithoutAffectingOtherBooks() throws Exception {
+        Context context = GnuCashApplication.getAppContext();
+        ScheduledAction scheduledAction = createBiweeklyAction(mActionUID);
+        ScheduledActionDbAdapter.getInstance().addRecord(scheduledAction, DatabaseAdapter.UpdateMethod.insert);
+
+        // the template transaction of the other book has splits in accounts which are not in that book,
+        // so that the transactions created from it violate the foreign key constraints
+        String failingBookUID = GncXmlImporter.parse(context.getResources().openRawResource(R.raw.default_accounts));
+        Transaction failingTemplate = new Transaction("Failing Recurring Transaction");
+        failingTemplate.setTemplate(true);
+        failingTemplate.setCommodity(Commodity.DEFAULT_COMMODITY);
+        Split split = new Split(new Money(BigDecimal.ONE, Commodity.DEFAULT_COMMODITY), mBaseAccount.getUID());
+        failingTemplate.addSplit(split);
+        failingTemplate.addSplit(split.createPair(mTransferAccount.getUID()));
+        ScheduledAction failingAction = createBiweeklyAction(failingTemplate.getUID());
+        DatabaseHelper failingDbHelper = new DatabaseHelper(context, failingBookUID);
+        try {
+            AdapterRegistry adapters = AdapterRegistry.getInstance(failingDbHelper.getWritableDatabase());
+            adapters.getTransactionsDbAdapter().enableForeignKey(false);
+            adapters.getTransactionsDbAdapter().addRecord(failingTemplate, DatabaseAdapter.UpdateMethod.insert);
+            adapters.getTransactionsDbAdapter().enableForeignKey(true);
+            adapters.getScheduledActionDbAdapter().addRecord(failingAction, DatabaseAdapter.UpdateMethod.insert);
+        } finally {
+            failingDbHelper.close();
+        }
+
+        List<Book> books = BooksDbAdapter.getInstance().getAllRecords();
+        List<String> bookUIDs = new ArrayList<>();
+        for (Book book : books) {
+            bookUIDs.add(book.getUID());
+        }
+        assertThat(bookUIDs).contains(failingBookUID, GnuCashApplication.getActiveBookUID());
+        ScheduledActionService.processBooks(books);
+
+        assertThat(TransactionsDbAdapter.getInstance().getRecordsCount()).isEqualTo(5);
+        assertThat(ScheduledActionDbAdapter.getInstance().getRecord(scheduledAction.getUID()).getExecutionCount())
+            .isEqualTo(5);
+
+        failingDbHelper = new DatabaseHelper(context, failingBookUID);
+        try {
+            AdapterRegistry adapters = AdapterRegistry.getInstance(failingDbHelper.getWritableDatabase());
+            assertThat(adapters.getTransactionsDbAdapter().getRecordsCount()).isZero();
+            ScheduledAction savedAction = adapters.getScheduledActionDbAdapter().getRecord(failingAction.getUID());
+            assertThat(savedAction.getExecutionCount()).isZero();
+            assertThat(savedAction.getLastRunTime()).isEqualTo(failingAction.getLastRunTime());
+        } finally {
+            failingDbHelper.close();
+            BooksDbAdapter.getInstance().deleteBook(failingBookUID);
+        }
+    }
+
+    /**
+     * Creates an action executed every other Monday from 2016-06-06 to 2016-08-08, 5 times in total
+     *
+     * @param actionUID GUID of the template transaction of the action
+     */
+    private static ScheduledAction createBiweeklyAction(String actionUID) {
+        ScheduledAction scheduledAction = new ScheduledAction(ScheduledAction.ActionType.TRANSACTION);
+        scheduledAction.setStartTime(new DateTime(2016, 6, 6, 9, 0).getMillis());
+        scheduledAction.setActionUID(actionUID);
+
+        Recurrence recurrence = new Recurrence(PeriodType.WEEK);
+        recurrence.setMultiplier(2);
+        recurrence.setByDays(Collections.singletonList(Calendar.MONDAY));
+        scheduledAction.setRecurrence(recurrence);
+        scheduledAction.setEndTime(new DateTime(2016, 8, 8, 9, 0).getMillis());
+        return scheduledAction;
+    }
+
     /**
      * Test that only scheduled actions with action UIDs are processed
      */
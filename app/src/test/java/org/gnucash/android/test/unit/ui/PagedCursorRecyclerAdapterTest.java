@@ -0,0 +1,318 @@
+package org.gnucash.android.test.unit.ui;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.Looper;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.gnucash.android.test.unit.testutil.ShadowCrashlytics;
+import org.gnucash.android.test.unit.testutil.ShadowUserVoice;
+import org.gnucash.android.ui.util.PagedCursorRecyclerAdapter;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the page loading of {@link PagedCursorRecyclerAdapter}
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21, shadows = {ShadowCrashlytics.class, ShadowUserVoice.class})
+public class PagedCursorRecyclerAdapterTest {
+
+    private static final int PAGE_SIZE = 10;
+    private static final int ITEM_COUNT = 35;
+
+    private ItemSource mSource;
+    private ItemAdapter mAdapter;
+    private final List<String> mNotifications = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mSource = new ItemSource();
+        mAdapter = new ItemAdapter(mSource);
+        mAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                mNotifications.add("inserted " + positionStart + "+" + itemCount);
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                mNotifications.add("removed " + positionStart + "+" + itemCount);
+            }
+        });
+    }
+
+    @Test
+    public void countOfAFullFirstPage_shouldBeReloaded() {
+        mAdapter.swapCursor(mSource.loadPage(0L, PAGE_SIZE));
+        assertThat(mAdapter.getItemCount()).isEqualTo(PAGE_SIZE);
+
+        idle();
+        assertThat(mAdapter.getItemCount()).isEqualTo(ITEM_COUNT);
+        assertThat(mNotifications).containsExactly("inserted 10+25");
+    }
+
+    @Test
+    public void countOfAPartialFirstPage_shouldNotBeReloaded() {
+        mSource.mItemCount = 5;
+        mAdapter.swapCursor(mSource.loadPage(0L, PAGE_SIZE));
+        idle();
+
+        assertThat(mAdapter.getItemCount()).isEqualTo(5);
+        assertThat(mSource.mCountQueries).isZero();
+    }
+
+    @Test
+    public void bindingNearTheEndOfAPage_shouldPrefetchTheNextPage() {
+        mAdapter.swapCursor(mSource.loadPage(0L, PAGE_SIZE));
+        idle();
+
+        assertThat(bind(5)).isEqualTo(6);
+        assertThat(mSource.mPages).isEmpty();
+
+        assertThat(bind(8)).isEqualTo(9);
+        idle();
+        assertThat(mSource.mPages).hasSize(1);
+        assertThat(bind(10)).isEqualTo(11);
+        assertThat(bind(17)).isEqualTo(18);
+        assertThat(mSource.mPages).hasSize(1);
+    }
+
+    @Test
+    public void itemsOfAPageNotLoadedYet_shouldBeBoundAsPlaceholders() {
+        mAdapter.swapCursor(mSource.loadPage(0L, PAGE_SIZE));
+        idle();
+
+        assertThat(bind(15)).isEqualTo(ItemAdapter.PLACEHOLDER);
+        idle();
+        assertThat(bind(15)).isEqualTo(16);
+    }
+
+    @Test
+    public void pagesFarFromTheDisplayedPage_shouldBeClosed() {
+        mAdapter.swapCursor(mSource.loadPage(0L, PAGE_SIZE));
+        idle();
+
+        bind(15);
+        idle();
+        bind(25);
+        idle();
+        bind(34);
+        idle();
+
+        assertThat(mSource.mPages).hasSize(3);
+        assertThat(mSource.mPages.get(0).isClosed()).isTrue();
+        assertThat(mSource.mPages.get(1).isClosed()).isFalse();
+        assertThat(mSource.mPages.get(2).isClosed()).isFalse();
+        assertThat(bind(34)).isEqualTo(35);
+        assertThat(bind(25)).isEqualTo(26);
+
+        // going back loads the closed page again
+        assertThat(bind(15)).isEqualTo(ItemAdapter.PLACEHOLDER);
+        idle();
+        assertThat(bind(15)).isEqualTo(16);
+        assertThat(mSource.mPages.get(2).isClosed()).isTrue();
+    }
+
+    @Test
+    public void pagesOfAReplacedDataSet_shouldBeDiscarded() {
+        mAdapter.swapCursor(mSource.loadPage(0L, PAGE_SIZE));
+        idle();
+        bind(15);
+        assertThat(mSource.mPages).hasSize(1);
+
+        // the page is delivered after the data set was replaced
+        mSource.mItemCount = 20;
+        mAdapter.swapCursor(mSource.loadPage(0L, PAGE_SIZE));
+        idle();
+
+        assertThat(mSource.mPages.get(0).isClosed()).isTrue();
+        assertThat(mAdapter.getItemCount()).isEqualTo(20);
+        assertThat(bind(15)).isEqualTo(ItemAdapter.PLACEHOLDER);
+        idle();
+        assertThat(mSource.mPages).hasSize(2);
+        assertThat(bind(15)).isEqualTo(16);
+    }
+
+    @Test
+    public void overestimatedCount_shouldBeCorrectedWhenTheLastPageIsLoaded() {
+        mSource.mCountOffset = 15;
+        mAdapter.swapCursor(mSource.loadPage(0L, PAGE_SIZE));
+        idle();
+        assertThat(mAdapter.getItemCount()).isEqualTo(50);
+
+        assertThat(bind(45)).isEqualTo(ItemAdapter.PLACEHOLDER);
+        idle();
+
+        assertThat(mAdapter.getItemCount()).isEqualTo(ITEM_COUNT);
+        assertThat(mNotifications).containsExactly("inserted 10+40", "removed 35+15");
+        assertThat(bind(34)).isEqualTo(35);
+    }
+
+    @Test
+    public void removingTheCursor_shouldRemoveAllItems() {
+        mAdapter.swapCursor(mSource.loadPage(0L, PAGE_SIZE));
+        idle();
+        mNotifications.clear();
+
+        mAdapter.swapCursor(null);
+
+        assertThat(mAdapter.getItemCount()).isZero();
+        assertThat(mNotifications).containsExactly("removed 0+35");
+    }
+
+    @Test
+    public void shutdown_shouldCloseThePagesAndStopLoading() {
+        mAdapter.swapCursor(mSource.loadPage(0L, PAGE_SIZE));
+        idle();
+        bind(15);
+        idle();
+
+        mAdapter.shutdown();
+
+        assertThat(mAdapter.mExecutor.isShutdown()).isTrue();
+        assertThat(mSource.mPages.get(0).isClosed()).isTrue();
+        assertThat(bind(25)).isEqualTo(ItemAdapter.PLACEHOLDER);
+        idle();
+        assertThat(mSource.mPages).hasSize(1);
+    }
+
+    private long bind(int position) {
+        ItemAdapter.ItemViewHolder holder = mAdapter.onCreateViewHolder(null, 0);
+        mAdapter.onBindViewHolder(holder, position);
+        return holder.mItemId;
+    }
+
+    private static void idle() {
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    /**
+     * Items with IDs starting from 1, each ID being the key of its item
+     */
+    private static class ItemSource implements PagedCursorRecyclerAdapter.PageSource<Long> {
+        int mItemCount = ITEM_COUNT;
+        int mCountOffset = 0;
+        int mCountQueries = 0;
+        final List<Cursor> mPages = new ArrayList<>();
+
+        @Override
+        public int getCount() {
+            mCountQueries++;
+            return mItemCount + mCountOffset;
+        }
+
+        @NonNull
+        @Override
+        public Cursor loadPage(@NonNull Long after, int pageSize) {
+            MatrixCursor cursor = new MatrixCursor(new String[]{"_id"});
+            for (long id = after + 1; id <= Math.min(after + pageSize, mItemCount); id++) {
+                cursor.addRow(new Object[]{id});
+            }
+            if (after > 0) {
+                mPages.add(cursor);
+            }
+            return cursor;
+        }
+
+        @NonNull
+        @Override
+        public Long getKey(@NonNull Cursor cursor) {
+            return cursor.getLong(0);
+        }
+    }
+
+    private static class ItemAdapter extends PagedCursorRecyclerAdapter<ItemAdapter.ItemViewHolder, Long> {
+        static final long PLACEHOLDER = -1;
+
+        final DirectExecutor mExecutor;
+
+        ItemAdapter(ItemSource source) {
+            this(source, new DirectExecutor());
+        }
+
+        private ItemAdapter(ItemSource source, DirectExecutor executor) {
+            super(source, PAGE_SIZE, executor);
+            mExecutor = executor;
+        }
+
+        @NonNull
+        @Override
+        public ItemViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return new ItemViewHolder(new View(RuntimeEnvironment.getApplication()));
+        }
+
+        @Override
+        public void onBindViewHolderCursor(ItemViewHolder holder, Cursor cursor) {
+            holder.mItemId = cursor.getLong(0);
+        }
+
+        @Override
+        public void onBindViewHolderPlaceholder(ItemViewHolder holder) {
+            holder.mItemId = PLACEHOLDER;
+        }
+
+        static class ItemViewHolder extends RecyclerView.ViewHolder {
+            long mItemId;
+
+            ItemViewHolder(View itemView) {
+                super(itemView);
+            }
+        }
+    }
+
+    /**
+     * Runs the page loads on the calling thread. Their results are still delivered through the main looper.
+     */
+    private static class DirectExecutor extends AbstractExecutorService {
+        private boolean mShutdown = false;
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+            mShutdown = true;
+        }
+
+        @NonNull
+        @Override
+        public List<Runnable> shutdownNow() {
+            mShutdown = true;
+            return new ArrayList<>();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return mShutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return mShutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, @NonNull TimeUnit unit) {
+            return mShutdown;
+        }
+    }
+}